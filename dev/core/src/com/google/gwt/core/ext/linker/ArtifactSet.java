@@ -16,10 +16,13 @@
 package com.google.gwt.core.ext.linker;
 
 import java.io.Serializable;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -28,8 +31,111 @@ import java.util.TreeSet;
  */
 public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
 
+  /**
+   * Keeps the type index current when artifacts are removed while iterating.
+   */
+  private class IndexingIterator implements Iterator<Artifact<?>> {
+    private final Iterator<Artifact<?>> delegate;
+    private Artifact<?> last;
+
+    public IndexingIterator(Iterator<Artifact<?>> delegate) {
+      this.delegate = delegate;
+    }
+
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+
+    public Artifact<?> next() {
+      last = delegate.next();
+      return last;
+    }
+
+    public void remove() {
+      delegate.remove();
+      unindex(last);
+    }
+  }
+
+  /**
+   * A range view of the set that keeps the type index current when modified.
+   */
+  private class IndexingView extends AbstractSet<Artifact<?>> implements
+      SortedSet<Artifact<?>> {
+    private final SortedSet<Artifact<?>> delegate;
+
+    public IndexingView(SortedSet<Artifact<?>> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean add(Artifact<?> o) {
+      boolean added = delegate.add(o);
+      if (added) {
+        index(o);
+      }
+      return added;
+    }
+
+    public Comparator<? super Artifact<?>> comparator() {
+      return delegate.comparator();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return delegate.contains(o);
+    }
+
+    public Artifact<?> first() {
+      return delegate.first();
+    }
+
+    public SortedSet<Artifact<?>> headSet(Artifact<?> toElement) {
+      return new IndexingView(delegate.headSet(toElement));
+    }
+
+    @Override
+    public Iterator<Artifact<?>> iterator() {
+      return new IndexingIterator(delegate.iterator());
+    }
+
+    public Artifact<?> last() {
+      return delegate.last();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      boolean removed = delegate.remove(o);
+      if (removed) {
+        unindex(o);
+      }
+      return removed;
+    }
+
+    @Override
+    public int size() {
+      return delegate.size();
+    }
+
+    public SortedSet<Artifact<?>> subSet(Artifact<?> fromElement,
+        Artifact<?> toElement) {
+      return new IndexingView(delegate.subSet(fromElement, toElement));
+    }
+
+    public SortedSet<Artifact<?>> tailSet(Artifact<?> fromElement) {
+      return new IndexingView(delegate.tailSet(fromElement));
+    }
+  }
+
   private SortedSet<Artifact<?>> treeSet = new TreeSet<Artifact<?>>();
 
+  /**
+   * The artifacts of each concrete class, in set order, so that
+   * {@link #find(Class)} only visits matching artifacts. Built on the first
+   * call to {@link #find(Class)} and maintained by every change after that.
+   */
+  private transient volatile Map<Class<?>, SortedSet<Artifact<?>>> typeIndex;
+
   public ArtifactSet() {
   }
 
@@ -38,15 +144,28 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
   }
 
   public boolean add(Artifact<?> o) {
-    return treeSet.add(o);
+    boolean added = treeSet.add(o);
+    if (added) {
+      index(o);
+    }
+    return added;
   }
 
   public boolean addAll(Collection<? extends Artifact<?>> c) {
-    return treeSet.addAll(c);
+    if (typeIndex == null) {
+      // Keeps TreeSet's fast path for copying a sorted set
+      return treeSet.addAll(c);
+    }
+    boolean changed = false;
+    for (Artifact<?> artifact : c) {
+      changed |= add(artifact);
+    }
+    return changed;
   }
 
   public void clear() {
     treeSet.clear();
+    typeIndex = null;
   }
 
   public Comparator<? super Artifact<?>> comparator() {
@@ -83,11 +202,22 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
    */
   public <T extends Artifact<? super T>> SortedSet<T> find(
       Class<T> artifactType) {
-    // TODO make this sub-linear (but must retain order for styles/scripts!)
+    Map<Class<?>, SortedSet<Artifact<?>>> index = typeIndex;
+    if (index == null) {
+      // Built before publishing, so concurrent finds on a frozen set are safe
+      index = new HashMap<Class<?>, SortedSet<Artifact<?>>>();
+      for (Artifact<?> artifact : treeSet) {
+        addToIndex(index, artifact);
+      }
+      typeIndex = index;
+    }
+    // The result is sorted like this set, which retains order for styles/scripts
     SortedSet<T> toReturn = new TreeSet<T>();
-    for (Artifact<?> artifact : this) {
-      if (artifactType.isInstance(artifact)) {
-        toReturn.add(artifactType.cast(artifact));
+    for (Map.Entry<Class<?>, SortedSet<Artifact<?>>> entry : index.entrySet()) {
+      if (artifactType.isAssignableFrom(entry.getKey())) {
+        for (Artifact<?> artifact : entry.getValue()) {
+          toReturn.add(artifactType.cast(artifact));
+        }
       }
     }
     return toReturn;
@@ -114,7 +244,7 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
   }
 
   public SortedSet<Artifact<?>> headSet(Artifact<?> toElement) {
-    return treeSet.headSet(toElement);
+    return new IndexingView(treeSet.headSet(toElement));
   }
 
   public boolean isEmpty() {
@@ -122,7 +252,7 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
   }
 
   public Iterator<Artifact<?>> iterator() {
-    return treeSet.iterator();
+    return new IndexingIterator(treeSet.iterator());
   }
 
   public Artifact<?> last() {
@@ -130,11 +260,19 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
   }
 
   public boolean remove(Object o) {
-    return treeSet.remove(o);
+    boolean removed = treeSet.remove(o);
+    if (removed) {
+      unindex(o);
+    }
+    return removed;
   }
 
   public boolean removeAll(Collection<?> c) {
-    return treeSet.removeAll(c);
+    boolean changed = false;
+    for (Object o : c) {
+      changed |= remove(o);
+    }
+    return changed;
   }
 
   /**
@@ -144,13 +282,18 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
    * @return <code>true</code> if an equivalent Artifact was already present.
    */
   public boolean replace(Artifact<?> artifact) {
-    boolean toReturn = treeSet.remove(artifact);
-    treeSet.add(artifact);
+    boolean toReturn = remove(artifact);
+    add(artifact);
     return toReturn;
   }
 
   public boolean retainAll(Collection<?> c) {
-    return treeSet.retainAll(c);
+    boolean changed = treeSet.retainAll(c);
+    if (changed) {
+      // Rare enough to simply rebuild on the next find()
+      typeIndex = null;
+    }
+    return changed;
   }
 
   public int size() {
@@ -159,11 +302,11 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
 
   public SortedSet<Artifact<?>> subSet(Artifact<?> fromElement,
       Artifact<?> toElement) {
-    return treeSet.subSet(fromElement, toElement);
+    return new IndexingView(treeSet.subSet(fromElement, toElement));
   }
 
   public SortedSet<Artifact<?>> tailSet(Artifact<?> fromElement) {
-    return treeSet.tailSet(fromElement);
+    return new IndexingView(treeSet.tailSet(fromElement));
   }
 
   public Object[] toArray() {
@@ -178,4 +321,34 @@ public final class ArtifactSet implements SortedSet<Artifact<?>>, Serializable {
   public String toString() {
     return treeSet.toString();
   }
+
+  private static void addToIndex(Map<Class<?>, SortedSet<Artifact<?>>> index,
+      Artifact<?> artifact) {
+    SortedSet<Artifact<?>> ofType = index.get(artifact.getClass());
+    if (ofType == null) {
+      ofType = new TreeSet<Artifact<?>>();
+      index.put(artifact.getClass(), ofType);
+    }
+    ofType.add(artifact);
+  }
+
+  private void index(Artifact<?> artifact) {
+    if (typeIndex != null) {
+      addToIndex(typeIndex, artifact);
+    }
+  }
+
+  private void unindex(Object o) {
+    if (typeIndex == null) {
+      return;
+    }
+    /*
+     * The removed artifact may have been equal to, rather than the same class
+     * as, o; artifacts only compare equal within one comparable type, which
+     * covers few concrete classes, so check them all.
+     */
+    for (SortedSet<Artifact<?>> ofType : typeIndex.values()) {
+      ofType.remove(o);
+    }
+  }
 }
@@ -228,6 +228,24 @@ public class CompilePermsServer {
     }
   }
 
+  /**
+   * Tells the server to exit. Encoded like <code>writeBoolean(false)</code>.
+   */
+  static final int COMMAND_SHUTDOWN = 0;
+
+  /**
+   * Followed by a result file and a {@link Permutation} to compile with the
+   * current AST. Encoded like <code>writeBoolean(true)</code>.
+   */
+  static final int COMMAND_COMPILE = 1;
+
+  /**
+   * Followed by the {@link File} of a serialized {@link UnifiedAst}, which
+   * replaces the current AST. The server answers with its memory use. A server
+   * that is reused across compiles only receives this when the AST changes.
+   */
+  static final int COMMAND_LOAD_AST = 2;
+
   public static void main(String[] args) {
     int exitCode = -1;
     final CompileServerOptions options = new CompileServerOptionsImpl();
@@ -255,27 +273,35 @@ public class CompilePermsServer {
       out.writeUTF(options.getCookie());
       out.flush();
 
-      // Read the File that contains the serialized UnifiedAst
-      File astFile = (File) in.readObject();
-      ObjectInputStream astIn = new ObjectInputStream(new FileInputStream(
-          astFile));
-      UnifiedAst ast = (UnifiedAst) astIn.readObject();
-      ast.prepare();
-      logger.log(TreeLogger.SPAM, "Created new UnifiedAst instance");
-
-      // Report on the amount of memory we think we're using
-      long estimatedMemory = Runtime.getRuntime().totalMemory()
-          - Runtime.getRuntime().freeMemory();
-      out.writeLong(estimatedMemory);
-      out.flush();
-
-      boolean keepGoing = in.readBoolean();
-      while (keepGoing) {
-        compilePermutation(logger, ast, in, out);
-
-        keepGoing = in.readBoolean();
+      UnifiedAst ast = null;
+      int command;
+      while ((command = in.readByte()) != COMMAND_SHUTDOWN) {
         if (logger.isLoggable(TreeLogger.SPAM)) {
-          logger.log(TreeLogger.SPAM, "keepGoing = " + keepGoing);
+          logger.log(TreeLogger.SPAM, "command = " + command);
+        }
+        switch (command) {
+          case COMMAND_LOAD_AST:
+            // Let the previous AST be collected before loading the next
+            ast = null;
+            ast = loadAst((File) in.readObject());
+            logger.log(TreeLogger.SPAM, "Created new UnifiedAst instance");
+
+            // Report on the amount of memory we think we're using
+            long estimatedMemory = Runtime.getRuntime().totalMemory()
+                - Runtime.getRuntime().freeMemory();
+            out.writeLong(estimatedMemory);
+            out.flush();
+            break;
+          case COMMAND_COMPILE:
+            if (ast == null) {
+              logger.log(TreeLogger.ERROR, "Asked to compile before loading an AST");
+              return false;
+            }
+            compilePermutation(logger, ast, in, out);
+            break;
+          default:
+            logger.log(TreeLogger.ERROR, "Unknown command " + command);
+            return false;
         }
       }
 
@@ -293,6 +319,19 @@ public class CompilePermsServer {
     return false;
   }
 
+  private static UnifiedAst loadAst(File astFile) throws ClassNotFoundException,
+      IOException {
+    ObjectInputStream astIn = new ObjectInputStream(new FileInputStream(
+        astFile));
+    try {
+      UnifiedAst ast = (UnifiedAst) astIn.readObject();
+      ast.prepare();
+      return ast;
+    } finally {
+      astIn.close();
+    }
+  }
+
   static void compilePermutation(TreeLogger logger, UnifiedAst ast,
       ObjectInputStream in, ObjectOutputStream out)
       throws ClassNotFoundException, IOException {
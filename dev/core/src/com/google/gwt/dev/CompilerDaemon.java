@@ -0,0 +1,480 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.Compiler.CompilerOptionsImpl;
+import com.google.gwt.dev.util.arg.ArgHandlerLogLevel;
+import com.google.gwt.dev.util.arg.OptionLogLevel;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+import com.google.gwt.util.tools.ArgHandlerFile;
+import com.google.gwt.util.tools.ArgHandlerInt;
+import com.google.gwt.util.tools.Utility;
+import com.google.gwt.util.tools.shared.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A long-running compiler process that stays warm between builds. Builds are
+ * submitted by {@link CompilerDaemonClient} over a socket on the loopback
+ * interface and run one at a time, each exactly as {@link Compiler} would run
+ * it with the same arguments. Relative output directories, including the
+ * default <code>war</code> directory, are resolved against the client's
+ * working directory rather than the daemon's.
+ *
+ * <p>
+ * Because every build runs in the same JVM, the state the compiler already
+ * caches per process carries over: module definitions are reused until their
+ * <code>.gwt.xml</code> files change, compilation units are reused until their
+ * sources change, archives are only reloaded when they change, and the
+ * compiler itself is already JIT-compiled. Each build reports its time, and
+ * how long the first (cold) build of the same modules took.
+ *
+ * <p>
+ * Only the user who started the daemon may submit builds: on startup the
+ * daemon writes a random token to a file that only that user can read, by
+ * default {@link #DEFAULT_TOKEN_FILE} in the user's home directory, and
+ * rejects any client that does not send it back.
+ *
+ * <p>
+ * Protocol, written with {@link DataOutputStream}: the client sends the token,
+ * its absolute working directory and the number of compiler arguments,
+ * followed by each argument, all as UTF strings. The daemon answers with any
+ * number of {@link #REPLY_LOG} chunks of the build log, each a byte count
+ * followed by that many UTF-8 bytes, and then a single
+ * {@link #REPLY_SUCCEEDED} or {@link #REPLY_FAILED}.
+ * The single argument {@link #SHUTDOWN} stops the daemon. A client that does
+ * not send its whole request within {@link #REQUEST_TIMEOUT_MILLIS} is
+ * dropped, so that it cannot block other clients.
+ */
+public class CompilerDaemon {
+
+  /**
+   * Options for the daemon itself.
+   */
+  interface DaemonOptions extends OptionLogLevel {
+    int getPort();
+
+    File getTokenFile();
+
+    void setPort(int port);
+
+    void setTokenFile(File tokenFile);
+  }
+
+  static final class ArgHandlerDaemonPort extends ArgHandlerInt {
+    private final DaemonOptions options;
+
+    public ArgHandlerDaemonPort(DaemonOptions options) {
+      this.options = options;
+    }
+
+    @Override
+    public String[] getDefaultArgs() {
+      return new String[] {getTag(), String.valueOf(DEFAULT_PORT)};
+    }
+
+    @Override
+    public String getPurpose() {
+      return "The local port to accept builds on";
+    }
+
+    @Override
+    public String getTag() {
+      return "-port";
+    }
+
+    @Override
+    public String[] getTagArgs() {
+      return new String[] {"port"};
+    }
+
+    @Override
+    public void setInt(int value) {
+      options.setPort(value);
+    }
+  }
+
+  static final class ArgHandlerTokenFile extends ArgHandlerFile {
+    private final DaemonOptions options;
+
+    public ArgHandlerTokenFile(DaemonOptions options) {
+      this.options = options;
+    }
+
+    @Override
+    public String[] getDefaultArgs() {
+      return new String[] {getTag(), getDefaultTokenFile().getPath()};
+    }
+
+    @Override
+    public String getPurpose() {
+      return "The file to write the token that clients must send";
+    }
+
+    @Override
+    public String getTag() {
+      return "-tokenFile";
+    }
+
+    @Override
+    public void setFile(File file) {
+      options.setTokenFile(file);
+    }
+  }
+
+  static class ArgProcessor extends ArgProcessorBase {
+    public ArgProcessor(DaemonOptions options) {
+      registerHandler(new ArgHandlerLogLevel(options));
+      registerHandler(new ArgHandlerDaemonPort(options));
+      registerHandler(new ArgHandlerTokenFile(options));
+    }
+
+    @Override
+    protected String getName() {
+      return CompilerDaemon.class.getName();
+    }
+  }
+
+  static class DaemonOptionsImpl implements DaemonOptions {
+    private Type logLevel;
+    private int port;
+    private File tokenFile;
+
+    public Type getLogLevel() {
+      return logLevel;
+    }
+
+    public int getPort() {
+      return port;
+    }
+
+    public File getTokenFile() {
+      return tokenFile;
+    }
+
+    public void setLogLevel(Type logLevel) {
+      this.logLevel = logLevel;
+    }
+
+    public void setPort(int port) {
+      this.port = port;
+    }
+
+    public void setTokenFile(File tokenFile) {
+      this.tokenFile = tokenFile;
+    }
+  }
+
+  /**
+   * Sends each chunk of the build log as a {@link #REPLY_LOG}.
+   */
+  private static class LogWriter extends Writer {
+    private final DataOutputStream out;
+
+    public LogWriter(DataOutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      byte[] bytes = new String(cbuf, off, len).getBytes("UTF-8");
+      synchronized (out) {
+        out.writeByte(REPLY_LOG);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+
+  public static final int DEFAULT_PORT = 9877;
+
+  /**
+   * The name of the default token file in the user's home directory.
+   */
+  public static final String DEFAULT_TOKEN_FILE = ".gwtCompilerDaemonToken";
+
+  /**
+   * How long the daemon waits for each part of a request.
+   */
+  public static final int REQUEST_TIMEOUT_MILLIS = 10000;
+
+  static final byte REPLY_FAILED = 2;
+
+  static final byte REPLY_LOG = 0;
+
+  static final byte REPLY_SUCCEEDED = 1;
+
+  static final String SHUTDOWN = "-shutdown";
+
+  public static void main(String[] args) {
+    int exitCode = 1;
+    DaemonOptions options = new DaemonOptionsImpl();
+    if (new ArgProcessor(options).processArgs(args)) {
+      PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
+      logger.setMaxDetail(options.getLogLevel());
+      try {
+        CompilerDaemon daemon = new CompilerDaemon(logger, options.getPort(),
+            options.getTokenFile());
+        logger.log(TreeLogger.INFO, "Compiler daemon listening on port "
+            + daemon.getPort());
+        daemon.serve();
+        exitCode = 0;
+      } catch (IOException e) {
+        logger.log(TreeLogger.ERROR, "Compiler daemon failed", e);
+      }
+    }
+    // Stop any non-daemon threads that Generators may have started
+    System.exit(exitCode);
+  }
+
+  static File getDefaultTokenFile() {
+    return new File(System.getProperty("user.home"), DEFAULT_TOKEN_FILE);
+  }
+
+  private int builds;
+
+  /**
+   * The time of the first successful build of each set of modules.
+   */
+  private final Map<String, Long> coldBuildMillis = new HashMap<String, Long>();
+
+  private final TreeLogger logger;
+
+  private volatile int requestTimeoutMillis = REQUEST_TIMEOUT_MILLIS;
+
+  private final ServerSocket serverSocket;
+
+  private final byte[] token;
+
+  private final File tokenFile;
+
+  /**
+   * Resolves the relative output directories of a build against the client's
+   * working directory. Visible for testing.
+   */
+  @SuppressWarnings("deprecation")
+  static void resolveDirs(CompilerOptions options, File workingDir) {
+    // The war directory first, since the default deploy directory is under it
+    options.setWarDir(resolve(options.getWarDir(), workingDir));
+    options.setDeployDir(resolve(options.getDeployDir(), workingDir));
+    options.setExtraDir(resolve(options.getExtraDir(), workingDir));
+    options.setOutDir(resolve(options.getOutDir(), workingDir));
+    options.setGenDir(resolve(options.getGenDir(), workingDir));
+    options.setWorkDir(resolve(options.getWorkDir(), workingDir));
+  }
+
+  private static File resolve(File file, File workingDir) {
+    if (file == null || file.isAbsolute()) {
+      return file;
+    }
+    return new File(workingDir, file.getPath());
+  }
+
+  /**
+   * Binds the daemon to a port on the loopback interface, and writes a new
+   * token to a file that only the current user can read.
+   *
+   * @param port the port, or 0 for any free port
+   * @param tokenFile the file to write the token to; it is deleted when the
+   *          daemon shuts down
+   */
+  public CompilerDaemon(TreeLogger logger, int port, File tokenFile) throws IOException {
+    this.logger = logger;
+    this.tokenFile = tokenFile;
+    byte[] tokenBytes = new byte[16];
+    new SecureRandom().nextBytes(tokenBytes);
+    String tokenString = StringUtils.toHexString(tokenBytes);
+    token = tokenString.getBytes("UTF-8");
+    writeTokenFile(tokenFile, tokenString);
+    serverSocket = new ServerSocket(port, 0, InetAddress.getByName(null));
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Runs submitted builds until a client asks the daemon to shut down.
+   */
+  public void serve() throws IOException {
+    try {
+      boolean running = true;
+      while (running) {
+        Socket socket = serverSocket.accept();
+        try {
+          // Only bounds reads; the build itself may take as long as it needs
+          socket.setSoTimeout(requestTimeoutMillis);
+          running = handle(socket);
+        } catch (IOException e) {
+          logger.log(TreeLogger.WARN, "Lost connection to a client", e);
+        } finally {
+          socket.close();
+        }
+      }
+    } finally {
+      serverSocket.close();
+      tokenFile.delete();
+    }
+  }
+
+  /**
+   * Visible for testing.
+   */
+  void setRequestTimeout(int millis) {
+    requestTimeoutMillis = millis;
+  }
+
+  /**
+   * Runs one build and logs to <code>out</code>.
+   *
+   * @param workingDir the client's working directory
+   * @return whether the build succeeded
+   */
+  boolean build(File workingDir, String[] args, PrintWriter out) {
+    if (!workingDir.isAbsolute()) {
+      out.println("The client sent a relative working directory: " + workingDir);
+      return false;
+    }
+    CompilerOptionsImpl options = new CompilerOptionsImpl();
+    if (!new Compiler.ArgProcessor(options).processArgs(args)) {
+      out.println("Invalid compiler arguments; see the daemon's console for usage");
+      return false;
+    }
+    resolveDirs(options, workingDir);
+    PrintWriterTreeLogger buildLogger = new PrintWriterTreeLogger(out);
+    buildLogger.setMaxDetail(options.getLogLevel());
+
+    String modules = options.getModuleNames().toString();
+    long start = System.currentTimeMillis();
+    boolean success;
+    try {
+      success = new Compiler(options).run(buildLogger);
+    } catch (UnableToCompleteException e) {
+      success = false;
+    } catch (RuntimeException e) {
+      buildLogger.log(TreeLogger.ERROR, "Unexpected internal compiler error", e);
+      success = false;
+    }
+    long elapsed = System.currentTimeMillis() - start;
+
+    String temperature;
+    Long cold = coldBuildMillis.get(modules);
+    if (cold == null) {
+      temperature = "cold";
+      if (success) {
+        coldBuildMillis.put(modules, elapsed);
+      }
+    } else {
+      temperature = "warm; the cold build took " + cold + " ms";
+    }
+    String summary = "Build " + (++builds) + " of " + modules
+        + (success ? " succeeded" : " failed") + " in " + elapsed + " ms ("
+        + temperature + ")";
+    buildLogger.log(TreeLogger.INFO, summary);
+    logger.log(TreeLogger.INFO, summary);
+    return success;
+  }
+
+  /**
+   * Serves one client.
+   *
+   * @return <code>false</code> if the client asked the daemon to shut down
+   */
+  private boolean handle(Socket socket) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        socket.getInputStream()));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        socket.getOutputStream()));
+    if (!MessageDigest.isEqual(token, in.readUTF().getBytes("UTF-8"))) {
+      logger.log(TreeLogger.WARN, "Rejected a client that sent the wrong token");
+      return true;
+    }
+    File workingDir = new File(in.readUTF());
+    String[] args = new String[in.readInt()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = in.readUTF();
+    }
+
+    if (args.length == 1 && args[0].equals(SHUTDOWN)) {
+      logger.log(TreeLogger.INFO, "Shutting down after " + builds + " builds");
+      out.writeByte(REPLY_SUCCEEDED);
+      out.flush();
+      return false;
+    }
+    PrintWriter log = new PrintWriter(new LogWriter(out), true);
+    boolean success = build(workingDir, args, log);
+    log.flush();
+    synchronized (out) {
+      out.writeByte(success ? REPLY_SUCCEEDED : REPLY_FAILED);
+      out.flush();
+    }
+    return true;
+  }
+
+  /**
+   * Writes the token to a file that is only readable and writable by its
+   * owner, restricting the file before the token is written.
+   */
+  private void writeTokenFile(File file, String tokenString) throws IOException {
+    file.delete();
+    if (!file.createNewFile()) {
+      throw new IOException("Unable to create " + file);
+    }
+    boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+        && file.setWritable(false, false) && file.setWritable(true, true);
+    if (!restricted) {
+      file.delete();
+      throw new IOException("Unable to restrict the permissions of " + file);
+    }
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(tokenString.getBytes("UTF-8"));
+    } finally {
+      Utility.close(out);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.dev.util.Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Submits a build to a running {@link CompilerDaemon}. The arguments are the
+ * same as for {@link Compiler}; the single argument <code>-shutdown</code>
+ * stops the daemon instead. The daemon's port is taken from the
+ * <code>gwt.compilerDaemon.port</code> system property and defaults to
+ * {@link CompilerDaemon#DEFAULT_PORT}; the file holding its token is taken from
+ * the <code>gwt.compilerDaemon.tokenFile</code> system property and defaults
+ * to {@link CompilerDaemon#DEFAULT_TOKEN_FILE} in the user's home directory.
+ */
+public class CompilerDaemonClient {
+
+  public static void main(String[] args) {
+    int port = Integer.getInteger("gwt.compilerDaemon.port",
+        CompilerDaemon.DEFAULT_PORT);
+    String tokenFile = System.getProperty("gwt.compilerDaemon.tokenFile");
+    boolean success;
+    try {
+      success = submit(port, tokenFile == null ? CompilerDaemon.getDefaultTokenFile()
+          : new File(tokenFile), args, System.out);
+    } catch (IOException e) {
+      System.err.println("Unable to reach the compiler daemon on port " + port
+          + ": " + e.getMessage());
+      success = false;
+    }
+    System.exit(success ? 0 : 1);
+  }
+
+  /**
+   * Submits a request from the current working directory and copies the
+   * daemon's log to <code>console</code>.
+   *
+   * @return whether the build succeeded
+   */
+  static boolean submit(int port, File tokenFile, String[] args, PrintStream console)
+      throws IOException {
+    return submit(port, tokenFile, new File(System.getProperty("user.dir")), args, console);
+  }
+
+  /**
+   * Submits a request and copies the daemon's log to <code>console</code>.
+   * Relative output directories in <code>args</code> are resolved against
+   * <code>workingDir</code>.
+   *
+   * @return whether the build succeeded
+   */
+  static boolean submit(int port, File tokenFile, File workingDir, String[] args,
+      PrintStream console) throws IOException {
+    String token = Util.readFileAsString(tokenFile);
+    if (token == null) {
+      throw new IOException("Unable to read the token file " + tokenFile);
+    }
+    Socket socket = new Socket(InetAddress.getByName(null), port);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          socket.getOutputStream()));
+      out.writeUTF(token);
+      out.writeUTF(workingDir.getAbsolutePath());
+      out.writeInt(args.length);
+      for (String arg : args) {
+        out.writeUTF(arg);
+      }
+      out.flush();
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          socket.getInputStream()));
+      while (true) {
+        byte reply;
+        try {
+          reply = in.readByte();
+        } catch (EOFException e) {
+          console.println("The compiler daemon closed the connection");
+          return false;
+        }
+        switch (reply) {
+          case CompilerDaemon.REPLY_LOG:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            console.print(new String(bytes, "UTF-8"));
+            break;
+          case CompilerDaemon.REPLY_SUCCEEDED:
+            return true;
+          case CompilerDaemon.REPLY_FAILED:
+            return false;
+          default:
+            throw new IOException("Unknown reply " + reply);
+        }
+      }
+    } finally {
+      socket.close();
+    }
+  }
+}
@@ -776,6 +776,12 @@ public abstract class DevModeBase implements DoneCallback {
 
   private boolean headlessMode = false;
 
+  /**
+   * Where each module's rebind cache is saved between sessions, or
+   * <code>null</code> if rebind caches are not saved.
+   */
+  private File rebindCacheDir = null;
+
   private Map<String, RebindCache> rebindCaches = null;
 
   private boolean started;
@@ -915,6 +921,9 @@ public abstract class DevModeBase implements DoneCallback {
     topLogger = ui.getTopLogger();
 
     CompilationStateBuilder.init(getTopLogger(), persistentCacheDir);
+    if (persistentCacheDir != null) {
+      rebindCacheDir = new File(persistentCacheDir, RebindCache.REBIND_CACHE_DIR);
+    }
 
     // Set done callback
     ui.setCallback(DoneEvent.getType(), this);
@@ -1186,7 +1195,7 @@ public abstract class DevModeBase implements DoneCallback {
     return newUI;
   }
 
-  private RebindCache getRebindCache(String moduleName) {
+  private synchronized RebindCache getRebindCache(String moduleName) {
 
     if (generatorResultCachingDisabled) {
       return null;
@@ -1194,16 +1203,45 @@ public abstract class DevModeBase implements DoneCallback {
 
     if (rebindCaches == null) {
       rebindCaches = new HashMap<String, RebindCache>();
+      if (rebindCacheDir != null) {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+          @Override
+          public void run() {
+            saveRebindCaches();
+          }
+        });
+      }
     }
 
     RebindCache cache = rebindCaches.get(moduleName);
     if (cache == null) {
-      cache = new RebindCache();
+      if (rebindCacheDir != null) {
+        cache = RebindCache.load(getTopLogger(), new File(rebindCacheDir, moduleName));
+      } else {
+        cache = new RebindCache();
+      }
       rebindCaches.put(moduleName, cache);
     }
     return cache;
   }
 
+  /**
+   * Saves each module's rebind cache for the next session, and reports how
+   * many generator runs the previous session's cache saved.
+   */
+  private synchronized void saveRebindCaches() {
+    for (Map.Entry<String, RebindCache> entry : rebindCaches.entrySet()) {
+      String moduleName = entry.getKey();
+      RebindCache cache = entry.getValue();
+      int reused = cache.getReusedFromDiskCount();
+      if (reused > 0) {
+        getTopLogger().log(TreeLogger.INFO, "Module " + moduleName + " reused " + reused
+            + " generator results from the rebind cache on disk");
+      }
+      cache.save(getTopLogger(), new File(rebindCacheDir, moduleName));
+    }
+  }
+
   /**
    * Perform hosted mode relink when new artifacts are generated, without
    * overwriting newer or unmodified files in the output folder.
@@ -46,8 +46,9 @@ class DistillerRebindPermutationOracle implements RebindPermutationOracle {
   private CompilationState compilationState;
   private StandardGeneratorContext generatorContext;
   private final Permutation[] permutations;
+  private RebindPrefetcher prefetcher;
   private final StaticPropertyOracle[] propertyOracles;
-  private final RebindOracle[] rebindOracles;
+  private final StandardRebindOracle[] rebindOracles;
 
   public DistillerRebindPermutationOracle(ModuleDef module,
       CompilationState compilationState, ArtifactSet generatorArtifacts,
@@ -55,7 +56,7 @@ class DistillerRebindPermutationOracle implements RebindPermutationOracle {
     this.compilationState = compilationState;
     permutations = new Permutation[perms.size()];
     propertyOracles = new StaticPropertyOracle[perms.size()];
-    rebindOracles = new RebindOracle[perms.size()];
+    rebindOracles = new StandardRebindOracle[perms.size()];
     generatorContext = new StandardGeneratorContext(compilationState, module,
         genDir, generatorArtifacts, true);
     BindingProperty[] orderedProps = perms.getOrderedProperties();
@@ -70,10 +71,21 @@ class DistillerRebindPermutationOracle implements RebindPermutationOracle {
           generatorContext);
       permutations[i] = new Permutation(i, propertyOracles[i]);
     }
+    int generatorThreads = Integer.getInteger(
+        RebindPrefetcher.GENERATOR_THREADS_PROPERTY, 1);
+    if (generatorThreads > 1) {
+      prefetcher = new RebindPrefetcher(module, compilationState,
+          generatorArtifacts, genDir, rules, propertyOracles,
+          RebindPrefetcher.getIndependentGenerators(), generatorThreads);
+    }
   }
 
   public void clear() {
     generatorContext.clear();
+    if (prefetcher != null) {
+      prefetcher.clear();
+      prefetcher = null;
+    }
     compilationState = null;
     generatorContext = null;
   }
@@ -87,6 +99,11 @@ class DistillerRebindPermutationOracle implements RebindPermutationOracle {
 
     Set<String> answers = new HashSet<String>();
     Event getAllRebindsEvent = SpeedTracerLogger.start(CompilerEventType.GET_ALL_REBINDS);
+    if (prefetcher != null) {
+      // The first request comes before any generator has run here
+      prefetcher.prefetchOnce(logger);
+      prefetcher.apply(logger, requestTypeName, generatorContext, rebindOracles);
+    }
     for (int i = 0; i < getPermuationCount(); ++i) {
       String resultTypeName = rebindOracles[i].rebind(logger, requestTypeName);
       answers.add(resultTypeName);
@@ -21,38 +21,68 @@ import com.google.gwt.dev.jjs.PermutationResult;
 import com.google.gwt.dev.jjs.UnifiedAst;
 import com.google.gwt.dev.util.FileBackedObject;
 import com.google.gwt.dev.util.Util;
+import com.google.gwt.util.tools.Utility;
 import com.google.gwt.util.tools.shared.StringUtils;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 
 /**
  * A PermutationWorkerFactory designed to launch instances of
  * {@link CompilePermsServer}. The system property
  * {@value #JAVA_COMMAND_PROPERTY} can be used to change the command used to
  * launch the JVM. The system property {@link #JVM_ARGS_PROPERTY} can be used to
- * override the JVM args passed to the subprocess.
+ * override the JVM args passed to the subprocess. The system property
+ * {@value #REUSE_WORKERS_PROPERTY} keeps the subprocesses for later compiles.
  */
 public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
 
+  /**
+   * A serialized AST shared by the workers of one compile. The file is deleted
+   * once all of them are done with it.
+   */
+  private static class AstFile {
+    private final File file;
+    private final String hash;
+    private int users;
+
+    public AstFile(File file, String hash, int users) {
+      this.file = file;
+      this.hash = hash;
+      this.users = users;
+    }
+
+    public synchronized void release() {
+      if (--users == 0) {
+        file.delete();
+      }
+    }
+  }
+
   /**
    * Allows accept() to be called a finite number of times on a ServerSocket
    * before closing the socket.
@@ -88,16 +118,30 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
   }
 
   private static class ExternalPermutationWorker implements PermutationWorker {
-    private final File astFile;
-    private final Set<String> cookies;
+    private AstFile ast;
+    private final Map<String, ProcessOutput> cookies;
     private ObjectInputStream in;
+
+    /**
+     * The hash of the AST the remote process holds, if any.
+     */
+    private String loadedAstHash;
+
+    /**
+     * Set once communication with the remote process has failed.
+     */
+    private boolean lost;
     private ObjectOutputStream out;
+
+    /**
+     * The output of the remote process, once it has connected.
+     */
+    private ProcessOutput output;
     private final CountedServerSocket serverSocket;
     private Socket workerSocket;
 
-    public ExternalPermutationWorker(CountedServerSocket sock, File astFile,
-        Set<String> cookies) {
-      this.astFile = astFile;
+    public ExternalPermutationWorker(CountedServerSocket sock,
+        Map<String, ProcessOutput> cookies) {
       this.cookies = cookies;
       this.serverSocket = sock;
     }
@@ -120,31 +164,39 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
 
           // Verify we're talking to the right worker
           String c = in.readUTF();
-          if (!cookies.contains(c)) {
+          output = cookies.get(c);
+          if (output == null) {
             throw new TransientWorkerException("Received unknown cookie " + c,
                 null);
           }
-
-          out.writeObject(astFile);
-
-          // Get the remote worker's estimate of memory use
-          long memoryUse = in.readLong();
-          if (logger.isLoggable(TreeLogger.SPAM)) {
-            logger.log(TreeLogger.SPAM, "Remote process indicates " + memoryUse
-                + " bytes of memory used");
-          }
-
         } catch (SocketTimeoutException e) {
+          lost = true;
           throw new TransientWorkerException(
               "Remote process did not connect within timeout period", e);
         } catch (IOException e) {
+          lost = true;
           throw new TransientWorkerException(
               "Unable to communicate with worker", e);
         }
       }
 
       try {
-        out.writeBoolean(true);
+        // A reused process may already hold this AST
+        if (!ast.hash.equals(loadedAstHash)) {
+          out.writeByte(CompilePermsServer.COMMAND_LOAD_AST);
+          out.writeObject(ast.file);
+          out.flush();
+
+          // Get the remote worker's estimate of memory use
+          long memoryUse = in.readLong();
+          loadedAstHash = ast.hash;
+          if (logger.isLoggable(TreeLogger.SPAM)) {
+            logger.log(TreeLogger.SPAM, "Remote process indicates " + memoryUse
+                + " bytes of memory used");
+          }
+        }
+
+        out.writeByte(CompilePermsServer.COMMAND_COMPILE);
         out.writeObject(resultFile);
         out.writeObject(permutation);
         out.flush();
@@ -155,10 +207,12 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
           throw new UnableToCompleteException();
         }
       } catch (IOException e) {
+        lost = true;
         logger.log(TreeLogger.WARN, "Lost communication with remote process", e);
         throw new TransientWorkerException(
             "Lost communication with remote process", e);
       } catch (ClassNotFoundException e) {
+        lost = true;
         logger.log(TreeLogger.ERROR, "Unable to receive response", e);
         throw new UnableToCompleteException();
       }
@@ -170,10 +224,28 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
               : "unconnected");
     }
 
+    /**
+     * Returns the worker to the pool if workers are reused and this one is
+     * still healthy; otherwise stops the remote process.
+     */
     public void shutdown() {
+      if (ast != null) {
+        ast.release();
+        ast = null;
+      }
+
+      if (REUSE_WORKERS && workerSocket != null && !lost) {
+        // Drop the output until the next compile takes this worker
+        output.setLogger(TreeLogger.NULL);
+        synchronized (idleWorkers) {
+          idleWorkers.add(this);
+        }
+        return;
+      }
+
       if (out != null) {
         try {
-          out.writeBoolean(false);
+          out.writeByte(CompilePermsServer.COMMAND_SHUTDOWN);
           out.flush();
           out.close();
         } catch (IOException e) {
@@ -197,6 +269,34 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
         }
       }
     }
+
+    /**
+     * Sets the AST that subsequent permutations are compiled against.
+     */
+    void setAst(AstFile ast) {
+      this.ast = ast;
+    }
+  }
+
+  /**
+   * Copies the output of a worker process to the logger of the compile it is
+   * currently serving. A pooled process outlives the compile that launched it,
+   * so each compile that takes it re-targets its output.
+   */
+  private static class ProcessOutput {
+    private volatile TreeLogger logger;
+
+    public ProcessOutput(TreeLogger compileLogger) {
+      setLogger(compileLogger);
+    }
+
+    public void log(TreeLogger.Type type, String msg, Throwable caught) {
+      logger.log(type, msg, caught);
+    }
+
+    public void setLogger(TreeLogger compileLogger) {
+      logger = compileLogger.branch(TreeLogger.DEBUG, "Process output");
+    }
   }
 
   /**
@@ -211,6 +311,22 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
    */
   public static final String JVM_ARGS_PROPERTY = "gwt.jjs.javaArgs";
 
+  /**
+   * A system property that keeps worker processes alive between compiles in
+   * the same JVM, such as a {@link CompilerDaemon}, instead of launching new
+   * ones for every compile. A reused worker does not reload an AST identical
+   * to the one it already holds.
+   */
+  public static final String REUSE_WORKERS_PROPERTY = "gwt.jjs.reuseWorkers";
+
+  private static final boolean REUSE_WORKERS = Boolean.getBoolean(REUSE_WORKERS_PROPERTY);
+
+  /**
+   * Connected worker processes waiting for the next compile.
+   */
+  private static final List<ExternalPermutationWorker> idleWorkers =
+      new ArrayList<ExternalPermutationWorker>();
+
   /**
    * Random number generator used for keys to worker threads.
    */
@@ -220,8 +336,8 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
    * Launches an external worker and returns the cookie that worker should
    * return via the network connection.
    */
-  private static String launchExternalWorker(TreeLogger logger, int port)
-      throws UnableToCompleteException {
+  private static String launchExternalWorker(TreeLogger logger, int port,
+      final ProcessOutput output) throws UnableToCompleteException {
 
     String javaCommand = System.getProperty(JAVA_COMMAND_PROPERTY,
         System.getProperty("java.home") + File.separator + "bin"
@@ -280,11 +396,9 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
           proc.getInputStream()));
       final BufferedReader berr = new BufferedReader(new InputStreamReader(
           proc.getErrorStream()));
-      final TreeLogger procLogger = logger.branch(TreeLogger.DEBUG,
-          "Process output");
 
       // Threads to copy stdout, stderr to the logger
-      new Thread(new Runnable() {
+      Thread outThread = new Thread(new Runnable() {
         public void run() {
           while (true) {
             try {
@@ -292,18 +406,17 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
               if (line == null) {
                 break;
               }
-              procLogger.log(TreeLogger.INFO, line);
+              output.log(TreeLogger.INFO, line, null);
             } catch (EOFException e) {
               // Ignore
             } catch (IOException e) {
-              procLogger.log(TreeLogger.ERROR,
-                  "Unable to read from subprocess", e);
+              output.log(TreeLogger.ERROR, "Unable to read from subprocess", e);
             }
           }
         }
-      }).start();
+      });
 
-      new Thread(new Runnable() {
+      Thread errThread = new Thread(new Runnable() {
         public void run() {
           while (true) {
             try {
@@ -311,16 +424,21 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
               if (line == null) {
                 break;
               }
-              procLogger.log(TreeLogger.ERROR, line);
+              output.log(TreeLogger.ERROR, line, null);
             } catch (EOFException e) {
               // Ignore
             } catch (IOException e) {
-              procLogger.log(TreeLogger.ERROR,
-                  "Unable to read from subprocess", e);
+              output.log(TreeLogger.ERROR, "Unable to read from subprocess", e);
             }
           }
         }
-      }).start();
+      });
+
+      // Pooled processes outlive the compile, so must not keep this JVM alive
+      outThread.setDaemon(REUSE_WORKERS);
+      errThread.setDaemon(REUSE_WORKERS);
+      outThread.start();
+      errThread.start();
 
       // The child process should not outlive this JVM
       Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
@@ -340,35 +458,86 @@ public class ExternalPermutationWorkerFactory extends PermutationWorkerFactory {
     }
   }
 
+  /**
+   * Serializes the AST to a file and returns a hash of the serialized form.
+   */
+  private static String writeAst(File astFile, UnifiedAst unifiedAst)
+      throws IOException {
+    MessageDigest md5;
+    try {
+      md5 = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("Error initializing MD5", e);
+    }
+    OutputStream out = new DigestOutputStream(new BufferedOutputStream(
+        new FileOutputStream(astFile)), md5);
+    try {
+      Util.writeObjectToStream(out, unifiedAst);
+    } finally {
+      Utility.close(out);
+    }
+    return StringUtils.toHexString(md5.digest());
+  }
+
   private ServerSocket sock;
 
   @Override
   public Collection<PermutationWorker> getWorkers(TreeLogger logger,
       UnifiedAst unifiedAst, int numWorkers) throws UnableToCompleteException {
     File astFile;
+    String astHash;
     try {
       astFile = File.createTempFile("externalPermutationWorkerFactory", ".ser");
       astFile.deleteOnExit();
-      Util.writeObjectAsFile(logger, astFile, unifiedAst);
+      astHash = writeAst(astFile, unifiedAst);
     } catch (IOException e) {
-      logger.log(TreeLogger.ERROR, "Unable to create temporary file", e);
+      logger.log(TreeLogger.ERROR, "Unable to write temporary file", e);
       throw new UnableToCompleteException();
     }
 
-    Set<String> cookies = Collections.synchronizedSet(new HashSet<String>(
-        numWorkers));
-    CountedServerSocket countedSock = new CountedServerSocket(sock, numWorkers);
-    List<PermutationWorker> toReturn = new ArrayList<PermutationWorker>(
+    List<ExternalPermutationWorker> toReturn = new ArrayList<ExternalPermutationWorker>(
         numWorkers);
+    if (REUSE_WORKERS) {
+      synchronized (idleWorkers) {
+        while (toReturn.size() < numWorkers && !idleWorkers.isEmpty()) {
+          ExternalPermutationWorker worker = idleWorkers.remove(idleWorkers.size() - 1);
+          worker.output.setLogger(logger);
+          toReturn.add(worker);
+        }
+      }
+      if (logger.isLoggable(TreeLogger.DEBUG)) {
+        logger.log(TreeLogger.DEBUG, "Reusing " + toReturn.size()
+            + " external workers");
+      }
+    }
 
-    // TODO(spoon): clean up already-launched processes if we get an exception?
-    for (int i = 0; i < numWorkers; i++) {
-      String cookie = launchExternalWorker(logger, sock.getLocalPort());
-      cookies.add(cookie);
-      toReturn.add(new ExternalPermutationWorker(countedSock, astFile, cookies));
+    int toLaunch = numWorkers - toReturn.size();
+    if (toLaunch == 0) {
+      // No process will connect
+      try {
+        sock.close();
+      } catch (IOException e) {
+        // Nothing to do
+      }
+    } else {
+      Map<String, ProcessOutput> cookies = Collections.synchronizedMap(
+          new HashMap<String, ProcessOutput>(toLaunch));
+      CountedServerSocket countedSock = new CountedServerSocket(sock, toLaunch);
+
+      // TODO(spoon): clean up already-launched processes if we get an exception?
+      for (int i = 0; i < toLaunch; i++) {
+        ProcessOutput output = new ProcessOutput(logger);
+        String cookie = launchExternalWorker(logger, sock.getLocalPort(), output);
+        cookies.put(cookie, output);
+        toReturn.add(new ExternalPermutationWorker(countedSock, cookies));
+      }
     }
 
-    return toReturn;
+    AstFile ast = new AstFile(astFile, astHash, toReturn.size());
+    for (ExternalPermutationWorker worker : toReturn) {
+      worker.setAst(ast);
+    }
+    return new ArrayList<PermutationWorker>(toReturn);
   }
 
   @Override
@@ -61,6 +61,11 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
@@ -171,6 +176,13 @@ public class Link {
     }
   }
 
+  /**
+   * A Java system property giving the number of threads that run the
+   * per-permutation part of shardable linkers. The default of 1 links
+   * permutations one after another.
+   */
+  public static final String LINK_THREADS_PROPERTY = "gwt.link.maxThreads";
+
   public static void legacyLink(TreeLogger logger, ModuleDef module,
       ArtifactSet generatedArtifacts, Permutation[] permutations,
       List<FileBackedObject<PermutationResult>> resultFiles, File outDir,
@@ -179,7 +191,8 @@ public class Link {
     StandardLinkerContext linkerContext = new StandardLinkerContext(logger,
         module, precompileOptions);
     ArtifactSet artifacts = doSimulatedShardingLink(logger, module,
-        linkerContext, generatedArtifacts, permutations, resultFiles);
+        linkerContext, generatedArtifacts, permutations, resultFiles,
+        Integer.getInteger(LINK_THREADS_PROPERTY, 1));
     OutputFileSet outFileSet = chooseOutputFileSet(outDir, module.getName()
         + "/");
     OutputFileSet deployFileSet = chooseOutputFileSet(outDir, module.getName()
@@ -195,10 +208,26 @@ public class Link {
       List<FileBackedObject<PermutationResult>> resultFiles, File outDir,
       File deployDir, File extrasDir, JJSOptions precompileOptions)
       throws UnableToCompleteException, IOException {
+    link(logger, module, generatedArtifacts, permutations, resultFiles, outDir,
+        deployDir, extrasDir, precompileOptions,
+        Integer.getInteger(LINK_THREADS_PROPERTY, 1));
+  }
+
+  /**
+   * Like {@link #link(TreeLogger, ModuleDef, ArtifactSet, Permutation[], List,
+   * File, File, File, JJSOptions)}, but with an explicit number of threads for
+   * the per-permutation part of linking.
+   */
+  static void link(TreeLogger logger, ModuleDef module,
+      ArtifactSet generatedArtifacts, Permutation[] permutations,
+      List<FileBackedObject<PermutationResult>> resultFiles, File outDir,
+      File deployDir, File extrasDir, JJSOptions precompileOptions,
+      int linkThreads) throws UnableToCompleteException, IOException {
     StandardLinkerContext linkerContext = new StandardLinkerContext(logger,
         module, precompileOptions);
     ArtifactSet artifacts = doSimulatedShardingLink(logger, module,
-        linkerContext, generatedArtifacts, permutations, resultFiles);
+        linkerContext, generatedArtifacts, permutations, resultFiles,
+        linkThreads);
     OutputFileSet extrasFileSet = chooseOutputFileSet(extrasDir,
         module.getName() + "/");
     // allow -deploy and -extra to point to the same directory/jar
@@ -446,12 +475,14 @@ public class Link {
   private static ArtifactSet doSimulatedShardingLink(TreeLogger logger,
       ModuleDef module, StandardLinkerContext linkerContext,
       ArtifactSet generatedArtifacts, Permutation[] perms,
-      List<FileBackedObject<PermutationResult>> resultFiles)
+      List<FileBackedObject<PermutationResult>> resultFiles, int linkThreads)
       throws UnableToCompleteException {
+    ArtifactSet[] permArtifacts = finishPermutations(logger, perms, resultFiles,
+        linkerContext, generatedArtifacts, linkThreads);
+
+    // Merge in permutation order, so the result doesn't depend on scheduling
     ArtifactSet combinedArtifacts = new ArtifactSet();
-    for (int i = 0; i < perms.length; ++i) {
-      ArtifactSet newArtifacts = finishPermutation(logger, perms[i],
-          resultFiles.get(i), linkerContext, generatedArtifacts);
+    for (ArtifactSet newArtifacts : permArtifacts) {
       combinedArtifacts.addAll(newArtifacts);
     }
 
@@ -492,6 +523,61 @@ public class Link {
         permArtifacts);
   }
 
+  /**
+   * Runs {@link #finishPermutation} for every permutation on up to
+   * <code>linkThreads</code> threads.
+   *
+   * @return the new artifacts for each permutation, in permutation order
+   */
+  private static ArtifactSet[] finishPermutations(final TreeLogger logger,
+      Permutation[] perms, List<FileBackedObject<PermutationResult>> resultFiles,
+      final StandardLinkerContext linkerContext, final ArtifactSet generatedArtifacts,
+      int linkThreads) throws UnableToCompleteException {
+    ArtifactSet[] results = new ArtifactSet[perms.length];
+    if (linkThreads <= 1 || perms.length <= 1) {
+      for (int i = 0; i < perms.length; ++i) {
+        results[i] = finishPermutation(logger, perms[i], resultFiles.get(i),
+            linkerContext, generatedArtifacts);
+      }
+      return results;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+        linkThreads, perms.length));
+    try {
+      List<Future<ArtifactSet>> futures = new ArrayList<Future<ArtifactSet>>();
+      for (int i = 0; i < perms.length; ++i) {
+        final Permutation perm = perms[i];
+        final FileBackedObject<PermutationResult> resultFile = resultFiles.get(i);
+        futures.add(executor.submit(new Callable<ArtifactSet>() {
+          public ArtifactSet call() throws UnableToCompleteException {
+            return finishPermutation(logger, perm, resultFile, linkerContext,
+                generatedArtifacts);
+          }
+        }));
+      }
+      for (int i = 0; i < perms.length; ++i) {
+        try {
+          results[i] = futures.get(i).get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof UnableToCompleteException) {
+            throw (UnableToCompleteException) e.getCause();
+          }
+          logger.log(TreeLogger.ERROR, "Unexpected error linking permutation "
+              + perms[i].getId(), e.getCause());
+          throw new UnableToCompleteException();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          logger.log(TreeLogger.ERROR, "Interrupted while linking", e);
+          throw new UnableToCompleteException();
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
   private static String getFullArtifactPath(EmittedArtifact emittedArtifact,
       StandardLinkerContext context) {
     String path = emittedArtifact.getPartialPath();
@@ -28,7 +28,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -70,7 +73,10 @@ public abstract class PermutationWorkerFactory {
             }
             TreeLogger logger = work.getLogger();
             try {
+              long start = System.currentTimeMillis();
               worker.compile(logger, work.getPerm(), work.getResultFile());
+              recordCompileTime(work.getPerm(),
+                  System.currentTimeMillis() - start);
               logger.log(TreeLogger.DEBUG, "Successfully compiled permutation");
               resultsQueue.put(Result.SUCCESS);
             } catch (TransientWorkerException e) {
@@ -176,6 +182,21 @@ public abstract class PermutationWorkerFactory {
     }
   }
 
+  /**
+   * Orders work so that the permutations that took longest the last time they
+   * were compiled in this JVM are started first. Workers take work from a
+   * shared queue as they become free, so this keeps a slow permutation from
+   * being started last and leaving the other workers idle. Permutations never
+   * compiled before are started first, in their original order.
+   */
+  private static class LongestFirst implements Comparator<Work> {
+    public int compare(Work a, Work b) {
+      long aMillis = estimateCompileTime(a.getPerm());
+      long bMillis = estimateCompileTime(b.getPerm());
+      return aMillis > bMillis ? -1 : aMillis < bMillis ? 1 : 0;
+    }
+  }
+
   /**
    * Represents work to do.
    */
@@ -216,6 +237,12 @@ public abstract class PermutationWorkerFactory {
    */
   public static final int WORKERS_AUTO = 0;
 
+  /**
+   * The last compile time of each permutation, keyed by its property values.
+   */
+  private static final Map<String, Long> compileMillis =
+      Collections.synchronizedMap(new HashMap<String, Long>());
+
   /**
    * Compiles all Permutations in a Precompilation and returns an array of Files
    * that can be consumed by Link using the system-default
@@ -260,6 +287,7 @@ public abstract class PermutationWorkerFactory {
       }
       work.add(new Work(logger, perm, resultFiles.get(i)));
     }
+    Collections.sort(work, new LongestFirst());
 
     // Create the workers.
     List<PermutationWorker> workers = new ArrayList<PermutationWorker>();
@@ -341,6 +369,19 @@ public abstract class PermutationWorkerFactory {
     return Collections.unmodifiableList(mutableFactories);
   }
 
+  /**
+   * Returns how long a permutation last took to compile, or
+   * {@link Long#MAX_VALUE} if it has not been compiled in this JVM.
+   */
+  private static long estimateCompileTime(Permutation perm) {
+    Long millis = compileMillis.get(perm.prettyPrint());
+    return millis == null ? Long.MAX_VALUE : millis;
+  }
+
+  private static void recordCompileTime(Permutation perm, long millis) {
+    compileMillis.put(perm.prettyPrint(), millis);
+  }
+
   /**
    * Create as many workers as possible to service the Permutations.
    */
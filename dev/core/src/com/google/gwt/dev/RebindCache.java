@@ -16,25 +16,117 @@
 package com.google.gwt.dev;
 
 import com.google.gwt.core.ext.CachedGeneratorResult;
+import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.dev.cfg.Rule;
+import com.google.gwt.util.tools.Utility;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 /**
  * A cache for storing {@link CachedGeneratorResult} entries.  Entries are keyed
  * by rebind Rule and queryTypeName.
+ *
+ * <p>
+ * A cache can be saved to disk and loaded again in a later process. Loaded
+ * results are offered to generators exactly like results from earlier in the
+ * same process; it is up to each generator to check the inputs it recorded
+ * (such as a {@link com.google.gwt.core.ext.CachedPropertyInformation} or the
+ * last modified times of source types) before reusing a result, and results
+ * from a different version of a generator are never reused. A file written by
+ * a different GWT version is ignored.
  */
 public class RebindCache implements Serializable {
- 
+
+  /**
+   * The directory, next to the persistent unit cache, that holds one saved
+   * cache per module.
+   */
+  public static final String REBIND_CACHE_DIR = "gwt-rebindCache";
+
+  /**
+   * Loads a cache saved by {@link #save}. Returns an empty cache if the file
+   * does not exist or cannot be used.
+   */
+  @SuppressWarnings("unchecked")
+  public static RebindCache load(TreeLogger logger, File file) {
+    if (!file.isFile()) {
+      return new RebindCache();
+    }
+    ObjectInputStream inputStream = null;
+    try {
+      inputStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (!About.getGwtVersionNum().equals(inputStream.readUTF())) {
+        if (logger.isLoggable(TreeLogger.TRACE)) {
+          logger.log(TreeLogger.TRACE, "Ignoring rebind cache " + file.getAbsolutePath()
+              + " from a different GWT version");
+        }
+        return new RebindCache();
+      }
+      RebindCache cache = new RebindCache(
+          (Map<String, Map<String, CachedGeneratorResult>>) inputStream.readObject());
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, "Loaded " + cache.loadedFromDisk.size()
+            + " cached generator results from " + file.getAbsolutePath());
+      }
+      return cache;
+    } catch (IOException e) {
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, "Ignoring rebind cache " + file.getAbsolutePath()
+            + " due to read error.", e);
+      }
+    } catch (ClassNotFoundException e) {
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, "Ignoring rebind cache " + file.getAbsolutePath()
+            + " due to deserialization error.", e);
+      }
+    } catch (ClassCastException e) {
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, "Ignoring rebind cache " + file.getAbsolutePath()
+            + " due to deserialization error.", e);
+      }
+    } finally {
+      Utility.close(inputStream);
+    }
+    return new RebindCache();
+  }
+
+  /**
+   * The results that were loaded from disk, and not yet replaced.
+   */
+  private final transient Map<CachedGeneratorResult, Boolean> loadedFromDisk;
+
   private final Map<String, Map<String, CachedGeneratorResult>> rebindResults;
-  
+
+  private transient int reusedFromDisk;
+
   public RebindCache() {
     rebindResults = new HashMap<String, Map<String, CachedGeneratorResult>>();
+    loadedFromDisk = Collections.emptyMap();
   }
 
-  public CachedGeneratorResult get(Rule rule, String queryTypeName) {
+  private RebindCache(Map<String, Map<String, CachedGeneratorResult>> rebindResults) {
+    this.rebindResults = rebindResults;
+    loadedFromDisk = new IdentityHashMap<CachedGeneratorResult, Boolean>();
+    for (Map<String, CachedGeneratorResult> ruleResults : rebindResults.values()) {
+      for (CachedGeneratorResult result : ruleResults.values()) {
+        loadedFromDisk.put(result, true);
+      }
+    }
+  }
+
+  public synchronized CachedGeneratorResult get(Rule rule, String queryTypeName) {
     Map<String, CachedGeneratorResult> ruleResults;
     ruleResults = rebindResults.get(rule.toString());
     if (ruleResults != null) {
@@ -44,7 +136,15 @@ public class RebindCache implements Serializable {
     return null;
   }
 
-  public void put(Rule rule, String queryTypeName, CachedGeneratorResult results) {
+  /**
+   * Returns how many times a generator reused a result that was loaded from
+   * disk.
+   */
+  public synchronized int getReusedFromDiskCount() {
+    return reusedFromDisk;
+  }
+
+  public synchronized void put(Rule rule, String queryTypeName, CachedGeneratorResult results) {
     Map<String, CachedGeneratorResult> ruleResults = rebindResults.get(rule.toString());
     if (ruleResults == null) {
       ruleResults = new HashMap<String, CachedGeneratorResult>();
@@ -52,4 +152,46 @@ public class RebindCache implements Serializable {
     }
     ruleResults.put(queryTypeName, results);
   }
-}
\ No newline at end of file
+
+  /**
+   * Records that a generator reused all or part of a cached result.
+   */
+  public synchronized void recordReuse(CachedGeneratorResult result) {
+    if (loadedFromDisk.containsKey(result)) {
+      ++reusedFromDisk;
+    }
+  }
+
+  /**
+   * Saves the cache to a file, replacing any previous contents.
+   */
+  public synchronized void save(TreeLogger logger, File file) {
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      logger.log(TreeLogger.WARN, "Unable to create directory " + dir.getAbsolutePath()
+          + "; not saving the rebind cache");
+      return;
+    }
+    File tempFile = new File(dir, file.getName() + ".tmp");
+    ObjectOutputStream outputStream = null;
+    try {
+      outputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(
+          tempFile)));
+      outputStream.writeUTF(About.getGwtVersionNum());
+      outputStream.writeObject(rebindResults);
+      outputStream.close();
+      outputStream = null;
+      // Readers never see a partly written cache
+      file.delete();
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + tempFile.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      logger.log(TreeLogger.WARN, "Unable to save the rebind cache to "
+          + file.getAbsolutePath(), e);
+      tempFile.delete();
+    } finally {
+      Utility.close(outputStream);
+    }
+  }
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.Generator;
+import com.google.gwt.core.ext.RebindResult;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.Artifact;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.GeneratedResource;
+import com.google.gwt.dev.asm.ClassReader;
+import com.google.gwt.dev.asm.MethodVisitor;
+import com.google.gwt.dev.asm.Opcodes;
+import com.google.gwt.dev.asm.Type;
+import com.google.gwt.dev.asm.commons.EmptyVisitor;
+import com.google.gwt.dev.cfg.ModuleDef;
+import com.google.gwt.dev.cfg.Rules;
+import com.google.gwt.dev.cfg.StaticPropertyOracle;
+import com.google.gwt.dev.javac.CompilationState;
+import com.google.gwt.dev.javac.CompilationUnit;
+import com.google.gwt.dev.javac.CompiledClass;
+import com.google.gwt.dev.javac.GeneratedUnit;
+import com.google.gwt.dev.javac.StandardGeneratorContext;
+import com.google.gwt.dev.shell.StandardRebindOracle;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs deferred binding generators on a thread pool before the compiler asks
+ * for them. The <code>GWT.create()</code> calls in the compiled classes are
+ * found up front, and each requested type is rebound for every permutation on
+ * its own thread with its own {@link StandardGeneratorContext}. Nothing is
+ * added to the compilation state until all of them are done.
+ *
+ * <p>
+ * Every prefetch sees the type oracle as it was before any generator ran, so
+ * only generators whose output does not depend on other generators' output
+ * may run this way. They are listed by class name in the
+ * {@value #INDEPENDENT_GENERATORS_PROPERTY} system property; a rebind that
+ * would run any other generator is not prefetched. Listed generators must
+ * also not keep unsynchronized static state.
+ *
+ * <p>
+ * A result is only used when the compiler actually requests that type, and only
+ * if its types and resources do not conflict with ones generated since;
+ * otherwise the request is rebound as usual. A unit already generated with
+ * identical source by another prefetched rebind is shared.
+ */
+class RebindPrefetcher {
+
+  /**
+   * The outcome of rebinding one type for all permutations.
+   */
+  private static class Prefetched {
+    final String[] answers;
+
+    /**
+     * The artifacts the generators committed, without the ones they started
+     * with.
+     */
+    final List<Artifact<?>> artifacts;
+    final RecordingTreeLogger log;
+    final List<GeneratedUnit> units;
+
+    Prefetched(String[] answers, List<Artifact<?>> artifacts, List<GeneratedUnit> units,
+        RecordingTreeLogger log) {
+      this.answers = answers;
+      this.artifacts = artifacts;
+      this.units = units;
+      this.log = log;
+    }
+  }
+
+  /**
+   * A generator context that refuses to run generators that are not known to
+   * be independent of other generators' output.
+   */
+  private class PrefetchGeneratorContext extends StandardGeneratorContext {
+    /**
+     * The generator that was refused, if any.
+     */
+    String refusedGenerator;
+
+    PrefetchGeneratorContext(ArtifactSet artifacts) {
+      super(compilationState, module, genDir, artifacts, true);
+    }
+
+    @Override
+    public RebindResult runGeneratorIncrementally(TreeLogger logger,
+        Class<? extends Generator> generatorClass, String typeName)
+        throws UnableToCompleteException {
+      if (!independentGenerators.contains(generatorClass.getName())) {
+        refusedGenerator = generatorClass.getName();
+        throw new UnableToCompleteException();
+      }
+      return super.runGeneratorIncrementally(logger, generatorClass, typeName);
+    }
+  }
+
+  /**
+   * Buffers what a generator logs on a pool thread, so that it can be replayed
+   * in order when the result is used.
+   */
+  private static class RecordingTreeLogger extends TreeLogger {
+    private static class Entry {
+      final RecordingTreeLogger branch;
+      final Throwable caught;
+      final HelpInfo helpInfo;
+      final String msg;
+      final Type type;
+
+      Entry(Type type, String msg, Throwable caught, HelpInfo helpInfo,
+          RecordingTreeLogger branch) {
+        this.type = type;
+        this.msg = msg;
+        this.caught = caught;
+        this.helpInfo = helpInfo;
+        this.branch = branch;
+      }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final TreeLogger target;
+
+    RecordingTreeLogger(TreeLogger target) {
+      this.target = target;
+    }
+
+    @Override
+    public TreeLogger branch(Type type, String msg, Throwable caught, HelpInfo helpInfo) {
+      RecordingTreeLogger branch = new RecordingTreeLogger(target);
+      entries.add(new Entry(type, msg, caught, helpInfo, branch));
+      return branch;
+    }
+
+    @Override
+    public boolean isLoggable(Type type) {
+      return target.isLoggable(type);
+    }
+
+    @Override
+    public void log(Type type, String msg, Throwable caught, HelpInfo helpInfo) {
+      if (isLoggable(type)) {
+        entries.add(new Entry(type, msg, caught, helpInfo, null));
+      }
+    }
+
+    void replay(TreeLogger logger) {
+      for (Entry entry : entries) {
+        if (entry.branch != null) {
+          entry.branch.replay(logger.branch(entry.type, entry.msg, entry.caught, entry.helpInfo));
+        } else {
+          logger.log(entry.type, entry.msg, entry.caught, entry.helpInfo);
+        }
+      }
+    }
+  }
+
+  /**
+   * A system property that sets the number of threads to run generators on
+   * during precompile. With one thread, the default, generators only run when
+   * the compiler reaches a <code>GWT.create()</code> call.
+   */
+  public static final String GENERATOR_THREADS_PROPERTY = "gwt.jjs.generatorThreads";
+
+  /**
+   * A system property that lists, separated by commas, the class names of the
+   * generators that may be run ahead of time, because their output does not
+   * depend on the output of other generators.
+   */
+  public static final String INDEPENDENT_GENERATORS_PROPERTY = "gwt.jjs.independentGenerators";
+
+  private static final String GWT_CLASS = "com/google/gwt/core/client/GWT";
+
+  private static final String GWT_CREATE_DESC = "(Ljava/lang/Class;)Ljava/lang/Object;";
+
+  /**
+   * Returns the generator class names listed in
+   * {@value #INDEPENDENT_GENERATORS_PROPERTY}.
+   */
+  static Set<String> getIndependentGenerators() {
+    Set<String> generators = new HashSet<String>();
+    String list = System.getProperty(INDEPENDENT_GENERATORS_PROPERTY, "");
+    for (String name : list.split(",")) {
+      name = name.trim();
+      if (name.length() > 0) {
+        generators.add(name);
+      }
+    }
+    return generators;
+  }
+
+  /**
+   * Returns the types passed as class literals to <code>GWT.create()</code>
+   * anywhere in the compiled classes, as source names.
+   */
+  static SortedSet<String> findRebindRequests(CompilationState compilationState) {
+    final SortedSet<String> requests = new TreeSet<String>();
+    final MethodVisitor methodVisitor = new EmptyVisitor() {
+      private String lastClassLiteral;
+
+      @Override
+      public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+        lastClassLiteral = null;
+      }
+
+      @Override
+      public void visitInsn(int opcode) {
+        lastClassLiteral = null;
+      }
+
+      @Override
+      public void visitIntInsn(int opcode, int operand) {
+        lastClassLiteral = null;
+      }
+
+      @Override
+      public void visitLdcInsn(Object cst) {
+        lastClassLiteral = cst instanceof Type && ((Type) cst).getSort() == Type.OBJECT
+            ? ((Type) cst).getInternalName() : null;
+      }
+
+      @Override
+      public void visitMethodInsn(int opcode, String owner, String name, String desc) {
+        if (lastClassLiteral != null && opcode == Opcodes.INVOKESTATIC
+            && owner.equals(GWT_CLASS) && name.equals("create")
+            && desc.equals(GWT_CREATE_DESC)) {
+          // As the compiler names rebind requests: nested types use dots
+          requests.add(lastClassLiteral.replace('/', '.').replace('$', '.'));
+        }
+        lastClassLiteral = null;
+      }
+
+      @Override
+      public void visitTypeInsn(int opcode, String type) {
+        lastClassLiteral = null;
+      }
+
+      @Override
+      public void visitVarInsn(int opcode, int var) {
+        lastClassLiteral = null;
+      }
+    };
+    EmptyVisitor classVisitor = new EmptyVisitor() {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+          String[] exceptions) {
+        return methodVisitor;
+      }
+    };
+    for (CompilationUnit unit : compilationState.getCompilationUnits()) {
+      if (unit.isError()) {
+        continue;
+      }
+      for (CompiledClass compiledClass : unit.getCompiledClasses()) {
+        new ClassReader(compiledClass.getBytes()).accept(classVisitor,
+            ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      }
+    }
+    return requests;
+  }
+
+  private final CompilationState compilationState;
+  private final File genDir;
+  private final ArtifactSet generatorArtifacts;
+  private final Set<String> independentGenerators;
+  private final ModuleDef module;
+
+  /**
+   * Prefetched results not yet used, by requested type.
+   */
+  private final Map<String, Prefetched> prefetched = new HashMap<String, Prefetched>();
+
+  private boolean prefetchDone;
+
+  private final StaticPropertyOracle[] propertyOracles;
+
+  private final Rules rules;
+
+  /**
+   * The source hashes of units added from prefetched results.
+   */
+  private final Map<String, String> sharedUnitHashes = new HashMap<String, String>();
+
+  private final int threads;
+
+  /**
+   * @param independentGenerators the class names of the generators that may
+   *          be run ahead of time
+   */
+  RebindPrefetcher(ModuleDef module, CompilationState compilationState,
+      ArtifactSet generatorArtifacts, File genDir, Rules rules,
+      StaticPropertyOracle[] propertyOracles, Set<String> independentGenerators, int threads) {
+    this.module = module;
+    this.independentGenerators = independentGenerators;
+    this.compilationState = compilationState;
+    this.generatorArtifacts = generatorArtifacts;
+    this.genDir = genDir;
+    this.rules = rules;
+    this.propertyOracles = propertyOracles;
+    this.threads = threads;
+  }
+
+  /**
+   * Makes a prefetched rebind of a type available to the main generator
+   * context and rebind oracles, if there is one that can be used.
+   *
+   * @return whether the prefetched result was used
+   */
+  boolean apply(TreeLogger logger, String requestTypeName, StandardGeneratorContext genCtx,
+      StandardRebindOracle[] rebindOracles) {
+    Prefetched result = prefetched.remove(requestTypeName);
+    if (result == null) {
+      return false;
+    }
+
+    String conflict = findConflict(result, genCtx);
+    if (conflict != null) {
+      if (logger.isLoggable(TreeLogger.DEBUG)) {
+        logger.log(TreeLogger.DEBUG, "Not using the prefetched rebind of '" + requestTypeName
+            + "': " + conflict);
+      }
+      return false;
+    }
+
+    result.log.replay(logger);
+    for (GeneratedUnit unit : result.units) {
+      if (!sharedUnitHashes.containsKey(unit.getTypeName())) {
+        genCtx.addGeneratedUnit(unit);
+        sharedUnitHashes.put(unit.getTypeName(), unit.getStrongHash());
+      }
+    }
+    for (Artifact<?> artifact : result.artifacts) {
+      genCtx.commitArtifact(logger, artifact);
+    }
+    for (int i = 0; i < rebindOracles.length; ++i) {
+      rebindOracles[i].putRebind(requestTypeName, result.answers[i]);
+    }
+    return true;
+  }
+
+  /**
+   * Frees the results that were never used.
+   */
+  void clear() {
+    prefetched.clear();
+    sharedUnitHashes.clear();
+  }
+
+  /**
+   * Rebinds every type requested anywhere in the compilation state, and waits
+   * for all of them to finish. Does nothing after the first call.
+   */
+  void prefetchOnce(TreeLogger logger) {
+    if (prefetchDone) {
+      return;
+    }
+    prefetchDone = true;
+
+    SortedSet<String> requests = findRebindRequests(compilationState);
+    if (requests.isEmpty()) {
+      return;
+    }
+    final TreeLogger branch = logger.branch(TreeLogger.DEBUG, "Running generators for "
+        + requests.size() + " rebind requests on " + threads + " threads");
+    long start = System.currentTimeMillis();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Map<String, Future<Prefetched>> futures = new HashMap<String, Future<Prefetched>>();
+    try {
+      for (final String requestTypeName : requests) {
+        // Each context gets its own copy, since generators may add to it
+        final ArtifactSet artifacts = new ArtifactSet(generatorArtifacts);
+        futures.put(requestTypeName, executor.submit(new Callable<Prefetched>() {
+          public Prefetched call() {
+            return rebind(branch, requestTypeName, artifacts, generatorArtifacts);
+          }
+        }));
+      }
+      for (String requestTypeName : requests) {
+        try {
+          Prefetched result = futures.get(requestTypeName).get();
+          if (result != null) {
+            prefetched.put(requestTypeName, result);
+          }
+        } catch (ExecutionException e) {
+          // It will be rebound normally, if the compiler asks for it
+          branch.log(TreeLogger.DEBUG, "Unable to prefetch '" + requestTypeName + "'",
+              e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      // Rebind normally instead
+      Thread.currentThread().interrupt();
+      prefetched.clear();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (branch.isLoggable(TreeLogger.DEBUG)) {
+      branch.log(TreeLogger.DEBUG, "Prefetched " + prefetched.size() + " rebinds in "
+          + (System.currentTimeMillis() - start) + " ms");
+    }
+  }
+
+  /**
+   * Returns why a prefetched result cannot be used, or <code>null</code> if
+   * it can.
+   */
+  private String findConflict(Prefetched result, StandardGeneratorContext genCtx) {
+    for (GeneratedUnit unit : result.units) {
+      String typeName = unit.getTypeName();
+      String sharedHash = sharedUnitHashes.get(typeName);
+      if (sharedHash != null) {
+        if (!sharedHash.equals(unit.getStrongHash())) {
+          return "'" + typeName + "' was already generated differently";
+        }
+      } else if (genCtx.getTypeOracle().findType(typeName) != null
+          || genCtx.getGeneratedUnitMap().containsKey(typeName)) {
+        return "'" + typeName + "' has been generated since";
+      }
+    }
+    for (Artifact<?> artifact : result.artifacts) {
+      if (!(artifact instanceof GeneratedResource)) {
+        continue;
+      }
+      String partialPath = ((GeneratedResource) artifact).getPartialPath();
+      for (GeneratedResource existing : generatorArtifacts.find(GeneratedResource.class)) {
+        if (existing.getPartialPath().equals(partialPath)) {
+          return "resource '" + partialPath + "' has been generated since";
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Rebinds a type for every permutation. Called on a pool thread.
+   *
+   * @param artifacts a copy of the generator artifacts, for this rebind only
+   * @param base the artifacts the copy was made from
+   * @return the result, or <code>null</code> if rebinding failed
+   */
+  private Prefetched rebind(TreeLogger logger, String requestTypeName,
+      ArtifactSet artifacts, ArtifactSet base) {
+    RecordingTreeLogger log = new RecordingTreeLogger(logger);
+    PrefetchGeneratorContext genCtx = new PrefetchGeneratorContext(artifacts);
+    String[] answers = new String[propertyOracles.length];
+    try {
+      for (int i = 0; i < propertyOracles.length; ++i) {
+        answers[i] = new StandardRebindOracle(propertyOracles[i], rules, genCtx).rebind(log,
+            requestTypeName);
+      }
+    } catch (UnableToCompleteException e) {
+      // Errors are reported if the compiler asks for this type
+      if (genCtx.refusedGenerator != null && logger.isLoggable(TreeLogger.DEBUG)) {
+        logger.log(TreeLogger.DEBUG, "Not prefetching '" + requestTypeName + "', since "
+            + genCtx.refusedGenerator + " is not listed in " + INDEPENDENT_GENERATORS_PROPERTY);
+      }
+      return null;
+    }
+
+    // Keep only what the generators committed, not the copied base artifacts
+    Set<Artifact<?>> baseIdentities = Collections.newSetFromMap(
+        new IdentityHashMap<Artifact<?>, Boolean>());
+    baseIdentities.addAll(base);
+    List<Artifact<?>> newArtifacts = new ArrayList<Artifact<?>>();
+    for (Artifact<?> artifact : genCtx.getArtifacts()) {
+      if (!baseIdentities.contains(artifact)) {
+        newArtifacts.add(artifact);
+      }
+    }
+    List<GeneratedUnit> units = genCtx.detach(log);
+    genCtx.clear();
+    return new Prefetched(answers, newArtifacts, units, log);
+  }
+}
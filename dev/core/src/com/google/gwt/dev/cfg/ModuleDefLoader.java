@@ -22,15 +22,16 @@ import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.dev.util.xml.ReflectiveParser;
-import com.google.gwt.util.tools.Utility;
+import com.google.gwt.dev.util.xml.ReflectiveParser.Recording;
 
 import org.apache.commons.collections.map.AbstractReferenceMap;
 import org.apache.commons.collections.map.ReferenceMap;
 
 import java.io.File;
-import java.io.Reader;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,6 +39,20 @@ import java.util.Map;
  * The top-level API for loading module XML.
  */
 public class ModuleDefLoader {
+
+  /**
+   * A module XML file's parse, and the modification time it was parsed at.
+   */
+  private static class ParsedModuleXml {
+    final long lastModified;
+    final Recording recording;
+
+    ParsedModuleXml(long lastModified, Recording recording) {
+      this.lastModified = lastModified;
+      this.recording = recording;
+    }
+  }
+
   /*
    * TODO(scottb,tobyr,zundel): synchronization????
    */
@@ -61,6 +76,14 @@ public class ModuleDefLoader {
   private static final Map<ClassLoader, Map<String, ModuleDef>> loadedModulesCaches = new ReferenceMap(
       AbstractReferenceMap.WEAK, AbstractReferenceMap.HARD);
 
+  /**
+   * Parsed module XML files, keyed by URL. Module definitions are cached per
+   * class loader and rebuilt when any of their files change, but most modules
+   * inherit the same deep tree of modules whose files rarely change.
+   */
+  private static final Map<String, ParsedModuleXml> parsedModuleXml =
+      Collections.synchronizedMap(new HashMap<String, ParsedModuleXml>());
+
   /**
    * A mapping from effective to physical module names.
    */
@@ -69,6 +92,7 @@ public class ModuleDefLoader {
 
   public static void clearModuleCache() {
     getModulesCache().clear();
+    parsedModuleXml.clear();
   }
 
   /**
@@ -210,6 +234,22 @@ public class ModuleDefLoader {
     return moduleDef;
   }
 
+  /**
+   * Returns when a module XML file last changed, or 0 if that is unknown.
+   */
+  private static long getLastModified(URL moduleURL) throws IOException {
+    if (moduleURL.getProtocol().equals("file")) {
+      // A file URLConnection would open the file just to stat it
+      try {
+        return new File(moduleURL.toURI()).lastModified();
+      } catch (URISyntaxException e) {
+        return 0;
+      }
+    }
+    // For jar entries, this is the modification time of the jar
+    return moduleURL.openConnection().getLastModified();
+  }
+
   @SuppressWarnings("unchecked")
   private static Map<String, ModuleDef> getModulesCache() {
     ClassLoader keyClassLoader = Thread.currentThread().getContextClassLoader();
@@ -221,6 +261,27 @@ public class ModuleDefLoader {
     return cache;
   }
   
+  /**
+   * Parses a module XML file, or returns the result of parsing it earlier if
+   * it has not changed since.
+   */
+  private static Recording parseModuleXml(TreeLogger logger, URL moduleURL)
+      throws IOException, UnableToCompleteException {
+    String key = moduleURL.toExternalForm();
+    long lastModified = getLastModified(moduleURL);
+    ParsedModuleXml cached = parsedModuleXml.get(key);
+    if (cached != null && lastModified != 0 && cached.lastModified == lastModified) {
+      return cached.recording;
+    }
+
+    Recording recording = ReflectiveParser.record(logger, Util.createReader(
+        logger, moduleURL));
+    if (lastModified != 0) {
+      parsedModuleXml.put(key, new ParsedModuleXml(lastModified, recording));
+    }
+    return recording;
+  }
+
   private static ModuleDef tryGetLoadedModule(String moduleName, boolean refresh) {
     ModuleDef moduleDef = getModulesCache().get(moduleName);
     if (moduleDef == null || moduleDef.isGwtXmlFileStale()) {
@@ -318,17 +379,14 @@ public class ModuleDefLoader {
 
     // Parse it.
     //
-    Reader r = null;
     try {
-      r = Util.createReader(logger, moduleURL);
+      Recording recording = parseModuleXml(logger, moduleURL);
       ModuleDefSchema schema = new ModuleDefSchema(logger, this, moduleName,
           moduleURL, moduleDir, moduleDef);
-      ReflectiveParser.parse(logger, schema, r);
+      ReflectiveParser.parse(logger, schema, recording);
     } catch (Throwable e) {
       logger.log(TreeLogger.ERROR, "Unexpected error while processing XML", e);
       throw new UnableToCompleteException();
-    } finally {
-      Utility.close(r);
     }
   }
 }
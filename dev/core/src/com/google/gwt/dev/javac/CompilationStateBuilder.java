@@ -21,6 +21,7 @@ import com.google.gwt.dev.javac.JdtCompiler.UnitProcessor;
 import com.google.gwt.dev.jjs.CorrelationFactory.DummyCorrelationFactory;
 import com.google.gwt.dev.jjs.ast.JDeclaredType;
 import com.google.gwt.dev.jjs.impl.GwtAstBuilder;
+import com.google.gwt.dev.js.JsParser;
 import com.google.gwt.dev.js.ast.JsRootScope;
 import com.google.gwt.dev.resource.Resource;
 import com.google.gwt.dev.util.StringInterner;
@@ -309,6 +310,12 @@ public class CompilationStateBuilder {
       // stale cache files.
       unitCache.cleanup(logger);
 
+      if (logger.isLoggable(TreeLogger.DEBUG)) {
+        JsParser.ParseCache parseCache = JsniCollector.getParseCache();
+        logger.log(TreeLogger.DEBUG, "JSNI parse cache: " + parseCache.getHitCount()
+            + " hits, " + parseCache.getMissCount() + " misses");
+      }
+
       // Sort, then report all errors (re-report for cached units).
       Collections.sort(resultUnits, CompilationUnit.COMPARATOR);
       logger = logger.branch(TreeLogger.DEBUG, "Validating units:");
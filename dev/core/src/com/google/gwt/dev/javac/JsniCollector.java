@@ -46,7 +46,6 @@ import org.eclipse.jdt.internal.compiler.util.Util;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.StringReader;
 import java.util.List;
 import java.util.Map;
 
@@ -180,6 +179,15 @@ public class JsniCollector {
 
   public static final String JSNI_BLOCK_START = "/*-{";
 
+  /**
+   * Units are recompiled whenever one of their dependencies changes, although
+   * their JSNI bodies usually stay the same, so remember recent parses. The
+   * cache lives as long as the process, so it is bounded to 4M characters of
+   * JSNI source.
+   */
+  private static final JsParser.ParseCache PARSE_CACHE =
+      new JsParser.ParseCache(4 * 1024 * 1024);
+
   public static Map<MethodDeclaration, JsniMethod> collectJsniMethods(
       CompilationUnitDeclaration cud, String source, JsScope scope,
       CorrelationFactory correlator) {
@@ -188,6 +196,14 @@ public class JsniCollector {
     return IdentityMaps.normalizeUnmodifiable(jsniMethods);
   }
 
+  /**
+   * Returns the cache of JSNI parse trees shared by all compiles in this
+   * process.
+   */
+  public static JsParser.ParseCache getParseCache() {
+    return PARSE_CACHE;
+  }
+
   public static JsFunction parseJsniFunction(AbstractMethodDeclaration method,
       String unitSource, String enclosingType, SourceInfo baseInfo,
       JsScope scope) {
@@ -246,7 +262,6 @@ public class JsniCollector {
     functionSource.append(") ");
     int functionHeaderLength = functionSource.length();
     functionSource.append(jsniCode);
-    StringReader sr = new StringReader(functionSource.toString());
 
     // Absolute start and end position of braces in original source.
     int absoluteJsStartPos = method.bodyStart + startPos;
@@ -263,7 +278,8 @@ public class JsniCollector {
     SourceInfo jsInfo = baseInfo.makeChild(SourceOrigin.create(jsStartPos,
         jsEndPos, jsLine, baseInfo.getFileName()));
     try {
-      List<JsStatement> result = JsParser.parse(jsInfo, scope, sr);
+      List<JsStatement> result =
+          JsParser.parse(jsInfo, scope, functionSource.toString(), PARSE_CACHE);
       JsExprStmt jsExprStmt = (JsExprStmt) result.get(0);
       return (JsFunction) jsExprStmt.getExpression();
     } catch (IOException e) {
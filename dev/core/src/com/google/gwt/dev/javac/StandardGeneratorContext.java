@@ -45,8 +45,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -56,6 +59,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Manages generators and generated units during a single compilation.
@@ -76,19 +80,21 @@ public class StandardGeneratorContext implements GeneratorContext {
    * into which generators can write their source. A controller should ensure
    * that source isn't requested until the generator has finished writing it.
    * This version is backed by {@link StandardGeneratorContext#diskCache}.
+   * Committed units can be serialized along with their source, so that a
+   * cached generator result can outlive the process.
    */
-  private static class GeneratedUnitImpl implements Generated {
+  private static class GeneratedUnitImpl implements Generated, Serializable {
 
     /**
      * A token to retrieve this object's bytes from the disk cache.
      */
-    protected long sourceToken = -1;
+    protected transient long sourceToken = -1;
 
     private long creationTime;
 
     private String strongHash; // cache so that refreshes work correctly
 
-    private StringWriter sw;
+    private transient StringWriter sw;
 
     private final String typeName;
 
@@ -149,6 +155,16 @@ public class StandardGeneratorContext implements GeneratorContext {
     public String optionalFileLocation() {
       return null;
     }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+      ois.defaultReadObject();
+      sourceToken = diskCache.writeString((String) ois.readObject());
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+      oos.defaultWriteObject();
+      oos.writeObject(getSource());
+    }
   }
 
   /**
@@ -481,23 +497,28 @@ public class StandardGeneratorContext implements GeneratorContext {
       }
       return newlyGeneratedArtifacts;
     } finally {
+      reset(logger);
+    }
+  }
 
-      // Remind the user if there uncommitted cups.
-      if (!uncommittedGeneratedCupsByPrintWriter.isEmpty()) {
-        String msg =
-            "For the following type(s), generated source was never committed (did you forget to call commit()?)";
-        logger = logger.branch(TreeLogger.WARN, msg, null);
-
-        for (Generated unit : uncommittedGeneratedCupsByPrintWriter.values()) {
-          logger.log(TreeLogger.WARN, unit.getTypeName(), null);
-        }
+  /**
+   * Like {@link #finish}, but returns the committed units instead of adding
+   * them to the compilation state, so that a context used on another thread
+   * can hand its output to the context that owns the compilation state. Call
+   * {@link #getArtifacts()} first to keep the newly generated artifacts.
+   *
+   * @return the committed units, sorted by type name
+   */
+  public List<GeneratedUnit> detach(TreeLogger logger) {
+    abortUncommittedResources(logger);
+    try {
+      List<GeneratedUnit> units = new ArrayList<GeneratedUnit>(committedGeneratedCups.size());
+      for (String typeName : new TreeSet<String>(committedGeneratedCups.keySet())) {
+        units.add(committedGeneratedCups.get(typeName));
       }
-
-      uncommittedGeneratedCupsByPrintWriter.clear();
-      committedGeneratedCups.clear();
-      newlyGeneratedTypeNames.clear();
-      newlyGeneratedArtifacts = new ArtifactSet();
-      cachedTypeNamesToReuse = null;
+      return units;
+    } finally {
+      reset(logger);
     }
   }
 
@@ -838,6 +859,29 @@ public class StandardGeneratorContext implements GeneratorContext {
     return true;
   }
 
+  /**
+   * Warns about uncommitted units and forgets everything generated since the
+   * last {@link #finish} or {@link #detach}.
+   */
+  private void reset(TreeLogger logger) {
+    // Remind the user if there uncommitted cups.
+    if (!uncommittedGeneratedCupsByPrintWriter.isEmpty()) {
+      String msg =
+          "For the following type(s), generated source was never committed (did you forget to call commit()?)";
+      logger = logger.branch(TreeLogger.WARN, msg, null);
+
+      for (Generated unit : uncommittedGeneratedCupsByPrintWriter.values()) {
+        logger.log(TreeLogger.WARN, unit.getTypeName(), null);
+      }
+    }
+
+    uncommittedGeneratedCupsByPrintWriter.clear();
+    committedGeneratedCups.clear();
+    newlyGeneratedTypeNames.clear();
+    newlyGeneratedArtifacts = new ArtifactSet();
+    cachedTypeNamesToReuse = null;
+  }
+
   private void abortUncommittedResources(TreeLogger logger) {
     if (pendingResources.isEmpty()) {
       // Nothing to do.
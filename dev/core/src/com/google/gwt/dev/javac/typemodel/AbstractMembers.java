@@ -27,8 +27,12 @@ import java.util.TreeMap;
 abstract class AbstractMembers {
 
   protected final JClassType classType;
-  private JMethod[] cachedInheritableMethods;
-  private JMethod[] cachedOverridableMethods;
+  /*
+   * Built into a local and assigned once complete, so that a generator on
+   * another thread never sees a partial array.
+   */
+  private volatile JMethod[] cachedInheritableMethods;
+  private volatile JMethod[] cachedOverridableMethods;
 
   public AbstractMembers(JClassType classType) {
     this.classType = classType;
@@ -83,7 +87,8 @@ abstract class AbstractMembers {
   public abstract JField[] getFields();
 
   public JMethod[] getInheritableMethods() {
-    if (cachedInheritableMethods == null) {
+    JMethod[] result = cachedInheritableMethods;
+    if (result == null) {
       Map<String, JMethod> methodsBySignature = new TreeMap<String, JMethod>();
       getInheritableMethodsOnSuperinterfacesAndMaybeThisInterface(methodsBySignature);
       if (classType.isClass() != null) {
@@ -91,13 +96,14 @@ abstract class AbstractMembers {
       }
       int size = methodsBySignature.size();
       if (size == 0) {
-        cachedInheritableMethods = TypeOracle.NO_JMETHODS;
+        result = TypeOracle.NO_JMETHODS;
       } else {
         Collection<JMethod> leafMethods = methodsBySignature.values();
-        cachedInheritableMethods = leafMethods.toArray(new JMethod[size]);
+        result = leafMethods.toArray(new JMethod[size]);
       }
+      cachedInheritableMethods = result;
     }
-    return cachedInheritableMethods;
+    return result;
   }
 
   public JMethod getMethod(String name, JType[] paramTypes)
@@ -126,7 +132,8 @@ abstract class AbstractMembers {
   public abstract JMethod[] getOverloads(String name);
 
   public JMethod[] getOverridableMethods() {
-    if (cachedOverridableMethods == null) {
+    JMethod[] result = cachedOverridableMethods;
+    if (result == null) {
       JMethod[] inheritableMethods = getInheritableMethods();
       ArrayList<JMethod> methods = new ArrayList<JMethod>(
           inheritableMethods.length);
@@ -137,12 +144,13 @@ abstract class AbstractMembers {
       }
       int size = methods.size();
       if (size == 0) {
-        cachedOverridableMethods = TypeOracle.NO_JMETHODS;
+        result = TypeOracle.NO_JMETHODS;
       } else {
-        cachedOverridableMethods = methods.toArray(new JMethod[size]);
+        result = methods.toArray(new JMethod[size]);
       }
+      cachedOverridableMethods = result;
     }
-    return cachedOverridableMethods;
+    return result;
   }
 
   protected abstract void addConstructor(JConstructor ctor);
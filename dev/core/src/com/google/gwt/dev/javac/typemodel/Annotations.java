@@ -71,7 +71,7 @@ class Annotations implements HasAnnotations {
    * Lazily initialized collection of annotations declared on or inherited by
    * the annotated element.
    */
-  private Map<Class<? extends Annotation>, Annotation> lazyAnnotations = null;
+  private volatile Map<Class<? extends Annotation>, Annotation> lazyAnnotations = null;
 
   /**
    * If not <code>null</code> the parent to inherit annotations from.
@@ -131,20 +131,23 @@ class Annotations implements HasAnnotations {
       return;
     }
 
+    // Build the complete map before publishing it to other threads
+    Map<Class<? extends Annotation>, Annotation> annotations;
     if (parent != null) {
-      lazyAnnotations = new HashMap<Class<? extends Annotation>, Annotation>();
+      annotations = new HashMap<Class<? extends Annotation>, Annotation>();
       parent.initializeAnnotations();
       for (Entry<Class<? extends Annotation>, Annotation> entry : parent.lazyAnnotations.entrySet()) {
         if (entry.getValue().annotationType().isAnnotationPresent(
             Inherited.class)) {
-          lazyAnnotations.put(entry.getKey(), entry.getValue());
+          annotations.put(entry.getKey(), entry.getValue());
         }
       }
 
-      lazyAnnotations.putAll(declaredAnnotations);
-      lazyAnnotations = Maps.normalize(lazyAnnotations);
+      annotations.putAll(declaredAnnotations);
+      annotations = Maps.normalize(annotations);
     } else {
-      lazyAnnotations = declaredAnnotations;
+      annotations = declaredAnnotations;
     }
+    lazyAnnotations = annotations;
   }
 }
@@ -101,23 +101,25 @@ class DelegateMembers extends AbstractMembers {
 
   @Override
   protected List<JConstructor> doGetConstructors() {
-    if (lazyConstructors != null) {
-      /*
-       * Return if the constructors are being initialized or have been
-       * initialized.
-       */
-      return lazyConstructors;
-    }
-    lazyConstructors = new ArrayList<JConstructor>();
+    synchronized (getParentType().getOracle()) {
+      if (lazyConstructors != null) {
+        /*
+         * Return if the constructors are being initialized or have been
+         * initialized.
+         */
+        return lazyConstructors;
+      }
+      lazyConstructors = new ArrayList<JConstructor>();
 
-    JConstructor[] baseCtors = baseType.getConstructors();
-    for (JConstructor baseCtor : baseCtors) {
-      JConstructor newCtor = new JConstructor(getParentType(), baseCtor);
-      initializeParams(baseCtor, newCtor);
-      lazyConstructors.add(newCtor);
-    }
+      JConstructor[] baseCtors = baseType.getConstructors();
+      for (JConstructor baseCtor : baseCtors) {
+        JConstructor newCtor = new JConstructor(getParentType(), baseCtor);
+        initializeParams(baseCtor, newCtor);
+        lazyConstructors.add(newCtor);
+      }
 
-    return lazyConstructors = Lists.normalize(lazyConstructors);
+      return lazyConstructors = Lists.normalize(lazyConstructors);
+    }
   }
 
   @Override
@@ -127,20 +129,22 @@ class DelegateMembers extends AbstractMembers {
   }
 
   private void initFields() {
-    if (fields != null) {
-      return;
-    }
-    // Transitively sorted.
-    fields = baseType.getFields();
-    fieldMap = new HashMap<String, JField>();
-    for (int i = 0; i < fields.length; ++i) {
-      JField baseField = fields[i];
-      JField newField = new JField(getParentType(), baseField);
-      newField.setType(substitute(baseField.getType()));
-      fields[i] = newField;
-      fieldMap.put(newField.getName(), newField);
+    synchronized (getParentType().getOracle()) {
+      if (fields != null) {
+        return;
+      }
+      // Transitively sorted.
+      fields = baseType.getFields();
+      fieldMap = new HashMap<String, JField>();
+      for (int i = 0; i < fields.length; ++i) {
+        JField baseField = fields[i];
+        JField newField = new JField(getParentType(), baseField);
+        newField.setType(substitute(baseField.getType()));
+        fields[i] = newField;
+        fieldMap.put(newField.getName(), newField);
+      }
+      fieldMap = Maps.normalize(fieldMap);
     }
-    fieldMap = Maps.normalize(fieldMap);
   }
 
   private void initializeExceptions(JAbstractMethod srcMethod,
@@ -162,44 +166,46 @@ class DelegateMembers extends AbstractMembers {
 
   @SuppressWarnings("unchecked")
   private void initMethods() {
-    if (methods != null) {
-      return;
-    }
-    // Transitively sorted.
-    methods = baseType.getMethods();
-    methodMap = new HashMap<String, Object>();
-    for (int i = 0; i < methods.length; ++i) {
-      JMethod baseMethod = methods[i];
-      JMethod newMethod = new JMethod(getParentType(), baseMethod);
-      initializeParams(baseMethod, newMethod);
-      newMethod.setReturnType(substitute(baseMethod.getReturnType()));
-      initializeExceptions(baseMethod, newMethod);
-      methods[i] = newMethod;
-
-      String methodName = newMethod.getName();
-      Object object = methodMap.get(methodName);
-      if (object == null) {
-        methodMap.put(methodName, newMethod);
-      } else if (object instanceof JMethod) {
-        List<JMethod> list = new ArrayList<JMethod>(2);
-        list.add((JMethod) object);
-        list.add(newMethod);
-        methodMap.put(methodName, list);
-      } else {
-        List<JMethod> list = (List<JMethod>) object;
-        list.add(newMethod);
+    synchronized (getParentType().getOracle()) {
+      if (methods != null) {
+        return;
+      }
+      // Transitively sorted.
+      methods = baseType.getMethods();
+      methodMap = new HashMap<String, Object>();
+      for (int i = 0; i < methods.length; ++i) {
+        JMethod baseMethod = methods[i];
+        JMethod newMethod = new JMethod(getParentType(), baseMethod);
+        initializeParams(baseMethod, newMethod);
+        newMethod.setReturnType(substitute(baseMethod.getReturnType()));
+        initializeExceptions(baseMethod, newMethod);
+        methods[i] = newMethod;
+
+        String methodName = newMethod.getName();
+        Object object = methodMap.get(methodName);
+        if (object == null) {
+          methodMap.put(methodName, newMethod);
+        } else if (object instanceof JMethod) {
+          List<JMethod> list = new ArrayList<JMethod>(2);
+          list.add((JMethod) object);
+          list.add(newMethod);
+          methodMap.put(methodName, list);
+        } else {
+          List<JMethod> list = (List<JMethod>) object;
+          list.add(newMethod);
+        }
       }
-    }
 
-    // Replace the ArrayLists with plain arrays.
-    for (String methodName : methodMap.keySet()) {
-      Object object = methodMap.get(methodName);
-      if (object instanceof List) {
-        List<JMethod> list = (List<JMethod>) object;
-        methodMap.put(methodName, list.toArray(TypeOracle.NO_JMETHODS));
+      // Replace the ArrayLists with plain arrays.
+      for (String methodName : methodMap.keySet()) {
+        Object object = methodMap.get(methodName);
+        if (object instanceof List) {
+          List<JMethod> list = (List<JMethod>) object;
+          methodMap.put(methodName, list.toArray(TypeOracle.NO_JMETHODS));
+        }
       }
+      methodMap = Maps.normalize(methodMap);
     }
-    methodMap = Maps.normalize(methodMap);
   }
 
   private JType substitute(JType type) {
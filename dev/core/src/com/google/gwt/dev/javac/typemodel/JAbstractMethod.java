@@ -39,7 +39,7 @@ public abstract class JAbstractMethod implements
 
   private List<JParameter> params = Lists.create();
 
-  private String[] realParameterNames = null;
+  private volatile String[] realParameterNames = null;
 
   private List<JClassType> thrownTypes = Lists.create();
 
@@ -284,7 +284,12 @@ public abstract class JAbstractMethod implements
   }
 
   private void fetchRealParameterNames() {
-    realParameterNames = getEnclosingType().getOracle().getJavaSourceParser().getArguments(
-        this);
+    TypeOracle oracle = getEnclosingType().getOracle();
+    // The source parser caches parsed units, so must not run concurrently
+    synchronized (oracle) {
+      if (realParameterNames == null) {
+        realParameterNames = oracle.getJavaSourceParser().getArguments(this);
+      }
+    }
   }
 }
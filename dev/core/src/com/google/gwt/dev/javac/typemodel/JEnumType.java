@@ -23,7 +23,7 @@ import java.util.List;
  */
 public class JEnumType extends JRealClassType implements
     com.google.gwt.core.ext.typeinfo.JEnumType {
-  private JEnumConstant[] lazyEnumConstants;
+  private volatile JEnumConstant[] lazyEnumConstants;
 
   JEnumType(TypeOracle oracle, JPackage declaringPackage,
       String enclosingTypeName, String name) {
@@ -36,7 +36,8 @@ public class JEnumType extends JRealClassType implements
    * @return enumeration constants declared by this enumeration
    */
   public JEnumConstant[] getEnumConstants() {
-    if (lazyEnumConstants == null) {
+    JEnumConstant[] result = lazyEnumConstants;
+    if (result == null) {
       List<JEnumConstant> enumConstants = new ArrayList<JEnumConstant>();
       for (JField field : getFields()) {
         if (field.isEnumConstant() != null) {
@@ -44,10 +45,12 @@ public class JEnumType extends JRealClassType implements
         }
       }
 
-      lazyEnumConstants = enumConstants.toArray(new JEnumConstant[enumConstants.size()]);
+      // Published only once complete, for generators on other threads
+      result = enumConstants.toArray(new JEnumConstant[enumConstants.size()]);
+      lazyEnumConstants = result;
     }
 
-    return lazyEnumConstants;
+    return result;
   }
 
   @Override
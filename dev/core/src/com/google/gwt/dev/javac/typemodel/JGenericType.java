@@ -83,11 +83,13 @@ public class JGenericType extends JRealClassType implements
   }
 
   public JRawType getRawType() {
-    if (lazyRawType == null) {
-      lazyRawType = new JRawType(this);
-    }
+    synchronized (getOracle()) {
+      if (lazyRawType == null) {
+        lazyRawType = new JRawType(this);
+      }
 
-    return lazyRawType;
+      return lazyRawType;
+    }
   }
 
   public JTypeParameter[] getTypeParameters() {
@@ -156,16 +156,18 @@ public class JParameterizedType extends JMaybeParameterizedType implements
 
   @Override
   public JClassType[] getImplementedInterfaces() {
-    if (interfaces == null) {
-      interfaces = new ArrayList<JClassType>();
-      JClassType[] intfs = getBaseType().getImplementedInterfaces();
-      for (JClassType intf : intfs) {
-        JClassType newIntf = intf.getSubstitutedType(this);
-        interfaces.add(newIntf);
+    synchronized (getOracle()) {
+      if (interfaces == null) {
+        interfaces = new ArrayList<JClassType>();
+        JClassType[] intfs = getBaseType().getImplementedInterfaces();
+        for (JClassType intf : intfs) {
+          JClassType newIntf = intf.getSubstitutedType(this);
+          interfaces.add(newIntf);
+        }
+        interfaces = Lists.normalize(interfaces);
       }
-      interfaces = Lists.normalize(interfaces);
+      return interfaces.toArray(TypeOracle.NO_JCLASSES);
     }
-    return interfaces.toArray(TypeOracle.NO_JCLASSES);
   }
 
   @Override
@@ -439,35 +441,37 @@ public class JParameterizedType extends JMaybeParameterizedType implements
    * fully resolved all of the {@link JClassType}s.
    */
   void maybeInitializeTypeParameterSubstitutionMap() {
-    if (lazySubstitutionMap != null) {
-      return;
-    }
-    lazySubstitutionMap = new IdentityHashMap<JTypeParameter, JClassType>();
+    synchronized (getOracle()) {
+      if (lazySubstitutionMap != null) {
+        return;
+      }
+      lazySubstitutionMap = new IdentityHashMap<JTypeParameter, JClassType>();
 
-    JParameterizedType currentParameterizedType = this;
+      JParameterizedType currentParameterizedType = this;
 
-    while (currentParameterizedType != null) {
-      JGenericType genericType = currentParameterizedType.getBaseType();
-      JTypeParameter[] typeParameters = genericType.getTypeParameters();
-      JClassType[] typeArguments = currentParameterizedType.getTypeArgs();
+      while (currentParameterizedType != null) {
+        JGenericType genericType = currentParameterizedType.getBaseType();
+        JTypeParameter[] typeParameters = genericType.getTypeParameters();
+        JClassType[] typeArguments = currentParameterizedType.getTypeArgs();
 
-      for (JTypeParameter typeParameter : typeParameters) {
-        lazySubstitutionMap.put(typeParameter,
-            typeArguments[typeParameter.getOrdinal()]);
-      }
+        for (JTypeParameter typeParameter : typeParameters) {
+          lazySubstitutionMap.put(typeParameter,
+              typeArguments[typeParameter.getOrdinal()]);
+        }
 
-      if (currentParameterizedType.isStatic()) {
-        break;
-      }
+        if (currentParameterizedType.isStatic()) {
+          break;
+        }
 
-      JClassType maybeParameterizedType = currentParameterizedType.getEnclosingType();
-      if (maybeParameterizedType == null
-          || maybeParameterizedType.isParameterized() == null) {
-        break;
+        JClassType maybeParameterizedType = currentParameterizedType.getEnclosingType();
+        if (maybeParameterizedType == null
+            || maybeParameterizedType.isParameterized() == null) {
+          break;
+        }
+        currentParameterizedType = maybeParameterizedType.isParameterized();
       }
-      currentParameterizedType = maybeParameterizedType.isParameterized();
+      lazySubstitutionMap = Maps.normalize(lazySubstitutionMap);
     }
-    lazySubstitutionMap = Maps.normalize(lazySubstitutionMap);
   }
 
   void setTypeArguments(JClassType[] typeArgs) {
@@ -92,15 +92,17 @@ public class JRawType extends JMaybeParameterizedType implements
 
   @Override
   public JClassType[] getImplementedInterfaces() {
-    if (interfaces == null) {
-      interfaces = new ArrayList<JClassType>();
-      JClassType[] intfs = getBaseType().getImplementedInterfaces();
-      for (JClassType intf : intfs) {
-        JClassType newIntf = intf.getErasedType();
-        interfaces.add(newIntf);
+    synchronized (getOracle()) {
+      if (interfaces == null) {
+        interfaces = new ArrayList<JClassType>();
+        JClassType[] intfs = getBaseType().getImplementedInterfaces();
+        for (JClassType intf : intfs) {
+          JClassType newIntf = intf.getErasedType();
+          interfaces.add(newIntf);
+        }
       }
+      return interfaces.toArray(TypeOracle.NO_JCLASSES);
     }
-    return interfaces.toArray(TypeOracle.NO_JCLASSES);
   }
 
   @Override
@@ -65,7 +65,13 @@ import java.util.Set;
  * </pre>
  * 
  * </p>
- * 
+ * <p>
+ * Generators may run concurrently against one type oracle. The types it
+ * creates on demand, and the members of parameterized and raw types, are
+ * therefore created while holding the type oracle's lock. Other lazily
+ * computed state, such as inherited annotations and methods, is built
+ * privately and published to a volatile field only once complete.
+ * </p>
  */
 public class TypeOracle extends com.google.gwt.core.ext.typeinfo.TypeOracle {
 
@@ -387,7 +393,7 @@ public class TypeOracle extends com.google.gwt.core.ext.typeinfo.TypeOracle {
    * @return a type object representing an array of the component type
    */
   @Override
-  public JArrayType getArrayType(JType componentType) {
+  public synchronized JArrayType getArrayType(JType componentType) {
     JArrayType arrayType = arrayTypes.get(componentType);
     if (arrayType == null) {
       arrayType = new JArrayType(componentType, this);
@@ -472,7 +478,7 @@ public class TypeOracle extends com.google.gwt.core.ext.typeinfo.TypeOracle {
    * @throws NullPointerException if genericType is <code>null</code>
    */
   @Override
-  public JParameterizedType getParameterizedType(
+  public synchronized JParameterizedType getParameterizedType(
       com.google.gwt.core.ext.typeinfo.JGenericType extGenericType,
       com.google.gwt.core.ext.typeinfo.JClassType extEnclosingType,
       com.google.gwt.core.ext.typeinfo.JClassType[] extTypeArgs) {
@@ -625,7 +631,7 @@ public class TypeOracle extends com.google.gwt.core.ext.typeinfo.TypeOracle {
   }
 
   @Override
-  public JWildcardType getWildcardType(
+  public synchronized JWildcardType getWildcardType(
       com.google.gwt.core.ext.typeinfo.JWildcardType.BoundType boundType,
       com.google.gwt.core.ext.typeinfo.JClassType extTypeBound) {
     // Special fast case for <? extends Object>
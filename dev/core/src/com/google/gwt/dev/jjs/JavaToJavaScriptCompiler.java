@@ -128,6 +128,8 @@ import com.google.gwt.dev.js.ast.JsName;
 import com.google.gwt.dev.js.ast.JsProgram;
 import com.google.gwt.dev.js.ast.JsVisitor;
 import com.google.gwt.dev.util.DefaultTextOutput;
+import com.google.gwt.dev.util.DiskCache;
+import com.google.gwt.dev.util.DiskCacheToken;
 import com.google.gwt.dev.util.Empty;
 import com.google.gwt.dev.util.Memory;
 import com.google.gwt.dev.util.Util;
@@ -157,6 +159,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -168,18 +171,18 @@ public class JavaToJavaScriptCompiler {
 
   private static class PermutationResultImpl implements PermutationResult {
     private final ArtifactSet artifacts = new ArtifactSet();
-    private final byte[][] js;
+    /**
+     * The fragments live in the {@link DiskCache} so that a permutation's code
+     * is not held on the heap while the rest of the result is assembled.
+     */
+    private final DiskCacheToken[] js;
     private final Permutation permutation;
     private final byte[] serializedSymbolMap;
     private final StatementRanges[] statementRanges;
 
-    public PermutationResultImpl(String[] js, Permutation permutation, SymbolData[] symbolMap,
-        StatementRanges[] statementRanges) {
-      byte[][] bytes = new byte[js.length][];
-      for (int i = 0; i < js.length; ++i) {
-        bytes[i] = Util.getBytes(js[i]);
-      }
-      this.js = bytes;
+    public PermutationResultImpl(DiskCacheToken[] js, Permutation permutation,
+        SymbolData[] symbolMap, StatementRanges[] statementRanges) {
+      this.js = js;
       this.permutation = permutation;
       try {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -203,7 +206,11 @@ public class JavaToJavaScriptCompiler {
 
     @Override
     public byte[][] getJs() {
-      return js;
+      byte[][] bytes = new byte[js.length][];
+      for (int i = 0; i < js.length; ++i) {
+        bytes[i] = js[i].readByteArray();
+      }
+      return bytes;
     }
 
     @Override
@@ -373,7 +380,18 @@ public class JavaToJavaScriptCompiler {
       switch (options.getOutput()) {
         case OBFUSCATED:
           obfuscateMap = JsStringInterner.exec(jprogram, jsProgram, isIE6orUnknown);
-          JsObfuscateNamer.exec(jsProgram);
+          if (JsObfuscateNamer.RANK_BY_FREQUENCY) {
+            int[] sizeDeltas = JsObfuscateNamer.execFrequencyRanked(jsProgram);
+            if (logger.isLoggable(TreeLogger.DEBUG)) {
+              TreeLogger branch = logger.branch(TreeLogger.DEBUG,
+                  "Frequency-ranked naming changed identifier characters by fragment");
+              for (int i = 0; i < sizeDeltas.length; i++) {
+                branch.log(TreeLogger.DEBUG, "Fragment " + i + ": " + sizeDeltas[i]);
+              }
+            }
+          } else {
+            JsObfuscateNamer.exec(jsProgram);
+          }
           if (options.isAggressivelyOptimize()) {
             if (JsStackEmulator.getStackMode(propertyOracles) == JsStackEmulator.StackMode.STRIP) {
               boolean changed = false;
@@ -381,6 +399,9 @@ public class JavaToJavaScriptCompiler {
                 JsBlock fragment = jsProgram.getFragmentBlock(i);
                 changed = JsDuplicateFunctionRemover.exec(jsProgram, fragment) || changed;
               }
+              if (JsDuplicateFunctionRemover.PARAMETERIZE) {
+                changed = JsDuplicateFunctionRemover.execParameterized(jsProgram) || changed;
+              }
               if (changed) {
                 JsUnusedFunctionRemover.exec(jsProgram);
               }
@@ -418,17 +439,21 @@ public class JavaToJavaScriptCompiler {
       JsBreakUpLargeVarStatements.exec(jsProgram, propertyOracles);
 
       // (12) Generate the final output text.
-      String[] js = new String[jsProgram.getFragmentCount()];
-      StatementRanges[] ranges = new StatementRanges[js.length];
+      int fragmentCount = jsProgram.getFragmentCount();
+      DiskCacheToken[] jsTokens = new DiskCacheToken[fragmentCount];
+      // Only the detailed story recorder needs the text once it is on disk
+      String[] js = options.isSoycExtra() ? new String[fragmentCount] : null;
+      StatementRanges[] ranges = new StatementRanges[fragmentCount];
       SizeBreakdown[] sizeBreakdowns =
           options.isSoycEnabled() || options.isCompilerMetricsEnabled()
-              ? new SizeBreakdown[js.length] : null;
+              ? new SizeBreakdown[fragmentCount] : null;
       List<Map<Range, SourceInfo>> sourceInfoMaps = new ArrayList<Map<Range, SourceInfo>>();
-      generateJavaScriptCode(options, jprogram, jsProgram, jjsmap, js, ranges,
+      generateJavaScriptCode(logger, options, jprogram, jsProgram, jjsmap, jsTokens, js, ranges,
           sizeBreakdowns, sourceInfoMaps, splitBlocks, isSourceMapsEnabled);
 
       PermutationResult toReturn =
-          new PermutationResultImpl(js, permutation, makeSymbolMap(symbolTable, jsProgram), ranges);
+          new PermutationResultImpl(jsTokens, permutation, makeSymbolMap(symbolTable, jsProgram),
+              ranges);
       CompilationMetricsArtifact compilationMetrics = null;
       // TODO: enable this when ClosureCompiler is enabled
       if (!options.isClosureCompilerEnabled() && options.isCompilerMetricsEnabled()) {
@@ -808,8 +833,8 @@ public class JavaToJavaScriptCompiler {
     // dead code removal??
     stats.add(DeadCodeElimination.exec(jprogram).recordVisits(numNodes));
 
-    // inlining
-    stats.add(MethodInliner.exec(jprogram).recordVisits(numNodes));
+    // inlining; records its own visits since it only revisits changed code
+    stats.add(MethodInliner.exec(jprogram));
 
     if (isAggressivelyOptimize) {
       // remove same parameters value
@@ -970,12 +995,16 @@ public class JavaToJavaScriptCompiler {
    * Generate JavaScript code from the given JavaScript ASTs. Also produces
    * information about that transformation.
    *
+   * @param logger The logger to report per-fragment statistics to
    * @param options The options this compiler instance is running with
    * @param jprogram The original Java program AST
    * @param jsProgram The AST to convert to source code
    * @param jjsMap A map between the JavaScript AST and the Java AST it came
 *          from
-   * @param js An array to hold the output JavaScript
+   * @param jsTokens An array to hold the disk cache tokens of the output
+   *          JavaScript; each fragment is written as soon as it is generated
+   * @param js An optional array to also retain the output JavaScript in
+   *          memory, may be <code>null</code>
    * @param ranges An array to hold the statement ranges for that JavaScript
    * @param sizeBreakdowns An array to hold the size breakdowns for that
 *          JavaScript
@@ -984,21 +1013,28 @@ public class JavaToJavaScriptCompiler {
    * @param splitBlocks true if current permutation is for IE6 or unknown
    * @param sourceMapsEnabled
    */
-  private static void generateJavaScriptCode(JJSOptions options,
+  private static void generateJavaScriptCode(TreeLogger logger, JJSOptions options,
       JProgram jprogram, JsProgram jsProgram,
-      JavaToJavaScriptMap jjsMap, String[] js, StatementRanges[] ranges,
-      SizeBreakdown[] sizeBreakdowns,
+      JavaToJavaScriptMap jjsMap, DiskCacheToken[] jsTokens, String[] js,
+      StatementRanges[] ranges, SizeBreakdown[] sizeBreakdowns,
       List<Map<Range, SourceInfo>> sourceInfoMaps,
-      boolean splitBlocks, boolean sourceMapsEnabled) {
+      boolean splitBlocks, boolean sourceMapsEnabled) throws UnableToCompleteException {
 
     boolean useClosureCompiler = options.isClosureCompilerEnabled();
     if (useClosureCompiler) {
+      String[] closureJs = new String[jsTokens.length];
       ClosureJsRunner runner = new ClosureJsRunner();
-      runner.compile(jprogram, jsProgram, js, options.getOutput());
+      runner.compile(logger, jprogram, jsProgram, closureJs, options.getOutput());
+      for (int i = 0; i < closureJs.length; i++) {
+        jsTokens[i] = new DiskCacheToken(DiskCache.INSTANCE.writeString(closureJs[i]));
+        if (js != null) {
+          js[i] = closureJs[i];
+        }
+      }
       return;
     }
 
-    for (int i = 0; i < js.length; i++) {
+    for (int i = 0; i < jsTokens.length; i++) {
       DefaultTextOutput out = new DefaultTextOutput(options.getOutput().shouldMinimize());
       JsSourceGenerationVisitorWithSizeBreakdown v;
 
@@ -1034,8 +1070,17 @@ public class JavaToJavaScriptCompiler {
           && options.isAggressivelyOptimize()
           // only cluster for obfuscated mode
           && options.getOutput() == JsOutputOption.OBFUSCATED) {
+        boolean reportClustering = logger.isLoggable(TreeLogger.DEBUG);
+        int gzippedBefore = reportClustering ? gzippedSize(transformer.getJs()) : 0;
+        long clusterStart = System.nanoTime();
         transformer = new JsFunctionClusterer(transformer);
         transformer.exec();
+        if (reportClustering) {
+          long clusterMillis = (System.nanoTime() - clusterStart) / 1000000;
+          logger.log(TreeLogger.DEBUG, "Function clustering of fragment " + i + " took "
+              + clusterMillis + "ms and changed its gzipped size by "
+              + (gzippedSize(transformer.getJs()) - gzippedBefore) + " bytes");
+        }
       }
       functionClusterEvent.end();
 
@@ -1045,7 +1090,11 @@ public class JavaToJavaScriptCompiler {
         transformer.exec();
       }
 
-      js[i] = transformer.getJs();
+      String fragmentJs = transformer.getJs();
+      jsTokens[i] = new DiskCacheToken(DiskCache.INSTANCE.writeString(fragmentJs));
+      if (js != null) {
+        js[i] = fragmentJs;
+      }
       ranges[i] = transformer.getStatementRanges();
       if (sizeBreakdowns != null) {
         sizeBreakdowns[i] = v.getSizeBreakdown();
@@ -1077,6 +1126,21 @@ public class JavaToJavaScriptCompiler {
     return v.classNames.toArray(new String[v.classNames.size()]);
   }
 
+  /**
+   * Returns the size of <code>js</code> after gzip compression, for reporting.
+   */
+  private static int gzippedSize(String js) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+      gzip.write(Util.getBytes(js));
+      gzip.close();
+    } catch (IOException e) {
+      throw new InternalCompilerException("Unexpected error compressing in memory", e);
+    }
+    return bytes.size();
+  }
+
   /*
    * This method is intended as a central location for producing optional
    * tracking output. This will be called after all optimization/normalization
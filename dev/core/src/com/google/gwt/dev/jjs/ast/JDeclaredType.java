@@ -74,6 +74,12 @@ public abstract class JDeclaredType extends JReferenceType {
    */
   private List<JInterfaceType> superInterfaces = Lists.create();
 
+  /**
+   * A dense index assigned by {@link JTypeOracle#computeBeforeAST()}, or -1 if
+   * none has been assigned.
+   */
+  private int typeId = -1;
+
   public JDeclaredType(SourceInfo info, String name) {
     super(info, name);
   }
@@ -283,6 +289,13 @@ public abstract class JDeclaredType extends JReferenceType {
     superInterfaces = Lists.create();
   }
 
+  /**
+   * See {@link #typeId}.
+   */
+  int getTypeId() {
+    return typeId;
+  }
+
   /**
    * See {@link #writeMembers(ObjectOutputStream)}.
    * 
@@ -325,6 +338,10 @@ public abstract class JDeclaredType extends JReferenceType {
     clinitTarget = newClinitTarget;
   }
 
+  void setTypeId(int typeId) {
+    this.typeId = typeId;
+  }
+
   /**
    * After all types are written to the stream without transient members, this
    * method actually writes fields and methods to the stream, which establishes
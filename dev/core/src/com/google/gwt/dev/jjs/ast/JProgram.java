@@ -327,6 +327,12 @@ public class JProgram extends JNode {
 
   private IdentityHashMap<JReferenceType, JsCastMap> castMaps;
 
+  /**
+   * Filled in by CastNormalizer when class casts are checked by seed id
+   * interval. Unrelated to the type ids of {@link JTypeOracle}.
+   */
+  private List<JClassType> classesInSeedOrder;
+
   private Map<JType, JField> classLiteralFields;
 
   private final List<JMethod> entryMethods = new ArrayList<JMethod>();
@@ -630,6 +636,15 @@ public class JProgram extends JNode {
     return castMaps.get(referenceType);
   }
 
+  /**
+   * Returns the classes in depth-first preorder of the class hierarchy, or
+   * <code>null</code> if class casts are checked with castable type maps. The
+   * class at index <code>i</code> must receive seed id <code>i + 1</code>.
+   */
+  public List<JClassType> getClassesInSeedOrder() {
+    return classesInSeedOrder;
+  }
+
   public JField getClassLiteralField(JType type) {
     return classLiteralFields.get(isJavaScriptObject(type) ? getJavaScriptObject() : type);
   }
@@ -915,6 +930,10 @@ public class JProgram extends JNode {
     }
   }
 
+  public void recordClassSeedOrder(List<JClassType> classesInSeedOrder) {
+    this.classesInSeedOrder = classesInSeedOrder;
+  }
+
   public void recordClassLiteralFields(Map<JType, JField> classLiteralFields) {
     this.classLiteralFields = classLiteralFields;
   }
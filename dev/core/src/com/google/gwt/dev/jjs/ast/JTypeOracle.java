@@ -26,7 +26,9 @@ import com.google.gwt.dev.util.collect.Maps;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -193,18 +195,19 @@ public class JTypeOracle implements Serializable {
   private JDeclaredType baseArrayType;
 
   /**
-   * A map of all interfaces to the set of classes that could theoretically
-   * implement them.
+   * All classes, indexed by type id. Ids are assigned in a depth-first preorder
+   * walk of the class hierarchy, so the subclasses of a class occupy the ids
+   * immediately following its own; see {@link #lastSubClassId}.
    */
-  private final Map<JInterfaceType, Set<JClassType>> couldBeImplementedMap =
-      new IdentityHashMap<JInterfaceType, Set<JClassType>>();
+  private JClassType[] classesById = new JClassType[0];
 
   /**
-   * A map of all classes to the set of interfaces that they could theoretically
-   * implement.
+   * For each class id, the interface ids of the interfaces the class could
+   * theoretically implement, either through super types or sub types; or
+   * <code>null</code> if there are none. Read by interface id, this is the set
+   * of classes that could implement an interface.
    */
-  private final Map<JClassType, Set<JInterfaceType>> couldImplementMap =
-      new IdentityHashMap<JClassType, Set<JInterfaceType>>();
+  private BitSet[] couldImplementBits = new BitSet[0];
 
   /**
    * The set of all interfaces that are initially implemented by both a Java and
@@ -213,11 +216,11 @@ public class JTypeOracle implements Serializable {
   private final Set<JInterfaceType> dualImpls = new IdentityHashSet<JInterfaceType>();
 
   /**
-   * A map of all classes to the set of interfaces they directly implement,
-   * possibly through inheritance.
+   * For each class id, the interface ids of the interfaces the class directly
+   * implements, possibly through inheritance; or <code>null</code> if there are
+   * none.
    */
-  private final Map<JClassType, Set<JInterfaceType>> implementsMap =
-      new IdentityHashMap<JClassType, Set<JInterfaceType>>();
+  private BitSet[] implementsBits = new BitSet[0];
 
   /**
    * The types in the program that are instantiable. All types in this set
@@ -233,6 +236,12 @@ public class JTypeOracle implements Serializable {
   private final Map<JInterfaceType, Set<JClassType>> isImplementedMap =
       new IdentityHashMap<JInterfaceType, Set<JClassType>>();
 
+  /**
+   * All interfaces, indexed by type id. The most widely implemented interfaces
+   * get the lowest ids, which keeps the bit sets indexed by interface id short.
+   */
+  private JInterfaceType[] interfacesById = new JInterfaceType[0];
+
   private JDeclaredType javaIoSerializable;
 
   private JDeclaredType javaLangCloneable;
@@ -250,30 +259,21 @@ public class JTypeOracle implements Serializable {
       new IdentityHashMap<JInterfaceType, JClassType>();
 
   /**
-   * The associated {@link JProgram}.
-   */
-  private final JProgram program;
-
-  /**
-   * A map of all classes to the set of classes that extend them, directly or
-   * indirectly.
+   * For each class id, the largest id among its direct and indirect
+   * subclasses, or the class's own id if it has none.
    */
-  private final Map<JClassType, Set<JClassType>> subClassMap =
-      new IdentityHashMap<JClassType, Set<JClassType>>();
+  private int[] lastSubClassId = new int[0];
 
   /**
-   * A map of all interfaces to the set of interfaces that extend them, directly
-   * or indirectly.
+   * The associated {@link JProgram}.
    */
-  private final Map<JInterfaceType, Set<JInterfaceType>> subInterfaceMap =
-      new IdentityHashMap<JInterfaceType, Set<JInterfaceType>>();
+  private final JProgram program;
 
   /**
-   * A map of all classes to the set of classes they extend, directly or
-   * indirectly.
+   * For each interface id, the interface ids of the interfaces it extends,
+   * directly or indirectly; or <code>null</code> if there are none.
    */
-  private final Map<JClassType, Set<JClassType>> superClassMap =
-      new IdentityHashMap<JClassType, Set<JClassType>>();
+  private BitSet[] superInterfaceBits = new BitSet[0];
 
   /**
    * A map of all interfaces to the set of interfaces they extend, directly or
@@ -376,13 +376,13 @@ public class JTypeOracle implements Serializable {
       if (qType instanceof JClassType) {
         return isSubClass(cType, (JClassType) qType);
       } else if (qType instanceof JInterfaceType) {
-        return get(couldImplementMap, cType).contains(qType);
+        return hasBit(couldImplementBits, classId(cType), interfaceId((JInterfaceType) qType));
       }
     } else if (type instanceof JInterfaceType) {
 
       JInterfaceType iType = (JInterfaceType) type;
       if (qType instanceof JClassType) {
-        return get(couldBeImplementedMap, iType).contains(qType);
+        return hasBit(couldImplementBits, classId((JClassType) qType), interfaceId(iType));
       }
     } else if (type instanceof JNullType) {
     }
@@ -470,23 +470,18 @@ public class JTypeOracle implements Serializable {
     javaIoSerializable = program.getFromTypeMap(Serializable.class.getName());
     javaLangCloneable = program.getFromTypeMap(Cloneable.class.getName());
 
-    superClassMap.clear();
-    subClassMap.clear();
     superInterfaceMap.clear();
-    subInterfaceMap.clear();
-    implementsMap.clear();
-    couldImplementMap.clear();
     isImplementedMap.clear();
-    couldBeImplementedMap.clear();
     jsoSingleImpls.clear();
     dualImpls.clear();
 
-    for (JDeclaredType type : program.getDeclaredTypes()) {
-      if (type instanceof JClassType) {
-        recordSuperSubInfo((JClassType) type);
-      } else {
-        recordSuperSubInfo((JInterfaceType) type);
-      }
+    assignTypeIds();
+    superInterfaceBits = new BitSet[interfacesById.length];
+    implementsBits = new BitSet[classesById.length];
+    couldImplementBits = new BitSet[classesById.length];
+
+    for (JInterfaceType type : interfacesById) {
+      recordSuperSubInfo(type);
     }
 
     /*
@@ -496,7 +491,13 @@ public class JTypeOracle implements Serializable {
     JClassType jsoType = program.getJavaScriptObject();
     List<JClassType> jsoSubTypes = Lists.create();
     if (jsoType != null) {
-      jsoSubTypes = new ArrayList<JClassType>(get(subClassMap, jsoType));
+      jsoSubTypes = new ArrayList<JClassType>();
+      int jsoId = classId(jsoType);
+      if (jsoId >= 0) {
+        for (int id = jsoId + 1; id <= lastSubClassId[jsoId]; id++) {
+          jsoSubTypes.add(classesById[id]);
+        }
+      }
       Collections.sort(jsoSubTypes, new HasNameSort());
       for (JClassType jsoSubType : jsoSubTypes) {
         for (JInterfaceType intf : jsoSubType.getImplements()) {
@@ -645,14 +646,16 @@ public class JTypeOracle implements Serializable {
    * Returns true if qType is a subclass of type, directly or indirectly.
    */
   public boolean isSubClass(JClassType type, JClassType qType) {
-    return get(subClassMap, type).contains(qType);
+    int id = classId(type);
+    int qId = classId(qType);
+    return id >= 0 && qId > id && qId <= lastSubClassId[id];
   }
 
   /**
    * Returns true if qType is a superclass of type, directly or indirectly.
    */
   public boolean isSuperClass(JClassType type, JClassType qType) {
-    return get(superClassMap, type).contains(qType);
+    return isSubClass(qType, type);
   }
 
   /**
@@ -696,6 +699,117 @@ public class JTypeOracle implements Serializable {
     getOrCreate(map, key).add(value);
   }
 
+  /**
+   * Adds an interface and all of its super interfaces to a set of interface
+   * ids.
+   */
+  private void addWithSuperInterfaces(BitSet interfaces, JInterfaceType intf) {
+    int id = interfaceId(intf);
+    if (id < 0) {
+      return;
+    }
+    interfaces.set(id);
+    if (superInterfaceBits[id] != null) {
+      interfaces.or(superInterfaceBits[id]);
+    }
+  }
+
+  /**
+   * Numbers every declared type; see {@link #classesById} and
+   * {@link #interfacesById}.
+   */
+  private void assignTypeIds() {
+    Map<JClassType, List<JClassType>> directSubClasses =
+        new IdentityHashMap<JClassType, List<JClassType>>();
+    Set<JClassType> classes = new IdentityHashSet<JClassType>();
+    final Map<JInterfaceType, Integer> implementorCounts =
+        new IdentityHashMap<JInterfaceType, Integer>();
+    List<JInterfaceType> interfaces = new ArrayList<JInterfaceType>();
+    for (JDeclaredType type : program.getDeclaredTypes()) {
+      if (type instanceof JClassType) {
+        classes.add((JClassType) type);
+      } else {
+        interfaces.add((JInterfaceType) type);
+      }
+      for (JInterfaceType intf : type.getImplements()) {
+        Integer count = implementorCounts.get(intf);
+        implementorCounts.put(intf, count == null ? 1 : count + 1);
+      }
+    }
+
+    List<JClassType> roots = new ArrayList<JClassType>();
+    for (JDeclaredType type : program.getDeclaredTypes()) {
+      if (type instanceof JClassType) {
+        JClassType superClass = type.getSuperClass();
+        if (superClass == null || !classes.contains(superClass)) {
+          roots.add((JClassType) type);
+        } else {
+          List<JClassType> subClasses = directSubClasses.get(superClass);
+          if (subClasses == null) {
+            subClasses = new ArrayList<JClassType>();
+            directSubClasses.put(superClass, subClasses);
+          }
+          subClasses.add((JClassType) type);
+        }
+      }
+    }
+    classesById = new JClassType[classes.size()];
+    lastSubClassId = new int[classes.size()];
+    int nextId = 0;
+    for (JClassType root : roots) {
+      nextId = assignClassIds(root, directSubClasses, nextId);
+    }
+    assert nextId == classesById.length;
+
+    // Stable, so ties keep declaration order
+    Collections.sort(interfaces, new Comparator<JInterfaceType>() {
+      public int compare(JInterfaceType a, JInterfaceType b) {
+        return getCount(b) - getCount(a);
+      }
+
+      private int getCount(JInterfaceType intf) {
+        Integer count = implementorCounts.get(intf);
+        return count == null ? 0 : count;
+      }
+    });
+    interfacesById = interfaces.toArray(new JInterfaceType[interfaces.size()]);
+    for (int id = 0; id < interfacesById.length; id++) {
+      interfacesById[id].setTypeId(id);
+    }
+  }
+
+  /**
+   * Numbers a class and then its subclasses, depth first.
+   * 
+   * @return the next unused id
+   */
+  private int assignClassIds(JClassType type,
+      Map<JClassType, List<JClassType>> directSubClasses, int nextId) {
+    int id = nextId++;
+    type.setTypeId(id);
+    classesById[id] = type;
+    List<JClassType> subClasses = directSubClasses.get(type);
+    if (subClasses != null) {
+      for (JClassType subClass : subClasses) {
+        nextId = assignClassIds(subClass, directSubClasses, nextId);
+      }
+    }
+    lastSubClassId[id] = nextId - 1;
+    return nextId;
+  }
+
+  /**
+   * Returns the id of a class, or -1 if it was not numbered by the last call to
+   * {@link #computeBeforeAST()}.
+   */
+  private int classId(JClassType type) {
+    int id = type.getTypeId();
+    if (id >= 0 && id < classesById.length && classesById[id] == type) {
+      return id;
+    }
+    return -1;
+  }
+
   private void computeClinitTarget(JDeclaredType type, Set<JDeclaredType> computed) {
     if (type.isExternal() || !type.hasClinit() || computed.contains(type)) {
       return;
@@ -783,24 +897,19 @@ public class JTypeOracle implements Serializable {
    * super types or sub types.
    */
   private void computeCouldImplement(JClassType type) {
-    Set<JInterfaceType> couldImplementSet = new IdentityHashSet<JInterfaceType>();
+    int id = classId(type);
+    BitSet couldImplementSet = new BitSet();
     // all of my direct implements are trivially true
-    couldImplementSet.addAll(get(implementsMap, type));
-    List<JClassType> subclasses = new ArrayList<JClassType>();
-    subclasses.addAll(get(subClassMap, type));
-    for (JClassType subclass : subclasses) {
-      for (JInterfaceType intf : subclass.getImplements()) {
-        couldImplementSet.add(intf);
-        for (JInterfaceType isup : get(superInterfaceMap, intf)) {
-          couldImplementSet.add(isup);
-        }
+    if (implementsBits[id] != null) {
+      couldImplementSet.or(implementsBits[id]);
+    }
+    for (int subId = id + 1; subId <= lastSubClassId[id]; subId++) {
+      for (JInterfaceType intf : classesById[subId].getImplements()) {
+        addWithSuperInterfaces(couldImplementSet, intf);
       }
     }
     if (!couldImplementSet.isEmpty()) {
-      couldImplementMap.put(type, IdentitySets.normalize(couldImplementSet));
-      for (JInterfaceType couldImpl : couldImplementSet) {
-        add(couldBeImplementedMap, couldImpl, type);
-      }
+      couldImplementBits[id] = couldImplementSet;
     }
   }
 
@@ -808,22 +917,17 @@ public class JTypeOracle implements Serializable {
    * Compute all of the things I implement directly, through super types.
    */
   private void computeImplements(JClassType type) {
-    Set<JInterfaceType> implementsSet = new IdentityHashSet<JInterfaceType>();
-    List<JClassType> list = new ArrayList<JClassType>();
-    list.add(type);
-    list.addAll(get(superClassMap, type));
-    for (JClassType superclass : list) {
+    BitSet implementsSet = new BitSet();
+    for (JClassType superclass = type; superclass != null; superclass =
+        superclass.getSuperClass()) {
       for (JInterfaceType intf : superclass.getImplements()) {
-        implementsSet.add(intf);
-        for (JInterfaceType isup : get(superInterfaceMap, intf)) {
-          implementsSet.add(isup);
-        }
+        addWithSuperInterfaces(implementsSet, intf);
       }
     }
     if (!implementsSet.isEmpty()) {
-      implementsMap.put(type, IdentitySets.normalize(implementsSet));
-      for (JInterfaceType impl : implementsSet) {
-        add(isImplementedMap, impl, type);
+      implementsBits[classId(type)] = implementsSet;
+      for (int id = implementsSet.nextSetBit(0); id >= 0; id = implementsSet.nextSetBit(id + 1)) {
+        add(isImplementedMap, interfacesById[id], type);
       }
     }
   }
@@ -897,7 +1001,7 @@ public class JTypeOracle implements Serializable {
    * directly or indirectly.
    */
   private boolean extendsInterface(JInterfaceType type, JInterfaceType qType) {
-    return get(superInterfaceMap, type).contains(qType);
+    return hasBit(superInterfaceBits, interfaceId(type), interfaceId(qType));
   }
 
   private <K, V> Set<V> get(Map<K, Set<V>> map, K key) {
@@ -908,6 +1012,18 @@ public class JTypeOracle implements Serializable {
     return set;
   }
 
+  /**
+   * Returns true if <code>relation[id]</code> contains <code>qId</code>. Either
+   * id may be -1, meaning the type has not been numbered.
+   */
+  private boolean hasBit(BitSet[] relation, int id, int qId) {
+    if (id < 0 || qId < 0) {
+      return false;
+    }
+    BitSet bits = relation[id];
+    return bits != null && bits.get(qId);
+  }
+
   private void getAllRealOverrides(JMethod method, Set<JMethod> results) {
     for (JMethod possibleOverride : method.getOverrides()) {
       results.add(possibleOverride);
@@ -970,44 +1086,47 @@ public class JTypeOracle implements Serializable {
    * directly or indirectly.
    */
   private boolean implementsInterface(JClassType type, JInterfaceType qType) {
-    return get(implementsMap, type).contains(qType);
+    return hasBit(implementsBits, classId(type), interfaceId(qType));
   }
 
   /**
-   * Record the all of my super classes (and myself as a subclass of them).
+   * Returns the id of an interface, or -1 if it was not numbered by the last
+   * call to {@link #computeBeforeAST()}.
    */
-  private void recordSuperSubInfo(JClassType type) {
-    Set<JClassType> superSet = new IdentityHashSet<JClassType>();
-    for (JClassType t = type.getSuperClass(); t != null; t = t.getSuperClass()) {
-      superSet.add(t);
-      add(subClassMap, t, type);
-    }
-    if (!superSet.isEmpty()) {
-      superClassMap.put(type, IdentitySets.normalize(superSet));
+  private int interfaceId(JInterfaceType type) {
+    int id = type.getTypeId();
+    if (id >= 0 && id < interfacesById.length && interfacesById[id] == type) {
+      return id;
     }
+    return -1;
   }
 
   /**
-   * Record the all of my super interfaces (and myself as a sub interface of
-   * them).
+   * Record the all of my super interfaces.
    */
   private void recordSuperSubInfo(JInterfaceType type) {
     if (!type.getImplements().isEmpty()) {
       Set<JInterfaceType> superSet = new IdentityHashSet<JInterfaceType>();
-      recordSuperSubInfo(type, superSet, type);
+      recordSuperSubInfo(superSet, type);
       superInterfaceMap.put(type, IdentitySets.normalize(superSet));
+      BitSet superBits = new BitSet();
+      for (JInterfaceType intf : superSet) {
+        int id = interfaceId(intf);
+        if (id >= 0) {
+          superBits.set(id);
+        }
+      }
+      superInterfaceBits[interfaceId(type)] = superBits;
     }
   }
 
   /**
    * Recursively record all of my super interfaces.
    */
-  private void recordSuperSubInfo(JInterfaceType base, Set<JInterfaceType> superSet,
-      JInterfaceType cur) {
+  private void recordSuperSubInfo(Set<JInterfaceType> superSet, JInterfaceType cur) {
     for (JInterfaceType intf : cur.getImplements()) {
       superSet.add(intf);
-      add(subInterfaceMap, intf, base);
-      recordSuperSubInfo(base, superSet, intf);
+      recordSuperSubInfo(superSet, intf);
     }
   }
 
@@ -25,8 +25,10 @@ import com.google.gwt.dev.jjs.ast.JBinaryOperator;
 import com.google.gwt.dev.jjs.ast.JCastOperation;
 import com.google.gwt.dev.jjs.ast.JCharLiteral;
 import com.google.gwt.dev.jjs.ast.JClassType;
+import com.google.gwt.dev.jjs.ast.JDeclaredType;
 import com.google.gwt.dev.jjs.ast.JExpression;
 import com.google.gwt.dev.jjs.ast.JInstanceOf;
+import com.google.gwt.dev.jjs.ast.JIntLiteral;
 import com.google.gwt.dev.jjs.ast.JMethod;
 import com.google.gwt.dev.jjs.ast.JMethodCall;
 import com.google.gwt.dev.jjs.ast.JModVisitor;
@@ -69,6 +71,14 @@ import java.util.TreeSet;
  * store checking, to ensure that a non-JSO is not stored into a
  * JavaScriptObject[].
  * </p>
+ * <p>
+ * If the <code>gwt.jjs.classIntervalCasts</code> system property is set, casts
+ * and instanceof tests against ordinary classes do not use query ids. Instead,
+ * classes are numbered in depth-first preorder, so that a class and its
+ * subclasses occupy a contiguous interval of ids, and the test becomes two
+ * integer comparisons against the object's seed id. Such classes only appear
+ * in castable type maps if array store checks need them.
+ * </p>
  */
 public class CastNormalizer {
   private class AssignTypeCastabilityVisitor extends JVisitor {
@@ -175,7 +185,7 @@ public class CastNormalizer {
       if (disableCastChecking) {
         return;
       }
-      if (x.getCastType() != program.getTypeNull()) {
+      if (x.getCastType() != program.getTypeNull() && !isClassIntervalTarget(x.getCastType())) {
         recordCast(x.getCastType(), x.getExpr());
       }
     }
@@ -183,7 +193,9 @@ public class CastNormalizer {
     @Override
     public void endVisit(JInstanceOf x, Context ctx) {
       assert (x.getTestType() != program.getTypeNull());
-      recordCast(x.getTestType(), x.getExpr());
+      if (!isClassIntervalTarget(x.getTestType())) {
+        recordCast(x.getTestType(), x.getExpr());
+      }
     }
 
     private Map<JReferenceType, Integer> assignQueryIds(List<JReferenceType> sortedQueryTypes) {
@@ -461,12 +473,16 @@ public class CastNormalizer {
           // A cast is still needed.  Substitute the appropriate Cast implementation.
           JMethod method;
           boolean isJsoCast = program.typeOracle.isEffectivelyJavaScriptObject(refType);
+          boolean isClassIntervalCast = isClassIntervalTarget(refType);
           if (isJsoCast) {
             // A cast to a concrete JSO subtype
             method = program.getIndexedMethod("Cast.dynamicCastJso");
           } else if (program.typeOracle.isDualJsoInterface(refType)) {
             // An interface that should succeed when the object is a JSO
             method = program.getIndexedMethod("Cast.dynamicCastAllowJso");
+          } else if (isClassIntervalCast) {
+            // A cast to a class, checked against its subclass seed id interval
+            method = program.getIndexedMethod("Cast.dynamicCastToClass");
           } else {
             // A regular cast
             method = program.getIndexedMethod("Cast.dynamicCast");
@@ -474,7 +490,9 @@ public class CastNormalizer {
           // override the type of the called method with the target cast type
           JMethodCall call = new JMethodCall(info, null, method, toType);
           call.addArg(curExpr);
-          if (!isJsoCast) {
+          if (isClassIntervalCast) {
+            addClassIntervalArgs(call, (JClassType) refType);
+          } else if (!isJsoCast) {
             call.addArg(new JsQueryType(info, refType, queryIdsByType.get(refType)));
           }
           replaceExpr = call;
@@ -576,24 +594,41 @@ public class CastNormalizer {
       } else {
         JMethod method;
         boolean isJsoCast = false;
+        boolean isClassIntervalCast = false;
         if (program.typeOracle.isDualJsoInterface(toType)) {
           method = program.getIndexedMethod("Cast.instanceOfOrJso");
         } else if (program.typeOracle.isEffectivelyJavaScriptObject(toType)) {
           isJsoCast = true;
           method = program.getIndexedMethod("Cast.instanceOfJso");
+        } else if (isClassIntervalTarget(toType)) {
+          isClassIntervalCast = true;
+          method = program.getIndexedMethod("Cast.instanceOfClass");
         } else {
           method = program.getIndexedMethod("Cast.instanceOf");
         }
         JMethodCall call = new JMethodCall(x.getSourceInfo(), null, method);
         call.addArg(x.getExpr());
-        if (!isJsoCast) {
+        if (isClassIntervalCast) {
+          addClassIntervalArgs(call, (JClassType) toType);
+        } else if (!isJsoCast) {
           call.addArg(new JsQueryType(x.getSourceInfo(), toType, queryIdsByType.get(toType)));
         }
         ctx.replaceMe(call);
       }
     }
+
+    private void addClassIntervalArgs(JMethodCall call, JClassType type) {
+      int[] interval = classIntervals.get(type);
+      call.addArgs(new JIntLiteral(call.getSourceInfo(), interval[0]), new JIntLiteral(call
+          .getSourceInfo(), interval[1]));
+    }
   }
 
+  /**
+   * Set this system property to check class casts by seed id interval.
+   */
+  public static final String CLASS_INTERVAL_CASTS_PROPERTY = "gwt.jjs.classIntervalCasts";
+
   private static final Comparator<JsQueryType> JSQUERY_COMPARATOR = new Comparator<JsQueryType>() {
     @Override
     public int compare(JsQueryType o1, JsQueryType o2) {
@@ -605,6 +640,12 @@ public class CastNormalizer {
     new CastNormalizer(program, disableCastChecking).execImpl();
   }
 
+  /**
+   * Maps each class whose casts are checked by interval to its first and last
+   * seed id, or <code>null</code> if intervals are not in use.
+   */
+  private Map<JClassType, int[]> classIntervals;
+
   private final boolean disableCastChecking;
 
   private final JProgram program;
@@ -625,6 +666,9 @@ public class CastNormalizer {
       DivVisitor visitor = new DivVisitor();
       visitor.accept(program);
     }
+    if (System.getProperty(CLASS_INTERVAL_CASTS_PROPERTY) != null && !disableCastChecking) {
+      assignClassIntervals();
+    }
     {
       AssignTypeCastabilityVisitor assigner = new AssignTypeCastabilityVisitor();
       assigner.accept(program);
@@ -635,4 +679,57 @@ public class CastNormalizer {
       replacer.accept(program);
     }
   }
+
+  /**
+   * Numbers every class in depth-first preorder, starting at 1 with Object and
+   * String so that the numbering matches the seed ids GenerateJavaScriptAST
+   * reserves for them.
+   */
+  private void assignClassIntervals() {
+    Map<JClassType, List<JClassType>> subclasses =
+        new IdentityHashMap<JClassType, List<JClassType>>();
+    for (JDeclaredType type : program.getDeclaredTypes()) {
+      if (type instanceof JClassType && ((JClassType) type).getSuperClass() != null) {
+        JClassType superClass = ((JClassType) type).getSuperClass();
+        List<JClassType> list = subclasses.get(superClass);
+        if (list == null) {
+          list = new ArrayList<JClassType>();
+          subclasses.put(superClass, list);
+        }
+        list.add((JClassType) type);
+      }
+    }
+    List<JClassType> objectSubclasses = subclasses.get(program.getTypeJavaLangObject());
+    objectSubclasses.remove(program.getTypeJavaLangString());
+    objectSubclasses.add(0, program.getTypeJavaLangString());
+
+    classIntervals = new IdentityHashMap<JClassType, int[]>();
+    List<JClassType> classesInSeedOrder = new ArrayList<JClassType>();
+    assignClassIntervals(program.getTypeJavaLangObject(), subclasses, classesInSeedOrder);
+    program.recordClassSeedOrder(classesInSeedOrder);
+  }
+
+  private void assignClassIntervals(JClassType type,
+      Map<JClassType, List<JClassType>> subclasses, List<JClassType> classesInSeedOrder) {
+    classesInSeedOrder.add(type);
+    int first = classesInSeedOrder.size();
+    List<JClassType> list = subclasses.get(type);
+    if (list != null) {
+      for (JClassType subclass : list) {
+        assignClassIntervals(subclass, subclasses, classesInSeedOrder);
+      }
+    }
+    // Object and String keep their reserved query ids; JSOs have no seed id
+    if (type != program.getTypeJavaLangObject() && type != program.getTypeJavaLangString()
+        && !program.isJavaScriptObject(type)) {
+      classIntervals.put(type, new int[] {first, classesInSeedOrder.size()});
+    }
+  }
+
+  private boolean isClassIntervalTarget(JType type) {
+    if (classIntervals == null || !(type instanceof JReferenceType)) {
+      return false;
+    }
+    return classIntervals.containsKey(((JReferenceType) type).getUnderlyingType());
+  }
 }
@@ -54,8 +54,12 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.thirdparty.guava.common.base.Predicate;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -246,6 +250,19 @@ public class CodeSplitter2 {
    * Number of split points to merge, this should be configurable by user later.
    */
   public static final int NUM_SPLITPOINTS_TO_MERGE = 12;
+
+  /**
+   * Two split points are merged on the basis of a
+   * {@link SplitPointActivationTrace} if at least this fraction of the sessions
+   * that activated either of them activated both.
+   */
+  public static final double PROFILE_MERGE_THRESHOLD = 0.8;
+
+  /**
+   * System property naming a {@link SplitPointActivationTrace} file used to
+   * guide fragment merging.
+   */
+  public static final String SPLIT_POINT_TRACE_PROPERTY = "gwt.jjs.splitPointTrace";
   
   /**
    * The property key for a list of initially loaded split points.
@@ -271,12 +288,25 @@ public class CodeSplitter2 {
   
   public static void exec(TreeLogger logger, JProgram jprogram, JsProgram jsprogram,
       JavaToJavaScriptMap map, MultipleDependencyGraphRecorder dependencyRecorder) {
+    exec(logger, jprogram, jsprogram, map, dependencyRecorder, loadTrace(logger));
+  }
+
+  /**
+   * Runs the code splitter, merging split points that the given trace shows
+   * are usually activated together before falling back to the edge greedy
+   * heuristic.
+   * 
+   * @param trace recorded split point activations, or <code>null</code>
+   */
+  public static void exec(TreeLogger logger, JProgram jprogram, JsProgram jsprogram,
+      JavaToJavaScriptMap map, MultipleDependencyGraphRecorder dependencyRecorder,
+      SplitPointActivationTrace trace) {
     if (jprogram.getRunAsyncs().size() == 0) {
       // Don't do anything if there is no call to runAsync
       return;
     }
     Event codeSplitterEvent = SpeedTracerLogger.start(CompilerEventType.CODE_SPLITTER);
-    new CodeSplitter2(logger, jprogram, jsprogram, map, dependencyRecorder).execImpl();
+    new CodeSplitter2(logger, jprogram, jsprogram, map, dependencyRecorder, trace).execImpl();
     codeSplitterEvent.end();
   }
   
@@ -457,6 +487,23 @@ public class CodeSplitter2 {
     call.setArg(1, newArray);
   }
   
+  /**
+   * Reads the trace named by {@link #SPLIT_POINT_TRACE_PROPERTY}, if any. A
+   * trace that cannot be read only costs us the optimization.
+   */
+  private static SplitPointActivationTrace loadTrace(TreeLogger logger) {
+    String traceFile = System.getProperty(SPLIT_POINT_TRACE_PROPERTY);
+    if (traceFile == null) {
+      return null;
+    }
+    try {
+      return SplitPointActivationTrace.load(new File(traceFile));
+    } catch (IOException e) {
+      logger.log(TreeLogger.WARN, "Unable to read split point activation trace " + traceFile, e);
+      return null;
+    }
+  }
+
   private static ControlFlowAnalyzer recordLiveSet(
       ControlFlowAnalyzer cfa, LiveSplitPointMap liveness, int idx) {       
     for (JNode node : cfa.getLiveFieldsAndMethods()) {
@@ -558,6 +605,8 @@ public class CodeSplitter2 {
 
   private final LiveSplitPointMap liveness = new LiveSplitPointMap();
   
+  private final TreeLogger logger;
+
   private final Set<JMethod> methodsInJavaScript;
   
   /**
@@ -570,9 +619,18 @@ public class CodeSplitter2 {
    */
   private final int[] splitPointToFragmentMap;
 
+  /**
+   * Recorded split point activations, or <code>null</code> if there is no
+   * profile to guide the partition.
+   */
+  private final SplitPointActivationTrace trace;
+
   private CodeSplitter2(TreeLogger logger, JProgram jprogram, JsProgram jsprogram,
-      JavaToJavaScriptMap map, MultipleDependencyGraphRecorder dependencyRecorder) {
+      JavaToJavaScriptMap map, MultipleDependencyGraphRecorder dependencyRecorder,
+      SplitPointActivationTrace trace) {
+    this.logger = logger;
     this.jprogram = jprogram;
+    this.trace = trace;
     this.jsprogram = jsprogram;
     this.fragmentExtractor = new FragmentExtractor(jprogram, jsprogram, map);
     this.initialLoadSequence = new LinkedHashSet<Integer>(jprogram.getSplitPointInitialSequence());
@@ -876,17 +934,95 @@ public class CodeSplitter2 {
    * weight graph partitioning.
    */
   private void partitionFragments() {
-    // TODO(acleung): Currently this only use the Edge Greedy heuristics.
-    if (true) {
-      partitionFragmentUsingEdgeGreedy();
+    int mergesLeft = NUM_SPLITPOINTS_TO_MERGE;
+    if (trace != null) {
+      mergesLeft -= partitionFragmentUsingActivationTrace(mergesLeft);
+    }
+    partitionFragmentUsingEdgeGreedy(mergesLeft);
+
+    for (int i = 0; i < splitPointToFragmentMap.length; i++) {
+      if (splitPointToFragmentMap[i] < 0) {
+        splitPointToFragmentMap[i] = i;
+      }
+    }
+
+    if (trace != null && trace.getSessionCount() > 0) {
+      int[] unmerged = new int[splitPointToFragmentMap.length];
+      for (int i = 0; i < unmerged.length; i++) {
+        unmerged[i] = i;
+      }
+      int before = trace.countDownloads(unmerged, initialLoadSequence);
+      int after = trace.countDownloads(splitPointToFragmentMap, initialLoadSequence);
+      logger.log(TreeLogger.INFO, "Recorded sessions need " + after + " fragment downloads ("
+          + before + " without merging) over " + trace.getSessionCount() + " sessions");
     }
   }
 
+  /**
+   * Merge pairs of split points that the recorded sessions almost always
+   * activate together, most strongly correlated pairs first. Downloading such a
+   * pair as one fragment saves a round trip in the common case and costs little
+   * in the rare one.
+   * 
+   * @return the number of merges performed
+   */
+  private int partitionFragmentUsingActivationTrace(int maxMerges) {
+    int numSplitPoints = splitPointToFragmentMap.length - 1;
+    int[][] together = trace.computeCoActivation(numSplitPoints);
+
+    List<int[]> candidates = new ArrayList<int[]>();
+    for (int i = 1; i <= numSplitPoints; i++) {
+      if (initialLoadSequence.contains(i)) {
+        continue;
+      }
+      for (int j = i + 1; j <= numSplitPoints; j++) {
+        if (initialLoadSequence.contains(j) || together[i][j] == 0) {
+          continue;
+        }
+        int either = together[i][i] + together[j][j] - together[i][j];
+        if (together[i][j] >= PROFILE_MERGE_THRESHOLD * either) {
+          candidates.add(new int[] {i, j, together[i][j], either});
+        }
+      }
+    }
+
+    // Strongest ratio first, then the pair seen in the most sessions.
+    int[][] sorted = candidates.toArray(new int[candidates.size()][]);
+    Arrays.sort(sorted, new Comparator<int[]>() {
+      public int compare(int[] a, int[] b) {
+        long ratioCompare = (long) b[2] * a[3] - (long) a[2] * b[3];
+        if (ratioCompare != 0) {
+          return ratioCompare > 0 ? 1 : -1;
+        }
+        return b[2] - a[2];
+      }
+    });
+
+    int merges = 0;
+    for (int[] pair : sorted) {
+      if (merges == maxMerges) {
+        break;
+      }
+      int i = pair[0];
+      int j = pair[1];
+      if (splitPointToFragmentMap[i] != i || splitPointToFragmentMap[j] != j) {
+        continue;
+      }
+      // Same encoding as partitionFragmentUsingEdgeGreedy()
+      splitPointToFragmentMap[j] = i;
+      splitPointToFragmentMap[i] = -1;
+      merges++;
+      logger.log(TreeLogger.DEBUG, "Merging split points " + i + " and " + j
+          + ", activated together in " + pair[2] + " of " + pair[3] + " sessions");
+    }
+    return merges;
+  }
+
   /**
    * Partition aggressively base on the edge information. If two split points share
    * lots of 
    */
-  private void partitionFragmentUsingEdgeGreedy() {
+  private void partitionFragmentUsingEdgeGreedy(int maxMerges) {
     // This matrix serves as an adjanccy matrix of split points.
     // An edge from a to b with weight of x imples split point a and b shares x atoms exclusively.
     int[][] matrix = new int[splitPointToFragmentMap.length][splitPointToFragmentMap.length];
@@ -895,7 +1031,7 @@ public class CodeSplitter2 {
     countShardedAtomsOfType(liveness.strings, matrix);
     countShardedAtomsOfType(liveness.types, matrix);
 
-    for (int c = 0; c < NUM_SPLITPOINTS_TO_MERGE; c++) {
+    for (int c = 0; c < maxMerges; c++) {
       int bestI = 0, bestJ = 0, max = 0;
       for (int i = 1; i < splitPointToFragmentMap.length; i++) {
         if (initialLoadSequence.contains(i)) {
@@ -922,13 +1058,7 @@ public class CodeSplitter2 {
       splitPointToFragmentMap[bestJ] = bestI;
       splitPointToFragmentMap[bestI] = -1;        
       matrix[bestI][bestJ] = 0;
-      System.out.println("merging: " + bestI + " " + bestJ);
-    }
-    
-    for (int i = 0; i < splitPointToFragmentMap.length; i++) {
-      if (splitPointToFragmentMap[i] < 0) {
-        splitPointToFragmentMap[i] = i;
-      }
+      logger.log(TreeLogger.DEBUG, "Merging split points " + bestI + " and " + bestJ);
     }
   }
   
@@ -2008,6 +2008,7 @@ public class GenerateJavaScriptAST {
         JsStatement tmpAsgStmt = defineSeed.makeStmt();
         globalStmts.add(tmpAsgStmt);
         typeForStatMap.put(tmpAsgStmt, x);
+        generateSeedId(x, newSeed, globalStmts);
       } else {
         /*
          * MAGIC: java.lang.String is implemented as a JavaScript String
@@ -2064,6 +2065,23 @@ public class GenerateJavaScriptAST {
       }
     }
 
+    private void generateSeedId(JClassType x, int seedId, List<JsStatement> globalStmts) {
+      JField seedIdField = program.getIndexedField("Object.seedId");
+      JsName seedIdName = names.get(seedIdField);
+      if (seedIdName == null) {
+        // Was pruned; class casts are not checked by id interval.
+        return;
+      }
+      // _.seedId = seedId
+      SourceInfo sourceInfo = x.getSourceInfo();
+      JsNameRef fieldRef = seedIdName.makeRef(sourceInfo);
+      fieldRef.setQualifier(globalTemp.makeRef(sourceInfo));
+      JsExpression asg = createAssignment(fieldRef, new JsNumberLiteral(sourceInfo, seedId));
+      JsExprStmt stmt = asg.makeStmt();
+      globalStmts.add(stmt);
+      typeForStatMap.put(stmt, x);
+    }
+
     private void generateTypeMarker(List<JsStatement> globalStmts) {
       JField typeMarkerField = program.getIndexedField("Object.typeMarker");
       JsName typeMarkerName = names.get(typeMarkerField);
@@ -2448,6 +2466,7 @@ public class GenerateJavaScriptAST {
     namesToIdents.put("typeMarker", "tM");
     namesToIdents.put("castableTypeMap", "cM");
     namesToIdents.put("___clazz", "cZ");
+    namesToIdents.put("seedId", "sI");
     // Array magic field
     namesToIdents.put("queryId", "qI");
 
@@ -2461,6 +2480,13 @@ public class GenerateJavaScriptAST {
       }
     }
 
+    // Class casts may be checked against seed id intervals
+    if (program.getClassesInSeedOrder() != null) {
+      for (JClassType type : program.getClassesInSeedOrder()) {
+        getSeedId(type);
+      }
+    }
+
     // force java.lang.Object,java.lang.String
     // to have seed ids 1,2
     getSeedId(program.getTypeJavaLangObject());
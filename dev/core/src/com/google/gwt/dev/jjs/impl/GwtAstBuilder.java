@@ -2733,10 +2733,31 @@ public class GwtAstBuilder {
     public final CompilationUnitScope scope;
     public final int[] separatorPositions;
 
+    /**
+     * One shared SourceOrigin per line, indexed by line number. Nothing reads
+     * character positions back from the Java AST, so every node on a line can
+     * share the same origin instead of allocating its own.
+     */
+    private final SourceOrigin[] lineOrigins;
+
     public CudInfo(CompilationUnitDeclaration cud) {
       fileName = intern(cud.getFileName());
       separatorPositions = cud.compilationResult().getLineSeparatorPositions();
       scope = cud.scope;
+      lineOrigins = new SourceOrigin[separatorPositions.length + 2];
+    }
+
+    public SourceOrigin getOrigin(int sourcePos) {
+      int line =
+          Util.getLineNumber(sourcePos, separatorPositions, 0, separatorPositions.length - 1);
+      if (line < 0 || line >= lineOrigins.length) {
+        return SourceOrigin.create(line, fileName);
+      }
+      SourceOrigin origin = lineOrigins[line];
+      if (origin == null) {
+        origin = lineOrigins[line] = SourceOrigin.create(line, fileName);
+      }
+      return origin;
     }
   }
 
@@ -2951,17 +2972,11 @@ public class GwtAstBuilder {
   }
 
   SourceInfo makeSourceInfo(AbstractMethodDeclaration x) {
-    int startLine =
-        Util.getLineNumber(x.sourceStart, curCud.separatorPositions, 0,
-            curCud.separatorPositions.length - 1);
-    return SourceOrigin.create(x.sourceStart, x.bodyEnd, startLine, curCud.fileName);
+    return curCud.getOrigin(x.sourceStart);
   }
 
   SourceInfo makeSourceInfo(ASTNode x) {
-    int startLine =
-        Util.getLineNumber(x.sourceStart, curCud.separatorPositions, 0,
-            curCud.separatorPositions.length - 1);
-    return SourceOrigin.create(x.sourceStart, x.sourceEnd, startLine, curCud.fileName);
+    return curCud.getOrigin(x.sourceStart);
   }
 
   InternalCompilerException translateException(ASTNode node, Throwable e) {
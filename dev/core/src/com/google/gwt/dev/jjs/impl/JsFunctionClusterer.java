@@ -20,13 +20,16 @@ import com.google.gwt.core.ext.soyc.Range;
 import com.google.gwt.dev.jjs.SourceInfo;
 import com.google.gwt.dev.util.editdistance.GeneralEditDistance;
 import com.google.gwt.dev.util.editdistance.GeneralEditDistances;
+import com.google.gwt.dev.util.editdistance.MinHashIndex;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -34,7 +37,10 @@ import java.util.regex.Pattern;
  * Re-orders function declarations according to a given metric and clustering
  * algorithm in order to boost gzip/deflation compression efficiency. This
  * version uses the edit-distance algorithm as a metric, and a semi-greedy
- * strategy for grouping functions together.
+ * strategy for grouping functions together. When
+ * <code>gwt.jjs.minHashClustering</code> is set, the neighbor search covers
+ * the whole fragment through a {@link MinHashIndex} instead of a window of
+ * nearby function sizes.
  */
 public class JsFunctionClusterer extends JsAbstractTextTransformer {
 
@@ -47,12 +53,35 @@ public class JsFunctionClusterer extends JsAbstractTextTransformer {
   private static final Pattern functionDeclarationPattern = Pattern
       .compile("function |[a-zA-Z][.$_a-zA-Z0-9]*=function");
 
+  /**
+   * When set, functions are chained by estimated shingle similarity across the
+   * whole fragment rather than by edit distance within a window.
+   */
+  public static final boolean MIN_HASH_CLUSTERING =
+      Boolean.getBoolean("gwt.jjs.minHashClustering");
+
   /**
    * Functions which have an edit-distance greater than this limit are
    * considered equally different.
    */
   private static final int MAX_DISTANCE_LIMIT = 100;
 
+  /**
+   * Maximum number of similar functions to compare against when using the
+   * MinHash index; bounds the cost of large buckets of near-identical
+   * functions.
+   */
+  private static final int MIN_HASH_CANDIDATE_LIMIT = 200;
+
+  /**
+   * Signature shape for the MinHash index: 16 bands of 4 rows make functions
+   * with a shingle similarity of 0.5 candidates about 65% of the time, and
+   * those with 0.8 almost always.
+   */
+  private static final int MIN_HASH_BANDS = 16;
+  private static final int MIN_HASH_ROWS = 4;
+  private static final int MIN_HASH_SHINGLE_LENGTH = 5;
+
   /**
    * Maximum number of functions to search for minimal edit-distance before
    * giving up.
@@ -113,6 +142,28 @@ public class JsFunctionClusterer extends JsAbstractTextTransformer {
       }
     });
 
+    int[] clusteredIndices = MIN_HASH_CLUSTERING ? clusterByMinHash(functionIndices)
+        : clusterByEditDistance(functionIndices);
+
+    reorderedIndices = Arrays.copyOf(clusteredIndices, statementRanges.numStatements());
+    recomputeJsAndStatementRanges(clusteredIndices);
+  }
+
+  /**
+   * Returns the array of reordered statement indices after clustering.
+   * @return The array of indices, where the element at index j represents
+   * the index of the statement in the original code that is moved to index j
+   * in the new code after clustering.
+   */
+  public int[] getReorderedIndices() {
+    return reorderedIndices;
+  }
+
+  /**
+   * Greedily chains each function to the one with the smallest edit distance
+   * among the next {@link #SEARCH_LIMIT} functions by size.
+   */
+  private int[] clusterByEditDistance(LinkedList<Integer> functionIndices) {
     // used to hold the new output order
     int[] clusteredIndices = new int[functionIndices.size()];
     int currentFunction = 0;
@@ -149,18 +200,50 @@ public class JsFunctionClusterer extends JsAbstractTextTransformer {
       clusteredIndices[currentFunction] = bestFunction;
       functionIndices.remove(bestIndex);
     }
-
-    reorderedIndices = Arrays.copyOf(clusteredIndices, statementRanges.numStatements());
-    recomputeJsAndStatementRanges(clusteredIndices);
+    return clusteredIndices;
   }
+
   /**
-   * Returns the array of reordered statement indices after clustering.
-   * @return The array of indices, where the element at index j represents
-   * the index of the statement in the original code that is moved to index j
-   * in the new code after clustering.
+   * Greedily chains each function to the most similar remaining function in
+   * the fragment, as estimated by a {@link MinHashIndex}. When no remaining
+   * function shares a band with the current one, the chain restarts at the
+   * smallest remaining function.
    */
-  public int[] getReorderedIndices() {
-    return reorderedIndices;
+  private int[] clusterByMinHash(List<Integer> sortedIndices) {
+    List<Integer> functionIndices = new ArrayList<Integer>(sortedIndices);
+    int numFunctions = functionIndices.size();
+    MinHashIndex index = new MinHashIndex(MIN_HASH_BANDS, MIN_HASH_ROWS,
+        MIN_HASH_SHINGLE_LENGTH);
+    // Index ids follow the size order of functionIndices
+    for (int functionIndex : functionIndices) {
+      index.add(getJsForRange(functionIndex));
+    }
+    BitSet remaining = new BitSet(numFunctions);
+    remaining.set(0, numFunctions);
+
+    int[] clusteredIndices = new int[numFunctions];
+    int current = 0;
+    for (int i = 0; i < numFunctions; i++) {
+      clusteredIndices[i] = functionIndices.get(current);
+      remaining.clear(current);
+      index.remove(current);
+      if (remaining.isEmpty()) {
+        break;
+      }
+
+      int best = -1;
+      double bestSimilarity = 0;
+      for (int candidate : index.findCandidates(current, MIN_HASH_CANDIDATE_LIMIT)) {
+        double similarity = index.estimateSimilarity(current, candidate);
+        if (similarity > bestSimilarity
+            || (similarity == bestSimilarity && candidate < best)) {
+          best = candidate;
+          bestSimilarity = similarity;
+        }
+      }
+      current = best >= 0 ? best : remaining.nextSetBit(0);
+    }
+    return clusteredIndices;
   }
 
   @Override
@@ -19,7 +19,16 @@ import com.google.gwt.dev.jjs.InternalCompilerException;
 import com.google.gwt.dev.jjs.ast.Context;
 import com.google.gwt.dev.jjs.ast.JBinaryOperation;
 import com.google.gwt.dev.jjs.ast.JBinaryOperator;
+import com.google.gwt.dev.jjs.ast.JCastOperation;
+import com.google.gwt.dev.jjs.ast.JDeclarationStatement;
+import com.google.gwt.dev.jjs.ast.JDoubleLiteral;
+import com.google.gwt.dev.jjs.ast.JExpression;
+import com.google.gwt.dev.jjs.ast.JExpressionStatement;
+import com.google.gwt.dev.jjs.ast.JLocal;
+import com.google.gwt.dev.jjs.ast.JLocalRef;
+import com.google.gwt.dev.jjs.ast.JLongLiteral;
 import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JMethodBody;
 import com.google.gwt.dev.jjs.ast.JMethodCall;
 import com.google.gwt.dev.jjs.ast.JModVisitor;
 import com.google.gwt.dev.jjs.ast.JPostfixOperation;
@@ -28,14 +37,216 @@ import com.google.gwt.dev.jjs.ast.JPrimitiveType;
 import com.google.gwt.dev.jjs.ast.JProgram;
 import com.google.gwt.dev.jjs.ast.JType;
 import com.google.gwt.dev.jjs.ast.JUnaryOperator;
+import com.google.gwt.dev.jjs.ast.JVariable;
+import com.google.gwt.dev.jjs.ast.JVisitor;
+import com.google.gwt.dev.jjs.impl.gflow.ranges.Range;
+import com.google.gwt.dev.jjs.impl.gflow.ranges.RangeAnalysis;
+import com.google.gwt.dev.jjs.impl.gflow.ranges.RangeEvaluator;
+import com.google.gwt.dev.util.collect.IdentityHashSet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Replaces long operations with calls to the emulation library. Depends on
  * {@link LongCastNormalizer} and {@link CompoundAssignmentNormalizer} having
  * been run.
+ * <p>
+ * Long expressions whose value provably stays within +/-2^53 are first
+ * rewritten as double arithmetic, which is exact in that range and much
+ * cheaper than the emulation library. Long locals that {@link RangeAnalysis}
+ * bounds within that range become double locals.
  */
 public class LongEmulationNormalizer {
 
+  /**
+   * Finds the long locals of each method that {@link RangeAnalysis} bounds
+   * within +/-2^53. Locals that are assigned inside a larger expression are
+   * left alone; the double-typed assignment could not stand in for its long
+   * value.
+   */
+  private class BoundedLocalsVisitor extends JVisitor {
+
+    private final Map<JLocal, Range> methodLocals = new HashMap<JLocal, Range>();
+
+    @Override
+    public boolean visit(JBinaryOperation x, Context ctx) {
+      if (x.isAssignment() && x.getLhs() instanceof JLocalRef) {
+        methodLocals.remove(((JLocalRef) x.getLhs()).getTarget());
+      }
+      return true;
+    }
+
+    @Override
+    public boolean visit(JExpressionStatement x, Context ctx) {
+      JExpression expr = x.getExpr();
+      if (expr instanceof JBinaryOperation
+          && ((JBinaryOperation) expr).getOp() == JBinaryOperator.ASG) {
+        // A statement of its own; only writes nested in its value matter
+        accept(((JBinaryOperation) expr).getRhs());
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean visit(JMethodBody x, Context ctx) {
+      methodLocals.putAll(RangeAnalysis.findBoundedLocals(program, x));
+      if (methodLocals.isEmpty()) {
+        return false;
+      }
+      accept(x.getBlock());
+      boundedLocals.putAll(methodLocals);
+      methodLocals.clear();
+      return false;
+    }
+  }
+
+  /**
+   * Once bounded locals are doubles, converts their remaining long uses back.
+   */
+  private class BoundedLocalRefVisitor extends JModVisitor {
+    @Override
+    public void endVisit(JLocalRef x, Context ctx) {
+      if (!ctx.isLvalue() && boundedLocals.containsKey(x.getTarget())
+          && !doubleRefs.contains(x)) {
+        // CastNormalizer turns this into LongLib.fromDouble()
+        ctx.replaceMe(new JCastOperation(x.getSourceInfo(), program.getTypePrimitiveLong(), x));
+      }
+    }
+  }
+
+  /**
+   * Lowers long additions, subtractions, multiplications, negations, and
+   * comparisons to double math when {@link RangeEvaluator} shows that every
+   * intermediate value is an integer within +/-2^53. Assignments to bounded
+   * locals are rewritten to assign doubles.
+   */
+  private class SmallLongVisitor extends JModVisitor {
+
+    private final JPrimitiveType doubleType = program.getTypePrimitiveDouble();
+    private final JPrimitiveType longType = program.getTypePrimitiveLong();
+
+    @Override
+    public boolean visit(JBinaryOperation x, Context ctx) {
+      if (x.getOp() == JBinaryOperator.ASG) {
+        if (isBoundedLocal(x.getLhs())) {
+          ctx.replaceMe(new JBinaryOperation(x.getSourceInfo(), doubleType, x.getOp(),
+              x.getLhs(), toDoubleValue(x.getRhs())));
+          return false;
+        }
+        return true;
+      }
+      if (x.getLhs().getType() != longType || x.getRhs().getType() != longType) {
+        return true;
+      }
+      switch (x.getOp()) {
+        case EQ:
+        case NEQ:
+        case LT:
+        case LTE:
+        case GT:
+        case GTE:
+          if (isSmall(x.getLhs()) && isSmall(x.getRhs())) {
+            ctx.replaceMe(new JBinaryOperation(x.getSourceInfo(), x.getType(), x.getOp(),
+                toDouble(x.getLhs()), toDouble(x.getRhs())));
+            return false;
+          }
+          break;
+        case ADD:
+        case SUB:
+        case MUL:
+          if (isSmall(x)) {
+            // CastNormalizer turns this into LongLib.fromDouble()
+            ctx.replaceMe(new JCastOperation(x.getSourceInfo(), longType, toDouble(x)));
+            return false;
+          }
+          break;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean visit(JCastOperation x, Context ctx) {
+      JExpression expr = x.getExpr();
+      if (x.getCastType() == doubleType && expr.getType() == longType && isSmall(expr)) {
+        ctx.replaceMe(toDouble(expr));
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean visit(JDeclarationStatement x, Context ctx) {
+      if (x.getInitializer() != null && isBoundedLocal(x.getVariableRef())) {
+        ctx.replaceMe(new JDeclarationStatement(x.getSourceInfo(), x.getVariableRef(),
+            toDoubleValue(x.getInitializer())));
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean visit(JPrefixOperation x, Context ctx) {
+      if (x.getOp() == JUnaryOperator.NEG && isSmall(x)) {
+        ctx.replaceMe(new JCastOperation(x.getSourceInfo(), longType, toDouble(x)));
+        return false;
+      }
+      return true;
+    }
+
+    private boolean isBoundedLocal(JExpression x) {
+      return x instanceof JLocalRef && boundedLocals.containsKey(((JLocalRef) x).getTarget());
+    }
+
+    /**
+     * Returns whether a long expression provably lies within +/-2^53.
+     */
+    private boolean isSmall(JExpression x) {
+      return RangeEvaluator.evaluate(x, boundedLocals).isBounded();
+    }
+
+    /**
+     * Rebuilds an expression accepted by {@link #isSmall(JExpression)} as double
+     * arithmetic.
+     */
+    private JExpression toDouble(JExpression x) {
+      if (x instanceof JLongLiteral) {
+        return new JDoubleLiteral(x.getSourceInfo(), ((JLongLiteral) x).getValue());
+      }
+      if (x instanceof JLocalRef) {
+        // Will be a double local
+        JLocalRef ref = new JLocalRef(x.getSourceInfo(), ((JLocalRef) x).getLocal());
+        doubleRefs.add(ref);
+        return ref;
+      }
+      if (x instanceof JCastOperation) {
+        // CastNormalizer drops the widening cast
+        return new JCastOperation(x.getSourceInfo(), doubleType, ((JCastOperation) x).getExpr());
+      }
+      if (x instanceof JPrefixOperation) {
+        JPrefixOperation op = (JPrefixOperation) x;
+        return new JPrefixOperation(x.getSourceInfo(), op.getOp(), toDouble(op.getArg()));
+      }
+      JBinaryOperation op = (JBinaryOperation) x;
+      return new JBinaryOperation(x.getSourceInfo(), doubleType, op.getOp(), toDouble(op.getLhs()),
+          toDouble(op.getRhs()));
+    }
+
+    /**
+     * Converts a value assigned to a bounded local. The analysis proved it
+     * small, but perhaps from facts that hold only where it is assigned.
+     */
+    private JExpression toDoubleValue(JExpression x) {
+      if (isSmall(x)) {
+        return toDouble(x);
+      }
+      // CastNormalizer turns this into LongLib.toDouble()
+      return new JCastOperation(x.getSourceInfo(), doubleType, accept(x));
+    }
+  }
+
   /**
    * Replace all long math with calls into the long emulation library.
    */
@@ -192,11 +403,27 @@ public class LongEmulationNormalizer {
 
   private final JProgram program;
 
+  /**
+   * Long locals bounded within +/-2^53, and the range of their values.
+   */
+  private final Map<JVariable, Range> boundedLocals = new HashMap<JVariable, Range>();
+
+  /**
+   * References to bounded locals made inside double arithmetic.
+   */
+  private final Set<JLocalRef> doubleRefs = new IdentityHashSet<JLocalRef>();
+
   private LongEmulationNormalizer(JProgram program) {
     this.program = program;
   }
 
   private void execImpl() {
+    new BoundedLocalsVisitor().accept(program);
+    new SmallLongVisitor().accept(program);
+    for (JVariable local : boundedLocals.keySet()) {
+      local.setType(program.getTypePrimitiveDouble());
+    }
+    new BoundedLocalRefVisitor().accept(program);
     LongOpVisitor visitor = new LongOpVisitor(program.getTypePrimitiveLong());
     visitor.accept(program);
   }
@@ -27,6 +27,7 @@ import com.google.gwt.dev.jjs.ast.JMethodBody;
 import com.google.gwt.dev.jjs.ast.JMethodCall;
 import com.google.gwt.dev.jjs.ast.JModVisitor;
 import com.google.gwt.dev.jjs.ast.JNewInstance;
+import com.google.gwt.dev.jjs.ast.JNode;
 import com.google.gwt.dev.jjs.ast.JParameter;
 import com.google.gwt.dev.jjs.ast.JParameterRef;
 import com.google.gwt.dev.jjs.ast.JProgram;
@@ -41,8 +42,12 @@ import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -76,7 +81,7 @@ public class MethodInliner {
    * Method inlining visitor.
    */
   private class InliningVisitor extends JModVisitor {
-    protected final Set<JMethod> modifiedMethods = new HashSet<JMethod>();
+    protected final Set<JMethod> modifiedMethods = new LinkedHashSet<JMethod>();
 
     /**
      * Resets with each new visitor, which is good since things that couldn't be
@@ -85,6 +90,8 @@ public class MethodInliner {
     private final Set<JMethod> cannotInline = new HashSet<JMethod>();
     private JExpression ignoringReturnValueFor;
 
+    private int numVisits;
+
     @Override
     public void endVisit(JMethod x, Context ctx) {
       currentMethod = null;
@@ -93,6 +100,7 @@ public class MethodInliner {
     @Override
     public void endVisit(JMethodCall x, Context ctx) {
       JMethod method = x.getTarget();
+      recordCaller(method, currentMethod);
 
       if (currentMethod == method) {
         // Never try to inline a recursive call!
@@ -139,11 +147,12 @@ public class MethodInliner {
     @Override
     public boolean visit(JExpressionStatement x, Context ctx) {
       ignoringReturnValueFor = x.getExpr();
-      return true;
+      return super.visit(x, ctx);
     }
 
     @Override
     public boolean visit(JMethod x, Context ctx) {
+      super.visit(x, ctx);
       currentMethod = x;
       if (program.getStaticImpl(x) != null) {
         /*
@@ -162,6 +171,12 @@ public class MethodInliner {
       return true;
     }
 
+    @Override
+    public boolean visit(JNode x, Context ctx) {
+      numVisits++;
+      return true;
+    }
+
     private JMethodCall createClinitCall(JMethodCall x) {
       JDeclaredType targetType = x.getTarget().getEnclosingType().getClinitTarget();
       if (!currentMethod.getEnclosingType().checkClinitTo(targetType)) {
@@ -506,6 +521,13 @@ public class MethodInliner {
     return stats;
   }
 
+  /**
+   * Maps each method to the methods whose bodies call it, as last seen by an
+   * {@link InliningVisitor}. Entries may be stale, which only causes extra
+   * work.
+   */
+  private final Map<JMethod, Set<JMethod>> callers = new HashMap<JMethod, Set<JMethod>>();
+
   private JMethod currentMethod;
 
   private final JProgram program;
@@ -516,10 +538,11 @@ public class MethodInliner {
 
   private OptimizerStats execImpl() {
     OptimizerStats stats = new OptimizerStats(NAME);
+    InliningVisitor inliner = new InliningVisitor();
+    inliner.accept(program);
     while (true) {
-      InliningVisitor inliner = new InliningVisitor();
-      inliner.accept(program);
       stats.recordModified(inliner.getNumMods());
+      stats.recordVisits(inliner.numVisits);
       if (!inliner.didChange()) {
         break;
       }
@@ -529,10 +552,32 @@ public class MethodInliner {
         OptimizerStats innerStats = DeadCodeElimination.exec(program, method);
         stats.recordModified(innerStats.getNumMods());
       }
+
+      /*
+       * A call site can only have become inlinable if its own method changed
+       * or the method it calls did, so only revisit those.
+       */
+      Set<JMethod> toRevisit = new LinkedHashSet<JMethod>();
+      for (JMethod method : inliner.modifiedMethods) {
+        toRevisit.add(method);
+        toRevisit.addAll(getCallers(method));
+      }
+      inliner = new InliningVisitor();
+      for (JMethod method : toRevisit) {
+        inliner.accept(method);
+      }
     }
     return stats;
   }
 
+  private Set<JMethod> getCallers(JMethod method) {
+    Set<JMethod> methodCallers = callers.get(method);
+    if (methodCallers == null) {
+      return Collections.emptySet();
+    }
+    return methodCallers;
+  }
+
   /**
    * Insert an implicit cast if the types differ; it might get optimized out
    * later, but in some cases it will force correct math evaluation.
@@ -560,4 +605,16 @@ public class MethodInliner {
     }
     return result;
   }
+
+  private void recordCaller(JMethod callee, JMethod caller) {
+    if (caller == null) {
+      return;
+    }
+    Set<JMethod> methodCallers = callers.get(callee);
+    if (methodCallers == null) {
+      methodCallers = new HashSet<JMethod>();
+      callers.put(callee, methodCallers);
+    }
+    methodCallers.add(caller);
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.util.tools.Utility;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A record of which split points were activated together in real sessions, as
+ * reported by
+ * {@link com.google.gwt.core.client.impl.AsyncFragmentLoader#getActivationTrace()}.
+ * Each line of a trace file holds the split point numbers activated during one
+ * session, separated by whitespace or commas. Blank lines and lines starting
+ * with <code>#</code> are ignored.
+ */
+public class SplitPointActivationTrace {
+
+  /**
+   * Reads a trace file.
+   */
+  public static SplitPointActivationTrace load(File file) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(file), Util.DEFAULT_ENCODING);
+    try {
+      return parse(reader);
+    } finally {
+      Utility.close(reader);
+    }
+  }
+
+  /**
+   * Parses a trace from the given reader; the reader is not closed.
+   *
+   * @throws IOException if the reader fails or a line contains something other
+   *           than split point numbers
+   */
+  public static SplitPointActivationTrace parse(Reader reader) throws IOException {
+    List<int[]> sessions = new ArrayList<int[]>();
+    BufferedReader lines = new BufferedReader(reader);
+    for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+      line = line.trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      String[] tokens = line.split("[\\s,]+");
+      int[] session = new int[tokens.length];
+      for (int i = 0; i < tokens.length; i++) {
+        try {
+          session[i] = Integer.parseInt(tokens[i]);
+        } catch (NumberFormatException e) {
+          throw new IOException("Malformed split point activation trace line: " + line);
+        }
+      }
+      sessions.add(session);
+    }
+    return new SplitPointActivationTrace(sessions);
+  }
+
+  private final List<int[]> sessions;
+
+  SplitPointActivationTrace(List<int[]> sessions) {
+    this.sessions = Collections.unmodifiableList(sessions);
+  }
+
+  /**
+   * Returns a matrix where entry <code>[i][j]</code> is the number of sessions
+   * that activated both split points <code>i</code> and <code>j</code>, and
+   * entry <code>[i][i]</code> is the number of sessions that activated
+   * <code>i</code>. Split points outside <code>[1, numSplitPoints]</code> are
+   * ignored, since a trace may come from an older build.
+   */
+  public int[][] computeCoActivation(int numSplitPoints) {
+    int[][] matrix = new int[numSplitPoints + 1][numSplitPoints + 1];
+    for (int[] session : sessions) {
+      BitSet activated = activatedIn(session, numSplitPoints);
+      for (int i = activated.nextSetBit(0); i >= 0; i = activated.nextSetBit(i + 1)) {
+        for (int j = activated.nextSetBit(0); j >= 0; j = activated.nextSetBit(j + 1)) {
+          matrix[i][j]++;
+        }
+      }
+    }
+    return matrix;
+  }
+
+  /**
+   * Returns the total number of fragment downloads the recorded sessions
+   * would need, given a mapping from split point to fragment. Split points in
+   * <code>initialSequence</code> are part of the initial download and do not
+   * count.
+   */
+  public int countDownloads(int[] splitPointToFragmentMap, Set<Integer> initialSequence) {
+    int numSplitPoints = splitPointToFragmentMap.length - 1;
+    int downloads = 0;
+    for (int[] session : sessions) {
+      BitSet activated = activatedIn(session, numSplitPoints);
+      BitSet fragments = new BitSet();
+      for (int sp = activated.nextSetBit(0); sp >= 0; sp = activated.nextSetBit(sp + 1)) {
+        if (!initialSequence.contains(sp)) {
+          fragments.set(splitPointToFragmentMap[sp]);
+        }
+      }
+      downloads += fragments.cardinality();
+    }
+    return downloads;
+  }
+
+  /**
+   * Returns the number of recorded sessions.
+   */
+  public int getSessionCount() {
+    return sessions.size();
+  }
+
+  private BitSet activatedIn(int[] session, int numSplitPoints) {
+    BitSet activated = new BitSet(numSplitPoints + 1);
+    for (int sp : session) {
+      if (sp > 0 && sp <= numSplitPoints) {
+        activated.set(sp);
+      }
+    }
+    return activated;
+  }
+}
@@ -19,16 +19,18 @@ import com.google.gwt.dev.jjs.impl.gflow.TransformationFunction.Transformation;
 import com.google.gwt.dev.util.Preconditions;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 /**
  * A solver to solve all kinds of analyses defined in the package.
- * Uses iterative worklist algorithm. 
+ * Uses iterative worklist algorithm. Pending nodes are processed in graph
+ * order (reversed for backward analyses) rather than in the order they were
+ * scheduled, so that a node is usually interpreted after the nodes that feed
+ * it have settled, and loops converge before their successors are visited.
  * 
  * Solver might be forward or backwards working. Both directions will always 
  * produce a valid fixed point, which depends on direction. As a rule, 
@@ -131,6 +133,45 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
     }
   }
   
+  /**
+   * A set of pending nodes which always yields the pending node that comes
+   * first in analysis order.
+   */
+  private final class Worklist {
+    private final List<N> nodes;
+    private final BitSet pending;
+    private final Map<N, Integer> positions;
+
+    private Worklist(G g) {
+      nodes = new ArrayList<N>(g.getNodes());
+      if (!forward) {
+        Collections.reverse(nodes);
+      }
+      positions = new HashMap<N, Integer>(nodes.size() * 4 / 3 + 1);
+      for (int i = 0; i < nodes.size(); ++i) {
+        positions.put(nodes.get(i), i);
+      }
+      pending = new BitSet(nodes.size());
+      pending.set(0, nodes.size());
+    }
+
+    private void add(N node) {
+      Integer position = positions.get(node);
+      Preconditions.checkArgument(position != null, "Node is not in graph: %s", node);
+      pending.set(position);
+    }
+
+    private boolean isEmpty() {
+      return pending.isEmpty();
+    }
+
+    private N remove() {
+      int position = pending.nextSetBit(0);
+      pending.clear(position);
+      return nodes.get(position);
+    }
+  }
+
   public static boolean debug = false;
 
   /**
@@ -237,16 +278,6 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
     return didChange;
   }
 
-  private LinkedHashSet<N> buildInitialWorklist(G g) {
-    ArrayList<N> nodes = new ArrayList<N>(g.getNodes());
-    LinkedHashSet<N> worklist = new LinkedHashSet<N>(nodes.size());
-    if (!forward) {
-      Collections.reverse(nodes);
-    } 
-    worklist.addAll(nodes);
-    return worklist;
-  }
-
   @SuppressWarnings("unchecked")
   private A getEdgeAssumption(G graph, E edge) {
     return (A) graph.getEdgeData(edge);
@@ -347,14 +378,12 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
   private void solveImpl(final G graph, Analysis<N, E, G, A> analysis) {
     FlowFunction<N, E, G, A> flowFunction = analysis.getFlowFunction();
 
-    final LinkedHashSet<N> worklist = buildInitialWorklist(graph);
+    final Worklist worklist = new Worklist(graph);
     resetEdgeData(graph);
     initGraphAssumptions(analysis, graph);
 
     while (!worklist.isEmpty()) {
-      Iterator<N> iterator = worklist.iterator();
-      final N node = iterator.next();
-      iterator.remove();
+      final N node = worklist.remove();
 
       flowFunction.interpret(node, graph, new AssumptionMap<E, A>() {
         public A getAssumption(E edge) {
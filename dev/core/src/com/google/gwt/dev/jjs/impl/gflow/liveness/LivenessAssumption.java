@@ -17,17 +17,18 @@ package com.google.gwt.dev.jjs.impl.gflow.liveness;
 
 import com.google.gwt.dev.jjs.ast.JVariable;
 import com.google.gwt.dev.jjs.impl.gflow.Assumption;
-import com.google.gwt.dev.util.collect.IdentityHashSet;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * Assumption for LivenessAnalysis. Contains set of all live (=used after) 
- * variables.
+ * variables, stored as a bit set over a {@link VariableIndex}.
  */
 public class LivenessAssumption implements Assumption<LivenessAssumption> {
   /**
@@ -36,9 +37,18 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
   public static class Updater {
     private LivenessAssumption assumption;
     private boolean copied = false;
+    private final VariableIndex index;
     
     public Updater(LivenessAssumption assumption) {
+      this(assumption, null);
+    }
+
+    /**
+     * @param index the index to use if a new assumption has to be created.
+     */
+    public Updater(LivenessAssumption assumption, VariableIndex index) {
       this.assumption = assumption;
+      this.index = index;
     }
 
     public void kill(JVariable target) {
@@ -63,27 +73,66 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
 
     private void copyIfNeeded() {
       if (!copied) {
-        assumption = new LivenessAssumption(assumption);
+        if (assumption == null && index != null) {
+          assumption = new LivenessAssumption(index);
+        } else {
+          assumption = new LivenessAssumption(assumption);
+        }
         copied = true;
       }
     }
   }
-  
+
+  /**
+   * Assigns dense ids to variables. Assumptions that share an index are
+   * compared and joined with plain bit set operations.
+   */
+  public static class VariableIndex {
+    private final Map<JVariable, Integer> ids = new IdentityHashMap<JVariable, Integer>();
+    private final List<JVariable> variables = new ArrayList<JVariable>();
+
+    private int findId(JVariable variable) {
+      Integer id = ids.get(variable);
+      return id == null ? -1 : id;
+    }
+
+    private int getId(JVariable variable) {
+      Integer id = ids.get(variable);
+      if (id == null) {
+        id = variables.size();
+        ids.put(variable, id);
+        variables.add(variable);
+      }
+      return id;
+    }
+  }
+
+  private final VariableIndex index;
+
   /**
    * Set of all live variables.
    */
-  private final Set<JVariable> liveVariables = new IdentityHashSet<JVariable>();
+  private final BitSet liveVariables;
   
   public LivenessAssumption() {
-    super();
+    this(new VariableIndex());
   }
 
   public LivenessAssumption(LivenessAssumption assumptions) {
     if (assumptions != null) {
-      this.liveVariables.addAll(assumptions.liveVariables);
+      this.index = assumptions.index;
+      this.liveVariables = (BitSet) assumptions.liveVariables.clone();
+    } else {
+      this.index = new VariableIndex();
+      this.liveVariables = new BitSet();
     }
   }
 
+  public LivenessAssumption(VariableIndex index) {
+    this.index = index;
+    this.liveVariables = new BitSet();
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (this == obj) {
@@ -96,16 +145,33 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
       return false;
     }
     LivenessAssumption other = (LivenessAssumption) obj;
-    return liveVariables.equals(other.liveVariables);
+    if (index == other.index) {
+      return liveVariables.equals(other.liveVariables);
+    }
+    if (liveVariables.cardinality() != other.liveVariables.cardinality()) {
+      return false;
+    }
+    for (JVariable variable : getLiveVariables()) {
+      if (!other.isLive(variable)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public int hashCode() {
-    return liveVariables.hashCode();
+    // Independent of the index, like Set.hashCode()
+    int hashCode = 0;
+    for (JVariable variable : getLiveVariables()) {
+      hashCode += variable.hashCode();
+    }
+    return hashCode;
   }
 
   public boolean isLive(JVariable variable) {
-    return liveVariables.contains(variable);
+    int id = index.findId(variable);
+    return id >= 0 && liveVariables.get(id);
   }
 
   /**
@@ -119,7 +185,13 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
       return value;
     }
     LivenessAssumption result = new LivenessAssumption(this);
-    result.liveVariables.addAll(value.liveVariables);
+    if (index == value.index) {
+      result.liveVariables.or(value.liveVariables);
+    } else {
+      for (JVariable variable : value.getLiveVariables()) {
+        result.use(variable);
+      }
+    }
     return result;
   }
 
@@ -127,7 +199,7 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
     StringBuffer result = new StringBuffer();
     
     result.append("{");
-    List<JVariable> vars = new ArrayList<JVariable>(liveVariables);
+    List<JVariable> vars = getLiveVariables();
     Collections.sort(vars, new Comparator<JVariable>() {
       public int compare(JVariable o1, JVariable o2) {
         return o1.getName().compareTo(o2.getName());
@@ -149,11 +221,22 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
     return toDebugString();
   }
 
+  private List<JVariable> getLiveVariables() {
+    List<JVariable> result = new ArrayList<JVariable>(liveVariables.cardinality());
+    for (int id = liveVariables.nextSetBit(0); id >= 0; id = liveVariables.nextSetBit(id + 1)) {
+      result.add(index.variables.get(id));
+    }
+    return result;
+  }
+
   private void kill(JVariable variable) {
-    liveVariables.remove(variable);
+    int id = index.findId(variable);
+    if (id >= 0) {
+      liveVariables.clear(id);
+    }
   }
 
   private void use(JVariable variable) {
-    liveVariables.add(variable);
+    liveVariables.set(index.getId(variable));
   }
 }
@@ -29,16 +29,30 @@ import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgReadWriteNode;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgVisitor;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgWriteNode;
 import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumption.Updater;
+import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumption.VariableIndex;
 
 /**
  * Flow function for Liveness Analysis.
  */
 public class LivenessFlowFunction implements FlowFunction<CfgNode<?>, CfgEdge,
     Cfg, LivenessAssumption> {
+  private final VariableIndex index;
+
+  public LivenessFlowFunction() {
+    this(new VariableIndex());
+  }
+
+  /**
+   * @param index variable index shared by all assumptions of the analysis.
+   */
+  public LivenessFlowFunction(VariableIndex index) {
+    this.index = index;
+  }
+
   public void interpret(CfgNode<?> node, Cfg g,
       AssumptionMap<CfgEdge, LivenessAssumption> assumptionMap) {
     final Updater result = new Updater(
-        AssumptionUtil.join(g.getOutEdges(node), assumptionMap));
+        AssumptionUtil.join(g.getOutEdges(node), assumptionMap), index);
     
     node.accept(new CfgVisitor() {
       @Override
@@ -27,6 +27,7 @@ import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgNode;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgTransformer;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgWriteNode;
+import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumption.VariableIndex;
 
 /**
  * 
@@ -34,7 +35,15 @@ import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgWriteNode;
 public class LivenessIntegratedFlowFunction implements
     IntegratedFlowFunction<CfgNode<?>, CfgEdge, CfgTransformer, Cfg, 
     LivenessAssumption> {
-  private final LivenessFlowFunction flowFunction = new LivenessFlowFunction();
+  private final LivenessFlowFunction flowFunction;
+
+  public LivenessIntegratedFlowFunction() {
+    this(new VariableIndex());
+  }
+
+  public LivenessIntegratedFlowFunction(VariableIndex index) {
+    flowFunction = new LivenessFlowFunction(index);
+  }
   
   public Transformation<CfgTransformer, Cfg> 
   interpretOrReplace(CfgNode<?> node, Cfg graph,
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+/**
+ * An interval of long values. Finite bounds never exceed 2^53 in magnitude,
+ * the range in which every integer is exactly representable as a double; a
+ * bound outside it is treated as unbounded. Instances are immutable.
+ */
+public final class Range {
+  /**
+   * The largest magnitude of a finite bound.
+   */
+  public static final long MAX_EXACT = 1L << 53;
+
+  /**
+   * The range with no bounds at all.
+   */
+  public static final Range UNBOUNDED = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+
+  /**
+   * Values of <code>int</code>, <code>short</code>, <code>char</code> and
+   * <code>byte</code> widened to long.
+   */
+  public static final Range INT = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+  private static final long NO_MAX = Long.MAX_VALUE;
+  private static final long NO_MIN = Long.MIN_VALUE;
+
+  /**
+   * Creates a range, dropping bounds beyond +/-2^53.
+   */
+  public static Range of(long min, long max) {
+    if (min < -MAX_EXACT) {
+      min = NO_MIN;
+    } else if (min > MAX_EXACT) {
+      // Weaker, but still true
+      min = MAX_EXACT;
+    }
+    if (max > MAX_EXACT) {
+      max = NO_MAX;
+    } else if (max < -MAX_EXACT) {
+      max = -MAX_EXACT;
+    }
+    if (min == NO_MIN && max == NO_MAX) {
+      return UNBOUNDED;
+    }
+    return new Range(min, max);
+  }
+
+  private static long addBound(long a, long b, long unbounded) {
+    // Finite bounds are at most 2^53, so the sum cannot overflow
+    return a == unbounded || b == unbounded ? unbounded : a + b;
+  }
+
+  private static long negateBound(long bound) {
+    if (bound == NO_MIN) {
+      return NO_MAX;
+    }
+    if (bound == NO_MAX) {
+      return NO_MIN;
+    }
+    return -bound;
+  }
+
+  private final long max;
+  private final long min;
+
+  private Range(long min, long max) {
+    this.min = min;
+    this.max = max;
+  }
+
+  public Range add(Range other) {
+    return of(addBound(min, other.min, NO_MIN), addBound(max, other.max, NO_MAX));
+  }
+
+  /**
+   * Returns the values of this range that are also at least
+   * <code>bound</code>. The range is returned unchanged if none are.
+   */
+  public Range atLeast(long bound) {
+    if (bound <= min || (max != NO_MAX && bound > max)) {
+      return this;
+    }
+    return of(bound, max);
+  }
+
+  /**
+   * Returns the values of this range that are also at most <code>bound</code>.
+   * The range is returned unchanged if none are.
+   */
+  public Range atMost(long bound) {
+    if (bound >= max || (min != NO_MIN && bound < min)) {
+      return this;
+    }
+    return of(min, bound);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof Range)) {
+      return false;
+    }
+    Range other = (Range) obj;
+    return min == other.min && max == other.max;
+  }
+
+  /**
+   * The upper bound; only meaningful if {@link #hasMax()}.
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * The lower bound; only meaningful if {@link #hasMin()}.
+   */
+  public long getMin() {
+    return min;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (min ^ (min >>> 32)) * 31 + (int) (max ^ (max >>> 32));
+  }
+
+  public boolean hasMax() {
+    return max != NO_MAX;
+  }
+
+  public boolean hasMin() {
+    return min != NO_MIN;
+  }
+
+  /**
+   * Returns whether both bounds are finite, so that every value of the range
+   * is exactly representable as a double.
+   */
+  public boolean isBounded() {
+    return hasMin() && hasMax();
+  }
+
+  /**
+   * Returns the smallest range containing both ranges.
+   */
+  public Range join(Range other) {
+    if (other == this) {
+      return this;
+    }
+    return of(Math.min(min, other.min), Math.max(max, other.max));
+  }
+
+  public Range multiply(Range other) {
+    if (!isBounded() || !other.isBounded()) {
+      return UNBOUNDED;
+    }
+    // Bounds are at most 2^53, so a product may overflow a long
+    double magnitude = Math.max(Math.abs((double) min), Math.abs((double) max))
+        * Math.max(Math.abs((double) other.min), Math.abs((double) other.max));
+    if (magnitude > MAX_EXACT) {
+      return UNBOUNDED;
+    }
+    long a = min * other.min;
+    long b = min * other.max;
+    long c = max * other.min;
+    long d = max * other.max;
+    return of(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b),
+        Math.max(c, d)));
+  }
+
+  public Range negate() {
+    return of(negateBound(max), negateBound(min));
+  }
+
+  public Range subtract(Range other) {
+    return add(other.negate());
+  }
+
+  @Override
+  public String toString() {
+    return "[" + (hasMin() ? String.valueOf(min) : "-inf") + ", "
+        + (hasMax() ? String.valueOf(max) : "inf") + "]";
+  }
+
+  /**
+   * Widens this range, the previous value at a loop head, by its next value
+   * <code>next</code>: any bound that moved is dropped, so that iteration
+   * terminates.
+   */
+  public Range widen(Range next) {
+    long newMin = next.min < min ? NO_MIN : min;
+    long newMax = next.max > max ? NO_MAX : max;
+    return of(newMin, newMax);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import com.google.gwt.dev.jjs.ast.JExpression;
+import com.google.gwt.dev.jjs.ast.JLocal;
+import com.google.gwt.dev.jjs.ast.JMethodBody;
+import com.google.gwt.dev.jjs.ast.JPrimitiveType;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.jjs.ast.JVariable;
+import com.google.gwt.dev.jjs.impl.gflow.Analysis;
+import com.google.gwt.dev.jjs.impl.gflow.AnalysisSolver;
+import com.google.gwt.dev.jjs.impl.gflow.AssumptionMap;
+import com.google.gwt.dev.jjs.impl.gflow.AssumptionUtil;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.Cfg;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgBuilder;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgNode;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgReadWriteNode;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgWriteNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interval analysis of long local variables. Parameters and fields get their
+ * values from outside the method and are never bounded.
+ */
+public class RangeAnalysis implements
+    Analysis<CfgNode<?>, CfgEdge, Cfg, RangeAssumption> {
+
+  /**
+   * Finds the long locals of a method whose every assigned value lies within
+   * +/-2^53, and returns the range of all values each of them may hold.
+   */
+  public static Map<JLocal, Range> findBoundedLocals(JProgram program, JMethodBody body) {
+    Map<JLocal, Range> result = new HashMap<JLocal, Range>();
+    List<JLocal> candidates = new ArrayList<JLocal>();
+    for (JLocal local : body.getLocals()) {
+      if (local.getType() == JPrimitiveType.LONG) {
+        candidates.add(local);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return result;
+    }
+    Cfg cfg = CfgBuilder.build(program, body.getBlock());
+    if (cfg == null) {
+      return result;
+    }
+
+    final Map<CfgEdge, RangeAssumption> assumptions =
+        AnalysisSolver.solve(cfg, new RangeAnalysis(), true);
+    AssumptionMap<CfgEdge, RangeAssumption> assumptionMap =
+        new AssumptionMap<CfgEdge, RangeAssumption>() {
+          public RangeAssumption getAssumption(CfgEdge edge) {
+            return assumptions.get(edge);
+          }
+
+          public void setAssumption(CfgEdge edge, RangeAssumption assumption) {
+            throw new UnsupportedOperationException();
+          }
+        };
+
+    Set<JVariable> unbounded = new HashSet<JVariable>();
+    for (CfgNode<?> node : cfg.getNodes()) {
+      JVariable target;
+      JExpression value;
+      if (node instanceof CfgWriteNode) {
+        target = ((CfgWriteNode) node).getTargetVariable();
+        value = ((CfgWriteNode) node).getValue();
+      } else if (node instanceof CfgReadWriteNode) {
+        target = ((CfgReadWriteNode) node).getTargetVariable();
+        value = null;
+      } else {
+        continue;
+      }
+      if (!candidates.contains(target) || unbounded.contains(target)) {
+        continue;
+      }
+      RangeAssumption in = AssumptionUtil.join(cfg.getInEdges(node), assumptionMap);
+      if (in == null) {
+        // Never executed
+        continue;
+      }
+      Range range = value == null ? Range.UNBOUNDED : RangeEvaluator.evaluate(value, in);
+      if (!range.isBounded()) {
+        unbounded.add(target);
+        result.remove(target);
+        continue;
+      }
+      Range previous = result.get(target);
+      result.put((JLocal) target, previous == null ? range : previous.join(range));
+    }
+    return result;
+  }
+
+  public RangeFlowFunction getFlowFunction() {
+    return new RangeFlowFunction();
+  }
+
+  public void setInitialGraphAssumptions(Cfg graph,
+      AssumptionMap<CfgEdge, RangeAssumption> assumptionMap) {
+    AssumptionUtil.setAssumptions(graph.getGraphInEdges(), RangeAssumption.TOP, assumptionMap);
+  }
+}
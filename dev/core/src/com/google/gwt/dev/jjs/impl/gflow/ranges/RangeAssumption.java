@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import com.google.gwt.dev.jjs.ast.HasName;
+import com.google.gwt.dev.jjs.ast.JVariable;
+import com.google.gwt.dev.jjs.impl.gflow.Assumption;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assumptions for {@link RangeAnalysis}: a map from long local variables to
+ * the range of their values. A variable that is not in the map may hold any
+ * value.
+ *
+ * Empty RangeAssumption is the top of the lattice, and is not equal to the
+ * null assumption (which is the bottom of every lattice).
+ */
+public class RangeAssumption implements Assumption<RangeAssumption> {
+  /**
+   * A TOP for the lattice. Means that no variable is bounded.
+   */
+  public static final RangeAssumption TOP = new RangeAssumption();
+
+  private final Map<JVariable, Range> ranges;
+
+  public RangeAssumption() {
+    ranges = new HashMap<JVariable, Range>();
+  }
+
+  public RangeAssumption(RangeAssumption a) {
+    if (a != null) {
+      ranges = new HashMap<JVariable, Range>(a.ranges);
+    } else {
+      ranges = new HashMap<JVariable, Range>();
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    RangeAssumption other = (RangeAssumption) obj;
+    return ranges.equals(other.ranges);
+  }
+
+  /**
+   * Gets the range of a variable, which is {@link Range#UNBOUNDED} if nothing
+   * is known about it.
+   */
+  public Range get(JVariable variable) {
+    Range range = ranges.get(variable);
+    return range != null ? range : Range.UNBOUNDED;
+  }
+
+  /**
+   * Returns the bounded variables and their ranges.
+   */
+  public Map<JVariable, Range> getRanges() {
+    return Collections.unmodifiableMap(ranges);
+  }
+
+  @Override
+  public int hashCode() {
+    return ranges.hashCode();
+  }
+
+  public boolean isEmpty() {
+    return ranges.isEmpty();
+  }
+
+  public RangeAssumption join(RangeAssumption other) {
+    if (other == null) {
+      return this;
+    }
+    if (other == TOP || this == TOP || isEmpty() || other.isEmpty()) {
+      return TOP;
+    }
+
+    RangeAssumption result = new RangeAssumption();
+    for (Map.Entry<JVariable, Range> entry : other.ranges.entrySet()) {
+      Range range = ranges.get(entry.getKey());
+      if (range != null) {
+        result.set(entry.getKey(), range.join(entry.getValue()));
+      }
+    }
+    return result.isEmpty() ? TOP : result;
+  }
+
+  public String toDebugString() {
+    if (this == TOP || isEmpty()) {
+      return "T";
+    }
+    StringBuffer result = new StringBuffer();
+
+    result.append("{");
+    List<JVariable> variables = new ArrayList<JVariable>(ranges.keySet());
+    HasName.Util.sortByName(variables);
+    for (JVariable variable : variables) {
+      if (result.length() > 1) {
+        result.append(", ");
+      }
+      result.append(variable.getName());
+      result.append(" = ");
+      result.append(ranges.get(variable));
+    }
+    result.append("}");
+
+    return result.toString();
+  }
+
+  @Override
+  public String toString() {
+    return toDebugString();
+  }
+
+  /**
+   * Widens this assumption, the previous one at a loop head, by its next value
+   * <code>next</code>. Variables whose range grew lose the bounds that moved.
+   */
+  RangeAssumption widen(RangeAssumption next) {
+    if (next == null) {
+      return this;
+    }
+    RangeAssumption result = new RangeAssumption();
+    for (Map.Entry<JVariable, Range> entry : next.ranges.entrySet()) {
+      Range range = ranges.get(entry.getKey());
+      if (range != null) {
+        result.set(entry.getKey(), range.widen(entry.getValue()));
+      }
+    }
+    return result.isEmpty() ? TOP : result;
+  }
+
+  void set(JVariable variable, Range range) {
+    if (range.hasMin() || range.hasMax()) {
+      ranges.put(variable, range);
+    } else {
+      ranges.remove(variable);
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import com.google.gwt.dev.jjs.ast.Context;
+import com.google.gwt.dev.jjs.ast.JBinaryOperation;
+import com.google.gwt.dev.jjs.ast.JBinaryOperator;
+import com.google.gwt.dev.jjs.ast.JExpression;
+import com.google.gwt.dev.jjs.ast.JLocalRef;
+import com.google.gwt.dev.jjs.ast.JPostfixOperation;
+import com.google.gwt.dev.jjs.ast.JPrefixOperation;
+import com.google.gwt.dev.jjs.ast.JPrimitiveType;
+import com.google.gwt.dev.jjs.ast.JUnaryOperator;
+import com.google.gwt.dev.jjs.ast.JVariable;
+import com.google.gwt.dev.jjs.ast.JVisitor;
+
+/**
+ * Narrows the ranges of long local variables, knowing the value of a branch
+ * condition. Comparisons of a local with another long expression, and
+ * <code>&amp;&amp;</code>, <code>||</code> and <code>!</code> of those, are
+ * understood.
+ */
+final class RangeDeducer {
+  /**
+   * Returns the assumption that holds after <code>condition</code> evaluated
+   * to <code>value</code> under <code>assumption</code>.
+   */
+  static RangeAssumption deduce(JExpression condition, boolean value,
+      RangeAssumption assumption) {
+    if (assumption == null || writesLocals(condition)) {
+      // Variables may have changed while the condition was evaluated
+      return assumption;
+    }
+    RangeAssumption result = new RangeAssumption(assumption);
+    new RangeDeducer(assumption, result).deduce(condition, value);
+    return result.isEmpty() ? RangeAssumption.TOP : result;
+  }
+
+  /**
+   * Returns whether evaluating an expression may change a local. Other code,
+   * such as called methods, cannot.
+   */
+  private static boolean writesLocals(JExpression expression) {
+    final boolean[] result = new boolean[1];
+    new JVisitor() {
+      @Override
+      public boolean visit(JBinaryOperation x, Context ctx) {
+        result[0] |= x.isAssignment();
+        return !result[0];
+      }
+
+      @Override
+      public boolean visit(JPostfixOperation x, Context ctx) {
+        result[0] |= x.getOp().isModifying();
+        return !result[0];
+      }
+
+      @Override
+      public boolean visit(JPrefixOperation x, Context ctx) {
+        result[0] |= x.getOp().isModifying();
+        return !result[0];
+      }
+    }.accept(expression);
+    return result[0];
+  }
+
+  private static JBinaryOperator negate(JBinaryOperator op) {
+    switch (op) {
+      case LT:
+        return JBinaryOperator.GTE;
+      case LTE:
+        return JBinaryOperator.GT;
+      case GT:
+        return JBinaryOperator.LTE;
+      case GTE:
+        return JBinaryOperator.LT;
+      case EQ:
+        return JBinaryOperator.NEQ;
+      case NEQ:
+        return JBinaryOperator.EQ;
+      default:
+        return null;
+    }
+  }
+
+  private static JBinaryOperator swap(JBinaryOperator op) {
+    switch (op) {
+      case LT:
+        return JBinaryOperator.GT;
+      case LTE:
+        return JBinaryOperator.GTE;
+      case GT:
+        return JBinaryOperator.LT;
+      case GTE:
+        return JBinaryOperator.LTE;
+      default:
+        return op;
+    }
+  }
+
+  /**
+   * Ranges before the condition was evaluated; all comparisons read these.
+   */
+  private final RangeAssumption before;
+
+  private final RangeAssumption result;
+
+  private RangeDeducer(RangeAssumption before, RangeAssumption result) {
+    this.before = before;
+    this.result = result;
+  }
+
+  private void deduce(JExpression condition, boolean value) {
+    if (condition instanceof JPrefixOperation) {
+      JPrefixOperation op = (JPrefixOperation) condition;
+      if (op.getOp() == JUnaryOperator.NOT) {
+        deduce(op.getArg(), !value);
+      }
+      return;
+    }
+    if (!(condition instanceof JBinaryOperation)) {
+      return;
+    }
+    JBinaryOperation op = (JBinaryOperation) condition;
+    switch (op.getOp()) {
+      case AND:
+        if (value) {
+          deduce(op.getLhs(), true);
+          deduce(op.getRhs(), true);
+        }
+        break;
+      case OR:
+        if (!value) {
+          deduce(op.getLhs(), false);
+          deduce(op.getRhs(), false);
+        }
+        break;
+      case LT:
+      case LTE:
+      case GT:
+      case GTE:
+      case EQ:
+      case NEQ:
+        if (op.getLhs().getType() != JPrimitiveType.LONG
+            || op.getRhs().getType() != JPrimitiveType.LONG) {
+          break;
+        }
+        JBinaryOperator comparison = value ? op.getOp() : negate(op.getOp());
+        Range lhs = RangeEvaluator.evaluate(op.getLhs(), before);
+        Range rhs = RangeEvaluator.evaluate(op.getRhs(), before);
+        narrow(op.getLhs(), comparison, rhs);
+        narrow(op.getRhs(), swap(comparison), lhs);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Narrows <code>target</code>, if it is a local, knowing that
+   * <code>target comparison other</code> holds.
+   */
+  private void narrow(JExpression target, JBinaryOperator comparison, Range other) {
+    if (!(target instanceof JLocalRef)) {
+      return;
+    }
+    JVariable variable = ((JLocalRef) target).getTarget();
+    Range range = result.get(variable);
+    switch (comparison) {
+      case LT:
+        if (other.hasMax()) {
+          range = range.atMost(other.getMax() - 1);
+        }
+        break;
+      case LTE:
+        if (other.hasMax()) {
+          range = range.atMost(other.getMax());
+        }
+        break;
+      case GT:
+        if (other.hasMin()) {
+          range = range.atLeast(other.getMin() + 1);
+        }
+        break;
+      case GTE:
+        if (other.hasMin()) {
+          range = range.atLeast(other.getMin());
+        }
+        break;
+      case EQ:
+        if (other.hasMax()) {
+          range = range.atMost(other.getMax());
+        }
+        if (other.hasMin()) {
+          range = range.atLeast(other.getMin());
+        }
+        break;
+      default:
+        break;
+    }
+    result.set(variable, range);
+  }
+}
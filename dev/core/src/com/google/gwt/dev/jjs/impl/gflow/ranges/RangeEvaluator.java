@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import com.google.gwt.dev.jjs.ast.JBinaryOperation;
+import com.google.gwt.dev.jjs.ast.JCastOperation;
+import com.google.gwt.dev.jjs.ast.JExpression;
+import com.google.gwt.dev.jjs.ast.JLocalRef;
+import com.google.gwt.dev.jjs.ast.JLongLiteral;
+import com.google.gwt.dev.jjs.ast.JPrefixOperation;
+import com.google.gwt.dev.jjs.ast.JPrimitiveType;
+import com.google.gwt.dev.jjs.ast.JType;
+import com.google.gwt.dev.jjs.ast.JUnaryOperator;
+import com.google.gwt.dev.jjs.ast.JVariable;
+
+import java.util.Map;
+
+/**
+ * Computes the range of long expressions.
+ * <p>
+ * Only literals, widened <code>int</code>, <code>short</code>,
+ * <code>char</code> and <code>byte</code> values, long local variables, and
+ * negations, sums, differences and products of these are understood.
+ * Everything else is {@link Range#UNBOUNDED}. Since an unbounded operand makes
+ * the result unbounded too, a bounded result means that every intermediate
+ * value is exactly representable as a double.
+ */
+public final class RangeEvaluator {
+
+  /**
+   * Evaluates a long expression, taking the ranges of local variables from
+   * <code>ranges</code>.
+   */
+  public static Range evaluate(JExpression expression, Map<JVariable, Range> ranges) {
+    if (expression.getType() != JPrimitiveType.LONG) {
+      return Range.UNBOUNDED;
+    }
+    if (expression instanceof JLongLiteral) {
+      long value = ((JLongLiteral) expression).getValue();
+      return Range.of(value, value);
+    }
+    if (expression instanceof JLocalRef) {
+      Range range = ranges.get(((JLocalRef) expression).getTarget());
+      return range != null ? range : Range.UNBOUNDED;
+    }
+    if (expression instanceof JCastOperation) {
+      return isIntLike(((JCastOperation) expression).getExpr().getType()) ? Range.INT
+          : Range.UNBOUNDED;
+    }
+    if (expression instanceof JPrefixOperation) {
+      JPrefixOperation op = (JPrefixOperation) expression;
+      if (op.getOp() != JUnaryOperator.NEG) {
+        return Range.UNBOUNDED;
+      }
+      return evaluate(op.getArg(), ranges).negate();
+    }
+    if (expression instanceof JBinaryOperation) {
+      JBinaryOperation op = (JBinaryOperation) expression;
+      switch (op.getOp()) {
+        case ADD:
+          return evaluate(op.getLhs(), ranges).add(evaluate(op.getRhs(), ranges));
+        case SUB:
+          return evaluate(op.getLhs(), ranges).subtract(evaluate(op.getRhs(), ranges));
+        case MUL:
+          return evaluate(op.getLhs(), ranges).multiply(evaluate(op.getRhs(), ranges));
+        default:
+          return Range.UNBOUNDED;
+      }
+    }
+    return Range.UNBOUNDED;
+  }
+
+  /**
+   * Evaluates a long expression under the given assumption.
+   */
+  public static Range evaluate(JExpression expression, RangeAssumption assumption) {
+    if (assumption == null) {
+      return evaluate(expression, RangeAssumption.TOP.getRanges());
+    }
+    return evaluate(expression, assumption.getRanges());
+  }
+
+  private static boolean isIntLike(JType type) {
+    return type == JPrimitiveType.INT || type == JPrimitiveType.SHORT
+        || type == JPrimitiveType.CHAR || type == JPrimitiveType.BYTE;
+  }
+
+  private RangeEvaluator() {
+  }
+}
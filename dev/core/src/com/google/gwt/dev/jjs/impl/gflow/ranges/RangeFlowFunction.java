@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import com.google.gwt.dev.jjs.ast.JExpression;
+import com.google.gwt.dev.jjs.ast.JLocal;
+import com.google.gwt.dev.jjs.ast.JPrimitiveType;
+import com.google.gwt.dev.jjs.ast.JVariable;
+import com.google.gwt.dev.jjs.impl.gflow.AssumptionMap;
+import com.google.gwt.dev.jjs.impl.gflow.AssumptionUtil;
+import com.google.gwt.dev.jjs.impl.gflow.FlowFunction;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.Cfg;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgConditionalNode;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgNode;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgReadWriteNode;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgVisitor;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgWriteNode;
+import com.google.gwt.dev.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flow function for {@link RangeAnalysis}. Nodes with several incoming edges,
+ * which include all loop heads, widen their input against the previous one so
+ * that the analysis terminates.
+ */
+public class RangeFlowFunction implements
+    FlowFunction<CfgNode<?>, CfgEdge, Cfg, RangeAssumption> {
+
+  /**
+   * The last input of each join node.
+   */
+  private final Map<CfgNode<?>, RangeAssumption> joinInputs =
+      new HashMap<CfgNode<?>, RangeAssumption>();
+
+  public void interpret(CfgNode<?> node, final Cfg graph,
+      AssumptionMap<CfgEdge, RangeAssumption> assumptionMap) {
+    RangeAssumption joined = AssumptionUtil.join(graph.getInEdges(node), assumptionMap);
+    if (graph.getInEdges(node).size() > 1) {
+      RangeAssumption previous = joinInputs.get(node);
+      if (previous != null) {
+        joined = previous.widen(joined);
+      }
+      joinInputs.put(node, joined);
+    }
+    final RangeAssumption in = joined;
+
+    final ArrayList<RangeAssumption> result =
+        new ArrayList<RangeAssumption>(graph.getOutEdges(node).size());
+    node.accept(new CfgVisitor() {
+      @Override
+      public void visitConditionalNode(CfgConditionalNode<?> x) {
+        JExpression condition = x.getCondition();
+        Preconditions.checkNotNull(condition, "Null condition in %s", x);
+        for (CfgEdge e : graph.getOutEdges(x)) {
+          if (CfgConditionalNode.THEN.equals(e.getRole())) {
+            result.add(RangeDeducer.deduce(condition, true, in));
+          } else if (CfgConditionalNode.ELSE.equals(e.getRole())) {
+            result.add(RangeDeducer.deduce(condition, false, in));
+          } else {
+            result.add(in);
+          }
+        }
+      }
+
+      @Override
+      public void visitNode(CfgNode<?> node) {
+        for (int i = 0; i < graph.getOutEdges(node).size(); ++i) {
+          result.add(in);
+        }
+      }
+
+      @Override
+      public void visitReadWriteNode(CfgReadWriteNode node) {
+        processWrite(node, node.getTargetVariable(), null);
+      }
+
+      @Override
+      public void visitWriteNode(CfgWriteNode node) {
+        processWrite(node, node.getTargetVariable(), node.getValue());
+      }
+
+      private void processWrite(CfgNode<?> node, JVariable variable, JExpression value) {
+        RangeAssumption out = in;
+        if (in != null && variable instanceof JLocal
+            && variable.getType() == JPrimitiveType.LONG) {
+          Range range = value == null ? Range.UNBOUNDED : RangeEvaluator.evaluate(value, in);
+          out = new RangeAssumption(in);
+          out.set(variable, range);
+          if (out.isEmpty()) {
+            out = RangeAssumption.TOP;
+          }
+        }
+        for (int i = 0; i < graph.getOutEdges(node).size(); ++i) {
+          result.add(out);
+        }
+      }
+    });
+
+    AssumptionUtil.setAssumptions(graph.getOutEdges(node), result, assumptionMap);
+  }
+}
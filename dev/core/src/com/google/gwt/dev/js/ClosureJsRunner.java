@@ -14,10 +14,18 @@
 
 package com.google.gwt.dev.js;
 
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.dev.jjs.JsOutputOption;
 import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.js.ast.JsExprStmt;
+import com.google.gwt.dev.js.ast.JsExpression;
+import com.google.gwt.dev.js.ast.JsFunction;
 import com.google.gwt.dev.js.ast.JsProgram;
 import com.google.gwt.dev.js.ast.JsProgramFragment;
+import com.google.gwt.dev.js.ast.JsStatement;
+import com.google.gwt.dev.js.ast.JsVars;
+import com.google.gwt.dev.js.ast.JsVars.JsVar;
 import com.google.gwt.thirdparty.guava.common.base.Preconditions;
 import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.thirdparty.guava.common.collect.ImmutableList;
@@ -46,11 +54,18 @@ import com.google.gwt.thirdparty.javascript.rhino.Node;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -60,6 +75,76 @@ import java.util.zip.ZipInputStream;
  * A class that represents an single invocation of the Closure Compiler.
  */
 public class ClosureJsRunner {
+
+  /**
+   * Optimizes one fragment with its own Compiler instance.
+   */
+  private class FragmentJob implements Callable<String> {
+    private final int fragment;
+    private final JsOutputOption jsOutputOption;
+    private final Set<String> otherFragmentGlobals;
+    private final Node root;
+    private final InputId inputId;
+    private long elapsedMillis;
+
+    /**
+     * The errors Closure reported, or <code>null</code> if the fragment was
+     * optimized.
+     */
+    private JSError[] errors;
+
+    public FragmentJob(int fragment, InputId inputId, Node root, Set<String> otherFragmentGlobals,
+        JsOutputOption jsOutputOption) {
+      this.fragment = fragment;
+      this.inputId = inputId;
+      this.root = root;
+      this.otherFragmentGlobals = otherFragmentGlobals;
+      this.jsOutputOption = jsOutputOption;
+    }
+
+    /**
+     * Returns the optimized fragment, or <code>null</code> if Closure reported
+     * errors.
+     */
+    public String call() {
+      long start = System.currentTimeMillis();
+      CompilerOptions options = getClosureCompilerOptions(jsOutputOption);
+      restrictToFragment(options, jsOutputOption);
+
+      JSModule module = new JSModule("module" + fragment);
+      module.add(new CompilerInput(new ClosureJsAst(inputId, root), false));
+      if (fragment == 0) {
+        module.add(JSSourceFile.fromCode("hack", "window['gwtOnLoad'] = gwtOnLoad;\n"));
+      }
+
+      // Globals that other fragments define are externs here
+      List<JSSourceFile> externs = getClosureCompilerExterns();
+      StringBuilder fragmentExterns = new StringBuilder();
+      for (String var : otherFragmentGlobals) {
+        fragmentExterns.append("var ").append(var).append(";\n");
+      }
+      externs.add(JSSourceFile.fromCode("gwt_fragment_externs", fragmentExterns.toString()));
+
+      Compiler fragmentCompiler = new Compiler();
+      Result result =
+          fragmentCompiler.compileModules(externs, Collections.singletonList(module), options);
+      if (!result.success) {
+        errors = result.errors;
+        return null;
+      }
+      String js = fragmentCompiler.toSource(module);
+      elapsedMillis = System.currentTimeMillis() - start;
+      return js;
+    }
+  }
+
+  /**
+   * A Java system property that sets the number of threads used to optimize
+   * fragments independently of each other. When unset or zero, the whole
+   * program is optimized by a single Compiler instance.
+   */
+  public static final String FRAGMENT_THREADS_PROPERTY = "gwt.jjs.closureFragmentThreads";
+
   // The externs expected in externs.zip, in sorted order.
   private static final List<String> DEFAULT_EXTERNS_NAMES = ImmutableList.of(
       // JS externs
@@ -171,7 +256,14 @@ public class ClosureJsRunner {
   public ClosureJsRunner() {
   }
 
-  public void compile(JProgram jprogram, JsProgram program, String[] js, JsOutputOption jsOutputOption) {
+  public void compile(TreeLogger logger, JProgram jprogram, JsProgram program, String[] js,
+      JsOutputOption jsOutputOption) throws UnableToCompleteException {
+    int fragmentThreads = Integer.getInteger(FRAGMENT_THREADS_PROPERTY, 0);
+    if (fragmentThreads > 0 && program.getFragmentCount() > 1) {
+      compileFragments(logger, program, js, jsOutputOption, fragmentThreads);
+      return;
+    }
+
     CompilerOptions options = getClosureCompilerOptions(jsOutputOption);
     // Turn off Closure Compiler logging
     Logger.getLogger("com.google.gwt.thirdparty.javascript.jscomp").setLevel(Level.OFF);
@@ -212,6 +304,83 @@ public class ClosureJsRunner {
     }
   }
 
+  /**
+   * Optimizes each fragment with a separate Compiler on a bounded pool. The
+   * translation to Closure ASTs happens up front on the calling thread, since
+   * it reads the shared JsProgram.
+   */
+  private void compileFragments(TreeLogger logger, JsProgram program, String[] js,
+      JsOutputOption jsOutputOption, int threads) throws UnableToCompleteException {
+    // Closure logs are noisy and go nowhere useful
+    Logger.getLogger("com.google.gwt.thirdparty.javascript.jscomp").setLevel(Level.OFF);
+
+    int fragments = program.getFragmentCount();
+    InputId[] inputIds = new InputId[fragments];
+    Node[] roots = new Node[fragments];
+    List<Set<String>> definedGlobals = new ArrayList<Set<String>>(fragments);
+    for (int i = 0; i < fragments; i++) {
+      String source = "module" + i;
+      inputIds[i] = new InputId(source);
+      ClosureJsAstTranslator translator = new ClosureJsAstTranslator(validate, program);
+      roots[i] = translator.translate(program.getFragment(i), inputIds[i], source);
+      definedGlobals.add(getDefinedGlobals(program.getFragment(i)));
+      globalVars.addAll(translator.getGlobalVariableNames());
+      externalProps.addAll(translator.getExternalPropertyReferences());
+      externalVars.addAll(translator.getExternalVariableReferences());
+    }
+
+    List<FragmentJob> jobs = new ArrayList<FragmentJob>(fragments);
+    for (int i = 0; i < fragments; i++) {
+      Set<String> otherGlobals = Sets.newTreeSet();
+      for (int j = 0; j < fragments; j++) {
+        if (j != i) {
+          otherGlobals.addAll(definedGlobals.get(j));
+        }
+      }
+      otherGlobals.removeAll(definedGlobals.get(i));
+      jobs.add(new FragmentJob(i, inputIds[i], roots[i], otherGlobals, jsOutputOption));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, fragments));
+    try {
+      List<Future<String>> results = executor.invokeAll(jobs);
+      for (int i = 0; i < fragments; i++) {
+        js[i] = results.get(i).get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while optimizing fragments", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    boolean failed = false;
+    for (FragmentJob job : jobs) {
+      if (job.errors != null) {
+        TreeLogger branch = logger.branch(TreeLogger.ERROR, "Closure Compiler failed to optimize "
+            + "fragment " + job.fragment);
+        for (JSError error : job.errors) {
+          branch.log(TreeLogger.ERROR, error.toString());
+        }
+        failed = true;
+      }
+    }
+    if (failed) {
+      throw new UnableToCompleteException();
+    }
+
+    if (logger.isLoggable(TreeLogger.DEBUG)) {
+      TreeLogger branch = logger.branch(TreeLogger.DEBUG, "Optimized " + fragments
+          + " fragments on " + Math.min(threads, fragments) + " threads");
+      for (FragmentJob job : jobs) {
+        branch.log(TreeLogger.DEBUG, "Fragment " + job.fragment + ": " + job.elapsedMillis
+            + "ms, " + js[job.fragment].length() + " chars");
+      }
+    }
+  }
+
   private void computeFragmentMap(JProgram jprogram, JsProgram jsProgram) {
     int fragments = jsProgram.getFragmentCount();
     List<Integer> initSeq = jprogram.getSplitPointInitialSequence();
@@ -418,6 +587,54 @@ public class ClosureJsRunner {
     return options;
   }
 
+  /**
+   * Turns off the optimizations that need to see every use of a property or a
+   * global, or introduce new global names, none of which is safe when
+   * fragments are optimized separately. A global may be used by a fragment
+   * that this compile cannot see, so globals are never removed or inlined.
+   */
+  private void restrictToFragment(CompilerOptions options, JsOutputOption jsOutputOption) {
+    if (jsOutputOption == JsOutputOption.OBFUSCATED) {
+      options.setRenamingPolicy(VariableRenamingPolicy.LOCAL, PropertyRenamingPolicy.OFF);
+    }
+    options.setRemoveUnusedVariable(Reach.LOCAL_ONLY);
+    options.setInlineVariables(Reach.LOCAL_ONLY);
+    options.setInlineFunctions(Reach.LOCAL_ONLY);
+    options.inlineConstantVars = false;
+    options.extractPrototypeMemberDeclarations = false;
+    options.removeUnusedPrototypeProperties = false;
+    options.smartNameRemoval = false;
+    options.inlineGetters = false;
+    options.optimizeParameters = false;
+    options.optimizeReturns = false;
+    options.optimizeCalls = false;
+    options.collapseProperties = false;
+    options.crossModuleCodeMotion = false;
+    options.crossModuleMethodMotion = false;
+    options.devirtualizePrototypeMethods = false;
+  }
+
+  /**
+   * Returns the global variables and functions declared at the top level of a
+   * fragment.
+   */
+  private Set<String> getDefinedGlobals(JsProgramFragment fragment) {
+    Set<String> defined = Sets.newHashSet();
+    for (JsStatement stmt : fragment.getGlobalBlock().getStatements()) {
+      if (stmt instanceof JsVars) {
+        for (JsVar var : (JsVars) stmt) {
+          defined.add(var.getName().getShortIdent());
+        }
+      } else if (stmt instanceof JsExprStmt) {
+        JsExpression expr = ((JsExprStmt) stmt).getExpression();
+        if (expr instanceof JsFunction && ((JsFunction) expr).getName() != null) {
+          defined.add(((JsFunction) expr).getName().getShortIdent());
+        }
+      }
+    }
+    return defined;
+  }
+
   private int mapFragmentIndexToModuleIndex(int index) {
     assert closureModuleSequenceMap.length > index;
     return closureModuleSequenceMap[index];
@@ -15,20 +15,39 @@
  */
 package com.google.gwt.dev.js;
 
+import com.google.gwt.dev.js.ast.JsBinaryOperation;
 import com.google.gwt.dev.js.ast.JsBlock;
+import com.google.gwt.dev.js.ast.JsCatch;
 import com.google.gwt.dev.js.ast.JsContext;
+import com.google.gwt.dev.js.ast.JsExprStmt;
+import com.google.gwt.dev.js.ast.JsExpression;
+import com.google.gwt.dev.js.ast.JsForIn;
 import com.google.gwt.dev.js.ast.JsFunction;
 import com.google.gwt.dev.js.ast.JsInvocation;
 import com.google.gwt.dev.js.ast.JsModVisitor;
 import com.google.gwt.dev.js.ast.JsName;
 import com.google.gwt.dev.js.ast.JsNameOf;
 import com.google.gwt.dev.js.ast.JsNameRef;
+import com.google.gwt.dev.js.ast.JsParameter;
+import com.google.gwt.dev.js.ast.JsPostfixOperation;
+import com.google.gwt.dev.js.ast.JsPrefixOperation;
 import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.js.ast.JsScope;
+import com.google.gwt.dev.js.ast.JsStatement;
+import com.google.gwt.dev.js.ast.JsUnaryOperation;
+import com.google.gwt.dev.js.ast.JsVars.JsVar;
 import com.google.gwt.dev.js.ast.JsVisitor;
 import com.google.gwt.dev.util.collect.IdentityHashSet;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
@@ -37,9 +56,150 @@ import java.util.Stack;
  * Replace references to functions which have post-obfuscation duplicate bodies
  * by reference to a canonical one. Intended to run only when stack trace
  * stripping is enabled.
+ *
+ * <p>
+ * {@link #execParameterized(JsProgram)} additionally merges functions whose
+ * bodies differ only in which top-level functions they refer to: the canonical
+ * function takes those references as extra trailing parameters, and each call
+ * site passes the ones its original callee used.
  */
 public class JsDuplicateFunctionRemover {
 
+  /**
+   * Records, across the whole program, how each name is referenced.
+   */
+  private class CallSiteRecorder extends JsVisitor {
+
+    /**
+     * Names that are assigned to anywhere, and so can't be passed by value.
+     */
+    private final Set<JsName> assigned = new IdentityHashSet<JsName>();
+
+    /**
+     * For each invoked name, the innermost scope of each call site.
+     */
+    private final Map<JsName, List<JsScope>> callerScopes =
+        new IdentityHashMap<JsName, List<JsScope>>();
+
+    /**
+     * The argument count of every call to a name, or -1 if calls disagree.
+     */
+    private final Map<JsName, Integer> argCounts = new IdentityHashMap<JsName, Integer>();
+
+    private final Set<JsNameRef> invocationQualifiers = new IdentityHashSet<JsNameRef>();
+
+    /**
+     * Names referenced other than as the direct target of a call.
+     */
+    private final Set<JsName> otherRefs = new IdentityHashSet<JsName>();
+
+    private final Stack<JsScope> scopes = new Stack<JsScope>();
+
+    public CallSiteRecorder() {
+      scopes.push(program.getScope());
+    }
+
+    @Override
+    public void endVisit(JsBinaryOperation x, JsContext ctx) {
+      if (x.getOperator().isAssignment()) {
+        recordAssignment(x.getArg1());
+      }
+    }
+
+    @Override
+    public void endVisit(JsCatch x, JsContext ctx) {
+      scopes.pop();
+    }
+
+    @Override
+    public void endVisit(JsForIn x, JsContext ctx) {
+      if (x.getIterVarName() != null) {
+        assigned.add(x.getIterVarName());
+      }
+      recordAssignment(x.getIterExpr());
+    }
+
+    @Override
+    public void endVisit(JsFunction x, JsContext ctx) {
+      scopes.pop();
+    }
+
+    @Override
+    public void endVisit(JsNameOf x, JsContext ctx) {
+      otherRefs.add(x.getName());
+    }
+
+    @Override
+    public void endVisit(JsNameRef x, JsContext ctx) {
+      if (x.getName() != null && !invocationQualifiers.contains(x)) {
+        otherRefs.add(x.getName());
+      }
+    }
+
+    @Override
+    public void endVisit(JsPostfixOperation x, JsContext ctx) {
+      recordModification(x);
+    }
+
+    @Override
+    public void endVisit(JsPrefixOperation x, JsContext ctx) {
+      recordModification(x);
+    }
+
+    @Override
+    public void endVisit(JsVar x, JsContext ctx) {
+      // A var redeclaring a function name may reassign it
+      assigned.add(x.getName());
+    }
+
+    @Override
+    public boolean visit(JsCatch x, JsContext ctx) {
+      scopes.push(x.getScope());
+      return true;
+    }
+
+    @Override
+    public boolean visit(JsFunction x, JsContext ctx) {
+      scopes.push(x.getScope());
+      return true;
+    }
+
+    @Override
+    public boolean visit(JsInvocation x, JsContext ctx) {
+      if (!(x.getQualifier() instanceof JsNameRef)) {
+        return true;
+      }
+      JsNameRef ref = (JsNameRef) x.getQualifier();
+      JsName name = ref.getName();
+      if (ref.getQualifier() != null || name == null) {
+        return true;
+      }
+      invocationQualifiers.add(ref);
+      Integer count = argCounts.get(name);
+      int argCount = x.getArguments().size();
+      argCounts.put(name, (count == null || count == argCount) ? argCount : -1);
+      List<JsScope> callers = callerScopes.get(name);
+      if (callers == null) {
+        callers = new ArrayList<JsScope>();
+        callerScopes.put(name, callers);
+      }
+      callers.add(scopes.peek());
+      return true;
+    }
+
+    private void recordAssignment(JsExpression lhs) {
+      if (lhs instanceof JsNameRef && ((JsNameRef) lhs).getName() != null) {
+        assigned.add(((JsNameRef) lhs).getName());
+      }
+    }
+
+    private void recordModification(JsUnaryOperation x) {
+      if (x.getOperator().isModifying()) {
+        recordAssignment(x.getArg());
+      }
+    }
+  }
+
   private class DuplicateFunctionBodyRecorder extends JsVisitor {
 
     private final Set<JsName> dontReplace = new IdentityHashSet<JsName>();
@@ -111,6 +271,117 @@ public class JsDuplicateFunctionRemover {
     }
   }
 
+  /**
+   * Collects the top-level functions a function body refers to, in order of
+   * first reference, along with every identifier used inside it.
+   */
+  private class FreeNameRecorder extends JsVisitor {
+
+    /**
+     * Set when the function can't take extra parameters safely.
+     */
+    private boolean disqualified;
+
+    private final Set<JsName> freeNames = new LinkedHashSet<JsName>();
+
+    private final JsFunction function;
+
+    private final int fragment;
+
+    private final Set<String> usedIdents = new HashSet<String>();
+
+    public FreeNameRecorder(JsFunction function, int fragment) {
+      this.function = function;
+      this.fragment = fragment;
+    }
+
+    @Override
+    public void endVisit(JsFunction x, JsContext ctx) {
+      if (x.getName() != null) {
+        usedIdents.add(x.getName().getShortIdent());
+      }
+      for (Iterator<JsName> it = x.getScope().getAllNames(); it.hasNext();) {
+        JsName name = it.next();
+        // New parameters must not collide with either ident in the scope
+        usedIdents.add(name.getIdent());
+        usedIdents.add(name.getShortIdent());
+      }
+    }
+
+    @Override
+    public void endVisit(JsNameOf x, JsContext ctx) {
+      disqualified = true;
+    }
+
+    @Override
+    public void endVisit(JsNameRef x, JsContext ctx) {
+      usedIdents.add(x.getShortIdent());
+      if (x.getQualifier() != null) {
+        return;
+      }
+      JsName name = x.getName();
+      if ("arguments".equals(x.getIdent())) {
+        // Adding parameters would change what arguments.length reports; the
+        // symbol resolver binds the ref to the root scope, so check the ident
+        disqualified = true;
+      } else if (name == null) {
+        return;
+      } else if (name == function.getName()) {
+        disqualified = true;
+      } else if (isPassable(name, fragment)) {
+        freeNames.add(name);
+      }
+    }
+
+    @Override
+    public void endVisit(JsParameter x, JsContext ctx) {
+      usedIdents.add(x.getName().getShortIdent());
+    }
+
+    @Override
+    public void endVisit(JsVar x, JsContext ctx) {
+      usedIdents.add(x.getName().getShortIdent());
+    }
+  }
+
+  /**
+   * A top-level function that may be merged with others of the same shape.
+   */
+  private static class MergeCandidate {
+    private final List<JsName> freeNames;
+    private final JsFunction function;
+    private final int sourceLength;
+    private final Set<String> usedIdents;
+
+    public MergeCandidate(JsFunction function, List<JsName> freeNames,
+        Set<String> usedIdents, int sourceLength) {
+      this.function = function;
+      this.freeNames = freeNames;
+      this.usedIdents = usedIdents;
+      this.sourceLength = sourceLength;
+    }
+  }
+
+  /**
+   * Replaces references to a canonical function's free names by its new
+   * parameters.
+   */
+  private static class ParameterizeFreeNames extends JsModVisitor {
+    private final Map<JsName, JsName> paramForName;
+
+    public ParameterizeFreeNames(Map<JsName, JsName> paramForName) {
+      this.paramForName = paramForName;
+    }
+
+    @Override
+    public void endVisit(JsNameRef x, JsContext ctx) {
+      JsName param = paramForName.get(x.getName());
+      if (param != null && x.getQualifier() == null) {
+        ctx.replaceMe(param.makeRef(x.getSourceInfo()));
+      }
+    }
+  }
+
   private class ReplaceDuplicateInvocationNameRefs extends JsModVisitor {
 
     private final Set<JsName> blacklist;
@@ -134,6 +405,50 @@ public class JsDuplicateFunctionRemover {
     }
   }
 
+  /**
+   * Redirects calls of merged functions to their canonical function, passing
+   * the names the original callee referred to.
+   */
+  private static class RewriteMergedInvocations extends JsModVisitor {
+    private final Map<JsName, MergeCandidate> canonicalFor;
+    private final Map<JsName, MergeCandidate> merged;
+
+    public RewriteMergedInvocations(Map<JsName, MergeCandidate> merged,
+        Map<JsName, MergeCandidate> canonicalFor) {
+      this.merged = merged;
+      this.canonicalFor = canonicalFor;
+    }
+
+    @Override
+    public void endVisit(JsInvocation x, JsContext ctx) {
+      if (!(x.getQualifier() instanceof JsNameRef)) {
+        return;
+      }
+      JsNameRef ref = (JsNameRef) x.getQualifier();
+      MergeCandidate callee = merged.get(ref.getName());
+      if (callee == null || ref.getQualifier() != null) {
+        return;
+      }
+      JsInvocation call = new JsInvocation(x.getSourceInfo());
+      JsName canonical = canonicalFor.get(ref.getName()).function.getName();
+      call.setQualifier(canonical.makeRef(ref.getSourceInfo()));
+      call.getArguments().addAll(x.getArguments());
+      for (JsName name : callee.freeNames) {
+        call.getArguments().add(name.makeRef(x.getSourceInfo()));
+      }
+      ctx.replaceMe(call);
+    }
+  }
+
+  /**
+   * When set, the compiler also runs {@link #execParameterized(JsProgram)}.
+   */
+  public static final boolean PARAMETERIZE =
+      Boolean.getBoolean("gwt.jjs.parameterizeDuplicateFunctions");
+
+  private static final String IDENT_CHARS =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
   // Needed for OptimizerTestBase
   public static boolean exec(JsProgram program) {
     return new JsDuplicateFunctionRemover(program).execImpl(program.getFragmentBlock(0));
@@ -143,12 +458,84 @@ public class JsDuplicateFunctionRemover {
     return new JsDuplicateFunctionRemover(program).execImpl(fragment);
   }
 
+  /**
+   * Merges top-level functions that differ only in the top-level functions they
+   * refer to, when doing so shrinks the program. Functions are only merged
+   * within a fragment. Like {@link #exec(JsProgram, JsBlock)}, this leaves the
+   * merged functions in place for {@link JsUnusedFunctionRemover}.
+   */
+  public static boolean execParameterized(JsProgram program) {
+    return new JsDuplicateFunctionRemover(program).execParameterizedImpl();
+  }
+
+  private static String makeIdent(int id) {
+    StringBuilder ident = new StringBuilder();
+    do {
+      ident.append(IDENT_CHARS.charAt(id % IDENT_CHARS.length()));
+      id /= IDENT_CHARS.length();
+    } while (id != 0);
+    return ident.toString();
+  }
+
+  private CallSiteRecorder callSites;
+
+  /**
+   * The fragment declaring each top-level function.
+   */
+  private final Map<JsName, Integer> declaringFragment = new IdentityHashMap<JsName, Integer>();
+
   private final JsProgram program;
 
+  /**
+   * Memoizes the short idents declared by each scope and its enclosing scopes,
+   * short of the program scope.
+   */
+  private final Map<JsScope, Set<String>> shadowingIdents =
+      new IdentityHashMap<JsScope, Set<String>>();
+
   public JsDuplicateFunctionRemover(JsProgram program) {
     this.program = program;
   }
 
+  /**
+   * Checks that every call site of a candidate can see its free names, rather
+   * than locals that happen to share their short idents.
+   */
+  private boolean callersSeeFreeNames(MergeCandidate candidate) {
+    for (JsScope scope : callSites.callerScopes.get(candidate.function.getName())) {
+      Set<String> shadowed = getShadowingIdents(scope);
+      for (JsName name : candidate.freeNames) {
+        if (shadowed.contains(name.getShortIdent())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops groups that refer to functions of any merged group, since merging
+   * changes those functions' signatures, until no such group remains.
+   */
+  private void dropInterdependentGroups(List<List<MergeCandidate>> groups) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      Set<JsName> mergedNames = new IdentityHashSet<JsName>();
+      for (List<MergeCandidate> group : groups) {
+        for (MergeCandidate candidate : group) {
+          mergedNames.add(candidate.function.getName());
+        }
+      }
+      for (Iterator<List<MergeCandidate>> it = groups.iterator(); it.hasNext();) {
+        if (refersToAny(it.next(), mergedNames)) {
+          it.remove();
+          changed = true;
+        }
+      }
+    }
+  }
+
   private boolean execImpl(JsBlock fragment) {
     DuplicateFunctionBodyRecorder dfbr = new DuplicateFunctionBodyRecorder();
     dfbr.accept(fragment);
@@ -157,4 +544,210 @@ public class JsDuplicateFunctionRemover {
     rdup.accept(fragment);
     return rdup.didChange();
   }
+
+  private boolean execParameterizedImpl() {
+    callSites = new CallSiteRecorder();
+    for (int i = 0; i < program.getFragmentCount(); i++) {
+      callSites.accept(program.getFragmentBlock(i));
+      for (JsStatement stmt : program.getFragmentBlock(i).getStatements()) {
+        JsFunction function = getTopLevelFunction(stmt);
+        if (function != null) {
+          declaringFragment.put(function.getName(), i);
+        }
+      }
+    }
+
+    List<List<MergeCandidate>> groups = new ArrayList<List<MergeCandidate>>();
+    for (int i = 0; i < program.getFragmentCount(); i++) {
+      groups.addAll(groupCandidates(i));
+    }
+    dropInterdependentGroups(groups);
+
+    Map<JsName, MergeCandidate> merged = new IdentityHashMap<JsName, MergeCandidate>();
+    Map<JsName, MergeCandidate> canonicalFor = new IdentityHashMap<JsName, MergeCandidate>();
+    // Idents passed at call sites, which may be inside a canonical function
+    Set<String> argIdents = new HashSet<String>();
+    for (Iterator<List<MergeCandidate>> it = groups.iterator(); it.hasNext();) {
+      List<MergeCandidate> group = it.next();
+      if (!isProfitable(group)) {
+        it.remove();
+        continue;
+      }
+      for (MergeCandidate candidate : group) {
+        merged.put(candidate.function.getName(), candidate);
+        canonicalFor.put(candidate.function.getName(), group.get(0));
+        for (JsName name : candidate.freeNames) {
+          argIdents.add(name.getShortIdent());
+        }
+      }
+    }
+    for (List<MergeCandidate> group : groups) {
+      parameterize(group.get(0), argIdents);
+    }
+    if (merged.isEmpty()) {
+      return false;
+    }
+    RewriteMergedInvocations rewriter = new RewriteMergedInvocations(merged, canonicalFor);
+    for (int i = 0; i < program.getFragmentCount(); i++) {
+      rewriter.accept(program.getFragmentBlock(i));
+    }
+    return true;
+  }
+
+  private Set<String> getShadowingIdents(JsScope scope) {
+    if (scope == program.getScope()) {
+      return Collections.emptySet();
+    }
+    Set<String> idents = shadowingIdents.get(scope);
+    if (idents == null) {
+      idents = new HashSet<String>(getShadowingIdents(scope.getParent()));
+      for (Iterator<JsName> it = scope.getAllNames(); it.hasNext();) {
+        idents.add(it.next().getShortIdent());
+      }
+      shadowingIdents.put(scope, idents);
+    }
+    return idents;
+  }
+
+  private JsFunction getTopLevelFunction(JsStatement stmt) {
+    if (stmt instanceof JsExprStmt
+        && ((JsExprStmt) stmt).getExpression() instanceof JsFunction) {
+      JsFunction function = (JsFunction) ((JsExprStmt) stmt).getExpression();
+      if (function.getName() != null
+          && function.getName().getEnclosing() == program.getScope()) {
+        return function;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Groups the mergeable top-level functions of a fragment by their source
+   * text with free names replaced by placeholders.
+   */
+  private List<List<MergeCandidate>> groupCandidates(int fragment) {
+    Map<String, List<MergeCandidate>> byShape = new LinkedHashMap<String, List<MergeCandidate>>();
+    for (JsStatement stmt : program.getFragmentBlock(fragment).getStatements()) {
+      JsFunction function = getTopLevelFunction(stmt);
+      if (function == null || !isMergeable(function)) {
+        continue;
+      }
+      FreeNameRecorder recorder = new FreeNameRecorder(function, fragment);
+      recorder.accept(function);
+      if (recorder.disqualified || recorder.freeNames.isEmpty()) {
+        // Exact duplicates are left to exec()
+        continue;
+      }
+      List<JsName> freeNames = new ArrayList<JsName>(recorder.freeNames);
+
+      // Print the function with placeholder idents for its free names
+      List<String> shortIdents = new ArrayList<String>();
+      for (int i = 0; i < freeNames.size(); i++) {
+        shortIdents.add(freeNames.get(i).getShortIdent());
+        freeNames.get(i).setShortIdent("@" + i);
+      }
+      String source = function.toSource();
+      for (int i = 0; i < freeNames.size(); i++) {
+        freeNames.get(i).setShortIdent(shortIdents.get(i));
+      }
+
+      MergeCandidate candidate = new MergeCandidate(function, freeNames,
+          recorder.usedIdents, source.length());
+      if (!callersSeeFreeNames(candidate)) {
+        continue;
+      }
+      String shape = source.substring(source.indexOf("("));
+      List<MergeCandidate> group = byShape.get(shape);
+      if (group == null) {
+        group = new ArrayList<MergeCandidate>();
+        byShape.put(shape, group);
+      }
+      group.add(candidate);
+    }
+
+    List<List<MergeCandidate>> groups = new ArrayList<List<MergeCandidate>>();
+    for (List<MergeCandidate> group : byShape.values()) {
+      if (group.size() > 1) {
+        groups.add(group);
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * A function can be merged if it is only ever called directly, always with
+   * as many arguments as it declares parameters, and is never reassigned.
+   */
+  private boolean isMergeable(JsFunction function) {
+    JsName name = function.getName();
+    Integer argCount = callSites.argCounts.get(name);
+    return argCount != null && argCount == function.getParameters().size()
+        && !callSites.otherRefs.contains(name) && !callSites.assigned.contains(name)
+        && !function.getExecuteOnce() && !function.isArtificiallyRescued();
+  }
+
+  /**
+   * Checks whether a name can be passed as an argument instead of being
+   * referenced from a function body: it must be a top-level function that is
+   * never reassigned and is loaded no later than the calling fragment.
+   */
+  private boolean isPassable(JsName name, int fragment) {
+    Integer declared = declaringFragment.get(name);
+    return declared != null && (declared == 0 || declared == fragment)
+        && !callSites.assigned.contains(name);
+  }
+
+  /**
+   * Estimates whether merging a group saves more text than the extra
+   * parameters and arguments cost.
+   */
+  private boolean isProfitable(List<MergeCandidate> group) {
+    int freeNameCount = group.get(0).freeNames.size();
+    // Each new parameter costs a separator and a short ident
+    int cost = freeNameCount * 2;
+    int savings = 0;
+    for (MergeCandidate candidate : group) {
+      if (candidate != group.get(0)) {
+        savings += candidate.sourceLength;
+      }
+      int argLength = 0;
+      for (JsName name : candidate.freeNames) {
+        argLength += name.getShortIdent().length() + 1;
+      }
+      cost += argLength * callSites.callerScopes.get(candidate.function.getName()).size();
+    }
+    return savings > cost;
+  }
+
+  /**
+   * Gives a canonical function one trailing parameter per free name and makes
+   * its body refer to those parameters instead.
+   */
+  private void parameterize(MergeCandidate canonical, Set<String> argIdents) {
+    JsFunction function = canonical.function;
+    Map<JsName, JsName> paramForName = new IdentityHashMap<JsName, JsName>();
+    int nextId = 0;
+    for (JsName freeName : canonical.freeNames) {
+      String ident;
+      do {
+        ident = makeIdent(nextId++);
+      } while (canonical.usedIdents.contains(ident) || argIdents.contains(ident)
+          || JsKeywords.isKeyword(ident));
+      JsName param = function.getScope().declareName(ident, ident);
+      function.getParameters().add(new JsParameter(function.getSourceInfo(), param));
+      paramForName.put(freeName, param);
+    }
+    new ParameterizeFreeNames(paramForName).accept(function.getBody());
+  }
+
+  private boolean refersToAny(List<MergeCandidate> group, Set<JsName> names) {
+    for (MergeCandidate candidate : group) {
+      for (JsName name : candidate.freeNames) {
+        if (names.contains(name)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
 }
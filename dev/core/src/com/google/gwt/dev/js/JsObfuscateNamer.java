@@ -15,11 +15,26 @@
  */
 package com.google.gwt.dev.js;
 
+import com.google.gwt.dev.js.ast.JsContext;
+import com.google.gwt.dev.js.ast.JsForIn;
+import com.google.gwt.dev.js.ast.JsFunction;
+import com.google.gwt.dev.js.ast.JsLabel;
 import com.google.gwt.dev.js.ast.JsName;
+import com.google.gwt.dev.js.ast.JsNameOf;
+import com.google.gwt.dev.js.ast.JsNameRef;
+import com.google.gwt.dev.js.ast.JsParameter;
 import com.google.gwt.dev.js.ast.JsProgram;
 import com.google.gwt.dev.js.ast.JsScope;
+import com.google.gwt.dev.js.ast.JsVars;
+import com.google.gwt.dev.js.ast.JsVisitor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A namer that uses short, unrecognizable idents to minimize generated code
@@ -27,6 +42,83 @@ import java.util.Iterator;
  */
 public class JsObfuscateNamer extends JsNamer {
 
+  /**
+   * Counts, per fragment, how many times each name appears in the program
+   * text.
+   */
+  private static class ReferenceCounter extends JsVisitor {
+    private int currentFragment;
+    private final int fragmentCount;
+    private final Map<JsName, int[]> counts = new IdentityHashMap<JsName, int[]>();
+
+    public ReferenceCounter(int fragmentCount) {
+      this.fragmentCount = fragmentCount;
+    }
+
+    @Override
+    public void endVisit(JsForIn x, JsContext ctx) {
+      count(x.getIterVarName());
+    }
+
+    @Override
+    public void endVisit(JsFunction x, JsContext ctx) {
+      count(x.getName());
+    }
+
+    @Override
+    public void endVisit(JsLabel x, JsContext ctx) {
+      count(x.getName());
+    }
+
+    @Override
+    public void endVisit(JsNameOf x, JsContext ctx) {
+      count(x.getName());
+    }
+
+    @Override
+    public void endVisit(JsNameRef x, JsContext ctx) {
+      count(x.getName());
+    }
+
+    @Override
+    public void endVisit(JsParameter x, JsContext ctx) {
+      count(x.getName());
+    }
+
+    @Override
+    public void endVisit(JsVars.JsVar x, JsContext ctx) {
+      count(x.getName());
+    }
+
+    public void exec(JsProgram program) {
+      for (currentFragment = 0; currentFragment < fragmentCount; currentFragment++) {
+        accept(program.getFragmentBlock(currentFragment));
+      }
+    }
+
+    private void count(JsName name) {
+      if (name == null) {
+        return;
+      }
+      int[] perFragment = counts.get(name);
+      if (perFragment == null) {
+        // Last slot holds the total across all fragments
+        perFragment = new int[fragmentCount + 1];
+        counts.put(name, perFragment);
+      }
+      perFragment[currentFragment]++;
+      perFragment[fragmentCount]++;
+    }
+  }
+
+  /**
+   * When set, the compiler names obfuscated output with
+   * {@link #execFrequencyRanked(JsProgram)} instead of
+   * {@link #exec(JsProgram)}.
+   */
+  public static final boolean RANK_BY_FREQUENCY =
+      Boolean.getBoolean("gwt.jjs.rankObfuscatedNames");
+
   /**
    * A lookup table of base-64 chars we use to encode idents.
    */
@@ -41,6 +133,25 @@ public class JsObfuscateNamer extends JsNamer {
     new JsObfuscateNamer(program).execImpl();
   }
 
+  /**
+   * Like {@link #exec(JsProgram)}, but within each scope the names referenced
+   * most often across all fragments receive the shortest idents. Ties keep
+   * the scope's declaration order, so the assignment is deterministic for a
+   * given program.
+   *
+   * @return the change in identifier characters for each fragment, compared
+   *         to the default assignment; negative values are savings
+   */
+  public static int[] execFrequencyRanked(JsProgram program) {
+    JsObfuscateNamer namer = new JsObfuscateNamer(program);
+    ReferenceCounter counter = new ReferenceCounter(program.getFragmentCount());
+    counter.exec(program);
+    namer.referenceCounts = counter.counts;
+    namer.sizeDeltas = new int[program.getFragmentCount()];
+    namer.execImpl();
+    return namer.sizeDeltas;
+  }
+
   /**
    * Communicates to a parent scope the maximum id used by any of its children.
    */
@@ -51,6 +162,17 @@ public class JsObfuscateNamer extends JsNamer {
    */
   private final char[] sIdentBuf = new char[6];
 
+  /**
+   * Per-fragment reference counts, or <code>null</code> to allocate idents in
+   * scope order.
+   */
+  private Map<JsName, int[]> referenceCounts;
+
+  /**
+   * Accumulates the per-fragment size effect of frequency ranking.
+   */
+  private int[] sizeDeltas;
+
   public JsObfuscateNamer(JsProgram program) {
     super(program);
   }
@@ -77,6 +199,7 @@ public class JsObfuscateNamer extends JsNamer {
 
     // Visit my idents.
     int curId = maxChildId;
+    List<JsName> toRename = new ArrayList<JsName>();
     for (Iterator<JsName> it = scope.getAllNames(); it.hasNext();) {
       JsName name = it.next();
       if (!referenced.contains(name)) {
@@ -89,7 +212,15 @@ public class JsObfuscateNamer extends JsNamer {
         name.setShortIdent(name.getIdent());
         continue;
       }
+      toRename.add(name);
+    }
 
+    /*
+     * The set of idents handed out depends only on how many names there are,
+     * so ranking just decides which name gets which ident.
+     */
+    List<String> idents = new ArrayList<String>(toRename.size());
+    for (int i = 0, j = toRename.size(); i < j; i++) {
       String newIdent;
       while (true) {
         // Get the next possible obfuscated name
@@ -98,12 +229,55 @@ public class JsObfuscateNamer extends JsNamer {
           break;
         }
       }
-      name.setShortIdent(newIdent);
+      idents.add(newIdent);
+    }
+
+    if (referenceCounts != null) {
+      List<JsName> ranked = new ArrayList<JsName>(toRename);
+      // Collections.sort() is stable, preserving declaration order for ties
+      Collections.sort(ranked, new Comparator<JsName>() {
+        public int compare(JsName a, JsName b) {
+          return totalReferences(b) - totalReferences(a);
+        }
+      });
+      for (int i = 0, j = ranked.size(); i < j; i++) {
+        recordSizeDelta(idents.get(i), toRename.get(i), ranked.get(i));
+      }
+      toRename = ranked;
+    }
+
+    for (int i = 0, j = toRename.size(); i < j; i++) {
+      toRename.get(i).setShortIdent(idents.get(i));
     }
 
     maxChildId = Math.max(mySiblingsMaxId, curId);
   }
 
+  /**
+   * Credits an ident's length to the name that now holds it and debits it from
+   * the name that would have held it by default.
+   */
+  private void recordSizeDelta(String ident, JsName defaultHolder, JsName rankedHolder) {
+    if (defaultHolder == rankedHolder) {
+      return;
+    }
+    int[] defaultCounts = referenceCounts.get(defaultHolder);
+    int[] rankedCounts = referenceCounts.get(rankedHolder);
+    for (int i = 0; i < sizeDeltas.length; i++) {
+      if (rankedCounts != null) {
+        sizeDeltas[i] += rankedCounts[i] * ident.length();
+      }
+      if (defaultCounts != null) {
+        sizeDeltas[i] -= defaultCounts[i] * ident.length();
+      }
+    }
+  }
+
+  private int totalReferences(JsName name) {
+    int[] counts = referenceCounts.get(name);
+    return counts == null ? 0 : counts[counts.length - 1];
+  }
+
   private boolean isLegal(JsScope scope, String newIdent) {
     if (JsKeywords.isKeyword(newIdent)) {
       return false;
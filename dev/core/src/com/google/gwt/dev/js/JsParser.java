@@ -75,8 +75,12 @@ import com.google.gwt.dev.js.rhino.TokenStream;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -84,11 +88,108 @@ import java.util.Stack;
  */
 public class JsParser {
 
+  /**
+   * Remembers the Rhino parse trees of recently parsed sources, keyed by
+   * source text. Mapping never modifies a parse tree, so each hit still yields
+   * a fresh JS AST that the caller may modify. Sources that fail to parse are
+   * not cached. Thread-safe.
+   * <p>
+   * The cache is bounded by the total length of the cached sources, which
+   * both the keys and the parse trees grow with: the least recently used
+   * trees are dropped once that total exceeds the limit.
+   */
+  public static class ParseCache {
+    private int hits;
+    private final int maxChars;
+    private int misses;
+    private long totalChars;
+    private final Map<String, ParseTree> trees =
+        new LinkedHashMap<String, ParseTree>(16, 0.75f, true);
+
+    /**
+     * @param maxChars the largest total length of the sources whose parse
+     *          trees are retained
+     */
+    public ParseCache(int maxChars) {
+      this.maxChars = maxChars;
+    }
+
+    public synchronized int getHitCount() {
+      return hits;
+    }
+
+    public synchronized int getMissCount() {
+      return misses;
+    }
+
+    /**
+     * Returns the total length of the cached sources.
+     */
+    public synchronized long getSize() {
+      return totalChars;
+    }
+
+    private synchronized ParseTree get(String source) {
+      ParseTree tree = trees.get(source);
+      if (tree == null) {
+        ++misses;
+      } else {
+        ++hits;
+      }
+      return tree;
+    }
+
+    private synchronized void put(String source, ParseTree tree) {
+      if (source.length() > maxChars) {
+        return;
+      }
+      if (trees.put(source, tree) == null) {
+        totalChars += source.length();
+      }
+      // Least recently used first; the new entry is last, and fits
+      for (Iterator<String> it = trees.keySet().iterator(); totalChars > maxChars;) {
+        totalChars -= it.next().length();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * A Rhino parse tree along with the line number it was parsed at.
+   */
+  private static class ParseTree {
+    private final int startLine;
+    private final Node topNode;
+
+    public ParseTree(Node topNode, int startLine) {
+      this.topNode = topNode;
+      this.startLine = startLine;
+    }
+  }
+
   public static List<JsStatement> parse(SourceInfo rootSourceInfo,
       JsScope scope, Reader r) throws IOException, JsParserException {
     return new JsParser().parseImpl(rootSourceInfo, scope, r);
   }
 
+  /**
+   * Parses <code>source</code>, reusing the parse tree in <code>cache</code>
+   * if the same text was parsed before, possibly at a different line.
+   */
+  public static List<JsStatement> parse(SourceInfo rootSourceInfo,
+      JsScope scope, String source, ParseCache cache) throws IOException,
+      JsParserException {
+    JsParser parser = new JsParser();
+    ParseTree tree = cache.get(source);
+    if (tree == null) {
+      tree = new ParseTree(parser.parseTree(rootSourceInfo,
+          new StringReader(source)), rootSourceInfo.getStartLine());
+      cache.put(source, tree);
+    }
+    parser.lineOffset = rootSourceInfo.getStartLine() - tree.startLine;
+    return parser.mapTree(rootSourceInfo, scope, tree.topNode);
+  }
+
   public static void parseInto(SourceInfo rootSourceInfo, JsScope scope,
       JsBlock block, Reader r) throws IOException, JsParserException {
     List<JsStatement> childStmts = parse(rootSourceInfo, scope, r);
@@ -97,6 +198,12 @@ public class JsParser {
   }
 
   private final Stack<JsScope> scopeStack = new Stack<JsScope>();
+  /**
+   * Added to Rhino line numbers when the parse tree was built for a different
+   * start line.
+   */
+  private int lineOffset;
+
   private final Stack<SourceInfo> sourceInfoStack = new Stack<SourceInfo>();
 
   private JsParser() {
@@ -104,56 +211,26 @@ public class JsParser {
 
   List<JsStatement> parseImpl(final SourceInfo rootSourceInfo, JsScope scope,
       Reader r) throws JsParserException, IOException {
-    // Create a custom error handler so that we can throw our own exceptions.
-    Context.enter().setErrorReporter(new ErrorReporter() {
-      public void error(String msg, String loc, int ln, String src, int col) {
-        throw new UncheckedJsParserException(new JsParserException(msg, ln,
-            src, col, rootSourceInfo.getFileName()));
-      }
-
-      public EvaluatorException runtimeError(String msg, String loc, int ln,
-          String src, int col) {
-        // Never called, but just in case.
-        throw new UncheckedJsParserException(new JsParserException(msg, ln,
-            src, col, rootSourceInfo.getFileName()));
-      }
-
-      public void warning(String msg, String loc, int ln, String src, int col) {
-        // Ignore warnings.
-      }
-    });
-    try {
-      // Parse using the Rhino parser.
-      //
-      TokenStream ts = new TokenStream(r, rootSourceInfo.getFileName(),
-          rootSourceInfo.getStartLine());
-      Parser parser = new Parser(new IRFactory(ts));
-      Node topNode = (Node) parser.parse(ts);
-
-      // Map the Rhino AST to ours.
-      pushScope(scope, rootSourceInfo);
-      List<JsStatement> stmts = mapStatements(topNode);
-      popScope();
-      return stmts;
-    } catch (UncheckedJsParserException e) {
-      throw e.getParserException();
-    } finally {
-      Context.exit();
-    }
+    return mapTree(rootSourceInfo, scope, parseTree(rootSourceInfo, r));
   }
 
   private JsParserException createParserException(String msg, Node offender) {
-    return new JsParserException(msg, offender.getLineno(), null, 0,
+    return new JsParserException(msg, getLineno(offender), null, 0,
         sourceInfoStack.peek().getFileName());
   }
 
+  private int getLineno(Node node) {
+    int lineno = node.getLineno();
+    return lineno == -1 ? -1 : lineno + lineOffset;
+  }
+
   private JsScope getScope() {
     return scopeStack.peek();
   }
 
   private SourceInfo makeSourceInfo(Node node) {
     SourceInfo parent = sourceInfoStack.peek();
-    int lineno = node.getLineno();
+    int lineno = getLineno(node);
     if (lineno == -1) {
       // Rhino only reports line numbers for statement nodes, not expressions
       return parent;
@@ -166,7 +243,7 @@ public class JsParser {
    */
   private SourceInfo makeSourceInfoDistinct(Node node) {
     SourceInfo parent = sourceInfoStack.peek();
-    int lineno = node.getLineno();
+    int lineno = getLineno(node);
     if (lineno == -1) {
       // Rhino only reports line numbers for statement nodes, not expressions
       lineno = parent.getStartLine();
@@ -1127,6 +1204,17 @@ public class JsParser {
     return toThrow;
   }
 
+  /**
+   * Maps a Rhino parse tree to our AST.
+   */
+  private List<JsStatement> mapTree(SourceInfo rootSourceInfo, JsScope scope,
+      Node topNode) throws JsParserException {
+    pushScope(scope, rootSourceInfo);
+    List<JsStatement> stmts = mapStatements(topNode);
+    popScope();
+    return stmts;
+  }
+
   private JsTry mapTryStatement(Node tryNode) throws JsParserException {
     JsTry toTry = new JsTry(makeSourceInfo(tryNode));
 
@@ -1254,6 +1342,41 @@ public class JsParser {
         withNode);
   }
 
+  /**
+   * Parses using the Rhino parser.
+   */
+  private Node parseTree(final SourceInfo rootSourceInfo, Reader r)
+      throws JsParserException, IOException {
+    // Create a custom error handler so that we can throw our own exceptions.
+    Context.enter().setErrorReporter(new ErrorReporter() {
+      public void error(String msg, String loc, int ln, String src, int col) {
+        throw new UncheckedJsParserException(new JsParserException(msg, ln,
+            src, col, rootSourceInfo.getFileName()));
+      }
+
+      public EvaluatorException runtimeError(String msg, String loc, int ln,
+          String src, int col) {
+        // Never called, but just in case.
+        throw new UncheckedJsParserException(new JsParserException(msg, ln,
+            src, col, rootSourceInfo.getFileName()));
+      }
+
+      public void warning(String msg, String loc, int ln, String src, int col) {
+        // Ignore warnings.
+      }
+    });
+    try {
+      TokenStream ts = new TokenStream(r, rootSourceInfo.getFileName(),
+          rootSourceInfo.getStartLine());
+      Parser parser = new Parser(new IRFactory(ts));
+      return (Node) parser.parse(ts);
+    } catch (UncheckedJsParserException e) {
+      throw e.getParserException();
+    } finally {
+      Context.exit();
+    }
+  }
+
   private void popScope() {
     scopeStack.pop();
     sourceInfoStack.pop();
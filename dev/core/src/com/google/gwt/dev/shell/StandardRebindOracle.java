@@ -203,6 +203,7 @@ public class StandardRebindOracle implements RebindOracle {
 
           genCtx.commitArtifactsFromCache(logger);
           genCtx.addGeneratedUnitsFromCache();
+          rebindCacheRecordReuse(cachedResult);
 
           // use cached type name
           resultTypeName = cachedResult.getResultTypeName();
@@ -215,6 +216,7 @@ public class StandardRebindOracle implements RebindOracle {
            * GeneratedUnits.
            */
           genCtx.addGeneratedUnitsMarkedForReuseFromCache();
+          rebindCacheRecordReuse(cachedResult);
 
           /*
            * Create a new cache entry using the composite set of new and reused
@@ -281,6 +283,14 @@ public class StandardRebindOracle implements RebindOracle {
     return resultTypeName;
   }
 
+  /**
+   * Records the result of rebinding a type elsewhere, with the same property
+   * values and rules, so that the next rebind request returns it directly.
+   */
+  public void putRebind(String sourceTypeName, String resultTypeName) {
+    typeNameBindingMap.put(sourceTypeName, resultTypeName);
+  }
+
   public void setRebindCache(RebindCache cache) {
     this.rebindCache = cache;
   }
@@ -292,6 +302,12 @@ public class StandardRebindOracle implements RebindOracle {
     return null;
   }
 
+  private void rebindCacheRecordReuse(CachedGeneratorResult result) {
+    if (rebindCache != null && result != null) {
+      rebindCache.recordReuse(result);
+    }
+  }
+
   private void rebindCachePut(Rule rule, String typeName, CachedGeneratorResult result) {
     if (rebindCache != null) {
       rebindCache.put(rule, typeName, result);
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.editdistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An index of strings that finds similar entries without comparing every pair.
+ * Each string is reduced to the set of its fixed-length character shingles and
+ * summarized by a MinHash signature, whose positions agree between two strings
+ * with probability equal to the Jaccard similarity of their shingle sets. The
+ * signature is cut into bands, and strings that agree on every position of at
+ * least one band become lookup candidates for each other (locality-sensitive
+ * hashing).
+ *
+ * <p>
+ * With <code>b</code> bands of <code>r</code> rows, two strings of similarity
+ * <code>s</code> are candidates with probability
+ * <code>1 - (1 - s^r)^b</code>; more rows per band suppress dissimilar pairs,
+ * more bands recover similar ones.
+ */
+public class MinHashIndex {
+
+  /**
+   * Seed for the hash functions, fixed so that results are reproducible.
+   */
+  private static final long SEED = 0x5DEECE66DL;
+
+  /**
+   * Per band, the ids of the entries with a given band hash.
+   */
+  private final List<Map<Integer, List<Integer>>> buckets;
+
+  private final int[] hashMultipliers;
+
+  private final int[] hashOffsets;
+
+  private boolean[] removed = new boolean[16];
+
+  private final int rowsPerBand;
+
+  /**
+   * Marks ids already returned by the current candidate lookup.
+   */
+  private int[] seen = new int[16];
+
+  private int seenStamp;
+
+  private final int shingleLength;
+
+  private final List<int[]> signatures = new ArrayList<int[]>();
+
+  /**
+   * @param bands the number of bands to cut signatures into
+   * @param rowsPerBand the number of signature positions in each band
+   * @param shingleLength the number of characters in each shingle
+   */
+  public MinHashIndex(int bands, int rowsPerBand, int shingleLength) {
+    if (bands < 1 || rowsPerBand < 1 || shingleLength < 1) {
+      throw new IllegalArgumentException("Index dimensions must be positive");
+    }
+    this.rowsPerBand = rowsPerBand;
+    this.shingleLength = shingleLength;
+    buckets = new ArrayList<Map<Integer, List<Integer>>>(bands);
+    for (int i = 0; i < bands; i++) {
+      buckets.add(new HashMap<Integer, List<Integer>>());
+    }
+    int signatureLength = bands * rowsPerBand;
+    hashMultipliers = new int[signatureLength];
+    hashOffsets = new int[signatureLength];
+    Random random = new Random(SEED);
+    for (int i = 0; i < signatureLength; i++) {
+      // An odd multiplier keeps each hash function a permutation of int
+      hashMultipliers[i] = random.nextInt() | 1;
+      hashOffsets[i] = random.nextInt();
+    }
+  }
+
+  /**
+   * Adds a string to the index.
+   *
+   * @return the id of the new entry; ids are assigned consecutively from 0
+   */
+  public int add(String text) {
+    int id = signatures.size();
+    int[] signature = computeSignature(text);
+    signatures.add(signature);
+    if (id == removed.length) {
+      removed = Arrays.copyOf(removed, id * 2);
+      seen = Arrays.copyOf(seen, id * 2);
+    }
+    for (int band = 0; band < buckets.size(); band++) {
+      Integer key = bandHash(signature, band);
+      Map<Integer, List<Integer>> bandBuckets = buckets.get(band);
+      List<Integer> bucket = bandBuckets.get(key);
+      if (bucket == null) {
+        bucket = new ArrayList<Integer>();
+        bandBuckets.put(key, bucket);
+      }
+      bucket.add(id);
+    }
+    return id;
+  }
+
+  /**
+   * Estimates the Jaccard similarity of the shingle sets of two entries, as a
+   * value between 0 and 1.
+   */
+  public double estimateSimilarity(int id1, int id2) {
+    int[] sig1 = signatures.get(id1);
+    int[] sig2 = signatures.get(id2);
+    int agree = 0;
+    for (int i = 0; i < sig1.length; i++) {
+      if (sig1[i] == sig2[i]) {
+        ++agree;
+      }
+    }
+    return (double) agree / sig1.length;
+  }
+
+  /**
+   * Returns the entries that share at least one band with <code>id</code>,
+   * excluding <code>id</code> itself and removed entries, in no particular
+   * order.
+   *
+   * @param limit the maximum number of candidates to return
+   */
+  public List<Integer> findCandidates(int id, int limit) {
+    List<Integer> result = new ArrayList<Integer>();
+    if (++seenStamp == 0) {
+      Arrays.fill(seen, 0);
+      seenStamp = 1;
+    }
+    seen[id] = seenStamp;
+    int[] signature = signatures.get(id);
+    for (int band = 0; band < buckets.size() && result.size() < limit; band++) {
+      List<Integer> bucket = buckets.get(band).get(bandHash(signature, band));
+      int live = 0;
+      for (int i = 0; i < bucket.size(); i++) {
+        int other = bucket.get(i);
+        if (removed[other]) {
+          continue;
+        }
+        // Compact removed entries out of the bucket as we go
+        bucket.set(live++, other);
+        if (seen[other] != seenStamp && result.size() < limit) {
+          seen[other] = seenStamp;
+          result.add(other);
+        }
+      }
+      bucket.subList(live, bucket.size()).clear();
+    }
+    return result;
+  }
+
+  /**
+   * Removes an entry from future candidate lookups. Its signature remains
+   * available to {@link #estimateSimilarity(int, int)}.
+   */
+  public void remove(int id) {
+    removed[id] = true;
+  }
+
+  /**
+   * Returns the number of entries ever added.
+   */
+  public int size() {
+    return signatures.size();
+  }
+
+  private int bandHash(int[] signature, int band) {
+    int hash = 1;
+    for (int i = band * rowsPerBand, end = i + rowsPerBand; i < end; i++) {
+      hash = 31 * hash + signature[i];
+    }
+    return hash;
+  }
+
+  private int[] computeSignature(String text) {
+    int[] signature = new int[hashMultipliers.length];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    // Strings shorter than a shingle are a single shingle
+    int lastStart = Math.max(0, text.length() - shingleLength);
+    for (int start = 0; start <= lastStart; start++) {
+      int shingle = 0;
+      for (int i = start, end = Math.min(start + shingleLength, text.length()); i < end; i++) {
+        shingle = 31 * shingle + text.charAt(i);
+      }
+      for (int i = 0; i < signature.length; i++) {
+        int hash = mix(hashMultipliers[i] * shingle + hashOffsets[i]);
+        if (hash < signature[i]) {
+          signature[i] = hash;
+        }
+      }
+    }
+    return signature;
+  }
+
+  /**
+   * Scrambles the bits of a hash so that nearby shingles don't map to nearby
+   * values.
+   */
+  private int mix(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+}
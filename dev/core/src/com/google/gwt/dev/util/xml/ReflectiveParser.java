@@ -20,14 +20,19 @@ import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.util.tools.Utility;
 
 import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -65,6 +70,115 @@ public final class ReflectiveParser {
     return saxParserFactory.newSAXParser();
   }
 
+  /**
+   * If it's an exception wrapped in a SAXException, rips off the outer SAX
+   * exception. Wrapped runtime exceptions are rethrown.
+   */
+  private static Throwable unwrap(SAXException e) {
+    Exception inner = e.getException();
+    if (inner instanceof RuntimeException) {
+      throw (RuntimeException) inner;
+    } else if (inner != null) {
+      return inner;
+    }
+    return e;
+  }
+
+  /**
+   * The events of a parsed document, which can be replayed into any number of
+   * schemas without reading or parsing the document again. Recordings are
+   * immutable and may be shared between threads.
+   */
+  public static final class Recording {
+    private static final int END = 2;
+    private static final int START = 0;
+    private static final int TEXT = 1;
+
+    private final Attributes[] attributes;
+    private final int[] kinds;
+    private final int[] lineNumbers;
+    private final String[] names;
+    private final char[][] texts;
+
+    private Recording(Recorder recorder) {
+      int n = recorder.kinds.size();
+      attributes = recorder.attributes.toArray(new Attributes[n]);
+      names = recorder.names.toArray(new String[n]);
+      texts = recorder.texts.toArray(new char[n][]);
+      kinds = new int[n];
+      lineNumbers = new int[n];
+      for (int i = 0; i < n; ++i) {
+        kinds[i] = recorder.kinds.get(i);
+        lineNumbers[i] = recorder.lineNumbers.get(i);
+      }
+    }
+
+    private void replay(ContentHandler handler) throws SAXException {
+      LocatorImpl locator = new LocatorImpl();
+      handler.setDocumentLocator(locator);
+      for (int i = 0; i < kinds.length; ++i) {
+        locator.setLineNumber(lineNumbers[i]);
+        switch (kinds[i]) {
+          case START:
+            handler.startElement("", "", names[i], attributes[i]);
+            break;
+          case TEXT:
+            handler.characters(texts[i], 0, texts[i].length);
+            break;
+          case END:
+            handler.endElement("", "", names[i]);
+            break;
+          default:
+            throw new IllegalStateException("Unknown event " + kinds[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the events that a {@link Recording} replays.
+   */
+  private static final class Recorder extends DefaultHandler {
+    private final List<Attributes> attributes = new ArrayList<Attributes>();
+    private final List<Integer> kinds = new ArrayList<Integer>();
+    private final List<Integer> lineNumbers = new ArrayList<Integer>();
+    private Locator locator;
+    private final List<String> names = new ArrayList<String>();
+    private final List<char[]> texts = new ArrayList<char[]>();
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      char[] text = new char[length];
+      System.arraycopy(ch, start, text, 0, length);
+      add(Recording.TEXT, null, null, text);
+    }
+
+    @Override
+    public void endElement(String namespaceURI, String localName, String elem) {
+      add(Recording.END, elem, null, null);
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    @Override
+    public void startElement(String namespaceURI, String localName,
+        String elemName, Attributes atts) {
+      // The parser reuses its Attributes, so keep a copy
+      add(Recording.START, elemName, new AttributesImpl(atts), null);
+    }
+
+    private void add(int kind, String name, Attributes atts, char[] text) {
+      kinds.add(kind);
+      lineNumbers.add(locator.getLineNumber());
+      names.add(name);
+      attributes.add(atts);
+      texts.add(text);
+    }
+  }
+
   private static final class Impl extends DefaultHandler {
 
     private Locator locator;
@@ -316,8 +430,7 @@ public final class ReflectiveParser {
       return schemaLevels.peek();
     }
 
-    private void parse(TreeLogger logger, Schema topSchema, Reader reader)
-        throws UnableToCompleteException {
+    private void begin(TreeLogger logger, Schema topSchema) {
       // Set up the parentmost schema which is used to find default converters
       // and handlers (but isn't actually on the schema stack.)
       //
@@ -336,6 +449,11 @@ public final class ReflectiveParser {
       // Push the first schema.
       //
       setArgsAndPushLevel(null, topSchema);
+    }
+
+    private void parse(TreeLogger logger, Schema topSchema, Reader reader)
+        throws UnableToCompleteException {
+      begin(logger, topSchema);
 
       Throwable caught = null;
       try {
@@ -346,18 +464,7 @@ public final class ReflectiveParser {
         xmlReader.setContentHandler(this);
         xmlReader.parse(inputSource);
       } catch (SAXException e) {
-        // If it's an exception wrapped in a SAXException, rip off the outer SAX
-        // exception.
-        //
-        caught = e;
-
-        Exception inner = e.getException();
-        if (inner instanceof RuntimeException) {
-          throw (RuntimeException) inner;
-        } else if (inner != null) {
-          caught = inner;
-        }
-
+        caught = unwrap(e);
       } catch (ParserConfigurationException e) {
         caught = e;
       } catch (IOException e) {
@@ -372,6 +479,18 @@ public final class ReflectiveParser {
       }
     }
 
+    private void replay(TreeLogger logger, Schema topSchema, Recording recording)
+        throws UnableToCompleteException {
+      begin(logger, topSchema);
+
+      try {
+        recording.replay(this);
+      } catch (SAXException e) {
+        Messages.XML_PARSE_FAILED.log(logger, unwrap(e));
+        throw new UnableToCompleteException();
+      }
+    }
+
     private Schema popLevel() {
       argStack.pop();
       schemaLevels.pop();
@@ -418,6 +537,45 @@ public final class ReflectiveParser {
     impl.parse(logger, schema, reader);
   }
 
+  /**
+   * Calls into a schema as {@link #parse(TreeLogger, Schema, Reader)} would for
+   * the recorded document.
+   */
+  public static void parse(TreeLogger logger, Schema schema, Recording recording)
+      throws UnableToCompleteException {
+    registerSchemaLevel(schema.getClass());
+    new Impl().replay(logger, schema, recording);
+  }
+
+  /**
+   * Parses a document into a {@link Recording} without calling into a schema.
+   */
+  public static Recording record(TreeLogger logger, Reader reader)
+      throws UnableToCompleteException {
+    Recorder recorder = new Recorder();
+    Throwable caught = null;
+    try {
+      SAXParser parser = createNewSaxParser();
+      XMLReader xmlReader = parser.getXMLReader();
+      xmlReader.setContentHandler(recorder);
+      xmlReader.parse(new InputSource(reader));
+    } catch (SAXException e) {
+      caught = unwrap(e);
+    } catch (ParserConfigurationException e) {
+      caught = e;
+    } catch (IOException e) {
+      caught = e;
+    } finally {
+      Utility.close(reader);
+    }
+
+    if (caught != null) {
+      Messages.XML_PARSE_FAILED.log(logger, caught);
+      throw new UnableToCompleteException();
+    }
+    return new Recording(recorder);
+  }
+
   /**
    * Can safely register the same class recursively.
    */
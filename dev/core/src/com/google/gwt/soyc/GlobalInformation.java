@@ -29,7 +29,7 @@ import java.util.TreeSet;
  */
 public class GlobalInformation {
   private static final SizeBreakdown[] EMPTY_SIZE_BREAKDOWN = new SizeBreakdown[0];
-  public Map<String, Map<String, String>> dependencies = null;
+  public MethodDependencies dependencies = null;
   private Map<String, String> classToPackage = new TreeMap<String, String>();
   private HashMap<String, HashSet<String>> classToWhatItDependsOn = new HashMap<String, HashSet<String>>();
   private Map<Integer, SizeBreakdown> exclusiveCodeBreakdowns = new HashMap<Integer, SizeBreakdown>();
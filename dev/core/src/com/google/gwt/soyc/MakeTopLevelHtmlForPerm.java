@@ -206,24 +206,27 @@ public class MakeTopLevelHtmlForPerm {
      * report.
      */
     private void printDependency(PrintWriter outFile,
-        Map<String, String> dependencies, String method, String depMethod) {
+        MethodDependencies dependencies, int graph, int methodId) {
+      String method = dependencies.getMethodName(methodId);
       String nameArray = "[" + frozen.get(getPackageSubstring(method)) + ","
           + frozen.get(getClassSubstring(method)) + ","
           + frozen.get(getMethodSubstring(method)) + "]";
       outFile.print("b(" + nameArray + ",");
       outFile.print("[");
-      while (depMethod != null) {
-        String nextDep = dependencies.get(depMethod);
+      int depMethodId = dependencies.getCaller(graph, methodId);
+      while (depMethodId != -1) {
+        int nextDepId = dependencies.getCaller(graph, depMethodId);
         // The bottom of the stack frame is not interesting.
-        if (nextDep != null) {
+        if (nextDepId != -1) {
+          String depMethod = dependencies.getMethodName(depMethodId);
           String packageString = getPackageSubstring(depMethod);
           String classString = getClassSubstring(depMethod);
           String methodString = getMethodSubstring(depMethod);
           outFile.print("[" + frozen.get(packageString) + ","
               + frozen.get(classString) + "," + frozen.get(methodString) + "]");
         }
-        depMethod = nextDep;
-        if (nextDep != null && dependencies.get(nextDep) != null) {
+        depMethodId = nextDepId;
+        if (nextDepId != -1 && dependencies.getCaller(graph, nextDepId) != -1) {
           outFile.print(",");
         }
       }
@@ -976,9 +979,10 @@ public class MakeTopLevelHtmlForPerm {
   }
 
   public void makeDependenciesHtml() throws IOException {
-    for (String depGraphName : globalInformation.dependencies.keySet()) {
-      makeDependenciesHtml(depGraphName,
-          globalInformation.dependencies.get(depGraphName));
+    MethodDependencies dependencies = globalInformation.dependencies;
+    for (String depGraphName : dependencies.getGraphNames()) {
+      makeDependenciesHtml(depGraphName, dependencies,
+          dependencies.getGraph(depGraphName));
     }
   }
 
@@ -1643,26 +1647,28 @@ public class MakeTopLevelHtmlForPerm {
    * Produces an HTML file that displays dependencies.
    *
    * @param depGraphName name of dependency graph
-   * @param dependencies map of dependencies
+   * @param dependencies all dependency graphs
+   * @param graph the number of the graph in <code>dependencies</code>
    * @throws IOException
    */
   private void makeDependenciesHtml(String depGraphName,
-      Map<String, String> dependencies) throws IOException {
-    String curPackageName = "";
-
+      MethodDependencies dependencies, int graph) throws IOException {
     HtmlInterner interner = new HtmlInterner();
 
-    for (String reportMethod : dependencies.keySet()) {
+    int[] methods = dependencies.getMethods(graph);
+    for (int methodId : methods) {
+      String reportMethod = dependencies.getMethodName(methodId);
       interner.intern(getPackageSubstring(reportMethod));
       interner.intern(getClassSubstring(reportMethod));
       interner.intern(getMethodSubstring(reportMethod));
 
-      String depMethod = dependencies.get(reportMethod);
-      while (depMethod != null) {
+      int depMethodId = dependencies.getCaller(graph, methodId);
+      while (depMethodId != -1) {
+        String depMethod = dependencies.getMethodName(depMethodId);
         interner.intern(getPackageSubstring(depMethod));
         interner.intern(getClassSubstring(depMethod));
         interner.intern(getMethodSubstring(depMethod));
-        depMethod = dependencies.get(depMethod);
+        depMethodId = dependencies.getCaller(graph, depMethodId);
       }
     }
     interner.freeze();
@@ -1674,25 +1680,22 @@ public class MakeTopLevelHtmlForPerm {
     interner.printInternedDataAsJs(outFile);
     outFile.close();
 
-    List<String> classesInPackage = new ArrayList<String>();
-    for (String method : dependencies.keySet()) {
-      classesInPackage.add(method);
-    }
-    makeDependenciesInternedHtml(depGraphName, 
-        classesInPackage, dependencies, interner, jsFileName);
+    makeDependenciesInternedHtml(depGraphName, methods, dependencies, graph,
+        interner, jsFileName);
   }
 
   /**
    * Produces an HTML file that displays dependencies.
    *
    * @param depGraphName name of dependency graph
-   * @param dependencies map of dependencies
+   * @param methods the methods in the graph, in alphabetical order
+   * @param dependencies all dependency graphs
+   * @param graph the number of the graph in <code>dependencies</code>
    * @throws IOException
    */
-  private void makeDependenciesInternedHtml(String depGraphName,
-      List<String> classesInSplitPoint,
-      Map<String, String> dependencies, HtmlInterner interner, String jsFileName)
-      throws IOException {
+  private void makeDependenciesInternedHtml(String depGraphName, int[] methods,
+      MethodDependencies dependencies, int graph, HtmlInterner interner,
+      String jsFileName) throws IOException {
     String depGraphDescription = inferDepGraphDescription(depGraphName);
     PrintWriter outFile = null;
     String curClassName = "";
@@ -1709,20 +1712,20 @@ public class MakeTopLevelHtmlForPerm {
 
     // Write out the HTML
     outFile.print("<script>");
-    for (String method : classesInSplitPoint) {
-      // this key set is already in alphabetical order
+    for (int i = 0; i < methods.length; i++) {
+      // the methods are already in alphabetical order
       // get the package of this method, i.e., everything up to .[A-Z]
 
+      String method = dependencies.getMethodName(methods[i]);
       String className = method.replaceAll("::.*", "");
-      String depMethod = dependencies.get(method);
       if (curClassName.compareTo(className) != 0) {
         curClassName = className;
-        if (method != classesInSplitPoint.get(0)) {
+        if (i != 0) {
           outFile.print("j();"); // close the previous table if not the first
         }
         interner.printDependencyClassHeader(outFile, className);
       }
-      interner.printDependency(outFile, dependencies, method, depMethod);
+      interner.printDependency(outFile, dependencies, graph, methods[i]);
     }
     outFile.println("</script>");
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.soyc;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The method dependency graphs of one permutation, as read from a dependencies
+ * XML file. For each method in a graph, the graph records the method that
+ * first made it live.
+ *
+ * <p>
+ * Methods are numbered, and each graph is an array from method number to the
+ * number of its caller. A graph that extends another graph only stores its own
+ * entries, and falls back to the extended graph on lookup, so extended graphs
+ * are never copied.
+ */
+public class MethodDependencies {
+
+  private static final int NONE = -1;
+
+  /**
+   * Reads the graphs from a dependencies XML file, using a pull parser.
+   */
+  public static MethodDependencies read(InputStream stream) throws XMLStreamException {
+    MethodDependencies deps = new MethodDependencies();
+    XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(stream);
+    try {
+      int graph = NONE;
+      int method = NONE;
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String elementName = reader.getLocalName();
+        if (elementName.equals("table")) {
+          String name = reader.getAttributeValue(null, "name");
+          if (name != null) {
+            graph = deps.addGraph(name, reader.getAttributeValue(null, "extends"));
+            method = NONE;
+          }
+        } else if (elementName.equals("method")) {
+          String name = reader.getAttributeValue(null, "name");
+          if (name != null) {
+            method = deps.idOf(name);
+          }
+        } else if (elementName.equals("called")) {
+          String by = reader.getAttributeValue(null, "by");
+          if (by != null && graph != NONE && method != NONE) {
+            deps.addCaller(graph, method, deps.idOf(by));
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    deps.finish();
+    return deps;
+  }
+
+  /**
+   * For each graph, its own entries: the caller of each method, or
+   * {@link #NONE}.
+   */
+  private final List<int[]> callers = new ArrayList<int[]>();
+
+  /**
+   * The graph numbers, by graph name.
+   */
+  private final Map<String, Integer> graphsByName = new TreeMap<String, Integer>();
+
+  /**
+   * The method numbers, by method name. Only used while reading.
+   */
+  private Map<String, Integer> methodIds = new HashMap<String, Integer>();
+
+  private final List<String> methodNames = new ArrayList<String>();
+
+  /**
+   * For each graph, the graph it extends, or {@link #NONE}.
+   */
+  private int[] parents = new int[4];
+
+  /**
+   * All method numbers, sorted by method name.
+   */
+  private int[] sortedMethods;
+
+  private MethodDependencies() {
+  }
+
+  /**
+   * Returns the number of the method that made a method live in a graph, or
+   * <code>-1</code> if it is not in the graph or was not called by anything.
+   */
+  public int getCaller(int graph, int method) {
+    int parent = parents[graph];
+    if (parent != NONE) {
+      // Entries of the extended graph take precedence
+      int caller = getCaller(parent, method);
+      if (caller != NONE) {
+        return caller;
+      }
+    }
+    int[] own = callers.get(graph);
+    return method < own.length ? own[method] : NONE;
+  }
+
+  /**
+   * Returns the number of the graph with the given name, or <code>-1</code>.
+   */
+  public int getGraph(String name) {
+    Integer graph = graphsByName.get(name);
+    return graph == null ? NONE : graph;
+  }
+
+  /**
+   * Returns the names of all graphs, in alphabetical order.
+   */
+  public Iterable<String> getGraphNames() {
+    return graphsByName.keySet();
+  }
+
+  public String getMethodName(int method) {
+    return methodNames.get(method);
+  }
+
+  /**
+   * Returns the methods that have a caller in a graph, in alphabetical order.
+   */
+  public int[] getMethods(int graph) {
+    int[] result = new int[sortedMethods.length];
+    int count = 0;
+    for (int method : sortedMethods) {
+      if (getCaller(graph, method) != NONE) {
+        result[count++] = method;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private void addCaller(int graph, int method, int caller) {
+    int[] own = callers.get(graph);
+    if (method >= own.length) {
+      int oldLength = own.length;
+      own = Arrays.copyOf(own, Math.max(method + 1, oldLength * 2));
+      Arrays.fill(own, oldLength, own.length, NONE);
+      callers.set(graph, own);
+    }
+    // The first recorded caller wins
+    if (own[method] == NONE) {
+      own[method] = caller;
+    }
+  }
+
+  private int addGraph(String name, String extendsName) throws XMLStreamException {
+    int parent = NONE;
+    if (extendsName != null) {
+      parent = getGraph(extendsName);
+      if (parent == NONE) {
+        throw new XMLStreamException("Graph " + name + " extends an unknown graph "
+            + extendsName);
+      }
+    }
+    int graph = callers.size();
+    callers.add(new int[0]);
+    if (graph == parents.length) {
+      parents = Arrays.copyOf(parents, graph * 2);
+    }
+    parents[graph] = parent;
+    graphsByName.put(name, graph);
+    return graph;
+  }
+
+  private void finish() {
+    methodIds = null;
+    Integer[] sorted = new Integer[methodNames.size()];
+    for (int i = 0; i < sorted.length; ++i) {
+      sorted[i] = i;
+    }
+    Arrays.sort(sorted, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return methodNames.get(a).compareTo(methodNames.get(b));
+      }
+    });
+    sortedMethods = new int[sorted.length];
+    for (int i = 0; i < sorted.length; ++i) {
+      sortedMethods[i] = sorted[i];
+    }
+  }
+
+  private int idOf(String methodName) {
+    Integer id = methodIds.get(methodName);
+    if (id == null) {
+      id = methodNames.size();
+      methodIds.put(methodName, id);
+      methodNames.add(methodName);
+    }
+    return id;
+  }
+}
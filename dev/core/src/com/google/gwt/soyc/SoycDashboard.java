@@ -41,7 +41,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -50,6 +49,7 @@ import java.util.zip.GZIPInputStream;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * The command-line entry point for creating a compile report.
@@ -181,64 +181,6 @@ public class SoycDashboard {
     }
   }
 
-  private static DefaultHandler parseXMLDocumentDependencies(
-      final Map<String, Map<String, String>> allDependencies) {
-    DefaultHandler handler = new DefaultHandler() {
-
-      // may want to create a class for this later
-      String curMethod;
-      Map<String, String> dependencies = new TreeMap<String, String>();
-      String graphExtends = null;
-      StringBuilder valueBuilder = new StringBuilder();
-
-      @Override
-      public void endElement(String uri, String localName, String qName) {
-        if (localName.compareTo("table") == 0) {
-          if (graphExtends != null) {
-            // Add in elements from the extended graph
-            for (Entry<String, String> entry : allDependencies.get(graphExtends).entrySet()) {
-              dependencies.put(entry.getKey(), entry.getValue());
-            }
-          }
-        }
-      }
-
-      @Override
-      public void startElement(String nsUri, String strippedName,
-          String tagName, final Attributes attributes) {
-
-        valueBuilder.delete(0, valueBuilder.length());
-
-        if (strippedName.compareTo("table") == 0
-            && (attributes.getValue("name") != null)) {
-          String name = attributes.getValue("name");
-          dependencies = new TreeMap<String, String>();
-          allDependencies.put(StringInterner.get().intern(name), dependencies);
-          if (attributes.getValue("extends") != null) {
-            graphExtends = StringInterner.get().intern(attributes.getValue("extends"));
-            if (!allDependencies.containsKey(graphExtends)) {
-              throw new FormatException("Graph " + name
-                  + " extends an unknown graph " + graphExtends);
-            }
-          } else {
-            graphExtends = null;
-          }
-        } else if ((strippedName.compareTo("method") == 0)
-            && (attributes.getValue("name") != null)) {
-          curMethod = StringInterner.get().intern(attributes.getValue("name"));
-        } else if ((strippedName.compareTo("called") == 0)
-            && (attributes.getValue("by") != null)) {
-          String curDepMethod = attributes.getValue("by");
-          if (!dependencies.containsKey(curMethod)) {
-            dependencies.put(StringInterner.get().intern(curMethod),
-                StringInterner.get().intern(curDepMethod));
-          }
-        }
-      }
-    };
-    return handler;
-  }
-
   private static Map<String, List<String>> readPermutationInfo(Settings settings)
       throws FileNotFoundException {
     Map<String, List<String>> allPermsInfo = new TreeMap<String, List<String>>();
@@ -343,12 +285,11 @@ public class SoycDashboard {
 
   public void readDependencies(InputStream stream)
       throws ParserConfigurationException, SAXException, IOException {
-    globalInformation.dependencies = new TreeMap<String, Map<String, String>>();
-    DefaultHandler depHandler = parseXMLDocumentDependencies(globalInformation.dependencies);
-    SAXParserFactory depFactoryMain = SAXParserFactory.newInstance();
-    depFactoryMain.setNamespaceAware(true);
-    SAXParser saxParser = depFactoryMain.newSAXParser();
-    saxParser.parse(stream, depHandler);
+    try {
+      globalInformation.dependencies = MethodDependencies.read(stream);
+    } catch (XMLStreamException e) {
+      throw new SAXException(e);
+    }
   }
 
   public void readSizeMaps(InputStream stream)
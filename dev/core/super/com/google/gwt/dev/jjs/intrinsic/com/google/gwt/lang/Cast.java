@@ -37,6 +37,15 @@ final class Cast {
     return src.@java.lang.Object::castableTypeMap && src.@java.lang.Object::castableTypeMap[dstId];
   }-*/;
 
+  /**
+   * Returns whether the object's seed id lies in <code>[firstId, lastId]</code>,
+   * the ids of a class and all of its subclasses.
+   */
+  static native boolean canCastToClass(Object src, int firstId, int lastId) /*-{
+    var seedId = src.@java.lang.Object::seedId;
+    return seedId >= firstId && seedId <= lastId;
+  }-*/;
+
   static native String charToString(char x) /*-{
     return String.fromCharCode(x);
   }-*/;
@@ -59,6 +68,13 @@ final class Cast {
     return src;
   }
   
+  static Object dynamicCastToClass(Object src, int firstId, int lastId) {
+    if (src != null && !canCastToClass(src, firstId, lastId)) {
+      throw new ClassCastException();
+    }
+    return src;
+  }
+
   /**
    * Allow a cast to JSO only if there's no type ID.
    */
@@ -73,6 +89,10 @@ final class Cast {
     return (src != null) && canCast(src, dstId);
   }
 
+  static boolean instanceOfClass(Object src, int firstId, int lastId) {
+    return (src != null) && canCastToClass(src, firstId, lastId);
+  }
+
   static boolean instanceOfJso(Object src) {
     return (src != null) && isJavaScriptObject(src);
   }
@@ -15,18 +15,113 @@
  */
 package com.google.gwt.core.ext.linker;
 
+import com.google.gwt.core.ext.Linker;
 import com.google.gwt.core.ext.linker.impl.StandardScriptReference;
 import com.google.gwt.core.ext.linker.impl.StandardStylesheetReference;
 
 import junit.framework.TestCase;
 
+import java.util.Iterator;
 import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Tests for {@link ArtifactSet}.
  */
 public class ArtifactSetTest extends TestCase {
 
+  /**
+   * Large enough that a linear scan per find() would dominate a link.
+   */
+  private static final int LARGE_SET_SIZE = 50000;
+
+  /**
+   * The number of finds timed by {@link #testFindInLargeSetIsFast()}.
+   */
+  private static final int TIMED_FINDS = 1000;
+
+  /**
+   * The number of full scans that {@link #TIMED_FINDS} finds must beat. A
+   * linear scan per find would take ten times as long.
+   */
+  private static final int TIMED_SCANS = 100;
+
+  public void testFindAfterChanges() {
+    ArtifactSet set = new ArtifactSet();
+    for (int i = 0; i < 20; i++) {
+      set.add(new StandardScriptReference("script" + i, i));
+      set.add(new StandardStylesheetReference("style" + i, i));
+      set.add(emitted("file" + i));
+    }
+    // Builds the index
+    assertFindMatchesScan(set);
+
+    set.remove(new StandardScriptReference("script3", 3));
+    set.removeAll(set.find(StandardStylesheetReference.class).headSet(
+        new StandardStylesheetReference("style5", 5)));
+    set.replace(emitted("file7"));
+    set.add(new StandardScriptReference("script20", 20));
+    assertFindMatchesScan(set);
+    assertEquals(15, set.find(StandardStylesheetReference.class).size());
+
+    for (Iterator<Artifact<?>> it = set.iterator(); it.hasNext();) {
+      if (it.next() instanceof EmittedArtifact) {
+        it.remove();
+      }
+    }
+    assertTrue(set.find(EmittedArtifact.class).isEmpty());
+    assertFindMatchesScan(set);
+
+    SortedSet<Artifact<?>> tail = set.tailSet(set.find(StandardStylesheetReference.class).first());
+    tail.clear();
+    assertTrue(set.find(StandardStylesheetReference.class).isEmpty());
+    assertFindMatchesScan(set);
+
+    set.retainAll(set.find(StandardScriptReference.class).headSet(
+        new StandardScriptReference("script10", 10)));
+    assertEquals(9, set.find(StandardScriptReference.class).size());
+    assertFindMatchesScan(set);
+  }
+
+  /**
+   * Finding a rare artifact type in a large set returns exactly the matches.
+   */
+  public void testFindInLargeSet() {
+    ArtifactSet set = new ArtifactSet();
+    for (int i = 0; i < LARGE_SET_SIZE; i++) {
+      set.add(emitted("public/resource" + i));
+    }
+    for (int i = 0; i < 10; i++) {
+      set.add(new StandardScriptReference("script" + i, i));
+    }
+    assertFindMatchesScan(set);
+    assertEquals(10, set.find(StandardScriptReference.class).size());
+  }
+
+  /**
+   * Finding a rare artifact type in a large set only costs as much as the
+   * matches, not a scan of the whole set. Timed against full scans of the same
+   * set, so that the check does not depend on the speed of the machine.
+   */
+  public void testFindInLargeSetIsFast() {
+    ArtifactSet set = new ArtifactSet();
+    for (int i = 0; i < LARGE_SET_SIZE; i++) {
+      set.add(emitted("public/resource" + i));
+    }
+    for (int i = 0; i < 10; i++) {
+      set.add(new StandardScriptReference("script" + i, i));
+    }
+
+    // Warm up both code paths first
+    long scanNanos = timeScans(set);
+    long findNanos = timeFinds(set);
+    scanNanos = Math.min(scanNanos, timeScans(set));
+    findNanos = Math.min(findNanos, timeFinds(set));
+    assertTrue(TIMED_FINDS + " finds took " + findNanos / 1000000 + "ms, but "
+        + TIMED_SCANS + " scans only " + scanNanos / 1000000 + "ms",
+        findNanos < scanNanos);
+  }
+
   public void testScriptOrder() {
     StandardScriptReference fooScript = new StandardScriptReference("foo", 0);
     StandardScriptReference barScript = new StandardScriptReference("bar", 1);
@@ -106,4 +201,43 @@ public class ArtifactSetTest extends TestCase {
     }
 
   }
+
+  private void assertFindMatchesScan(ArtifactSet set) {
+    assertEquals(scan(set, Artifact.class), set.find(Artifact.class));
+    assertEquals(scan(set, EmittedArtifact.class), set.find(EmittedArtifact.class));
+    assertEquals(scan(set, StandardScriptReference.class),
+        set.find(StandardScriptReference.class));
+    assertEquals(scan(set, StandardStylesheetReference.class),
+        set.find(StandardStylesheetReference.class));
+  }
+
+  private long timeFinds(ArtifactSet set) {
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMED_FINDS; i++) {
+      assertEquals(10, set.find(StandardScriptReference.class).size());
+    }
+    return System.nanoTime() - start;
+  }
+
+  private long timeScans(ArtifactSet set) {
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMED_SCANS; i++) {
+      assertEquals(10, scan(set, StandardScriptReference.class).size());
+    }
+    return System.nanoTime() - start;
+  }
+
+  private EmittedArtifact emitted(String path) {
+    return new SyntheticArtifact(Linker.class, path, new byte[0], 0);
+  }
+
+  private SortedSet<Artifact<?>> scan(ArtifactSet set, Class<?> type) {
+    SortedSet<Artifact<?>> toReturn = new TreeSet<Artifact<?>>();
+    for (Artifact<?> artifact : set) {
+      if (type.isInstance(artifact)) {
+        toReturn.add(artifact);
+      }
+    }
+    return toReturn;
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.CompilePermsServer.CompileServerOptionsImpl;
+
+import junit.framework.TestCase;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the command protocol between {@link ExternalPermutationWorkerFactory}
+ * and {@link CompilePermsServer}, with this test acting as the compiler.
+ */
+public class CompilePermsServerTest extends TestCase {
+
+  private static final String COOKIE = "0123456789abcdef";
+
+  private ExecutorService executor;
+
+  private ObjectInputStream in;
+
+  private ObjectOutputStream out;
+
+  private Future<Boolean> result;
+
+  private ServerSocket serverSocket;
+
+  private Socket socket;
+
+  public void testCompileBeforeLoadAst() throws Exception {
+    out.writeByte(CompilePermsServer.COMMAND_COMPILE);
+    out.flush();
+    assertFalse(result.get(10, TimeUnit.SECONDS));
+  }
+
+  public void testShutdown() throws Exception {
+    out.writeByte(CompilePermsServer.COMMAND_SHUTDOWN);
+    out.flush();
+    assertTrue(result.get(10, TimeUnit.SECONDS));
+  }
+
+  public void testUnknownCommand() throws Exception {
+    out.writeByte(42);
+    out.flush();
+    assertFalse(result.get(10, TimeUnit.SECONDS));
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    serverSocket = new ServerSocket(0);
+    final CompileServerOptionsImpl options = new CompileServerOptionsImpl();
+    options.setCompileHost("localhost");
+    options.setCompilePort(serverSocket.getLocalPort());
+    options.setCookie(COOKIE);
+    options.setLogLevel(TreeLogger.ERROR);
+
+    executor = Executors.newSingleThreadExecutor();
+    result = executor.submit(new Callable<Boolean>() {
+      public Boolean call() {
+        return CompilePermsServer.run(options, TreeLogger.NULL);
+      }
+    });
+
+    socket = serverSocket.accept();
+    in = new ObjectInputStream(socket.getInputStream());
+    out = new ObjectOutputStream(socket.getOutputStream());
+
+    // The server identifies itself first
+    assertEquals(COOKIE, in.readUTF());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    socket.close();
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+}
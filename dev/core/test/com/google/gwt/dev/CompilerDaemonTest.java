@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.util.Util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Tests {@link CompilerDaemon} and {@link CompilerDaemonClient}.
+ */
+public class CompilerDaemonTest extends TestCase {
+
+  private CompilerDaemon daemon;
+
+  private Thread serveThread;
+
+  private File tokenFile;
+
+  public void testInvalidArgs() throws IOException {
+    ByteArrayOutputStream console = new ByteArrayOutputStream();
+    // Empty and multi-line arguments must not break the framing
+    assertFalse(submit(tokenFile, new String[] {"-noSuchFlag", "", "two\nlines"}, console));
+    assertTrue(console.toString(), console.toString().contains(
+        "Invalid compiler arguments"));
+
+    // The daemon keeps serving after a failed build
+    assertFalse(submit(tokenFile, new String[] {"-noSuchFlag"}, console));
+    assertTrue(serveThread.isAlive());
+  }
+
+  public void testDropsSilentClient() throws Exception {
+    daemon.setRequestTimeout(200);
+    Socket silent = new Socket(InetAddress.getByName(null), daemon.getPort());
+    try {
+      // The daemon gives up on the silent client and serves the next one
+      assertEquals(-1, silent.getInputStream().read());
+      ByteArrayOutputStream console = new ByteArrayOutputStream();
+      assertFalse(submit(tokenFile, new String[] {"-noSuchFlag"}, console));
+      assertTrue(console.toString(), console.toString().contains(
+          "Invalid compiler arguments"));
+    } finally {
+      silent.close();
+    }
+  }
+
+  public void testResolveDirs() {
+    File workingDir = new File(System.getProperty("java.io.tmpdir"), "client").getAbsoluteFile();
+    File extraDir = new File(workingDir.getParentFile(), "extra");
+    CompilerOptions options = new Compiler.CompilerOptionsImpl();
+    assertTrue(new Compiler.ArgProcessor(options).processArgs("-gen", "gen", "-extra",
+        extraDir.getPath(), "com.google.gwt.dev.Test"));
+    CompilerDaemon.resolveDirs(options, workingDir);
+
+    // The default war directory is relative, too
+    assertEquals(new File(workingDir, "war"), options.getWarDir());
+    assertEquals(new File(workingDir, "war/WEB-INF/deploy"), options.getDeployDir());
+    assertEquals(new File(workingDir, "gen"), options.getGenDir());
+    assertEquals(extraDir, options.getExtraDir());
+  }
+
+  public void testRejectsWrongToken() throws Exception {
+    File wrongTokenFile = File.createTempFile("wrong", ".token");
+    try {
+      Util.writeStringAsFile(wrongTokenFile, "0123456789abcdef0123456789abcdef");
+      ByteArrayOutputStream console = new ByteArrayOutputStream();
+      assertFalse(submit(wrongTokenFile, new String[] {CompilerDaemon.SHUTDOWN}, console));
+      assertTrue(console.toString(), console.toString().contains("closed the connection"));
+    } finally {
+      wrongTokenFile.delete();
+    }
+
+    // The daemon is still running
+    serveThread.join(100);
+    assertTrue(serveThread.isAlive());
+  }
+
+  public void testShutdown() throws Exception {
+    assertTrue(submit(tokenFile, new String[] {CompilerDaemon.SHUTDOWN},
+        new ByteArrayOutputStream()));
+    serveThread.join(10000);
+    assertFalse(serveThread.isAlive());
+    assertFalse(tokenFile.exists());
+  }
+
+  public void testTokenFile() {
+    assertEquals(32, Util.readFileAsString(tokenFile).length());
+  }
+
+  @Override
+  protected void setUp() throws IOException {
+    tokenFile = File.createTempFile("daemon", ".token");
+    daemon = new CompilerDaemon(TreeLogger.NULL, 0, tokenFile);
+    serveThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          daemon.serve();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    serveThread.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (serveThread.isAlive()) {
+      submit(tokenFile, new String[] {CompilerDaemon.SHUTDOWN}, new ByteArrayOutputStream());
+      serveThread.join(10000);
+    }
+    tokenFile.delete();
+  }
+
+  private boolean submit(File token, String[] args, ByteArrayOutputStream console)
+      throws IOException {
+    return CompilerDaemonClient.submit(daemon.getPort(), token, args, new PrintStream(
+        console, true));
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.dev.Compiler.CompilerOptionsImpl;
+import com.google.gwt.dev.cfg.ModuleDef;
+import com.google.gwt.dev.cfg.ModuleDefLoader;
+import com.google.gwt.dev.jjs.JJSOptions;
+import com.google.gwt.dev.jjs.PermutationResult;
+import com.google.gwt.dev.util.FileBackedObject;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+import com.google.gwt.util.tools.Utility;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link Link}.
+ */
+public class LinkTest extends TestCase {
+
+  private final CompilerOptionsImpl options = new CompilerOptionsImpl();
+
+  /**
+   * Linking permutations on several threads must produce exactly the same
+   * output as linking them one after another.
+   */
+  public void testParallelLinkMatchesSerial() throws UnableToCompleteException,
+      IOException {
+    File work = Utility.makeTemporaryDirectory(null, "hellowork");
+    try {
+      options.setSoycEnabled(true);
+      options.setWorkDir(new File(work, "work"));
+      PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
+      logger.setMaxDetail(TreeLogger.ERROR);
+
+      ModuleDef module = ModuleDefLoader.loadFromClassPath(logger,
+          "com.google.gwt.sample.hello.Hello", true);
+      options.setOptimizePrecompile(true);
+      Precompilation precompilation = Precompile.precompile(logger, options,
+          module, null);
+      assertNotNull(precompilation);
+      Permutation[] perms = precompilation.getPermutations();
+      assertTrue("Need several permutations to link in parallel", perms.length > 1);
+      List<FileBackedObject<PermutationResult>> resultFiles = CompilePerms.makeResultFiles(
+          options.getCompilerWorkDir(module.getName()), perms);
+      CompilePerms.compile(logger, precompilation, perms, 1, resultFiles);
+      ArtifactSet generatedArtifacts = precompilation.getGeneratedArtifacts();
+      JJSOptions precompileOptions = precompilation.getUnifiedAst().getOptions();
+
+      File serial = new File(work, "serial");
+      File parallel = new File(work, "parallel");
+      Link.link(logger, module, generatedArtifacts, perms, resultFiles,
+          new File(serial, "war"), new File(serial, "deploy"), new File(serial, "extra"),
+          precompileOptions, 1);
+      Link.link(logger, module, generatedArtifacts, perms, resultFiles,
+          new File(parallel, "war"), new File(parallel, "deploy"), new File(parallel, "extra"),
+          precompileOptions, 4);
+
+      assertSameTree(serial, parallel);
+    } finally {
+      Util.recursiveDelete(work, false);
+    }
+  }
+
+  private void assertSameTree(File expected, File actual) throws IOException {
+    assertEquals(actual.getPath(), expected.isDirectory(), actual.isDirectory());
+    if (!expected.isDirectory()) {
+      assertTrue(actual.getPath(), Arrays.equals(Util.readFileAsBytes(expected),
+          Util.readFileAsBytes(actual)));
+      return;
+    }
+    String[] expectedNames = expected.list();
+    String[] actualNames = actual.list();
+    Arrays.sort(expectedNames);
+    Arrays.sort(actualNames);
+    assertEquals(actual.getPath(), Arrays.asList(expectedNames), Arrays.asList(actualNames));
+    for (String name : expectedNames) {
+      assertSameTree(new File(expected, name), new File(actual, name));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.CachedGeneratorResult;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.dev.cfg.Rule;
+import com.google.gwt.dev.cfg.RuleReplaceWith;
+import com.google.gwt.dev.javac.CachedGeneratorResultImpl;
+import com.google.gwt.dev.javac.GeneratedUnit;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.util.tools.Utility;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Tests saving and loading a {@link RebindCache}.
+ */
+public class RebindCacheTest extends TestCase {
+
+  private File dir;
+
+  public void testLoadCorrupt() throws IOException {
+    File file = new File(dir, "corrupt");
+    Util.writeStringAsFile(file, "not a rebind cache");
+    RebindCache cache = RebindCache.load(TreeLogger.NULL, file);
+    assertNull(cache.get(new RuleReplaceWith("Impl"), "Foo"));
+  }
+
+  public void testLoadMissing() {
+    RebindCache cache = RebindCache.load(TreeLogger.NULL, new File(dir, "missing"));
+    assertNull(cache.get(new RuleReplaceWith("Impl"), "Foo"));
+  }
+
+  public void testSaveAndLoad() {
+    Rule rule = new RuleReplaceWith("Impl");
+    HashMap<String, Serializable> clientData = new HashMap<String, Serializable>();
+    clientData.put("key", "value");
+    RebindCache cache = new RebindCache();
+    cache.put(rule, "Foo", new CachedGeneratorResultImpl("FooImpl", new ArtifactSet(),
+        new HashMap<String, GeneratedUnit>(), 42L, clientData));
+    File file = new File(dir, "module");
+    cache.save(TreeLogger.NULL, file);
+
+    RebindCache loaded = RebindCache.load(TreeLogger.NULL, file);
+    CachedGeneratorResult result = loaded.get(rule, "Foo");
+    assertEquals("FooImpl", result.getResultTypeName());
+    assertEquals(42L, result.getTimeGenerated());
+    assertEquals("value", result.getClientData("key"));
+    assertNull(loaded.get(rule, "Bar"));
+
+    // Only results that came from disk count
+    assertEquals(0, loaded.getReusedFromDiskCount());
+    loaded.recordReuse(result);
+    assertEquals(1, loaded.getReusedFromDiskCount());
+    CachedGeneratorResult fresh = new CachedGeneratorResultImpl("BarImpl", new ArtifactSet(),
+        new HashMap<String, GeneratedUnit>(), 43L);
+    loaded.put(rule, "Bar", fresh);
+    loaded.recordReuse(fresh);
+    assertEquals(1, loaded.getReusedFromDiskCount());
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = Utility.makeTemporaryDirectory(null, "rebindcachetest");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Util.recursiveDelete(dir, false);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.Generator;
+import com.google.gwt.core.ext.GeneratorContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.impl.StandardGeneratedResource;
+import com.google.gwt.dev.cfg.BindingProperty;
+import com.google.gwt.dev.cfg.ConditionWhenTypeIs;
+import com.google.gwt.dev.cfg.ConfigurationProperty;
+import com.google.gwt.dev.cfg.MockModuleDef;
+import com.google.gwt.dev.cfg.ModuleDef;
+import com.google.gwt.dev.cfg.RuleGenerateWith;
+import com.google.gwt.dev.cfg.Rules;
+import com.google.gwt.dev.cfg.StaticPropertyOracle;
+import com.google.gwt.dev.javac.CompilationStateTestBase;
+import com.google.gwt.dev.javac.StandardGeneratorContext;
+import com.google.gwt.dev.javac.testing.impl.MockJavaResource;
+import com.google.gwt.dev.shell.StandardRebindOracle;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests {@link RebindPrefetcher}.
+ */
+public class RebindPrefetcherTest extends CompilationStateTestBase {
+
+  /**
+   * Generates <code>test.WidgetImpl</code>.
+   */
+  public static class WidgetGenerator extends Generator {
+    @Override
+    public String generate(TreeLogger logger, GeneratorContext context, String typeName) {
+      PrintWriter pw = context.tryCreate(logger, "test", "WidgetImpl");
+      if (pw != null) {
+        pw.println("package test;");
+        pw.println("public class WidgetImpl extends Widget {}");
+        context.commit(logger, pw);
+      }
+      return "test.WidgetImpl";
+    }
+  }
+
+  private static final MockJavaResource GWT = new MockJavaResource(
+      "com.google.gwt.core.client.GWT") {
+    @Override
+    public CharSequence getContent() {
+      StringBuffer code = new StringBuffer();
+      code.append("package com.google.gwt.core.client;\n");
+      code.append("public class GWT {\n");
+      code.append("  public static <T> T create(Class<?> classLiteral) { return null; }\n");
+      code.append("}\n");
+      return code;
+    }
+  };
+
+  private static final MockJavaResource OTHER = new MockJavaResource("test.Other") {
+    @Override
+    public CharSequence getContent() {
+      StringBuffer code = new StringBuffer();
+      code.append("package test;\n");
+      code.append("public class Other {\n");
+      code.append("  public static <T> T create(Class<?> classLiteral) { return null; }\n");
+      code.append("}\n");
+      return code;
+    }
+  };
+
+  private static final MockJavaResource OUTER = new MockJavaResource("test.Outer") {
+    @Override
+    public CharSequence getContent() {
+      StringBuffer code = new StringBuffer();
+      code.append("package test;\n");
+      code.append("public class Outer {\n");
+      code.append("  public static class Inner {}\n");
+      code.append("}\n");
+      return code;
+    }
+  };
+
+  private static final MockJavaResource USER = new MockJavaResource("test.User") {
+    @Override
+    public CharSequence getContent() {
+      StringBuffer code = new StringBuffer();
+      code.append("package test;\n");
+      code.append("import com.google.gwt.core.client.GWT;\n");
+      code.append("public class User {\n");
+      code.append("  Widget widget = GWT.create(Widget.class);\n");
+      code.append("  void run() {\n");
+      code.append("    Object inner = GWT.create(Outer.Inner.class);\n");
+      code.append("    Object other = Other.create(Outer.class);\n");
+      code.append("    Class<?> notCreated = User.class;\n");
+      code.append("  }\n");
+      code.append("}\n");
+      return code;
+    }
+  };
+
+  private static final MockJavaResource WIDGET = new MockJavaResource("test.Widget") {
+    @Override
+    public CharSequence getContent() {
+      StringBuffer code = new StringBuffer();
+      code.append("package test;\n");
+      code.append("public class Widget {}\n");
+      return code;
+    }
+  };
+
+  private StandardGeneratorContext genCtx;
+
+  private final ModuleDef module = new MockModuleDef();
+
+  private RebindPrefetcher prefetcher;
+
+  private StaticPropertyOracle[] propertyOracles;
+
+  private StandardRebindOracle[] rebindOracles;
+
+  private Rules rules;
+
+  public void testApply() throws UnableToCompleteException {
+    prefetcher.prefetchOnce(TreeLogger.NULL);
+    assertFalse(prefetcher.apply(TreeLogger.NULL, "test.User", genCtx, rebindOracles));
+
+    assertTrue(prefetcher.apply(TreeLogger.NULL, "test.Widget", genCtx, rebindOracles));
+    assertTrue(genCtx.getGeneratedUnitMap().containsKey("test.WidgetImpl"));
+    assertEquals("test.WidgetImpl", rebindOracles[0].rebind(TreeLogger.NULL, "test.Widget"));
+
+    // A result is only used once
+    assertFalse(prefetcher.apply(TreeLogger.NULL, "test.Widget", genCtx, rebindOracles));
+  }
+
+  public void testApplyDiscardsConflict() {
+    prefetcher.prefetchOnce(TreeLogger.NULL);
+
+    // Generated on the main context after the prefetch ran
+    genCtx.setCurrentGenerator(Generator.class);
+    PrintWriter pw = genCtx.tryCreate(TreeLogger.NULL, "test", "WidgetImpl");
+    pw.println("package test;");
+    pw.println("public class WidgetImpl extends Widget { int changed; }");
+    genCtx.commit(TreeLogger.NULL, pw);
+    String hash = genCtx.getGeneratedUnitMap().get("test.WidgetImpl").getStrongHash();
+
+    assertFalse(prefetcher.apply(TreeLogger.NULL, "test.Widget", genCtx, rebindOracles));
+    assertEquals(hash, genCtx.getGeneratedUnitMap().get("test.WidgetImpl").getStrongHash());
+  }
+
+  public void testApplyOnlyIndependentGenerators() throws UnableToCompleteException {
+    prefetcher = new RebindPrefetcher(module, state, new ArtifactSet(), null, rules,
+        propertyOracles, Collections.<String> emptySet(), 2);
+    prefetcher.prefetchOnce(TreeLogger.NULL);
+    assertFalse(prefetcher.apply(TreeLogger.NULL, "test.Widget", genCtx, rebindOracles));
+    assertFalse(genCtx.getGeneratedUnitMap().containsKey("test.WidgetImpl"));
+  }
+
+  public void testApplyOnlyNewArtifacts() throws UnableToCompleteException {
+    // A generator artifact that existed before the prefetch
+    ArtifactSet generatorArtifacts = new ArtifactSet();
+    generatorArtifacts.add(new StandardGeneratedResource(WidgetGenerator.class, "old.txt",
+        new byte[0]));
+    prefetcher = new RebindPrefetcher(module, state, generatorArtifacts, null, rules,
+        propertyOracles, Collections.singleton(WidgetGenerator.class.getName()), 2);
+    prefetcher.prefetchOnce(TreeLogger.NULL);
+    assertTrue(prefetcher.apply(TreeLogger.NULL, "test.Widget", genCtx, rebindOracles));
+    assertTrue(genCtx.getArtifacts().isEmpty());
+  }
+
+  public void testFindRebindRequests() {
+    assertEquals(Arrays.asList("test.Outer.Inner", "test.Widget"),
+        Arrays.asList(RebindPrefetcher.findRebindRequests(state).toArray()));
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    oracle.add(GWT, OTHER, OUTER, USER, WIDGET);
+    rebuildCompilationState();
+
+    rules = new Rules();
+    RuleGenerateWith rule = new RuleGenerateWith(WidgetGenerator.class);
+    rule.getRootCondition().getConditions().add(new ConditionWhenTypeIs("test.Widget"));
+    rules.prepend(rule);
+    propertyOracles = new StaticPropertyOracle[] {new StaticPropertyOracle(
+        new BindingProperty[0], new String[0], new ConfigurationProperty[0])};
+    prefetcher = new RebindPrefetcher(module, state, new ArtifactSet(), null, rules,
+        propertyOracles, Collections.singleton(WidgetGenerator.class.getName()), 2);
+
+    genCtx = new StandardGeneratorContext(state, module, null, new ArtifactSet(), true);
+    rebindOracles = new StandardRebindOracle[] {
+        new StandardRebindOracle(propertyOracles[0], rules, genCtx)};
+  }
+}
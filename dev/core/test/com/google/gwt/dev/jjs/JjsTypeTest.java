@@ -200,6 +200,21 @@ public class JjsTypeTest extends TestCase {
     }
   }
 
+  public void testSubClassRelations() {
+    assertTrue(typeOracle.isSubClass(classObject, classBSub));
+    assertTrue(typeOracle.isSubClass(classBase, classBSub));
+    assertTrue(typeOracle.isSubClass(classB, classBSub));
+    assertFalse(typeOracle.isSubClass(classA, classBSub));
+    assertFalse(typeOracle.isSubClass(classBSub, classB));
+    assertFalse(typeOracle.isSubClass(classB, classB));
+    assertFalse(typeOracle.isSubClass(classBase, classC));
+
+    assertTrue(typeOracle.isSuperClass(classBSub, classObject));
+    assertTrue(typeOracle.isSuperClass(classJso1, classJso));
+    assertFalse(typeOracle.isSuperClass(classJso1, classJso2));
+    assertFalse(typeOracle.isSuperClass(classObject, classObject));
+  }
+
   public void testStrongerType() {
     assertSame(classA, program.strongerType(classA, classA));
     assertSame(classBnn, program.strongerType(classB, classBnn));
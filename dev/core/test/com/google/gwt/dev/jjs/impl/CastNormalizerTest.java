@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.javac.testing.impl.MockJavaResource;
+import com.google.gwt.dev.jjs.ast.Context;
+import com.google.gwt.dev.jjs.ast.JClassType;
+import com.google.gwt.dev.jjs.ast.JIntLiteral;
+import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JMethodCall;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.jjs.ast.JVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link CastNormalizer} with class casts checked by seed id interval.
+ */
+public class CastNormalizerTest extends OptimizerTestBase {
+
+  private JProgram program;
+
+  public void testClassIntervalCasts() throws UnableToCompleteException {
+    sourceOracle.addOrReplace(new MockJavaResource("com.google.gwt.lang.Cast") {
+      @Override
+      public CharSequence getContent() {
+        StringBuffer code = new StringBuffer();
+        code.append("package com.google.gwt.lang;\n");
+        code.append("public final class Cast {\n");
+        code.append("  public static Object dynamicCast(Object src, int dstId) { return src;}\n");
+        code.append("  public static Object dynamicCastToClass(Object src, int firstId,");
+        code.append("      int lastId) { return src;}\n");
+        code.append("  public static boolean instanceOf(Object src, int dstId) { return false;}\n");
+        code.append("  public static boolean instanceOfClass(Object src, int firstId,");
+        code.append("      int lastId) { return false;}\n");
+        code.append("  public static native boolean isNull(Object a) /*-{ }-*/;\n");
+        code.append("  public static native boolean isNotNull(Object a) /*-{ }-*/;\n");
+        code.append("  public static native boolean jsEquals(Object a, Object b) /*-{ }-*/;\n");
+        code.append("  public static native boolean jsNotEquals(Object a, Object b) /*-{ }-*/;\n");
+        code.append("}\n");
+        return code;
+      }
+    });
+    addSnippetClassDecl("static class A {}", "static class B extends A {}",
+        "static class C extends A {}", "static class D extends B {}",
+        "static Object o = new D()");
+
+    System.setProperty(CastNormalizer.CLASS_INTERVAL_CASTS_PROPERTY, "true");
+    try {
+      optimize("void", "boolean isB = o instanceof B;", "A a = (A) o;", "C c = (C) o;");
+    } finally {
+      System.clearProperty(CastNormalizer.CLASS_INTERVAL_CASTS_PROPERTY);
+    }
+
+    // Object and String keep the seed ids GenerateJavaScriptAST reserves
+    List<JClassType> classes = program.getClassesInSeedOrder();
+    assertSame(program.getTypeJavaLangObject(), classes.get(0));
+    assertSame(program.getTypeJavaLangString(), classes.get(1));
+
+    final List<JMethodCall> calls = new ArrayList<JMethodCall>();
+    new JVisitor() {
+      @Override
+      public void endVisit(JMethodCall x, Context ctx) {
+        if (x.getTarget().getName().endsWith("Class")) {
+          calls.add(x);
+        }
+      }
+    }.accept(findMethod(program, MAIN_METHOD_NAME));
+    assertEquals(3, calls.size());
+    assertEquals("instanceOfClass", calls.get(0).getTarget().getName());
+    assertInterval(classes, "test.EntryPoint$B", calls.get(0));
+    assertEquals("dynamicCastToClass", calls.get(1).getTarget().getName());
+    assertInterval(classes, "test.EntryPoint$A", calls.get(1));
+    assertEquals("dynamicCastToClass", calls.get(2).getTarget().getName());
+    assertInterval(classes, "test.EntryPoint$C", calls.get(2));
+  }
+
+  @Override
+  protected boolean optimizeMethod(JProgram program, JMethod method) {
+    this.program = program;
+    CastNormalizer.exec(program, false);
+    return true;
+  }
+
+  /**
+   * Asserts that a call's id interval holds exactly the class and its
+   * subclasses. The class at index <code>i</code> has id <code>i + 1</code>.
+   */
+  private void assertInterval(List<JClassType> classes, String typeName, JMethodCall call) {
+    JClassType type = (JClassType) findType(program, typeName);
+    int firstId = ((JIntLiteral) call.getArgs().get(1)).getValue();
+    int lastId = ((JIntLiteral) call.getArgs().get(2)).getValue();
+    assertEquals(type, classes.get(firstId - 1));
+    for (int i = 0; i < classes.size(); ++i) {
+      JClassType candidate = classes.get(i);
+      boolean inInterval = firstId <= i + 1 && i + 1 <= lastId;
+      assertEquals(candidate.getName(), program.typeOracle.canTriviallyCast(candidate, type),
+          inInterval);
+    }
+  }
+}
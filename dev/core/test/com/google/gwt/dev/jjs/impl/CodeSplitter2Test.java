@@ -15,6 +15,8 @@
  */
 package com.google.gwt.dev.jjs.impl;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -59,6 +61,7 @@ public class CodeSplitter2Test extends JJSTestBase {
   
   private JProgram jProgram = null;
   private JsProgram jsProgram = null;
+  private SplitPointActivationTrace trace = null;
   
   public void setUp() throws Exception{
     super.setUp();
@@ -158,6 +161,34 @@ public class CodeSplitter2Test extends JJSTestBase {
     assertInFragment("functionC", 3);
   }
   
+  public void testActivationTraceMerge() throws UnableToCompleteException, IOException {
+    StringBuffer code = new StringBuffer();
+    code.append("package test;\n");
+    code.append("import com.google.gwt.core.client.GWT;\n");
+    code.append("import com.google.gwt.core.client.RunAsyncCallback;\n");
+    code.append("public class EntryPoint {\n");
+    code.append(functionA); 
+    code.append(functionB);
+    code.append(functionC);
+    code.append("  public static void onModuleLoad() {\n");
+    // Fragment #1
+    code.append(createRunAsync("functionA();"));
+    // Fragment #2
+    code.append(createRunAsync("functionB();"));
+    // Fragment #1, no shared code but always activated along with #1
+    code.append(createRunAsync("functionC();"));
+    code.append("  }\n");
+    code.append("}\n");
+    trace = SplitPointActivationTrace.parse(new StringReader("1 3\n3, 1\n2\n"));
+    compileSnippet(code.toString());
+
+    // init + 2 fragments + leftover.
+    assertFragmentCount(4);
+    assertInFragment("functionA", 1);
+    assertInFragment("functionC", 1);
+    assertInFragment("functionB", 2);
+  }
+
   private void assertFragmentCount(int num) {
     assertEquals(num, jsProgram.getFragmentCount());
   }
@@ -217,7 +248,7 @@ public class CodeSplitter2Test extends JJSTestBase {
     JavaToJavaScriptMap map = GenerateJavaScriptAST.exec(
         jProgram, jsProgram, JsOutputOption.PRETTY, symbolTable, new PropertyOracle[]{
             new StaticPropertyOracle(orderedProps, orderedPropValues, configProps)});
-    CodeSplitter2.exec(logger, jProgram, jsProgram, map, null);    
+    CodeSplitter2.exec(logger, jProgram, jsProgram, map, null, trace);
   }
   
   private static String createRunAsync(String body) {
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.javac.testing.impl.MockJavaResource;
+import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JProgram;
+
+/**
+ * Tests {@link LongEmulationNormalizer}.
+ */
+public class LongEmulationNormalizerTest extends OptimizerTestBase {
+
+  @Override
+  public void setUp() throws Exception {
+    sourceOracle.addOrReplace(new MockJavaResource("com.google.gwt.lang.LongLib") {
+      @Override
+      public CharSequence getContent() {
+        StringBuffer code = new StringBuffer();
+        code.append("package com.google.gwt.lang;\n");
+        code.append("public final class LongLib {\n");
+        code.append("  public static long add(long a, long b) { return a; }\n");
+        code.append("  public static long div(long a, long b) { return a; }\n");
+        code.append("  public static boolean lt(long a, long b) { return false; }\n");
+        code.append("  public static long mul(long a, long b) { return a; }\n");
+        code.append("  public static long shl(long a, int n) { return a; }\n");
+        code.append("  public static long sub(long a, long b) { return a; }\n");
+        code.append("}\n");
+        return code;
+      }
+    });
+    addSnippetClassDecl("static volatile int i;");
+    addSnippetClassDecl("static volatile int j;");
+    addSnippetClassDecl("static volatile long l;");
+  }
+
+  public void testLowerSmallArithmetic() throws Exception {
+    optimize("long", "return (long) i + 1L;").intoString(
+        "return (long) ((double) EntryPoint.i + 1.0);");
+    optimize("long", "return (long) i - (long) j;").intoString(
+        "return (long) ((double) EntryPoint.i - (double) EntryPoint.j);");
+    optimize("long", "return (long) i * 1000L;").intoString(
+        "return (long) ((double) EntryPoint.i * 1000.0);");
+  }
+
+  public void testLowerSmallComparison() throws Exception {
+    optimize("boolean", "return (long) i < 1L;").intoString(
+        "return (double) EntryPoint.i < 1.0;");
+  }
+
+  public void testLowerBoundedLocals() throws Exception {
+    optimize("long", "long k = (long) i * 1000L;", "long q = k + 5L;", "return q;").intoString(
+        "double k = (double) EntryPoint.i * 1000.0;",
+        "double q = k + 5.0;",
+        "return (long) q;");
+  }
+
+  public void testLowerLoopCounter() throws Exception {
+    // k is bounded by the loop condition; t grows without bound
+    optimize("long", "long t = 0L;",
+        "for (long k = 0L; k < (long) i; k = k + 1L) { t = t + k; }", "return t;").intoString(
+        "long t = 0L;",
+        "for (double k = 0.0; k < (double) EntryPoint.i; k = k + 1.0) {",
+        "  t = LongLib.add(t, (long) k);",
+        "}",
+        "return t;");
+  }
+
+  public void testKeepDivision() throws Exception {
+    optimize("long", "return (long) i / 2L;").intoString(
+        "return LongLib.div((long) EntryPoint.i, 2L);");
+  }
+
+  public void testKeepOverflowingProduct() throws Exception {
+    // Up to 2^62, beyond what a double holds exactly
+    optimize("long", "return (long) i * (long) j;").intoString(
+        "return LongLib.mul((long) EntryPoint.i, (long) EntryPoint.j);");
+  }
+
+  public void testKeepShift() throws Exception {
+    optimize("long", "return (long) i << 40;").intoString(
+        "return LongLib.shl((long) EntryPoint.i, 40);");
+  }
+
+  public void testKeepLocalAssignedInExpression() throws Exception {
+    optimize("long", "long a = 0L;", "long b = (a = 1L) + 2L;", "return a + b;").intoString(
+        "long a = 0L;",
+        "long b = LongLib.add(a = 1L, 2L);",
+        "return LongLib.add(a, b);");
+  }
+
+  public void testKeepUnboundedLocal() throws Exception {
+    optimize("long", "long t = l;", "t = t + 1L;", "return t;").intoString(
+        "long t = EntryPoint.l;",
+        "t = LongLib.add(t, 1L);",
+        "return t;");
+  }
+
+  public void testKeepUnboundedOperands() throws Exception {
+    optimize("long", "return l + 1L;").intoString("return LongLib.add(EntryPoint.l, 1L);");
+    optimize("boolean", "return l < (long) i;").intoString(
+        "return LongLib.lt(EntryPoint.l, (long) EntryPoint.i);");
+  }
+
+  @Override
+  protected boolean optimizeMethod(JProgram program, JMethod method) {
+    LongCastNormalizer.exec(program);
+    LongEmulationNormalizer.exec(program);
+    return true;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JProgram;
+
+/**
+ * Tests {@link MethodInliner}.
+ */
+public class MethodInlinerTest extends OptimizerTestBase {
+
+  public void testInlineChain() throws Exception {
+    // Each round only revisits the methods whose callees were just inlined into
+    addSnippetClassDecl("static int a() { return b(); }");
+    addSnippetClassDecl("static int b() { return c(); }");
+    addSnippetClassDecl("static int c() { return 5; }");
+    optimize("int", "return a();").into("return 5;");
+  }
+
+  @Override
+  protected boolean optimizeMethod(JProgram program, JMethod method) {
+    OptimizerStats stats = MethodInliner.exec(program);
+    assertTrue(stats.getNumVisits() > 0);
+    return stats.didChange();
+  }
+}
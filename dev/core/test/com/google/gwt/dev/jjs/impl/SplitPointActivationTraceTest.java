@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+
+/**
+ * Tests {@link SplitPointActivationTrace}.
+ */
+public class SplitPointActivationTraceTest extends TestCase {
+
+  public void testCoActivation() throws IOException {
+    SplitPointActivationTrace trace = parse("1 2\n# comment\n\n2,3\n2 2 7\n");
+    assertEquals(3, trace.getSessionCount());
+    int[][] together = trace.computeCoActivation(3);
+    assertEquals(1, together[1][1]);
+    assertEquals(3, together[2][2]);
+    assertEquals(1, together[1][2]);
+    assertEquals(1, together[2][3]);
+    assertEquals(0, together[1][3]);
+  }
+
+  public void testCountDownloads() throws IOException {
+    SplitPointActivationTrace trace = parse("1 2\n1 2 3\n3\n");
+    assertEquals(5, trace.countDownloads(new int[] {0, 1, 2, 3}, Collections.<Integer> emptySet()));
+    assertEquals(3, trace.countDownloads(new int[] {0, 1, 1, 3}, Collections.<Integer> emptySet()));
+    assertEquals(2, trace.countDownloads(new int[] {0, 1, 1, 3}, Collections.singleton(1)));
+  }
+
+  public void testMalformed() {
+    try {
+      parse("1 two 3\n");
+      fail("Expected IOException");
+    } catch (IOException expected) {
+    }
+  }
+
+  private SplitPointActivationTrace parse(String text) throws IOException {
+    return SplitPointActivationTrace.parse(new StringReader(text));
+  }
+}
@@ -24,7 +24,10 @@ import com.google.gwt.dev.jjs.impl.gflow.constants.ConstantsAnalysisTransformati
 import com.google.gwt.dev.jjs.impl.gflow.copy.CopyAnalysisTest;
 import com.google.gwt.dev.jjs.impl.gflow.copy.CopyAnalysisTransformationTest;
 import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAnalysisTest;
+import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumptionTest;
 import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessTransformationTest;
+import com.google.gwt.dev.jjs.impl.gflow.ranges.RangeAnalysisTest;
+import com.google.gwt.dev.jjs.impl.gflow.ranges.RangeTest;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -43,9 +46,12 @@ public class GflowTests {
     suite.addTestSuite(ConstantsAnalysisTest.class);
     suite.addTestSuite(ConstantsAnalysisTransformationTest.class);
     suite.addTestSuite(LivenessAnalysisTest.class);
+    suite.addTestSuite(LivenessAssumptionTest.class);
     suite.addTestSuite(LivenessTransformationTest.class);
     suite.addTestSuite(CopyAnalysisTest.class);
     suite.addTestSuite(CopyAnalysisTransformationTest.class);
+    suite.addTestSuite(RangeTest.class);
+    suite.addTestSuite(RangeAnalysisTest.class);
     suite.addTestSuite(DataflowOptimizerTest.class);
     return suite;
   }
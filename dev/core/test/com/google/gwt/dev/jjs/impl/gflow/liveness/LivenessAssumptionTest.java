@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.liveness;
+
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.jjs.ast.JLocal;
+import com.google.gwt.dev.jjs.ast.JMethodBody;
+import com.google.gwt.dev.jjs.ast.JPrimitiveType;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumption.Updater;
+import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumption.VariableIndex;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for LivenessAssumption.
+ */
+public class LivenessAssumptionTest extends TestCase {
+  private final JLocal i = newLocal("i");
+  private final JLocal j = newLocal("j");
+  private final JLocal k = newLocal("k");
+
+  public void testUseAndKill() {
+    Updater updater = new Updater(null, new VariableIndex());
+    updater.use(i);
+    updater.use(j);
+    updater.kill(i);
+    assertEquals("{j}", updater.unwrap().toString());
+    updater.kill(j);
+    assertNull(updater.unwrap());
+  }
+
+  public void testJoinSharedIndex() {
+    VariableIndex index = new VariableIndex();
+    LivenessAssumption a1 = live(index, i, j);
+    LivenessAssumption a2 = live(index, j, k);
+    assertEquals("{i, j, k}", a1.join(a2).toString());
+    // Operands are not modified
+    assertEquals("{i, j}", a1.toString());
+    assertEquals("{j, k}", a2.toString());
+  }
+
+  public void testJoinDifferentIndexes() {
+    LivenessAssumption a1 = live(new VariableIndex(), i, j);
+    LivenessAssumption a2 = live(new VariableIndex(), k, j);
+    LivenessAssumption joined = a1.join(a2);
+    assertEquals("{i, j, k}", joined.toString());
+    assertTrue(joined.isLive(k));
+  }
+
+  public void testEqualsAcrossIndexes() {
+    LivenessAssumption a1 = live(new VariableIndex(), i, j);
+    LivenessAssumption a2 = live(new VariableIndex(), j, i);
+    assertEquals(a1, a2);
+    assertEquals(a1.hashCode(), a2.hashCode());
+    assertFalse(a1.equals(live(new VariableIndex(), i, k)));
+  }
+
+  private LivenessAssumption live(VariableIndex index, JLocal... locals) {
+    Updater updater = new Updater(null, index);
+    for (JLocal local : locals) {
+      updater.use(local);
+    }
+    return updater.unwrap();
+  }
+
+  private JLocal newLocal(String name) {
+    return JProgram.createLocal(SourceOrigin.UNKNOWN, name, JPrimitiveType.INT, false,
+        new JMethodBody(SourceOrigin.UNKNOWN));
+  }
+}
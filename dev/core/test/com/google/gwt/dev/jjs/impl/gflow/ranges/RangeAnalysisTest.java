@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import com.google.gwt.dev.jjs.impl.gflow.Analysis;
+import com.google.gwt.dev.jjs.impl.gflow.CfgAnalysisTestBase;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.Cfg;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
+import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgNode;
+
+/**
+ * Tests {@link RangeAnalysis}.
+ */
+public class RangeAnalysisTest extends CfgAnalysisTestBase<RangeAssumption> {
+
+  public void testArithmetic() throws Exception {
+    analyze("void", "long i = 1L;", "long j = i * 3L - 2L;").into(
+        "BLOCK -> [* T]",
+        "STMT -> [* T]",
+        "WRITE(i, 1L) -> [* {i = [1, 1]}]",
+        "STMT -> [* {i = [1, 1]}]",
+        "READ(i) -> [* {i = [1, 1]}]",
+        "WRITE(j, i * 3L - 2L) -> [* {i = [1, 1], j = [1, 1]}]",
+        "END");
+  }
+
+  public void testCondition() throws Exception {
+    analyzeWithParams("void", "long p", "long i = p;",
+        "if (i < 10L && i >= 0L) { long j = i; }").into(
+        "BLOCK -> [* T]",
+        "STMT -> [* T]",
+        "READ(p) -> [* T]",
+        "WRITE(i, p) -> [* T]",
+        "STMT -> [* T]",
+        "READ(i) -> [* T]",
+        "COND (i < 10L) -> [THEN=* {i = [-inf, 9]}, ELSE=1 {i = [10, inf]}]",
+        "READ(i) -> [* {i = [-inf, 9]}]",
+        "1: COND (i < 10L && i >= 0L) -> [THEN=* {i = [0, 9]}, ELSE=2 T]",
+        "BLOCK -> [* {i = [0, 9]}]",
+        "STMT -> [* {i = [0, 9]}]",
+        "READ(i) -> [* {i = [0, 9]}]",
+        "WRITE(j, i) -> [* {i = [0, 9], j = [0, 9]}]",
+        "2: END");
+  }
+
+  public void testLoopCounter() throws Exception {
+    // The loop head widens k to [0, inf]; the loop condition bounds it again
+    analyze("void", "for (long k = 0L; k < 10L; k = k + 1L) {", "}").into(
+        "BLOCK -> [* T]",
+        "STMT -> [* T]",
+        "STMT -> [* T]",
+        "WRITE(k, 0L) -> [* {k = [0, 0]}]",
+        "1: READ(k) -> [* {k = [0, inf]}]",
+        "COND (k < 10L) -> [THEN=* {k = [0, 9]}, ELSE=2 {k = [10, inf]}]",
+        "BLOCK -> [* {k = [0, 9]}]",
+        "STMT -> [* {k = [0, 9]}]",
+        "READ(k) -> [* {k = [0, 9]}]",
+        "WRITE(k, k + 1L) -> [1 {k = [1, 10]}]",
+        "2: END");
+  }
+
+  @Override
+  protected Analysis<CfgNode<?>, CfgEdge, Cfg, RangeAssumption> createAnalysis() {
+    return new RangeAnalysis();
+  }
+}
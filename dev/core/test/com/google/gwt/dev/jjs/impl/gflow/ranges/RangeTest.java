@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.ranges;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link Range}.
+ */
+public class RangeTest extends TestCase {
+  private static final long MAX = Range.MAX_EXACT;
+
+  public void testAdd() {
+    assertEquals("[3, 7]", Range.of(1, 2).add(Range.of(2, 5)).toString());
+    assertEquals("[-inf, 7]", Range.of(1, 2).add(Range.of(2, 5).widen(Range.of(-3, 5)))
+        .toString());
+    assertEquals("[" + (MAX - 1) + ", inf]", Range.of(MAX - 2, MAX).add(Range.of(1, 1))
+        .toString());
+  }
+
+  public void testBounds() {
+    assertTrue(Range.of(-MAX, MAX).isBounded());
+    assertFalse(Range.of(-MAX - 1, 0).isBounded());
+    assertFalse(Range.of(0, MAX + 1).isBounded());
+    assertSame(Range.UNBOUNDED, Range.of(Long.MIN_VALUE, Long.MAX_VALUE));
+    assertEquals(Range.of(2, 4), Range.of(2, 4));
+  }
+
+  public void testMultiply() {
+    assertEquals("[-10, 15]", Range.of(-2, 3).multiply(Range.of(1, 5)).toString());
+    assertEquals("[-2147483648000, 2147483647000]", Range.INT.multiply(Range.of(1000, 1000))
+        .toString());
+    // Products up to 2^62 do not fit
+    assertSame(Range.UNBOUNDED, Range.INT.multiply(Range.INT));
+    assertSame(Range.UNBOUNDED, Range.of(0, 1).multiply(Range.of(0, 1).widen(Range.of(0, 2))));
+  }
+
+  public void testNarrow() {
+    Range nonNegative = Range.of(0, 1).widen(Range.of(0, 2));
+    assertEquals("[0, inf]", nonNegative.toString());
+    assertEquals("[0, 9]", nonNegative.atMost(9).toString());
+    assertEquals("[5, inf]", nonNegative.atLeast(5).toString());
+    // No values left: unchanged
+    assertEquals("[0, inf]", nonNegative.atMost(-1).toString());
+  }
+
+  public void testNegate() {
+    assertEquals("[-5, 2]", Range.of(-2, 5).negate().toString());
+    assertEquals("[-inf, 0]", Range.of(0, 1).widen(Range.of(0, 2)).negate().toString());
+    assertEquals("[-4, 1]", Range.of(1, 3).subtract(Range.of(2, 5)).toString());
+  }
+
+  public void testWiden() {
+    Range range = Range.of(0, 10);
+    assertSame(range, range.join(range));
+    assertEquals("[0, 10]", range.widen(Range.of(2, 8)).toString());
+    assertEquals("[0, inf]", range.widen(Range.of(0, 11)).toString());
+    assertEquals("[-inf, 10]", range.widen(Range.of(-1, 10)).toString());
+    assertEquals("[-1, 11]", range.join(Range.of(-1, 11)).toString());
+  }
+}
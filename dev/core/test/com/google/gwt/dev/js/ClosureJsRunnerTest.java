@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.js;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.jjs.JsOutputOption;
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.js.ast.JsProgram;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+
+/**
+ * Tests {@link ClosureJsRunner} optimizing each fragment separately.
+ */
+public class ClosureJsRunnerTest extends TestCase {
+
+  public void testFragmentsKeepSharedGlobals() throws Exception {
+    JsProgram program = new JsProgram();
+    program.setFragmentCount(2);
+    addFragment(program, 0, "function gwtOnLoad() { return lateFn() + lateVar; }"
+        + "function earlyFn() { return 1; }"
+        + "var earlyVar = 2;");
+    addFragment(program, 1, "function lateFn() { return earlyFn() + earlyVar; }"
+        + "var lateVar = 3;"
+        + "lateFn();");
+    JsSymbolResolver.exec(program);
+
+    String[] js = new String[2];
+    System.setProperty(ClosureJsRunner.FRAGMENT_THREADS_PROPERTY, "2");
+    try {
+      new ClosureJsRunner().compile(TreeLogger.NULL, null, program, js,
+          JsOutputOption.OBFUSCATED);
+    } finally {
+      System.clearProperty(ClosureJsRunner.FRAGMENT_THREADS_PROPERTY);
+    }
+
+    // Used only by the other fragment, but neither removed, inlined nor renamed
+    assertTrue(js[0], js[0].contains("function earlyFn()"));
+    assertTrue(js[0], js[0].contains("earlyVar=2"));
+    assertTrue(js[1], js[1].contains("function lateFn()"));
+    assertTrue(js[1], js[1].contains("lateVar=3"));
+
+    // References to the other fragment's globals
+    assertTrue(js[0], js[0].contains("lateFn()"));
+    assertTrue(js[0], js[0].contains("lateVar"));
+    assertTrue(js[1], js[1].contains("earlyFn()"));
+    assertTrue(js[1], js[1].contains("earlyVar"));
+  }
+
+  private void addFragment(JsProgram program, int fragment, String js) throws Exception {
+    program.getFragmentBlock(fragment).getStatements().addAll(
+        JsParser.parse(SourceOrigin.UNKNOWN, program.getScope(), new StringReader(js)));
+  }
+}
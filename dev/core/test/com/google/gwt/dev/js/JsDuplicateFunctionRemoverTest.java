@@ -15,11 +15,26 @@
  */
 package com.google.gwt.dev.js;
 
+import com.google.gwt.dev.js.ast.JsProgram;
+
 /**
  * Tests the JsStaticEval optimizer.
  */
 public class JsDuplicateFunctionRemoverTest extends OptimizerTestBase {
 
+  /**
+   * Adapts {@link JsDuplicateFunctionRemover#execParameterized(JsProgram)} for
+   * {@link OptimizerTestBase}.
+   */
+  public static class Parameterized {
+    public static void exec(JsProgram program) {
+      JsDuplicateFunctionRemover.execParameterized(program);
+    }
+  }
+
+  private static final String FREE_NAME_DECLS =
+      "function c(x){return x}\nfunction d(x){return x+1}\n";
+
   public void testDontRemoveCtors() throws Exception {
     // As fieldref qualifier
     assertEquals("function a(){}\n;function b(){}\nb.prototype={};a();b();",
@@ -35,8 +50,54 @@ public class JsDuplicateFunctionRemoverTest extends OptimizerTestBase {
         optimize("function a(){};function b(){} a(); b();"));
   }
 
+  public void testParameterizeDontMergeShadowedCaller() throws Exception {
+    // Passing c from e would pass e's local instead
+    String js = FREE_NAME_DECLS
+        + "function a(x){return c(x)*2+c(x)*3+c(x)*4+c(x)*5}\n"
+        + "function b(x){return d(x)*2+d(x)*3+d(x)*4+d(x)*5}\n"
+        + "function e(c){return a(c)}\n" + "e(1);b(2);";
+    assertEquals(js, optimizeParameterized(js));
+  }
+
+  public void testParameterizeDontMergeArgumentsUsers() throws Exception {
+    // An extra trailing argument would change arguments.length
+    String js = FREE_NAME_DECLS
+        + "function a(x){return c(x)*2+c(x)*3+c(x)*4+c(x)*5+arguments.length}\n"
+        + "function b(x){return d(x)*2+d(x)*3+d(x)*4+d(x)*5+arguments.length}\n"
+        + "a(1);b(2);";
+    assertEquals(js, optimizeParameterized(js));
+  }
+
+  public void testParameterizeDontMergeUncalledRefs() throws Exception {
+    String js = FREE_NAME_DECLS
+        + "function a(x){return c(x)*2+c(x)*3+c(x)*4+c(x)*5}\n"
+        + "function b(x){return d(x)*2+d(x)*3+d(x)*4+d(x)*5}\n" + "a(1);b(2);f=b;";
+    assertEquals(js, optimizeParameterized(js));
+  }
+
+  public void testParameterizeFreeNames() throws Exception {
+    assertEquals(FREE_NAME_DECLS
+        + "function a(x,b){return b(x)*2+b(x)*3+b(x)*4+b(x)*5}\n" + "a(1,c);a(2,d);",
+        optimizeParameterized(FREE_NAME_DECLS
+            + "function a(x){return c(x)*2+c(x)*3+c(x)*4+c(x)*5}\n"
+            + "function b(x){return d(x)*2+d(x)*3+d(x)*4+d(x)*5}\n" + "a(1);b(2);"));
+  }
+
+  public void testParameterizeUnprofitable() throws Exception {
+    // Each call grows by more than the merged body saves
+    String js = FREE_NAME_DECLS + "function a(){return c(1)}\n"
+        + "function b(){return d(1)}\n" + "a();a();a();a();a();a();a();a();"
+        + "b();b();b();b();b();b();b();b();";
+    assertEquals(js, optimizeParameterized(js));
+  }
+
   private String optimize(String js) throws Exception {
     return optimize(js, JsSymbolResolver.class,
         JsDuplicateFunctionRemover.class, JsUnusedFunctionRemover.class);
   }
+
+  private String optimizeParameterized(String js) throws Exception {
+    return optimize(js, JsSymbolResolver.class, Parameterized.class,
+        JsUnusedFunctionRemover.class);
+  }
 }
\ No newline at end of file
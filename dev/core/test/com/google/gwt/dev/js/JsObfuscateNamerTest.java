@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.js;
+
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.js.ast.JsProgram;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+
+/**
+ * Tests the JsObfuscateNamer.
+ */
+public class JsObfuscateNamerTest extends TestCase {
+
+  public void testDefaultOrder() throws Exception {
+    JsProgram program = parse("function foo(){} function bar(){} foo(); bar(); bar(); bar();");
+    JsObfuscateNamer.exec(program);
+    assertEquals("a", shortIdent(program, "foo"));
+    assertEquals("b", shortIdent(program, "bar"));
+  }
+
+  public void testFrequencyRanked() throws Exception {
+    JsProgram program = parse("function foo(){} function bar(){} foo(); bar(); bar(); bar();");
+    int[] deltas = JsObfuscateNamer.execFrequencyRanked(program);
+    assertEquals("a", shortIdent(program, "bar"));
+    assertEquals("b", shortIdent(program, "foo"));
+    assertEquals(1, deltas.length);
+    // Both idents are one character long
+    assertEquals(0, deltas[0]);
+  }
+
+  public void testFrequencyRankedSizeDelta() throws Exception {
+    // 54 one-character idents are available before two-character ones are used
+    StringBuilder js = new StringBuilder();
+    for (int i = 0; i < 60; i++) {
+      js.append("function f" + i + "(){}\n");
+    }
+    for (int i = 0; i < 10; i++) {
+      js.append("f59();\n");
+    }
+    JsProgram program = parse(js.toString());
+    int[] deltas = JsObfuscateNamer.execFrequencyRanked(program);
+    assertEquals("a", shortIdent(program, "f59"));
+    assertEquals(2, shortIdent(program, "f53").length());
+    // f59 saves one char in 11 places, f53 loses one in its declaration
+    assertEquals(-10, deltas[0]);
+  }
+
+  private JsProgram parse(String js) throws Exception {
+    JsProgram program = new JsProgram();
+    program.getGlobalBlock().getStatements().addAll(
+        JsParser.parse(SourceOrigin.UNKNOWN, program.getScope(), new StringReader(js)));
+    JsSymbolResolver.exec(program);
+    return program;
+  }
+
+  private String shortIdent(JsProgram program, String ident) {
+    return program.getScope().findExistingName(ident).getShortIdent();
+  }
+}
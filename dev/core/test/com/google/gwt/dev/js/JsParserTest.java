@@ -18,11 +18,13 @@ package com.google.gwt.dev.js;
 import com.google.gwt.dev.jjs.SourceInfo;
 import com.google.gwt.dev.js.ast.JsBlock;
 import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.js.ast.JsStatement;
 
 import junit.framework.TestCase;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
 
 /**
  * Tests {@link JsParser}.
@@ -64,6 +66,49 @@ public class JsParserTest extends TestCase {
     parse("{ foo() }").into("{ foo(); } ");
   }
 
+  public void testParseCache() throws IOException, JsParserException {
+    JsParser.ParseCache cache = new JsParser.ParseCache(100);
+    JsProgram program = new JsProgram();
+    String js = "foo();\nbar();";
+
+    List<JsStatement> first = JsParser.parse(program.createSourceInfo(10,
+        "test.js"), program.getScope(), js, cache);
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    // Same text at a different line reuses the tree but not the statements
+    List<JsStatement> second = JsParser.parse(program.createSourceInfo(30,
+        "test.js"), program.getScope(), js, cache);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertNotSame(first.get(0), second.get(0));
+    assertEquals(first.get(0).toSource(), second.get(0).toSource());
+  }
+
+  public void testParseCacheSize() throws IOException, JsParserException {
+    JsParser.ParseCache cache = new JsParser.ParseCache(20);
+    JsProgram program = new JsProgram();
+    String foo = "foo();";
+    String bar = "bar(1, 2, 3);";
+    JsParser.parse(program.createSourceInfo(1, "test.js"), program.getScope(), foo, cache);
+    JsParser.parse(program.createSourceInfo(1, "test.js"), program.getScope(), bar, cache);
+    assertEquals(foo.length() + bar.length(), cache.getSize());
+
+    // Makes room by dropping the least recently used tree, foo
+    String baz = "baz();";
+    JsParser.parse(program.createSourceInfo(1, "test.js"), program.getScope(), baz, cache);
+    assertEquals(bar.length() + baz.length(), cache.getSize());
+    JsParser.parse(program.createSourceInfo(1, "test.js"), program.getScope(), bar, cache);
+    assertEquals(1, cache.getHitCount());
+    JsParser.parse(program.createSourceInfo(1, "test.js"), program.getScope(), foo, cache);
+    assertEquals(1, cache.getHitCount());
+
+    // Too long to cache at all
+    JsParser.parse(program.createSourceInfo(1, "test.js"), program.getScope(),
+        "window.alert('too long');", cache);
+    assertEquals(bar.length() + foo.length(), cache.getSize());
+  }
+
   public void testParseErrors() {
     parse("1a2b").error(
         "test.js(1): missing ; before statement\n> 1a2b\n> ----^");
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.editdistance;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link MinHashIndex}.
+ */
+public class MinHashIndexTest extends TestCase {
+
+  private static final String FUNCTION =
+      "function a(b,c){var d;d=b.e;if(!d){return c}return f(d,c.g,b.h)}";
+
+  public void testCandidates() {
+    MinHashIndex index = new MinHashIndex(16, 4, 5);
+    int original = index.add(FUNCTION);
+    int similar = index.add(FUNCTION.replace("f(d,c.g,b.h)", "f(d,c.g,b.i)"));
+    int different = index.add("function z(){throw new Error('unsupported operation')}");
+
+    List<Integer> candidates = index.findCandidates(original, 10);
+    assertTrue(candidates.contains(similar));
+    assertFalse(candidates.contains(original));
+    assertFalse(candidates.contains(different));
+
+    index.remove(similar);
+    assertFalse(index.findCandidates(original, 10).contains(similar));
+  }
+
+  public void testCandidateLimit() {
+    MinHashIndex index = new MinHashIndex(4, 2, 3);
+    for (int i = 0; i < 10; i++) {
+      index.add(FUNCTION);
+    }
+    assertEquals(10, index.size());
+    assertEquals(3, index.findCandidates(0, 3).size());
+    assertEquals(9, index.findCandidates(0, 100).size());
+  }
+
+  public void testSimilarity() {
+    MinHashIndex index = new MinHashIndex(8, 4, 5);
+    int a = index.add(FUNCTION);
+    int b = index.add(FUNCTION);
+    int c = index.add("abcdefghijklmnopqrstuvwxyz");
+    int d = index.add("a");
+    assertEquals(1.0, index.estimateSimilarity(a, b));
+    assertTrue(index.estimateSimilarity(a, c) < 0.2);
+    // Strings shorter than a shingle still get a signature
+    assertEquals(1.0, index.estimateSimilarity(d, index.add("a")));
+  }
+}
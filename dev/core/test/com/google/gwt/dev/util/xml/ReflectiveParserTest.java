@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.xml;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.util.xml.ReflectiveParser.Recording;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+
+/**
+ * Tests that replaying a {@link Recording} calls into a schema exactly as
+ * parsing the document does.
+ */
+public class ReflectiveParserTest extends TestCase {
+
+  /**
+   * The document element.
+   */
+  public static class DocumentSchema extends Schema {
+    private final StringBuilder events;
+
+    public DocumentSchema(StringBuilder events) {
+      this.events = events;
+    }
+
+    @Override
+    public void onUnexpectedElement(int line, String elem) {
+      events.append(line).append(" unexpected ").append(elem).append('\n');
+    }
+
+    @SuppressWarnings("unused") // called reflectively
+    protected ItemsSchema __document_begin() {
+      return new ItemsSchema(events);
+    }
+  }
+
+  /**
+   * Children of the document element.
+   */
+  public static class ItemsSchema extends Schema {
+    @SuppressWarnings("unused") // referenced reflectively
+    protected final String __item_1_name = null;
+
+    @SuppressWarnings("unused") // referenced reflectively
+    protected final String __item_2_kind = "plain";
+
+    private final StringBuilder events;
+
+    public ItemsSchema(StringBuilder events) {
+      this.events = events;
+    }
+
+    @Override
+    public void onMissingAttribute(int line, String elem, String attr) {
+      events.append(line).append(" missing ").append(attr).append('\n');
+    }
+
+    @Override
+    public void onUnexpectedElement(int line, String elem) {
+      events.append(line).append(" unexpected ").append(elem).append('\n');
+    }
+
+    @SuppressWarnings("unused") // called reflectively
+    protected TextSchema __item_begin(String name, String kind) {
+      events.append(getLineNumber()).append(" begin ").append(name).append(
+          ' ').append(kind).append('\n');
+      return new TextSchema(events);
+    }
+
+    @SuppressWarnings("unused") // called reflectively
+    protected void __item_end(String name, String kind) {
+      events.append(getLineNumber()).append(" end ").append(name).append('\n');
+    }
+  }
+
+  /**
+   * Collects the text of an item.
+   */
+  public static class TextSchema extends Schema {
+    private final StringBuilder events;
+
+    public TextSchema(StringBuilder events) {
+      this.events = events;
+    }
+
+    public void __text(String text) {
+      events.append(getLineNumber()).append(" text [").append(text).append(
+          "]\n");
+    }
+  }
+
+  private static final String DOCUMENT = "<?xml version='1.0'?>\n"
+      + "<document>\n"
+      + "  <item name='a'>first\n"
+      + "    line</item>\n"
+      + "  <item name='b' kind='fancy'/>\n"
+      + "  <unknown/>\n"
+      + "  <item kind='nameless'/>\n"
+      + "  <item name='c'>&lt;escaped&gt;</item>\n"
+      + "</document>\n";
+
+  public void testReplayMatchesParse() throws UnableToCompleteException {
+    StringBuilder parsed = new StringBuilder();
+    ReflectiveParser.parse(TreeLogger.NULL, new DocumentSchema(parsed),
+        new StringReader(DOCUMENT));
+    assertTrue(parsed.toString(), parsed.indexOf("begin b fancy") >= 0);
+    assertTrue(parsed.toString(), parsed.indexOf("missing name") >= 0);
+    assertTrue(parsed.toString(), parsed.indexOf("unexpected unknown") >= 0);
+
+    Recording recording = ReflectiveParser.record(TreeLogger.NULL,
+        new StringReader(DOCUMENT));
+    for (int i = 0; i < 2; ++i) {
+      StringBuilder replayed = new StringBuilder();
+      ReflectiveParser.parse(TreeLogger.NULL, new DocumentSchema(replayed),
+          recording);
+      assertEquals(parsed.toString(), replayed.toString());
+    }
+  }
+
+  public void testRecordMalformed() {
+    try {
+      ReflectiveParser.record(TreeLogger.NULL, new StringReader(
+          "<document><item name='a'></document>"));
+      fail("Expected UnableToCompleteException");
+    } catch (UnableToCompleteException expected) {
+    }
+  }
+}
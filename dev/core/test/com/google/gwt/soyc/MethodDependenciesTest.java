@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.soyc;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Test cases for {@link MethodDependencies}.
+ */
+public class MethodDependenciesTest extends TestCase {
+
+  private static final String DEPENDENCIES = "<?xml version=\"1.0\"?>\n"
+      + "<soyc-dependencies>\n"
+      + "<table name=\"initial\">\n"
+      + "  <method name=\"a.A::b()\"><called by=\"a.A::a()\"/></method>\n"
+      + "  <method name=\"a.A::c()\"><called by=\"a.A::b()\"/>"
+      + "<called by=\"a.A::a()\"/></method>\n"
+      + "</table>\n"
+      + "<table name=\"sp1\" extends=\"initial\">\n"
+      + "  <method name=\"b.B::d()\"><called by=\"a.A::c()\"/></method>\n"
+      + "  <method name=\"a.A::c()\"><called by=\"b.B::d()\"/></method>\n"
+      + "</table>\n"
+      + "</soyc-dependencies>\n";
+
+  private static MethodDependencies read(String xml) throws XMLStreamException {
+    return MethodDependencies.read(new ByteArrayInputStream(xml.getBytes()));
+  }
+
+  public void testExtends() throws XMLStreamException {
+    MethodDependencies deps = read(DEPENDENCIES);
+    int initial = deps.getGraph("initial");
+    int sp1 = deps.getGraph("sp1");
+    assertEquals(-1, deps.getGraph("sp2"));
+
+    // Graph names are sorted
+    StringBuilder names = new StringBuilder();
+    for (String name : deps.getGraphNames()) {
+      names.append(name).append(' ');
+    }
+    assertEquals("initial sp1 ", names.toString());
+
+    assertEquals("a.A::b() a.A::c()", methodNames(deps, deps.getMethods(initial)));
+    assertEquals("a.A::b() a.A::c() b.B::d()", methodNames(deps, deps.getMethods(sp1)));
+
+    // The first caller is kept, and the extended graph takes precedence
+    assertEquals("a.A::b()", callerName(deps, initial, "a.A::c()"));
+    assertEquals("a.A::b()", callerName(deps, sp1, "a.A::c()"));
+    assertEquals("a.A::c()", callerName(deps, sp1, "b.B::d()"));
+    assertNull(callerName(deps, initial, "b.B::d()"));
+    assertNull(callerName(deps, initial, "a.A::a()"));
+  }
+
+  public void testUnknownExtends() {
+    try {
+      read("<soyc-dependencies><table name=\"sp1\" extends=\"initial\"/></soyc-dependencies>");
+      fail("Expected XMLStreamException");
+    } catch (XMLStreamException expected) {
+    }
+  }
+
+  private String callerName(MethodDependencies deps, int graph, String method) {
+    for (int methodId : deps.getMethods(graph)) {
+      if (deps.getMethodName(methodId).equals(method)) {
+        return deps.getMethodName(deps.getCaller(graph, methodId));
+      }
+    }
+    return null;
+  }
+
+  private String methodNames(MethodDependencies deps, int[] methods) {
+    StringBuilder names = new StringBuilder();
+    for (int method : methods) {
+      if (names.length() > 0) {
+        names.append(' ');
+      }
+      names.append(deps.getMethodName(method));
+    }
+    return names.toString();
+  }
+}
@@ -302,6 +302,17 @@ public class AsyncFragmentLoader {
     }
   }
 
+  /**
+   * Split points in the order they were first requested through
+   * {@link #runAsync}; the first {@link #activationCount} entries are valid.
+   */
+  private final int[] activationOrder;
+
+  /**
+   * The number of distinct split points requested so far.
+   */
+  private int activationCount = 0;
+
   /**
    * Callbacks indexed by fragment number.
    */
@@ -376,11 +387,31 @@ public class AsyncFragmentLoader {
     this.logger = logger;
     int numEntriesPlusOne = numEntries + 1;
     this.allCallbacks = new Object[numEntriesPlusOne][];
+    this.activationOrder = new int[numEntriesPlusOne];
     this.requestedExclusives = new BoundedIntQueue(numEntriesPlusOne);
     this.isLoaded = new boolean[numEntriesPlusOne];
     this.pendingDownloadErrorHandlers = new LoadTerminatedHandler[numEntriesPlusOne];
   }
 
+  /**
+   * Returns the split points requested so far, in the order they were first
+   * requested, separated by spaces. An application can report this string at
+   * the end of a session; a file with one such line per session can be passed
+   * to the compiler as a
+   * <code>com.google.gwt.dev.jjs.impl.SplitPointActivationTrace</code> to
+   * guide which split points share a fragment.
+   */
+  public String getActivationTrace() {
+    StringBuilder trace = new StringBuilder();
+    for (int i = 0; i < activationCount; i++) {
+      if (i > 0) {
+        trace.append(' ');
+      }
+      trace.append(activationOrder[i]);
+    }
+    return trace.toString();
+  }
+
   public boolean isAlreadyLoaded(int splitPoint) {
     return isLoaded[splitPoint];
   }
@@ -584,7 +615,17 @@ public class AsyncFragmentLoader {
     }
   }
 
+  private void recordActivation(int splitPoint) {
+    for (int i = 0; i < activationCount; i++) {
+      if (activationOrder[i] == splitPoint) {
+        return;
+      }
+    }
+    activationOrder[activationCount++] = splitPoint;
+  }
+
   private void runAsyncImpl(final int fragment, RunAsyncCallback callback) {
+    recordActivation(fragment);
     if (isLoaded[fragment]) {
       assert allCallbacks[fragment] == null;
       callback.onSuccess();
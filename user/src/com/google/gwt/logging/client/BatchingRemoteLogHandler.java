@@ -0,0 +1,186 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.gwt.logging.client;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.event.logical.shared.CloseEvent;
+import com.google.gwt.event.logical.shared.CloseHandler;
+import com.google.gwt.logging.shared.BatchRemoteLoggingService;
+import com.google.gwt.logging.shared.BatchRemoteLoggingServiceAsync;
+import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler which buffers messages and sends them to the server in batches via
+ * GWT RPC, to a {@link BatchRemoteLoggingService} servlet such as
+ * <code>BatchRemoteLoggingServiceImpl</code>. A batch is sent when it holds {@link #getMaxBatchSize()} distinct
+ * records, when the oldest record has waited {@link #getMaxDelayMillis()}
+ * milliseconds, when {@link #flush()} or {@link #close()} is called, and when
+ * the window closes. Records that repeat one already in the batch (same level,
+ * logger, message and exception) are dropped, and the kept record's message
+ * notes how many times it was logged.
+ */
+public final class BatchingRemoteLogHandler extends RemoteLogHandlerBase {
+  class DefaultCallback implements AsyncCallback<String> {
+    public void onFailure(Throwable caught) {
+      wireLogger.log(Level.SEVERE, "Remote logging failed: ", caught);
+    }
+    public void onSuccess(String result) {
+      if (result != null) {
+        wireLogger.severe("Remote logging failed: " + result);
+      } else {
+        wireLogger.finest("Remote logging batch acknowledged");
+      }
+    }
+  }
+
+  /**
+   * A buffered record and the number of times it was logged.
+   */
+  private static class PendingRecord {
+    int count = 1;
+    final LogRecord record;
+
+    PendingRecord(LogRecord record) {
+      this.record = record;
+    }
+  }
+
+  public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+  public static final int DEFAULT_MAX_DELAY_MILLIS = 2000;
+
+  private static String duplicateKey(LogRecord record) {
+    StringBuilder key = new StringBuilder();
+    key.append(record.getLevel()).append('\n');
+    key.append(record.getLoggerName()).append('\n');
+    key.append(record.getMessage()).append('\n');
+    Throwable thrown = record.getThrown();
+    if (thrown != null) {
+      key.append(thrown);
+      StackTraceElement[] st = thrown.getStackTrace();
+      if (st != null && st.length > 0) {
+        key.append('\n').append(st[0]);
+      }
+    }
+    return key.toString();
+  }
+
+  private AsyncCallback<String> callback;
+  private boolean flushScheduled;
+  private final int maxBatchSize;
+  private final int maxDelayMillis;
+  private final Map<String, PendingRecord> pending =
+      new LinkedHashMap<String, PendingRecord>();
+  private BatchRemoteLoggingServiceAsync service;
+
+  public BatchingRemoteLogHandler() {
+    this(DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+  }
+
+  /**
+   * @param maxBatchSize the number of distinct records that triggers a send
+   * @param maxDelayMillis the longest a record waits before it is sent
+   */
+  public BatchingRemoteLogHandler(int maxBatchSize, int maxDelayMillis) {
+    this(maxBatchSize, maxDelayMillis,
+        (BatchRemoteLoggingServiceAsync) GWT.create(BatchRemoteLoggingService.class));
+  }
+
+  /**
+   * Visible for testing.
+   */
+  BatchingRemoteLogHandler(int maxBatchSize, int maxDelayMillis,
+      BatchRemoteLoggingServiceAsync service) {
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.maxDelayMillis = Math.max(0, maxDelayMillis);
+    this.service = service;
+    this.callback = new DefaultCallback();
+    Window.addCloseHandler(new CloseHandler<Window>() {
+      public void onClose(CloseEvent<Window> event) {
+        flush();
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+    flush();
+    super.close();
+  }
+
+  /**
+   * Sends the buffered records now.
+   */
+  @Override
+  public void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    ArrayList<LogRecord> batch = new ArrayList<LogRecord>(pending.size());
+    for (PendingRecord p : pending.values()) {
+      if (p.count > 1) {
+        p.record.setMessage(p.record.getMessage() + " (logged " + p.count
+            + " times)");
+      }
+      batch.add(p.record);
+    }
+    pending.clear();
+    service.logAllOnServer(batch, callback);
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public int getMaxDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  @Override
+  public void publish(LogRecord record) {
+    if (!isLoggable(record)) {
+      return;
+    }
+    String key = duplicateKey(record);
+    PendingRecord existing = pending.get(key);
+    if (existing != null) {
+      existing.count++;
+      return;
+    }
+    pending.put(key, new PendingRecord(record));
+    if (pending.size() >= maxBatchSize) {
+      flush();
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      Scheduler.get().scheduleFixedDelay(new RepeatingCommand() {
+        public boolean execute() {
+          flushScheduled = false;
+          flush();
+          return false;
+        }
+      }, maxDelayMillis);
+    }
+  }
+}
@@ -131,6 +131,8 @@ public class LogConfiguration implements EntryPoint {
       addHandlerIfNotNull(l, system);
       Handler remote = GWT.create(SimpleRemoteLogHandler.class);
       addHandlerIfNotNull(l, remote);
+      Handler batchingRemote = GWT.create(BatchingRemoteLogHandler.class);
+      addHandlerIfNotNull(l, batchingRemote);
       HasWidgets loggingWidget = GWT.create(LoggingPopup.class);
       if (!(loggingWidget instanceof NullLoggingPopup)) {
         addHandlerIfNotNull(l, new HasWidgetsLogHandler(loggingWidget));
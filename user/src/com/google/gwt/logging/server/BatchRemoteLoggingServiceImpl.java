@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.gwt.logging.server;
+
+import com.google.gwt.logging.server.RemoteLoggingServiceUtil.RemoteLoggingException;
+import com.google.gwt.logging.shared.BatchRemoteLoggingService;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Server side code for the batching remote log handler. It shares its
+ * deobfuscator and logger name override with {@link RemoteLoggingServiceImpl},
+ * and also serves single records. Batches larger than
+ * {@link #setMaxBatchSize(int)} records are rejected without logging any of
+ * them.
+ */
+public class BatchRemoteLoggingServiceImpl extends RemoteLoggingServiceImpl
+    implements BatchRemoteLoggingService {
+
+  /**
+   * The default largest batch, well above what
+   * {@link com.google.gwt.logging.client.BatchingRemoteLogHandler} sends by
+   * default.
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+  /**
+   * Logs a batch of Log Records which have been serialized using GWT RPC on
+   * the server.
+   * @return either an error message, or null if logging is successful.
+   */
+  public final String logAllOnServer(ArrayList<LogRecord> records) {
+    if (records == null) {
+      return null;
+    }
+    if (records.size() > maxBatchSize) {
+      getLogger().warning("Rejected a batch of " + records.size()
+          + " log records; at most " + maxBatchSize + " are accepted");
+      return "Remote logging failed, the batch has more than " + maxBatchSize
+          + " records.";
+    }
+    String strongName = getPermutationStrongName();
+    try {
+      RemoteLoggingServiceUtil.logAllOnServer(
+          records, strongName, getDeobfuscator(), getLoggerNameOverride());
+    } catch (RemoteLoggingException e) {
+      getLogger().log(Level.SEVERE, "Remote logging failed", e);
+      return "Remote logging failed, check stack trace for details.";
+    }
+    return null;
+  }
+
+  /**
+   * Sets the largest number of records a single batch may hold. Larger
+   * batches, which a well-behaved client never sends, are rejected.
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("maxBatchSize must be positive");
+    }
+    this.maxBatchSize = maxBatchSize;
+  }
+}
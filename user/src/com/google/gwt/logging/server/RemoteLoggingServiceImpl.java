@@ -53,6 +53,29 @@ public class RemoteLoggingServiceImpl extends RemoteServiceServlet implements
     return null;
   }
   
+  /**
+   * Returns the deobfuscator set up by {@link #setSymbolMapsDirectory(String)},
+   * or <code>null</code> if there is none.
+   */
+  protected StackTraceDeobfuscator getDeobfuscator() {
+    return deobfuscator;
+  }
+
+  /**
+   * Returns the logger that failures of this service are logged to.
+   */
+  protected Logger getLogger() {
+    return logger;
+  }
+
+  /**
+   * Returns the name set by {@link #setLoggerNameOverride(String)}, or
+   * <code>null</code> if there is none.
+   */
+  protected String getLoggerNameOverride() {
+    return loggerNameOverride;
+  }
+
   /**
    * By default, messages are logged to a logger that has the same name as
    * the logger that created them on the client. If you want to log all messages
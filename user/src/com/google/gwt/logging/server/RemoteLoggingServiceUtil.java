@@ -16,6 +16,7 @@
 
 package com.google.gwt.logging.server;
 
+import java.util.List;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
@@ -61,6 +62,24 @@ public class RemoteLoggingServiceUtil {
     logger.log(lr);
   }
 
+  /**
+   * Logs a batch of messages from one permutation on the server. Stack frames
+   * that recur in the batch are only deobfuscated once.
+   *
+   * @param records LogRecords to be logged, in order
+   * @see #logOnServer(LogRecord, String, StackTraceDeobfuscator, String)
+   */
+  public static void logAllOnServer(List<LogRecord> records,
+      String strongName, StackTraceDeobfuscator deobfuscator,
+      String loggerNameOverride) throws RemoteLoggingException {
+    if (deobfuscator != null) {
+      records = deobfuscator.deobfuscateLogRecords(records, strongName);
+    }
+    for (LogRecord lr : records) {
+      logOnServer(lr, strongName, null, loggerNameOverride);
+    }
+  }
+
   public static void logOnServer(String serializedLogRecordJson,
       String strongName, StackTraceDeobfuscator deobfuscator,
       String loggerNameOverride) throws RemoteLoggingException {
@@ -26,7 +26,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.logging.LogRecord;
@@ -45,13 +50,134 @@ import java.util.regex.Pattern;
  * Pass the resulting directory location into this class' {@link StackTraceDeobfuscator#symbolMapsDirectory}
  * constructor or {@link #setSymbolMapsDirectory(String)} setter method.
  *
+ * <p>
+ * Instances may be shared between threads. Loaded symbol maps and source maps are kept in least
+ * recently used caches whose size is set by {@link #setCacheSize(int)}.
+ *
  * TODO(unnurg): Combine this code with similar code in JUnitHostImpl
  */
 public class StackTraceDeobfuscator {
 
-  private static class SymbolMap extends HashMap<String, String> {
+  /**
+   * A map with a maximum size that evicts its least recently used entry. Callers synchronize on
+   * the map.
+   */
+  private static class LruCache<V> extends LinkedHashMap<String, V> {
+    private int maxSize;
+
+    public LruCache(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+
+  /**
+   * The entries of a <code>.symbolMap</code> file, sorted by obfuscated name and packed into a
+   * single string. A lookup is a binary search, and a permutation costs two ints per symbol rather
+   * than a hash entry and two strings.
+   */
+  private static class SymbolMap {
+    static final SymbolMap EMPTY = new SymbolMap(Collections.<String> emptyList());
+
+    private static final Comparator<String> BY_NAME = new Comparator<String>() {
+      public int compare(String a, String b) {
+        return a.substring(0, a.indexOf(',')).compareTo(b.substring(0, b.indexOf(',')));
+      }
+    };
+
+    /**
+     * Reads a <code>.symbolMap</code> file, whose non-comment lines are an obfuscated name
+     * followed by a comma and the symbol data.
+     */
+    static SymbolMap read(BufferedReader in) throws IOException {
+      List<String> lines = new ArrayList<String>();
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.length() > 0 && line.charAt(0) != '#' && line.indexOf(',') != -1) {
+          lines.add(line);
+        }
+      }
+      Collections.sort(lines, BY_NAME);
+      return new SymbolMap(lines);
+    }
+
+    /**
+     * For each entry, the offset of the comma that ends its name.
+     */
+    private final int[] commas;
+
+    /**
+     * All entries, each "name,data", back to back.
+     */
+    private final String data;
+
+    /**
+     * For each entry, its start offset, plus the end of the data.
+     */
+    private final int[] starts;
+
+    private SymbolMap(List<String> sortedLines) {
+      int size = sortedLines.size();
+      commas = new int[size];
+      starts = new int[size + 1];
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < size; i++) {
+        String line = sortedLines.get(i);
+        starts[i] = sb.length();
+        commas[i] = starts[i] + line.indexOf(',');
+        sb.append(line);
+      }
+      starts[size] = sb.length();
+      data = sb.toString();
+    }
+
+    /**
+     * Returns the symbol data for an obfuscated name, or <code>null</code>.
+     */
+    public String get(String name) {
+      if (name == null) {
+        return null;
+      }
+      int low = 0;
+      int high = commas.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compareName(mid, name);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return data.substring(commas[mid] + 1, starts[mid + 1]);
+        }
+      }
+      return null;
+    }
+
+    private int compareName(int entry, String name) {
+      int start = starts[entry];
+      int length = commas[entry] - start;
+      int common = Math.min(length, name.length());
+      for (int i = 0; i < common; i++) {
+        int diff = data.charAt(start + i) - name.charAt(i);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      return length - name.length();
+    }
   }
 
+  /**
+   * The default number of symbol maps, and of source map fragments, to keep loaded.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 100;
+
   // From JsniRef class, which is in gwt-dev and so can't be accessed here
   // TODO(unnurg) once there is a place for shared code, move this to there.
   private static Pattern JsniRefPattern =
@@ -63,14 +189,14 @@ public class StackTraceDeobfuscator {
 
   Pattern fragmentIdPattern = Pattern.compile(".*(\\d+)\\.js");
 
-  protected File symbolMapsDirectory;
+  protected volatile File symbolMapsDirectory;
 
   // Map of strongName + fragmentId to sourceMap
-  private Map<String, SourceMapping> sourceMaps =
-      new HashMap<String, SourceMapping>();
+  private final LruCache<SourceMapping> sourceMaps =
+      new LruCache<SourceMapping>(DEFAULT_CACHE_SIZE);
 
-  private Map<String, SymbolMap> symbolMaps =
-      new HashMap<String, SymbolMap>();
+  private final LruCache<SymbolMap> symbolMaps =
+      new LruCache<SymbolMap>(DEFAULT_CACHE_SIZE);
 
   /**
    * Constructor, which takes a <code>symbolMaps</code> directory as its argument. Symbol maps are
@@ -93,11 +219,33 @@ public class StackTraceDeobfuscator {
    */
   public LogRecord deobfuscateLogRecord(LogRecord lr, String strongName) {
     if (lr.getThrown() != null && strongName != null) {
-      lr.setThrown(deobfuscateThrowable(lr.getThrown(), strongName));
+      lr.setThrown(deobfuscateThrowable(lr.getThrown(), strongName, null));
     }
     return lr;
   }
 
+  /**
+   * Best effort resymbolization of the stack traces of a batch of log records from one
+   * permutation. Frames that occur in several records are resymbolized once.
+   *
+   * @param records    the log records to resymbolize
+   * @param strongName the GWT permutation strong name
+   * @return the same list, with best effort resymbolized records
+   */
+  public List<LogRecord> deobfuscateLogRecords(List<LogRecord> records, String strongName) {
+    if (strongName == null) {
+      return records;
+    }
+    Map<StackTraceElement, StackTraceElement> resymbolized =
+        new HashMap<StackTraceElement, StackTraceElement>();
+    for (LogRecord lr : records) {
+      if (lr.getThrown() != null) {
+        lr.setThrown(deobfuscateThrowable(lr.getThrown(), strongName, resymbolized));
+      }
+    }
+    return records;
+  }
+
   /**
    * Convenience method which resymbolizes an entire stack trace to extent possible.
    *
@@ -231,6 +379,24 @@ public class StackTraceDeobfuscator {
     return ste;
   }
 
+  /**
+   * Sets how many symbol maps, and separately how many source map fragments, stay loaded. The
+   * least recently used ones are dropped first and reloaded when needed again.
+   *
+   * @param size the maximum number of entries in each cache, at least 1
+   */
+  public void setCacheSize(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Cache size must be positive: " + size);
+    }
+    synchronized (symbolMaps) {
+      symbolMaps.maxSize = size;
+    }
+    synchronized (sourceMaps) {
+      sourceMaps.maxSize = size;
+    }
+  }
+
   public void setSymbolMapsDirectory(String symbolMapsDirectory) {
     // permutations are unique, no need to clear the symbolMaps hash map
     this.symbolMapsDirectory = new File(symbolMapsDirectory);
@@ -258,27 +424,50 @@ public class StackTraceDeobfuscator {
     return new FileInputStream(filename);
   }
 
-  private Throwable deobfuscateThrowable(Throwable old, String strongName) {
+  /**
+   * @param resymbolized frames already resymbolized for this permutation, or
+   *          <code>null</code>
+   */
+  private Throwable deobfuscateThrowable(Throwable old, String strongName,
+      Map<StackTraceElement, StackTraceElement> resymbolized) {
     Throwable t = new Throwable(old.getMessage());
-    if (old.getStackTrace() != null) {
-      t.setStackTrace(deobfuscateStackTrace(old.getStackTrace(), strongName));
-    } else {
+    StackTraceElement[] st = old.getStackTrace();
+    if (st == null) {
       t.setStackTrace(new StackTraceElement[0]);
+    } else if (resymbolized == null) {
+      t.setStackTrace(deobfuscateStackTrace(st, strongName));
+    } else {
+      StackTraceElement[] newSt = new StackTraceElement[st.length];
+      for (int i = 0; i < st.length; i++) {
+        newSt[i] = resymbolized.get(st[i]);
+        if (newSt[i] == null) {
+          newSt[i] = resymbolize(st[i], strongName);
+          resymbolized.put(st[i], newSt[i]);
+        }
+      }
+      t.setStackTrace(newSt);
     }
     if (old.getCause() != null) {
-      t.initCause(deobfuscateThrowable(old.getCause(), strongName));
+      t.initCause(deobfuscateThrowable(old.getCause(), strongName, resymbolized));
     }
     return t;
   }
 
   private SourceMapping loadSourceMap(String permutationStrongName, int fragmentId) {
-    SourceMapping toReturn = sourceMaps.get(permutationStrongName + fragmentId);
+    String key = permutationStrongName + fragmentId;
+    SourceMapping toReturn;
+    synchronized (sourceMaps) {
+      toReturn = sourceMaps.get(key);
+    }
     if (toReturn == null) {
+      // Parse outside the lock; a concurrent duplicate parse is harmless
       try {
         String sourceMapString = loadStreamAsString(
             getSourceMapInputStream(permutationStrongName, fragmentId));
         toReturn = SourceMapConsumerFactory.parse(sourceMapString);
-        sourceMaps.put(permutationStrongName + fragmentId, toReturn);
+        synchronized (sourceMaps) {
+          sourceMaps.put(key, toReturn);
+        }
       } catch (Exception e) {
       }
     }
@@ -289,36 +478,32 @@ public class StackTraceDeobfuscator {
     return new Scanner(stream).useDelimiter("\\A").next();
   }
 
-  private SymbolMap loadSymbolMap(
-      String strongName) {
-    SymbolMap toReturn = symbolMaps.get(strongName);
+  private SymbolMap loadSymbolMap(String strongName) {
+    SymbolMap toReturn;
+    synchronized (symbolMaps) {
+      toReturn = symbolMaps.get(strongName);
+    }
     if (toReturn != null) {
       return toReturn;
     }
-    toReturn = new SymbolMap();
-    String line;
 
+    // Read outside the lock; a concurrent duplicate read is harmless
     try {
       BufferedReader bin = new BufferedReader(
           new InputStreamReader(getSymbolMapInputStream(strongName)));
       try {
-        while ((line = bin.readLine()) != null) {
-          if (line.charAt(0) == '#') {
-            continue;
-          }
-          int idx = line.indexOf(',');
-          toReturn.put(new String(line.substring(0, idx)),
-              line.substring(idx + 1));
-        }
+        toReturn = SymbolMap.read(bin);
       } finally {
         bin.close();
       }
     } catch (IOException e) {
       //  use empty symbol map to avoid repeated lookups
-      toReturn = new SymbolMap();
+      toReturn = SymbolMap.EMPTY;
     }
 
-    symbolMaps.put(strongName, toReturn);
+    synchronized (symbolMaps) {
+      symbolMaps.put(strongName, toReturn);
+    }
     return toReturn;
   }
 
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.gwt.logging.shared;
+
+import com.google.gwt.user.client.rpc.RemoteService;
+import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
+
+import java.util.ArrayList;
+import java.util.logging.LogRecord;
+
+/**
+ * The client side stub for the batch logging RPC service, used by
+ * <code>BatchingRemoteLogHandler</code>.
+ */
+@RemoteServiceRelativePath("batch_remote_logging")
+public interface BatchRemoteLoggingService extends RemoteService {
+  /**
+   * Logs a batch of records, which come from the same permutation and are
+   * deobfuscated together.
+   *
+   * @return either an error message, or null if logging is successful.
+   */
+  String logAllOnServer(ArrayList<LogRecord> records);
+}
@@ -26,14 +26,29 @@ import com.google.gwt.core.ext.linker.EmittedArtifact.Visibility;
 import com.google.gwt.core.ext.linker.LinkerOrder;
 import com.google.gwt.core.ext.linker.Shardable;
 import com.google.gwt.core.ext.linker.LinkerOrder.Order;
+import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.collect.HashSet;
 import com.google.gwt.util.regexfilter.RegexFilter;
+import com.google.gwt.util.tools.Utility;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -55,6 +70,21 @@ import java.util.zip.GZIPOutputStream;
  * are left in the artifact set. If the configuration property
  * <code>precompress.leave.originals</code> is set to <code>false</code>,
  * however, then the uncompressed version is removed.
+ * 
+ * <p>
+ * The optional configuration property <code>precompress.level</code> selects
+ * the deflate level: <code>default</code>, <code>max</code> (slowest, smallest
+ * output, intended for release builds), or a number from 1 to 9. The optional
+ * configuration property <code>precompress.threads</code> sets how many files
+ * are compressed at once; a value below 1 uses one thread per processor.
+ * 
+ * <p>
+ * If the system property <code>gwt.precompress.cacheDir</code> names a
+ * directory, compressed output is kept there, keyed by a hash of the original
+ * content and the deflate level, and artifacts whose content has not changed
+ * since an earlier build are not compressed again. After each link, the least
+ * recently used entries are deleted until the directory holds at most
+ * <code>gwt.precompress.cacheMaxBytes</code> bytes (100 MB by default).
  */
 @Shardable
 @LinkerOrder(Order.POST)
@@ -77,15 +107,108 @@ public class PrecompressLinker extends AbstractLinker {
   }
 
   /**
-   * Buffer size to use when streaming data from artifacts and through
-   * {@link GZIPOutputStream}.
+   * Reads and compresses one artifact's contents, going through the cache when
+   * there is one. The contents are only read when the task runs, so that at
+   * most one original per thread is in memory at a time.
+   */
+  private static class CompressTask implements Callable<CompressTask> {
+    /**
+     * The compressed contents, or <code>null</code> if they are no smaller
+     * than the original.
+     */
+    byte[] compressed;
+    boolean fromCache;
+    long nanos;
+    int originalLength;
+
+    private final EmittedArtifact artifact;
+    private final File cacheDir;
+    private final int level;
+    private final TreeLogger logger;
+
+    public CompressTask(TreeLogger logger, EmittedArtifact artifact, int level,
+        File cacheDir) {
+      this.logger = logger;
+      this.artifact = artifact;
+      this.level = level;
+      this.cacheDir = cacheDir;
+    }
+
+    public CompressTask call() throws IOException, UnableToCompleteException {
+      byte[] original = Util.readStreamAsBytes(artifact.getContents(logger));
+      if (original == null) {
+        logger.log(TreeLogger.ERROR, "Unable to read " + artifact.getPartialPath());
+        throw new UnableToCompleteException();
+      }
+      originalLength = original.length;
+
+      long start = System.nanoTime();
+      File cacheFile = null;
+      if (cacheDir != null) {
+        cacheFile = new File(cacheDir, Util.computeStrongName(original) + "-"
+            + level + ".gz");
+        if (cacheFile.isFile()) {
+          compressed = Util.readFileAsBytes(cacheFile);
+          fromCache = compressed != null;
+          if (fromCache) {
+            // Keep recently used entries when the cache is pruned
+            cacheFile.setLastModified(System.currentTimeMillis());
+          }
+        }
+      }
+      if (!fromCache) {
+        compressed = compress(original, level);
+        if (cacheFile != null) {
+          writeCacheFile(cacheFile, compressed);
+        }
+      }
+      if (compressed.length >= originalLength) {
+        compressed = null;
+      }
+      nanos = System.nanoTime() - start;
+      return this;
+    }
+  }
+
+  /**
+   * A {@link GZIPOutputStream} with a settable deflate level.
+   */
+  private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+    public LeveledGZIPOutputStream(OutputStream out, int level)
+        throws IOException {
+      super(out, BUF_SIZE);
+      def.setLevel(level);
+    }
+  }
+
+  /**
+   * Buffer size to use in {@link GZIPOutputStream}.
    */
   private static final int BUF_SIZE = 10000;
 
+  private static final long DEFAULT_CACHE_MAX_BYTES = 100 * 1024 * 1024;
+
+  private static final String PROP_CACHE_DIR = "gwt.precompress.cacheDir";
+
+  private static final String PROP_CACHE_MAX_BYTES = "gwt.precompress.cacheMaxBytes";
+
   private static final String PROP_LEAVE_ORIGINALS = "precompress.leave.originals";
 
+  private static final String PROP_LEVEL = "precompress.level";
+
   private static final String PROP_PATH_REGEXES = "precompress.path.regexes";
 
+  private static final String PROP_THREADS = "precompress.threads";
+
+  private static byte[] compress(byte[] original, int level) throws IOException {
+    ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream(
+        original.length / 2);
+    GZIPOutputStream gzip = new LeveledGZIPOutputStream(compressedBytes, level);
+    gzip.write(original);
+    gzip.close();
+    return compressedBytes.toByteArray();
+  }
+
   private static ConfigurationProperty findProperty(
       TreeLogger logger,
       Iterable<com.google.gwt.core.ext.linker.ConfigurationProperty> properties,
@@ -101,6 +224,118 @@ public class PrecompressLinker extends AbstractLinker {
     throw new UnableToCompleteException();
   }
 
+  /**
+   * Returns the single value of an optional configuration property, or
+   * <code>null</code> if the module does not define it.
+   */
+  private static String findOptionalValue(
+      Iterable<ConfigurationProperty> properties, String propName) {
+    for (ConfigurationProperty prop : properties) {
+      if (prop.getName().equals(propName) && !prop.getValues().isEmpty()) {
+        return prop.getValues().get(0);
+      }
+    }
+    return null;
+  }
+
+  private static int parseLevel(TreeLogger logger, String value)
+      throws UnableToCompleteException {
+    if (value == null || value.equals("default")) {
+      return Deflater.DEFAULT_COMPRESSION;
+    }
+    if (value.equals("max")) {
+      return Deflater.BEST_COMPRESSION;
+    }
+    try {
+      int level = Integer.parseInt(value);
+      if (level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION) {
+        return level;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the error below
+    }
+    logger.log(TreeLogger.ERROR, "Configuration property " + PROP_LEVEL
+        + " must be 'default', 'max', or a number from 1 to 9, not '" + value
+        + "'");
+    throw new UnableToCompleteException();
+  }
+
+  private static int parseThreads(TreeLogger logger, String value)
+      throws UnableToCompleteException {
+    if (value == null) {
+      return 1;
+    }
+    try {
+      int threads = Integer.parseInt(value);
+      return threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    } catch (NumberFormatException e) {
+      logger.log(TreeLogger.ERROR, "Configuration property " + PROP_THREADS
+          + " must be a number, not '" + value + "'");
+      throw new UnableToCompleteException();
+    }
+  }
+
+  /**
+   * Deletes the least recently used cache entries until the cache holds at
+   * most <code>maxBytes</code>. Entries that another build deletes first are
+   * skipped.
+   */
+  private static void pruneCache(File cacheDir, long maxBytes) {
+    File[] entries = cacheDir.listFiles();
+    if (entries == null) {
+      return;
+    }
+    long totalBytes = 0;
+    for (File entry : entries) {
+      totalBytes += entry.length();
+    }
+    if (totalBytes <= maxBytes) {
+      return;
+    }
+    final Map<File, Long> lastModified = new HashMap<File, Long>();
+    for (File entry : entries) {
+      lastModified.put(entry, entry.lastModified());
+    }
+    Arrays.sort(entries, new Comparator<File>() {
+      public int compare(File a, File b) {
+        return lastModified.get(a).compareTo(lastModified.get(b));
+      }
+    });
+    for (int i = 0; i < entries.length && totalBytes > maxBytes; i++) {
+      long length = entries[i].length();
+      if (entries[i].isFile() && entries[i].delete()) {
+        totalBytes -= length;
+      }
+    }
+  }
+
+  /**
+   * Writes a cache entry through a temporary file, so that concurrent builds
+   * never see a partial entry. Failures only cost a later cache miss.
+   */
+  private static void writeCacheFile(File cacheFile, byte[] compressed) {
+    File tmp = null;
+    FileOutputStream out = null;
+    try {
+      cacheFile.getParentFile().mkdirs();
+      tmp = File.createTempFile("precompress", ".tmp", cacheFile.getParentFile());
+      out = new FileOutputStream(tmp);
+      out.write(compressed);
+      out.close();
+      out = null;
+      if (tmp.renameTo(cacheFile)) {
+        tmp = null;
+      }
+    } catch (IOException e) {
+      // Leave the entry out of the cache
+    } finally {
+      Utility.close(out);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+
   @Override
   public String getDescription() {
     return "PrecompressLinker";
@@ -125,57 +360,117 @@ public class PrecompressLinker extends AbstractLinker {
       allPaths.add(art.getPartialPath());
     }
 
-    try {
-      // Buffer for streaming data to be compressed
-      byte[] buf = new byte[BUF_SIZE];
-
-      ArtifactSet updated = new ArtifactSet(artifacts);
-      for (EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
-        if (art.getVisibility() != Visibility.Public) {
-          // only compress things that will be served to the client
-          continue;
-        }
-        if (art.getPartialPath().endsWith(".gz")) {
-          // Already a compressed artifact
-          continue;
-        }
-        if (allPaths.contains(art.getPartialPath() + ".gz")) {
-          // It's already been compressed
-          continue;
-        }
-        if (!filter.isIncluded(logger.branch(TreeLogger.TRACE,
-            "Checking the path patterns"), art.getPartialPath())) {
-          continue;
-        }
-
-        TreeLogger compressBranch = logger.branch(TreeLogger.TRACE,
-            "Compressing " + art.getPartialPath());
+    int level = parseLevel(logger, findOptionalValue(
+        context.getConfigurationProperties(), PROP_LEVEL));
+    int threads = parseThreads(logger, findOptionalValue(
+        context.getConfigurationProperties(), PROP_THREADS));
+    String cacheDirName = System.getProperty(PROP_CACHE_DIR);
+    File cacheDir = cacheDirName == null ? null : new File(cacheDirName);
 
-        InputStream originalBytes = art.getContents(compressBranch);
-        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
-        GZIPOutputStream gzip = new GZIPOutputStream(compressedBytes);
+    List<EmittedArtifact> toCompress = new ArrayList<EmittedArtifact>();
+    for (EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
+      if (art.getVisibility() != Visibility.Public) {
+        // only compress things that will be served to the client
+        continue;
+      }
+      if (art.getPartialPath().endsWith(".gz")) {
+        // Already a compressed artifact
+        continue;
+      }
+      if (allPaths.contains(art.getPartialPath() + ".gz")) {
+        // It's already been compressed
+        continue;
+      }
+      if (!filter.isIncluded(logger.branch(TreeLogger.TRACE,
+          "Checking the path patterns"), art.getPartialPath())) {
+        continue;
+      }
+      toCompress.add(art);
+    }
 
-        int originalLength = 0;
-        int n;
-        while ((n = originalBytes.read(buf)) > 0) {
-          originalLength += n;
-          gzip.write(buf, 0, n);
+    long start = System.nanoTime();
+    List<CompressTask> tasks = new ArrayList<CompressTask>();
+    for (EmittedArtifact art : toCompress) {
+      tasks.add(new CompressTask(logger, art, level, cacheDir));
+    }
+    try {
+      if (threads == 1 || tasks.size() < 2) {
+        for (CompressTask task : tasks) {
+          task.call();
         }
-        gzip.close();
-
-        byte[] compressed = compressedBytes.toByteArray();
-        if (compressed.length < originalLength) {
-          updated.add(emitBytes(compressBranch, compressed,
-              art.getPartialPath() + ".gz"));
-          if (!leaveOriginals) {
-            updated.remove(art);
+      } else {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+            threads, tasks.size()));
+        try {
+          List<Future<CompressTask>> futures = executor.invokeAll(tasks);
+          for (Future<CompressTask> future : futures) {
+            future.get();
           }
+        } finally {
+          executor.shutdown();
         }
       }
-      return updated;
     } catch (IOException e) {
       logger.log(TreeLogger.ERROR, "Unexpected exception", e);
       throw new UnableToCompleteException();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.log(TreeLogger.ERROR, "Interrupted while compressing", e);
+      throw new UnableToCompleteException();
+    } catch (ExecutionException e) {
+      if (!(e.getCause() instanceof UnableToCompleteException)) {
+        logger.log(TreeLogger.ERROR, "Unexpected exception", e.getCause());
+      }
+      throw new UnableToCompleteException();
+    } finally {
+      if (cacheDir != null) {
+        pruneCache(cacheDir, Long.getLong(PROP_CACHE_MAX_BYTES, DEFAULT_CACHE_MAX_BYTES));
+      }
+    }
+
+    ArtifactSet updated = new ArtifactSet(artifacts);
+    int cacheHits = 0;
+    long cachedBytes = 0;
+    long compressedBytes = 0;
+    long compressNanos = 0;
+    for (int i = 0; i < toCompress.size(); i++) {
+      EmittedArtifact art = toCompress.get(i);
+      CompressTask task = tasks.get(i);
+      if (task.fromCache) {
+        ++cacheHits;
+        cachedBytes += task.originalLength;
+      } else {
+        compressedBytes += task.originalLength;
+        compressNanos += task.nanos;
+      }
+      if (task.compressed != null) {
+        updated.add(emitBytes(logger, task.compressed, art.getPartialPath()
+            + ".gz"));
+        if (!leaveOriginals) {
+          updated.remove(art);
+        }
+      }
+    }
+
+    if (logger.isLoggable(TreeLogger.DEBUG) && !tasks.isEmpty()) {
+      long elapsedMillis = (System.nanoTime() - start) / 1000000;
+      StringBuilder msg = new StringBuilder();
+      msg.append("Precompressed ").append(tasks.size()).append(" files in ");
+      msg.append(elapsedMillis).append(" ms on ").append(threads);
+      msg.append(" thread(s); compression took ");
+      msg.append(compressNanos / 1000000).append(" ms of CPU time");
+      if (cacheDir != null) {
+        msg.append(", ").append(cacheHits).append(" files were reused from ");
+        msg.append(cacheDir);
+        if (compressedBytes > 0) {
+          // Assume cached bytes would have cost what the others cost per byte
+          long savedMillis = (long) ((double) compressNanos * cachedBytes
+              / compressedBytes / 1000000);
+          msg.append(", saving about ").append(savedMillis).append(" ms");
+        }
+      }
+      logger.log(TreeLogger.DEBUG, msg.toString());
     }
+    return updated;
   }
 }
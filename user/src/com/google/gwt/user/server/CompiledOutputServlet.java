@@ -0,0 +1,308 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server;
+
+import com.google.gwt.user.server.rpc.RPCServletUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the output of the GWT compiler in production.
+ *
+ * <p>
+ * Strong-named files (<code>*.cache.*</code>) never change, so they are sent
+ * with far-future, immutable caching headers. Other files, in particular the
+ * <code>*.nocache.js</code> selection scripts, must be revalidated on every
+ * use; they are sent with an <code>ETag</code> and <code>Last-Modified</code>,
+ * and conditional requests for unchanged files are answered with
+ * <code>304 Not Modified</code>. When the client accepts gzip and a
+ * precompressed <code>.gz</code> sibling exists (see
+ * <code>com.google.gwt.precompress.Precompress</code>), the sibling is sent
+ * instead. If only the <code>.gz</code> sibling was kept, it is sent to
+ * clients that accept gzip and decompressed on the fly for the others.
+ *
+ * <p>
+ * Files are read from the directory named by the <code>root</code> init
+ * parameter, or from the web application itself if there is none. On Tomcat,
+ * which supports sendfile, file bodies are handed to the container; elsewhere
+ * they are copied with {@link FileChannel#transferTo}.
+ *
+ * <p>
+ * To use it, map it to the module's output directory in <code>web.xml</code>:
+ *
+ * <pre>
+ * &lt;servlet>
+ *   &lt;servlet-name>gwtOutput&lt;/servlet-name>
+ *   &lt;servlet-class>com.google.gwt.user.server.CompiledOutputServlet&lt;/servlet-class>
+ * &lt;/servlet>
+ * &lt;servlet-mapping>
+ *   &lt;servlet-name>gwtOutput&lt;/servlet-name>
+ *   &lt;url-pattern>/mymodule/*&lt;/url-pattern>
+ * &lt;/servlet-mapping>
+ * </pre>
+ */
+public class CompiledOutputServlet extends HttpServlet {
+
+  /**
+   * Cache lifetime of strong-named files, in seconds: one year, the longest
+   * that HTTP/1.1 recommends.
+   */
+  static final int IMMUTABLE_MAX_AGE = 365 * 24 * 60 * 60;
+
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+  /**
+   * Returns whether a file name carries the strong name of its content.
+   */
+  static boolean isStrongNamed(String fileName) {
+    return fileName.contains(".cache.");
+  }
+
+  private static String etag(File file, boolean gzipped) {
+    return "\"" + Long.toHexString(file.length()) + "-"
+        + Long.toHexString(file.lastModified()) + (gzipped ? "-gz" : "") + "\"";
+  }
+
+  /**
+   * Returns whether an <code>If-None-Match</code> header matches an ETag.
+   */
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch.trim().equals("*")) {
+      return true;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      if (candidate.trim().equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private File root;
+
+  @Override
+  public void init() throws ServletException {
+    String rootParam = getInitParameter("root");
+    if (rootParam != null) {
+      root = new File(rootParam);
+      if (!root.isDirectory()) {
+        throw new ServletException("Not a directory: " + root);
+      }
+    }
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    File file = resolve(request);
+    if (file == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    String fileName = file.getName();
+
+    File toSend = file;
+    boolean gzipped = false;
+    // Only the .gz sibling exists when the original was not kept
+    boolean inflate = !file.isFile();
+    File gz = new File(file.getPath() + ".gz");
+    if (inflate) {
+      toSend = gz;
+      if (RPCServletUtils.acceptsGzipEncoding(request)) {
+        gzipped = true;
+        inflate = false;
+      }
+    } else if (RPCServletUtils.acceptsGzipEncoding(request)) {
+      if (gz.isFile() && gz.lastModified() >= file.lastModified()) {
+        toSend = gz;
+        gzipped = true;
+      }
+    }
+
+    String etag = etag(toSend, gzipped);
+    // Caches must key on the encoding, whether or not a .gz exists today
+    response.setHeader("Vary", "Accept-Encoding");
+    response.setHeader("ETag", etag);
+    response.setDateHeader("Last-Modified", toSend.lastModified());
+    if (isStrongNamed(fileName)) {
+      response.setHeader("Cache-Control", "public, max-age=" + IMMUTABLE_MAX_AGE
+          + ", immutable");
+      response.setDateHeader("Expires", System.currentTimeMillis()
+          + IMMUTABLE_MAX_AGE * 1000L);
+    } else {
+      response.setHeader("Cache-Control", "no-cache");
+    }
+
+    if (isNotModified(request, etag, toSend.lastModified())) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    String mimeType = getServletContext().getMimeType(fileName);
+    if (mimeType != null) {
+      response.setContentType(mimeType);
+    }
+    if (gzipped) {
+      RPCServletUtils.setGzipEncodingHeader(response);
+    }
+    if (inflate) {
+      // The decompressed length is unknown without reading the whole file
+      if (!request.getMethod().equals("HEAD")) {
+        sendInflated(response, toSend);
+      }
+      return;
+    }
+    long length = toSend.length();
+    if (length <= Integer.MAX_VALUE) {
+      response.setContentLength((int) length);
+    }
+    if (request.getMethod().equals("HEAD")) {
+      return;
+    }
+    send(request, response, toSend, length);
+  }
+
+  /**
+   * Checks the conditional request headers, preferring
+   * <code>If-None-Match</code> as HTTP/1.1 requires.
+   */
+  private boolean isNotModified(HttpServletRequest request, String etag,
+      long lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      return matches(ifNoneMatch, etag);
+    }
+    long ifModifiedSince;
+    try {
+      ifModifiedSince = request.getDateHeader("If-Modified-Since");
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    // HTTP dates have one second resolution
+    return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * Maps a request to a file, or returns <code>null</code>. The file itself
+   * may be missing if its <code>.gz</code> sibling exists. Requests may not
+   * leave the root directory.
+   */
+  private File resolve(HttpServletRequest request) throws IOException {
+    String path = request.getPathInfo();
+    if (path == null) {
+      path = request.getServletPath();
+    }
+    if (path == null || path.length() == 0 || path.endsWith("/")) {
+      return null;
+    }
+
+    File base;
+    File file;
+    if (root != null) {
+      base = root;
+      file = new File(root, path);
+    } else {
+      String basePath = getServletContext().getRealPath("/");
+      String filePath = getServletContext().getRealPath(
+          request.getServletPath() + (request.getPathInfo() == null ? ""
+              : request.getPathInfo()));
+      if (basePath == null || filePath == null) {
+        // Not deployed as a directory
+        return null;
+      }
+      base = new File(basePath);
+      file = new File(filePath);
+    }
+
+    String canonicalBase = base.getCanonicalPath() + File.separator;
+    file = file.getCanonicalFile();
+    if (!file.getPath().startsWith(canonicalBase)) {
+      return null;
+    }
+    if (!file.isFile() && !new File(file.getPath() + ".gz").isFile()) {
+      return null;
+    }
+    // Keep WEB-INF private when serving the web application itself
+    String relative = file.getPath().substring(canonicalBase.length());
+    if (root == null && (relative.startsWith("WEB-INF") || relative.startsWith("META-INF"))) {
+      return null;
+    }
+    return file;
+  }
+
+  private void send(HttpServletRequest request, HttpServletResponse response,
+      File file, long length) throws IOException {
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      // The container writes the file itself, without copying it through us
+      request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+      request.setAttribute(SENDFILE_START, Long.valueOf(0));
+      request.setAttribute(SENDFILE_END, Long.valueOf(length));
+      return;
+    }
+
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      OutputStream out = response.getOutputStream();
+      WritableByteChannel target = Channels.newChannel(out);
+      long position = 0;
+      while (position < length) {
+        long sent = channel.transferTo(position, length - position, target);
+        if (sent <= 0) {
+          // Truncated while we were sending it
+          break;
+        }
+        position += sent;
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private void sendInflated(HttpServletResponse response, File gz)
+      throws IOException {
+    InputStream in = new GZIPInputStream(new FileInputStream(gz));
+    try {
+      OutputStream out = response.getOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.web.bindery.requestfactory.gwt.client;
+
+import com.google.web.bindery.autobean.shared.AutoBeanCodex;
+import com.google.web.bindery.event.shared.UmbrellaException;
+import com.google.web.bindery.requestfactory.shared.RequestTransport;
+import com.google.web.bindery.requestfactory.shared.ServerFailure;
+import com.google.web.bindery.requestfactory.shared.impl.Constants;
+import com.google.web.bindery.requestfactory.shared.impl.MessageFactoryHolder;
+import com.google.web.bindery.requestfactory.shared.messages.InvocationMessage;
+import com.google.web.bindery.requestfactory.shared.messages.RequestMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link RequestTransport} decorator that collapses identical read-only
+ * payloads. When independent parts of an application fire the same
+ * {@link com.google.web.bindery.requestfactory.shared.RequestFactory#find
+ * find()} request while an equivalent request is still outstanding, only one
+ * payload is sent and the response is fanned out to every
+ * {@link TransportReceiver}. Each RequestContext decodes the shared response
+ * into its own state, so the Receivers observe the same results they would
+ * have without coalescing.
+ * <p>
+ * Only payloads that carry no write operations and whose invocations are all
+ * accepted by {@link #isCoalescable(String)} are eligible. Sending any other
+ * payload stops later requests from joining the ones already in flight, so a
+ * read issued after a write will never observe a response computed before
+ * that write.
+ *
+ * <pre>
+ * MyRequestFactory factory = GWT.create(MyRequestFactory.class);
+ * factory.initialize(eventBus,
+ *     new CoalescingRequestTransport(new DefaultRequestTransport()));
+ * </pre>
+ */
+public class CoalescingRequestTransport implements RequestTransport {
+
+  /**
+   * Forwards a single response to all receivers that asked for it.
+   */
+  private class PendingSend implements TransportReceiver {
+    private final String payload;
+    private final List<TransportReceiver> receivers = new ArrayList<TransportReceiver>();
+
+    public PendingSend(String payload) {
+      this.payload = payload;
+    }
+
+    public void onTransportFailure(ServerFailure failure) {
+      retire(this);
+      Set<Throwable> causes = null;
+      for (TransportReceiver receiver : receivers) {
+        try {
+          receiver.onTransportFailure(failure);
+        } catch (Throwable t) {
+          causes = addCause(causes, t);
+        }
+      }
+      if (causes != null) {
+        throw new UmbrellaException(causes);
+      }
+    }
+
+    public void onTransportSuccess(String response) {
+      retire(this);
+      Set<Throwable> causes = null;
+      for (TransportReceiver receiver : receivers) {
+        try {
+          receiver.onTransportSuccess(response);
+        } catch (Throwable t) {
+          causes = addCause(causes, t);
+        }
+      }
+      if (causes != null) {
+        throw new UmbrellaException(causes);
+      }
+    }
+  }
+
+  private static Set<Throwable> addCause(Set<Throwable> causes, Throwable t) {
+    if (causes == null) {
+      causes = new LinkedHashSet<Throwable>();
+    }
+    causes.add(t);
+    return causes;
+  }
+
+  private int coalescedCount;
+  private final Map<String, PendingSend> inFlight = new HashMap<String, PendingSend>();
+  private final RequestTransport wrapped;
+
+  /**
+   * Constructs a CoalescingRequestTransport that sends payloads through
+   * {@code wrapped}.
+   *
+   * @param wrapped the {@link RequestTransport} that performs the actual send
+   */
+  public CoalescingRequestTransport(RequestTransport wrapped) {
+    if (wrapped == null) {
+      throw new IllegalArgumentException("wrapped");
+    }
+    this.wrapped = wrapped;
+  }
+
+  /**
+   * Returns the number of payloads that were satisfied by a request that was
+   * already in flight instead of being sent.
+   */
+  public int getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /**
+   * Returns the transport that performs the actual send.
+   */
+  public RequestTransport getWrappedTransport() {
+    return wrapped;
+  }
+
+  public void send(String payload, TransportReceiver receiver) {
+    if (!isReadOnly(payload)) {
+      // Don't let reads issued after this payload see older responses
+      inFlight.clear();
+      wrapped.send(payload, receiver);
+      return;
+    }
+
+    PendingSend pending = inFlight.get(payload);
+    if (pending != null) {
+      coalescedCount++;
+      pending.receivers.add(receiver);
+      return;
+    }
+
+    pending = new PendingSend(payload);
+    pending.receivers.add(receiver);
+    inFlight.put(payload, pending);
+    wrapped.send(payload, pending);
+  }
+
+  /**
+   * Determines whether invocations of the given operation may share a single
+   * response. The default implementation only allows the built-in
+   * {@code find()} operation. Subclasses may override this method to admit
+   * service methods that are known to be free of side-effects.
+   *
+   * @param operation the operation token of an invocation
+   */
+  protected boolean isCoalescable(String operation) {
+    return Constants.FIND_METHOD_OPERATION.equals(operation);
+  }
+
+  /**
+   * Returns {@code true} if the payload is a standard-dialect request with no
+   * operations and only coalescable invocations.
+   */
+  private boolean isReadOnly(String payload) {
+    RequestMessage message;
+    try {
+      message =
+          AutoBeanCodex.decode(MessageFactoryHolder.FACTORY, RequestMessage.class, payload).as();
+    } catch (RuntimeException e) {
+      // Not a payload we understand, such as JSON-RPC
+      return false;
+    }
+    if (message.getOperations() != null && !message.getOperations().isEmpty()) {
+      return false;
+    }
+    List<InvocationMessage> invocations = message.getInvocations();
+    if (invocations == null || invocations.isEmpty()) {
+      return false;
+    }
+    for (InvocationMessage invocation : invocations) {
+      if (!isCoalescable(invocation.getOperation())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Called when a response arrives so that later sends go over the wire.
+   */
+  private void retire(PendingSend pending) {
+    if (inFlight.get(pending.payload) == pending) {
+      inFlight.remove(pending.payload);
+    }
+  }
+}
@@ -63,6 +63,18 @@ public class Object {
   @SuppressWarnings("unused")
   private transient JavaScriptObject typeMarker;
 
+  /**
+   * The seed id of this object's class, used for castability tests against
+   * seed id intervals. Only assigned when those tests are compiled in;
+   * otherwise the field is pruned.
+   * 
+   * @see com.google.gwt.lang.Cast
+   * 
+   * @skip
+   */
+  @SuppressWarnings("unused")
+  private transient int seedId;
+
   public boolean equals(Object other) {
     return this == other;
   }
@@ -15,6 +15,7 @@
  */
 package com.google.gwt.emultest;
 
+import com.google.gwt.emultest.benchmarks.CastBenchmark;
 import com.google.gwt.emultest.benchmarks.LongBenchmark;
 import com.google.gwt.emultest.benchmarks.java.lang.StringBufferBenchmark;
 import com.google.gwt.emultest.benchmarks.java.lang.StringBufferImplBenchmark;
@@ -41,6 +42,7 @@ public class EmulSuiteBenchmark {
     suite.addTestSuite(StringBufferBenchmark.class);
     suite.addTestSuite(StringBufferImplBenchmark.class);
     suite.addTestSuite(LongBenchmark.class);
+    suite.addTestSuite(CastBenchmark.class);
 
     // java.util
     suite.addTestSuite(ArrayListBenchmark.class);
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.emultest.benchmarks;
+
+import com.google.gwt.benchmarks.client.Benchmark;
+import com.google.gwt.benchmarks.client.IntRange;
+import com.google.gwt.benchmarks.client.Operator;
+import com.google.gwt.benchmarks.client.RangeField;
+import com.google.gwt.benchmarks.client.Setup;
+
+/**
+ * Benchmark for dynamic casts and instanceof tests. Compare runs with and
+ * without the <code>gwt.jjs.classIntervalCasts</code> system property set.
+ */
+public class CastBenchmark extends Benchmark {
+
+  interface Marker {
+  }
+
+  static class Base {
+  }
+
+  static class Mid extends Base implements Marker {
+  }
+
+  static class Leaf extends Mid {
+  }
+
+  static class Other implements Marker {
+  }
+
+  protected final IntRange sizeRange = new IntRange(100, 10000, Operator.MULTIPLY, 10);
+
+  private Object[] objects;
+
+  /**
+   * This field is used as a target of assignments that should not be pruned.
+   */
+  @SuppressWarnings("unused")
+  private volatile int volatileInt;
+
+  /**
+   * This field is used as a target of assignments that should not be pruned.
+   */
+  @SuppressWarnings("unused")
+  private volatile Object volatileObject;
+
+  @Override
+  public String getModuleName() {
+    return "com.google.gwt.emultest.EmulSuiteBenchmarks";
+  }
+
+  public void testClassCast() {
+  }
+
+  @Setup("createObjects")
+  public void testClassCast(@RangeField("sizeRange")
+  Integer size) {
+    for (int i = 0; i < objects.length; i++) {
+      if (!(objects[i] instanceof Other)) {
+        volatileObject = (Base) objects[i];
+      }
+    }
+  }
+
+  public void testClassInstanceOf() {
+  }
+
+  @Setup("createObjects")
+  public void testClassInstanceOf(@RangeField("sizeRange")
+  Integer size) {
+    int count = 0;
+    for (int i = 0; i < objects.length; i++) {
+      if (objects[i] instanceof Mid) {
+        count++;
+      }
+    }
+    volatileInt = count;
+  }
+
+  public void testInterfaceInstanceOf() {
+  }
+
+  @Setup("createObjects")
+  public void testInterfaceInstanceOf(@RangeField("sizeRange")
+  Integer size) {
+    int count = 0;
+    for (int i = 0; i < objects.length; i++) {
+      if (objects[i] instanceof Marker) {
+        count++;
+      }
+    }
+    volatileInt = count;
+  }
+
+  void createObjects(Integer size) {
+    objects = new Object[size];
+    for (int i = 0; i < size; i++) {
+      switch (i % 4) {
+        case 0:
+          objects[i] = new Base();
+          break;
+        case 1:
+          objects[i] = new Mid();
+          break;
+        case 2:
+          objects[i] = new Leaf();
+          break;
+        default:
+          objects[i] = new Other();
+          break;
+      }
+    }
+  }
+}
@@ -32,6 +32,7 @@ public class LongBenchmark extends Benchmark {
     ALT, STANDARD
   }
 
+  protected final IntRange arithmeticRange = new IntRange(100, 10000, Operator.MULTIPLY, 10);
   protected final IntRange incrementRange = new IntRange(0, 62, Operator.ADD, 1);
   protected final LongKind[] toStringKinds = new LongKind[] {LongKind.STANDARD};
   protected final IntRange toStringRange = new IntRange(0, 62, Operator.ADD, 1);
@@ -53,6 +54,21 @@ public class LongBenchmark extends Benchmark {
     return "com.google.gwt.emultest.EmulSuiteBenchmarks";
   }
 
+  public void testEmulatedArithmetic() {
+  }
+
+  /**
+   * The same arithmetic as {@link #testSmallArithmetic(Integer)}, on a long
+   * whose range the compiler does not know, so it stays emulated.
+   */
+  public void testEmulatedArithmetic(@RangeField("arithmeticRange")
+  Integer size) {
+    for (int i = size; i != 0; i--) {
+      long x = i;
+      volatileLong = x * 3L + 7L;
+    }
+  }
+
   public void testIncrement() {
   }
 
@@ -67,6 +83,19 @@ public class LongBenchmark extends Benchmark {
     volatileLong = x;
   }
 
+  public void testSmallArithmetic() {
+  }
+
+  /**
+   * Arithmetic on a widened int, which the compiler lowers to double math.
+   */
+  public void testSmallArithmetic(@RangeField("arithmeticRange")
+  Integer size) {
+    for (int i = size; i != 0; i--) {
+      volatileLong = (long) i * 3L + 7L;
+    }
+  }
+
   public void testToString() {
   }
 
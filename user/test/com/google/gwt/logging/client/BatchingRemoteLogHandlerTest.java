@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.logging.client;
+
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.logging.shared.BatchRemoteLoggingServiceAsync;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Tests {@link BatchingRemoteLogHandler}.
+ */
+public class BatchingRemoteLogHandlerTest extends GWTTestCase {
+
+  /**
+   * Records the batches instead of sending them.
+   */
+  private static class MockService implements BatchRemoteLoggingServiceAsync {
+    final List<List<LogRecord>> batches = new ArrayList<List<LogRecord>>();
+
+    public void logAllOnServer(ArrayList<LogRecord> records, AsyncCallback<String> callback) {
+      batches.add(records);
+      onBatch();
+      callback.onSuccess(null);
+    }
+
+    void onBatch() {
+    }
+  }
+
+  private static final int TEST_DELAY = 5000;
+
+  private static LogRecord record(Level level, String msg) {
+    LogRecord record = new LogRecord(level, msg);
+    record.setLoggerName("test");
+    return record;
+  }
+
+  @Override
+  public String getModuleName() {
+    return "com.google.gwt.logging.LoggingSuite";
+  }
+
+  public void testDuplicateCounts() {
+    MockService service = new MockService();
+    BatchingRemoteLogHandler handler = new BatchingRemoteLogHandler(10, 60000, service);
+    handler.publish(record(Level.SEVERE, "a"));
+    handler.publish(record(Level.SEVERE, "b"));
+    handler.publish(record(Level.SEVERE, "a"));
+    handler.publish(record(Level.WARNING, "a"));
+    handler.publish(record(Level.SEVERE, "a"));
+    assertTrue(service.batches.isEmpty());
+
+    handler.flush();
+    assertEquals(1, service.batches.size());
+    List<LogRecord> batch = service.batches.get(0);
+    assertEquals(3, batch.size());
+    assertEquals("a (logged 3 times)", batch.get(0).getMessage());
+    assertEquals("b", batch.get(1).getMessage());
+    assertEquals("a", batch.get(2).getMessage());
+    assertEquals(Level.WARNING, batch.get(2).getLevel());
+
+    // Nothing left to send
+    handler.flush();
+    assertEquals(1, service.batches.size());
+  }
+
+  public void testSizeFlush() {
+    MockService service = new MockService();
+    BatchingRemoteLogHandler handler = new BatchingRemoteLogHandler(3, 60000, service);
+    handler.publish(record(Level.SEVERE, "a"));
+    handler.publish(record(Level.SEVERE, "b"));
+    // Duplicates do not count towards the batch size
+    handler.publish(record(Level.SEVERE, "b"));
+    assertTrue(service.batches.isEmpty());
+
+    handler.publish(record(Level.SEVERE, "c"));
+    assertEquals(1, service.batches.size());
+    assertEquals(3, service.batches.get(0).size());
+
+    handler.publish(record(Level.SEVERE, "d"));
+    assertEquals(1, service.batches.size());
+  }
+
+  public void testTimerFlush() {
+    MockService service = new MockService() {
+      @Override
+      void onBatch() {
+        assertEquals(2, batches.get(0).size());
+        finishTest();
+      }
+    };
+    BatchingRemoteLogHandler handler = new BatchingRemoteLogHandler(10, 100, service);
+    delayTestFinish(TEST_DELAY);
+    handler.publish(record(Level.SEVERE, "a"));
+    handler.publish(record(Level.SEVERE, "b"));
+    assertTrue(service.batches.isEmpty());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.logging.server;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Tests {@link BatchRemoteLoggingServiceImpl}.
+ */
+public class BatchRemoteLoggingServiceImplTest extends TestCase {
+
+  /**
+   * Records what is logged to a logger.
+   */
+  private static class RecordingHandler extends Handler {
+    final ArrayList<LogRecord> records = new ArrayList<LogRecord>();
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      records.add(record);
+    }
+  }
+
+  public void testRejectsLargeBatch() {
+    BatchRemoteLoggingServiceImpl service = new BatchRemoteLoggingServiceImpl();
+    service.setMaxBatchSize(2);
+    ArrayList<LogRecord> batch = new ArrayList<LogRecord>();
+    for (int i = 0; i < 3; i++) {
+      batch.add(new LogRecord(Level.INFO, "record " + i));
+    }
+
+    Logger logger = service.getLogger();
+    RecordingHandler handler = new RecordingHandler();
+    logger.addHandler(handler);
+    try {
+      // Rejected before the request is looked at, so no request is needed
+      assertNotNull(service.logAllOnServer(batch));
+    } finally {
+      logger.removeHandler(handler);
+    }
+    assertEquals(1, handler.records.size());
+    assertEquals(Level.WARNING, handler.records.get(0).getLevel());
+
+    try {
+      service.setMaxBatchSize(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
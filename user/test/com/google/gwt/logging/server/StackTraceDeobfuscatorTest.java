@@ -0,0 +1,237 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.logging.server;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Tests {@link StackTraceDeobfuscator}.
+ */
+public class StackTraceDeobfuscatorTest extends TestCase {
+
+  /**
+   * Serves generated symbol maps for any strong name starting with "perm" and
+   * counts how often they are read.
+   */
+  private static class MockDeobfuscator extends StackTraceDeobfuscator {
+    final AtomicInteger loads = new AtomicInteger();
+    final AtomicInteger resymbolized = new AtomicInteger();
+
+    public MockDeobfuscator() {
+      super("");
+    }
+
+    @Override
+    protected InputStream getSymbolMapInputStream(String permutationStrongName)
+        throws IOException {
+      if (!permutationStrongName.startsWith("perm")) {
+        throw new IOException("No symbol map for " + permutationStrongName);
+      }
+      loads.incrementAndGet();
+      return new ByteArrayInputStream(symbolMap(permutationStrongName));
+    }
+
+    @Override
+    public StackTraceElement resymbolize(StackTraceElement ste, String strongName) {
+      resymbolized.incrementAndGet();
+      return super.resymbolize(ste, strongName);
+    }
+  }
+
+  /**
+   * The throughput {@link #testThroughput()} requires.
+   */
+  private static final int MIN_TRACES_PER_SECOND = 10000;
+
+  private static final int SYMBOLS = 20000;
+
+  private static final int TRACES = 10000;
+
+  private static final int TRACE_DEPTH = 20;
+
+  private static byte[] symbolMap(String strongName) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# { ").append(strongName).append(" }\n");
+    sb.append("# jsName, jsniIdent, className, memberName, sourceUri, sourceLine, fragmentNumber\n");
+    // Descending, so that the file order is not the lookup order
+    for (int i = SYMBOLS - 1; i >= 0; i--) {
+      sb.append(jsName(i)).append(",com.example.");
+      sb.append(strongName).append("::method").append(i).append("(I),com.example.");
+      sb.append(strongName).append(",method").append(i);
+      sb.append(",file:/src/com/example/Foo.java,").append(i + 1).append(",0\n");
+    }
+    try {
+      return sb.toString().getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String jsName(int i) {
+    return Integer.toString(i, 36);
+  }
+
+  private static StackTraceElement obfuscated(int symbol) {
+    return new StackTraceElement("Unknown", jsName(symbol), null, -1);
+  }
+
+  private final MockDeobfuscator deobfuscator = new MockDeobfuscator();
+
+  public void testCacheEviction() {
+    deobfuscator.setCacheSize(2);
+    deobfuscator.resymbolize(obfuscated(1), "perm1");
+    deobfuscator.resymbolize(obfuscated(1), "perm2");
+    deobfuscator.resymbolize(obfuscated(1), "perm1");
+    assertEquals(2, deobfuscator.loads.get());
+
+    // perm2 is now the least recently used and makes room for perm3
+    deobfuscator.resymbolize(obfuscated(1), "perm3");
+    deobfuscator.resymbolize(obfuscated(1), "perm1");
+    assertEquals(3, deobfuscator.loads.get());
+    assertResymbolized(2, deobfuscator.resymbolize(obfuscated(2), "perm2"), "perm2");
+    assertEquals(4, deobfuscator.loads.get());
+
+    try {
+      deobfuscator.setCacheSize(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testConcurrentDeobfuscation() throws Exception {
+    deobfuscator.setCacheSize(3);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          public Void call() {
+            for (int i = 0; i < 1000; i++) {
+              // More permutations than the cache holds, to force evictions
+              String strongName = "perm" + ((thread + i / 100) % 4);
+              int symbol = (i * 7919) % SYMBOLS;
+              assertResymbolized(symbol,
+                  deobfuscator.resymbolize(obfuscated(symbol), strongName), strongName);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testDeobfuscateLogRecords() {
+    List<LogRecord> records = new ArrayList<LogRecord>();
+    for (int i = 0; i < 10; i++) {
+      Throwable cause = new Throwable("cause");
+      cause.setStackTrace(new StackTraceElement[] {obfuscated(3), obfuscated(4)});
+      Throwable thrown = new Throwable("thrown " + i, cause);
+      thrown.setStackTrace(new StackTraceElement[] {obfuscated(i), obfuscated(1), obfuscated(2)});
+      LogRecord record = new LogRecord(Level.SEVERE, "record " + i);
+      record.setThrown(thrown);
+      records.add(record);
+    }
+    records.add(new LogRecord(Level.INFO, "no exception"));
+
+    assertSame(records, deobfuscator.deobfuscateLogRecords(records, "perm1"));
+    // Each distinct frame once, though frames 1 to 4 are in every record
+    assertEquals(10, deobfuscator.resymbolized.get());
+    assertEquals(1, deobfuscator.loads.get());
+    for (int i = 0; i < 10; i++) {
+      Throwable thrown = records.get(i).getThrown();
+      assertEquals("thrown " + i, thrown.getMessage());
+      assertResymbolized(i, thrown.getStackTrace()[0], "perm1");
+      assertResymbolized(2, thrown.getStackTrace()[2], "perm1");
+      assertResymbolized(4, thrown.getCause().getStackTrace()[1], "perm1");
+    }
+    assertNull(records.get(10).getThrown());
+  }
+
+  public void testResymbolize() {
+    StackTraceElement ste = deobfuscator.resymbolize(obfuscated(1234), "perm1");
+    assertResymbolized(1234, ste, "perm1");
+
+    // Unknown names and permutations are returned unchanged
+    StackTraceElement unknown = new StackTraceElement("Unknown", "notAName", null, 5);
+    assertSame(unknown, deobfuscator.resymbolize(unknown, "perm1"));
+    assertSame(unknown, deobfuscator.resymbolize(unknown, "missing"));
+    assertSame(unknown, deobfuscator.resymbolize(unknown, "missing"));
+
+    // Recorded line numbers take precedence over the declaration line
+    StackTraceElement withLine = new StackTraceElement("Unknown", jsName(7), null, 42);
+    assertEquals(42, deobfuscator.resymbolize(withLine, "perm1").getLineNumber());
+  }
+
+  /**
+   * Deobfuscates {@value #TRACES} traces of {@value #TRACE_DEPTH} frames each,
+   * at least {@value #MIN_TRACES_PER_SECOND} traces per second once the symbol
+   * map is loaded.
+   */
+  public void testThroughput() {
+    StackTraceElement[][] traces = new StackTraceElement[TRACES][];
+    for (int i = 0; i < TRACES; i++) {
+      traces[i] = new StackTraceElement[TRACE_DEPTH];
+      for (int j = 0; j < TRACE_DEPTH; j++) {
+        traces[i][j] = obfuscated((i * 31 + j * 7) % SYMBOLS);
+      }
+    }
+    // Load the symbol map and warm up before timing
+    deobfuscateAll(traces);
+
+    long start = System.nanoTime();
+    deobfuscateAll(traces);
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+    long limitMillis = TRACES * 1000L / MIN_TRACES_PER_SECOND;
+    assertTrue(TRACES + " traces took " + elapsedMillis + "ms, more than "
+        + limitMillis + "ms", elapsedMillis <= limitMillis);
+    assertEquals(1, deobfuscator.loads.get());
+  }
+
+  private void deobfuscateAll(StackTraceElement[][] traces) {
+    for (StackTraceElement[] trace : traces) {
+      StackTraceElement[] result = deobfuscator.deobfuscateStackTrace(trace, "perm1");
+      assertEquals("com.example.perm1", result[TRACE_DEPTH - 1].getClassName());
+    }
+  }
+
+  private static void assertResymbolized(int symbol, StackTraceElement ste,
+      String strongName) {
+    assertEquals("com.example." + strongName, ste.getClassName());
+    assertEquals("method" + symbol, ste.getMethodName());
+    assertEquals("Foo.java", ste.getFileName());
+    assertEquals(symbol + 1, ste.getLineNumber());
+  }
+}
@@ -24,11 +24,14 @@ import com.google.gwt.core.ext.linker.EmittedArtifact;
 import com.google.gwt.core.ext.linker.EmittedArtifact.Visibility;
 import com.google.gwt.core.ext.linker.SelectionProperty;
 import com.google.gwt.core.ext.linker.SyntheticArtifact;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.util.tools.Utility;
 
 import junit.framework.TestCase;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -85,7 +88,7 @@ public class PrecompressLinkerTest extends TestCase {
   private class MockLinkerContext implements LinkerContext {
     public SortedSet<ConfigurationProperty> getConfigurationProperties() {
       return new TreeSet<ConfigurationProperty>(Arrays.asList(
-          propLeaveOriginals, propPathRegexes));
+          propLeaveOriginals, propLevel, propPathRegexes, propThreads));
     }
 
     public String getModuleFunctionName() {
@@ -226,8 +229,12 @@ public class PrecompressLinkerTest extends TestCase {
 
   private MockConfigurationProperty propLeaveOriginals;
 
+  private MockConfigurationProperty propLevel;
+
   private MockConfigurationProperty propPathRegexes;
 
+  private MockConfigurationProperty propThreads;
+
   /**
    * Test that foo.js gets compressed to foo.js.gz, and bar.js is left alone.
    */
@@ -267,6 +274,120 @@ public class PrecompressLinkerTest extends TestCase {
     assertNull("foo.js should not have been compressed", fooGz);
   }
 
+  /**
+   * Test that compressed output is reused from the cache directory when the
+   * content has not changed.
+   */
+  public void testCache() throws UnableToCompleteException, IOException {
+    File cacheDir = Utility.makeTemporaryDirectory(null, "precompresscache");
+    String oldCacheDir = System.setProperty("gwt.precompress.cacheDir",
+        cacheDir.getPath());
+    try {
+      ArtifactSet updated = linkArtifacts();
+      byte[] fooGz = contents(findArtifact(updated, "foo.js.gz"));
+
+      File[] entries = cacheDir.listFiles();
+      // Only foo.js and uncompressible.js pass the filters
+      assertEquals(2, entries.length);
+
+      // Make the cached entries recognizable
+      byte[] marker = compress(new byte[] {42});
+      for (File entry : entries) {
+        Util.writeBytesToFile(TreeLogger.NULL, entry, marker);
+      }
+      updated = linkArtifacts();
+      assertEqualBytes(marker, contents(findArtifact(updated, "foo.js.gz")));
+
+      // A different level is a different cache entry
+      propLevel.setValue("max");
+      updated = linkArtifacts();
+      assertEqualBytes(decompress(fooGz),
+          decompress(contents(findArtifact(updated, "foo.js.gz"))));
+    } finally {
+      if (oldCacheDir == null) {
+        System.clearProperty("gwt.precompress.cacheDir");
+      } else {
+        System.setProperty("gwt.precompress.cacheDir", oldCacheDir);
+      }
+      Util.recursiveDelete(cacheDir, false);
+    }
+  }
+
+  /**
+   * Test that the least recently used cache entries are deleted once the
+   * cache grows beyond its maximum size.
+   */
+  public void testCachePruning() throws UnableToCompleteException, IOException {
+    File cacheDir = Utility.makeTemporaryDirectory(null, "precompresscache");
+    String oldCacheDir = System.setProperty("gwt.precompress.cacheDir",
+        cacheDir.getPath());
+    try {
+      linkArtifacts();
+      long usedBytes = 0;
+      for (File entry : cacheDir.listFiles()) {
+        usedBytes += entry.length();
+      }
+      File stale = new File(cacheDir, "stale-9.gz");
+      Util.writeBytesToFile(TreeLogger.NULL, stale, new byte[1000]);
+      stale.setLastModified(System.currentTimeMillis() - 24 * 60 * 60 * 1000);
+
+      System.setProperty("gwt.precompress.cacheMaxBytes", String.valueOf(usedBytes));
+      linkArtifacts();
+      // The entries used by this link are kept
+      assertFalse(stale.exists());
+      assertEquals(2, cacheDir.listFiles().length);
+
+      System.setProperty("gwt.precompress.cacheMaxBytes", "0");
+      assertNotNull(findArtifact(linkArtifacts(), "foo.js.gz"));
+      assertEquals(0, cacheDir.listFiles().length);
+    } finally {
+      System.clearProperty("gwt.precompress.cacheMaxBytes");
+      if (oldCacheDir == null) {
+        System.clearProperty("gwt.precompress.cacheDir");
+      } else {
+        System.setProperty("gwt.precompress.cacheDir", oldCacheDir);
+      }
+      Util.recursiveDelete(cacheDir, false);
+    }
+  }
+
+  /**
+   * Test that the maximum deflate level produces valid output that is no
+   * larger than the default level.
+   */
+  public void testMaxLevel() throws UnableToCompleteException, IOException {
+    byte[] defaultGz = contents(findArtifact(linkArtifacts(), "foo.js.gz"));
+    propLevel.setValue("max");
+    ArtifactSet updated = linkArtifacts();
+    EmittedArtifact foo = findArtifact(updated, "foo.js");
+    byte[] maxGz = contents(findArtifact(updated, "foo.js.gz"));
+    assertEqualBytes(contents(foo), decompress(maxGz));
+    assertTrue(maxGz.length <= defaultGz.length);
+
+    propLevel.setValue("11");
+    try {
+      linkArtifacts();
+      fail("Expected an invalid level to be rejected");
+    } catch (UnableToCompleteException expected) {
+    }
+  }
+
+  /**
+   * Test that compressing on several threads gives the same artifacts as
+   * compressing on one.
+   */
+  public void testParallel() throws UnableToCompleteException, IOException {
+    ArtifactSet serial = linkArtifacts();
+    propThreads.setValue("4");
+    ArtifactSet parallel = linkArtifacts();
+    assertEquals(serial.size(), parallel.size());
+    for (EmittedArtifact art : serial.find(EmittedArtifact.class)) {
+      EmittedArtifact other = findArtifact(parallel, art.getPartialPath());
+      assertNotNull(art.getPartialPath(), other);
+      assertEqualBytes(contents(art), contents(other));
+    }
+  }
+
   /**
    * Tests that if precompress.leave.original if false, the originals are
    * removed.
@@ -293,11 +414,17 @@ public class PrecompressLinkerTest extends TestCase {
         "precompress.leave.originals", false);
     propLeaveOriginals.setValue("true");
 
+    propLevel = new MockConfigurationProperty("precompress.level", false);
+    propLevel.setValue("default");
+
     propPathRegexes = new MockConfigurationProperty("precompress.path.regexes",
         true);
     propPathRegexes.values.add(".*\\.html");
     propPathRegexes.values.add(".*\\.js");
     propPathRegexes.values.add(".*\\.css");
+
+    propThreads = new MockConfigurationProperty("precompress.threads", false);
+    propThreads.setValue("1");
   }
 
   private ArtifactSet linkArtifacts() throws UnableToCompleteException {
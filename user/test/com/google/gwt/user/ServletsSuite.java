@@ -17,6 +17,7 @@ package com.google.gwt.user;
 
 import com.google.gwt.junit.tools.GWTTestSuite;
 import com.google.gwt.user.client.BadServletsTest;
+import com.google.gwt.user.server.CompiledOutputServletTest;
 
 import junit.framework.Test;
 
@@ -27,6 +28,7 @@ public class ServletsSuite {
   public static Test suite() {
     GWTTestSuite suite = new GWTTestSuite("ServletsSuite");
     suite.addTestSuite(BadServletsTest.class);
+    suite.addTestSuite(CompiledOutputServletTest.class);
     return suite;
   }
 }
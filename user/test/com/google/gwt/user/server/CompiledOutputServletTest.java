@@ -0,0 +1,255 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.user.server;
+
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.bio.SocketConnector;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests {@link CompiledOutputServlet} in an embedded Jetty.
+ */
+public class CompiledOutputServletTest extends TestCase {
+
+  private static final int LOAD_THREADS = 8;
+
+  private static final int LOAD_REQUESTS_PER_THREAD = 250;
+
+  /**
+   * Generous enough for a loaded build machine; a servlet that reads whole
+   * files into memory or serializes requests blows well past it.
+   */
+  private static final long LOAD_TIME_LIMIT_MILLIS = 60 * 1000;
+
+  private static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream out = new GZIPOutputStream(bytes);
+    out.write(content);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] read(HttpURLConnection conn) throws IOException {
+    InputStream in = conn.getInputStream();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void write(File file, byte[] content) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+
+  private byte[] cacheJs;
+  private byte[] nocacheJs;
+  private int port;
+  private File root;
+  private Server server;
+
+  public void testCompressedVariant() throws IOException {
+    HttpURLConnection plain = open("/hello/ABC.cache.js");
+    assertEquals(200, plain.getResponseCode());
+    assertNull(plain.getHeaderField("Content-Encoding"));
+    assertTrue(Arrays.equals(cacheJs, read(plain)));
+
+    HttpURLConnection gz = open("/hello/ABC.cache.js");
+    gz.setRequestProperty("Accept-Encoding", "gzip, deflate");
+    assertEquals(200, gz.getResponseCode());
+    assertEquals("gzip", gz.getHeaderField("Content-Encoding"));
+    assertEquals("Accept-Encoding", gz.getHeaderField("Vary"));
+    assertTrue(Arrays.equals(gzip(cacheJs), read(gz)));
+    assertFalse(plain.getHeaderField("ETag").equals(gz.getHeaderField("ETag")));
+
+    // No .gz sibling: the original is sent even though gzip is accepted
+    HttpURLConnection nocache = open("/hello/hello.nocache.js");
+    nocache.setRequestProperty("Accept-Encoding", "gzip");
+    assertNull(nocache.getHeaderField("Content-Encoding"));
+    assertTrue(Arrays.equals(nocacheJs, read(nocache)));
+  }
+
+  public void testCompressedOnly() throws IOException {
+    HttpURLConnection gz = open("/hello/DEF.cache.js");
+    gz.setRequestProperty("Accept-Encoding", "gzip");
+    assertEquals(200, gz.getResponseCode());
+    assertEquals("gzip", gz.getHeaderField("Content-Encoding"));
+    assertTrue(gz.getContentType().contains("javascript"));
+    assertTrue(Arrays.equals(gzip(cacheJs), read(gz)));
+
+    // Clients that do not accept gzip get the content decompressed
+    HttpURLConnection plain = open("/hello/DEF.cache.js");
+    assertEquals(200, plain.getResponseCode());
+    assertNull(plain.getHeaderField("Content-Encoding"));
+    assertTrue(Arrays.equals(cacheJs, read(plain)));
+    assertFalse(plain.getHeaderField("ETag").equals(gz.getHeaderField("ETag")));
+  }
+
+  public void testCachingHeaders() throws IOException {
+    HttpURLConnection strong = open("/hello/ABC.cache.js");
+    assertEquals(200, strong.getResponseCode());
+    String cacheControl = strong.getHeaderField("Cache-Control");
+    assertTrue(cacheControl, cacheControl.contains("immutable"));
+    assertTrue(cacheControl, cacheControl.contains("max-age="
+        + CompiledOutputServlet.IMMUTABLE_MAX_AGE));
+    assertTrue(strong.getExpiration() > System.currentTimeMillis());
+
+    HttpURLConnection selection = open("/hello/hello.nocache.js");
+    assertEquals(200, selection.getResponseCode());
+    assertEquals("no-cache", selection.getHeaderField("Cache-Control"));
+    String etag = selection.getHeaderField("ETag");
+    assertNotNull(etag);
+    assertTrue(selection.getContentType().contains("javascript"));
+    read(selection);
+
+    HttpURLConnection revalidate = open("/hello/hello.nocache.js");
+    revalidate.setRequestProperty("If-None-Match", etag);
+    assertEquals(304, revalidate.getResponseCode());
+
+    HttpURLConnection stale = open("/hello/hello.nocache.js");
+    stale.setRequestProperty("If-None-Match", "\"other\"");
+    assertEquals(200, stale.getResponseCode());
+    assertTrue(Arrays.equals(nocacheJs, read(stale)));
+  }
+
+  public void testMissingFiles() throws IOException {
+    assertEquals(404, open("/hello/missing.cache.js").getResponseCode());
+    assertEquals(404, open("/hello/").getResponseCode());
+    // Jetty may reject these itself; either way nothing outside root is sent
+    assertTrue(open("/hello/../outside.txt").getResponseCode() >= 400);
+    assertTrue(open("/hello/%2e%2e/outside.txt").getResponseCode() >= 400);
+  }
+
+  /**
+   * Fetches strong-named files from several threads at once and checks that
+   * every response is correct and that the whole load finishes in time.
+   */
+  public void testConcurrentLoad() throws Exception {
+    final byte[] expectedGz = gzip(cacheJs);
+    ExecutorService executor = Executors.newFixedThreadPool(LOAD_THREADS);
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      long start = System.currentTimeMillis();
+      for (int t = 0; t < LOAD_THREADS; t++) {
+        final boolean acceptGzip = t % 2 == 0;
+        results.add(executor.submit(new Callable<Integer>() {
+          public Integer call() throws IOException {
+            int served = 0;
+            for (int i = 0; i < LOAD_REQUESTS_PER_THREAD; i++) {
+              HttpURLConnection conn = open("/hello/ABC.cache.js");
+              if (acceptGzip) {
+                conn.setRequestProperty("Accept-Encoding", "gzip");
+              }
+              assertEquals(200, conn.getResponseCode());
+              byte[] body = read(conn);
+              assertTrue(Arrays.equals(acceptGzip ? expectedGz : cacheJs, body));
+              served++;
+            }
+            return served;
+          }
+        }));
+      }
+      for (Future<Integer> result : results) {
+        long remaining = LOAD_TIME_LIMIT_MILLIS
+            - (System.currentTimeMillis() - start);
+        assertEquals(LOAD_REQUESTS_PER_THREAD, result.get(Math.max(1, remaining),
+            TimeUnit.MILLISECONDS).intValue());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    root = File.createTempFile("compiledoutput", "");
+    root.delete();
+    File module = new File(root, "hello");
+    module.mkdirs();
+
+    StringBuilder js = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      js.append("function f").append(i).append("(){return ").append(i).append("}\n");
+    }
+    cacheJs = js.toString().getBytes("UTF-8");
+    nocacheJs = "function hello(){}".getBytes("UTF-8");
+    write(new File(module, "ABC.cache.js"), cacheJs);
+    write(new File(module, "ABC.cache.js.gz"), gzip(cacheJs));
+    write(new File(module, "DEF.cache.js.gz"), gzip(cacheJs));
+    write(new File(module, "hello.nocache.js"), nocacheJs);
+    write(new File(root, "outside.txt"), new byte[] {1});
+
+    server = new Server();
+    SocketConnector connector = new SocketConnector();
+    connector.setPort(0);
+    server.addConnector(connector);
+    Context context = new Context(server, "/");
+    ServletHolder holder = new ServletHolder(CompiledOutputServlet.class);
+    holder.setInitParameter("root", module.getPath());
+    context.addServlet(holder, "/hello/*");
+    server.start();
+    port = connector.getLocalPort();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop();
+    for (File dir : new File[] {new File(root, "hello"), root}) {
+      for (File file : dir.listFiles()) {
+        file.delete();
+      }
+      dir.delete();
+    }
+  }
+
+  private HttpURLConnection open(String path) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:"
+        + port + path).openConnection();
+    conn.setUseCaches(false);
+    return conn;
+  }
+}
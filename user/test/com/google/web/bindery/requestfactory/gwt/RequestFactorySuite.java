@@ -16,6 +16,7 @@
 package com.google.web.bindery.requestfactory.gwt;
 
 import com.google.gwt.junit.tools.GWTTestSuite;
+import com.google.web.bindery.requestfactory.gwt.client.CoalescingRequestTransportTest;
 import com.google.web.bindery.requestfactory.gwt.client.RequestBatcherTest;
 import com.google.web.bindery.requestfactory.gwt.client.FindServiceTest;
 import com.google.web.bindery.requestfactory.gwt.client.RequestFactoryChainedContextTest;
@@ -42,6 +43,7 @@ public class RequestFactorySuite {
         "Test suite for requestfactory gwt code.");
     suite.addTestSuite(RequestBatcherTest.class);
     suite.addTestSuite(BoxesAndPrimitivesTest.class);
+    suite.addTestSuite(CoalescingRequestTransportTest.class);
     suite.addTestSuite(ComplexKeysTest.class);
     suite.addTestSuite(EditorTest.class);
     suite.addTestSuite(FanoutReceiverTest.class);
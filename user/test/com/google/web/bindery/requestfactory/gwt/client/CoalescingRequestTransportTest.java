@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.web.bindery.requestfactory.gwt.client;
+
+import com.google.web.bindery.requestfactory.shared.EntityProxyId;
+import com.google.web.bindery.requestfactory.shared.Receiver;
+import com.google.web.bindery.requestfactory.shared.RequestTransport;
+import com.google.web.bindery.requestfactory.shared.SimpleFooProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runtime test for CoalescingRequestTransport. This test relies on the
+ * asynchronous behavior of the browser transport and has no JRE variant.
+ */
+public class CoalescingRequestTransportTest extends RequestFactoryTestBase {
+
+  /**
+   * Counts the payloads that actually reach the underlying transport.
+   */
+  private static class CountingTransport implements RequestTransport {
+    private int sent;
+    private final RequestTransport wrapped;
+
+    public CountingTransport(RequestTransport wrapped) {
+      this.wrapped = wrapped;
+    }
+
+    public void send(String payload, TransportReceiver receiver) {
+      sent++;
+      wrapped.send(payload, receiver);
+    }
+  }
+
+  private static final int TEST_DELAY = 5000;
+
+  private CoalescingRequestTransport coalescing;
+  private CountingTransport counting;
+
+  @Override
+  public String getModuleName() {
+    return "com.google.web.bindery.requestfactory.gwt.RequestFactorySuite";
+  }
+
+  @Override
+  public void gwtSetUp() {
+    super.gwtSetUp();
+    counting = new CountingTransport(req.getRequestTransport());
+    coalescing = new CoalescingRequestTransport(counting);
+    req.initialize(eventBus, coalescing);
+  }
+
+  public void testDuplicateFindsAreCoalesced() {
+    delayTestFinish(TEST_DELAY);
+    req.simpleFooRequest().findSimpleFooById(999L).fire(new Receiver<SimpleFooProxy>() {
+      @Override
+      public void onSuccess(SimpleFooProxy response) {
+        final EntityProxyId<SimpleFooProxy> id = response.stableId();
+        final int sentBefore = counting.sent;
+        final List<SimpleFooProxy> found = new ArrayList<SimpleFooProxy>();
+        Receiver<SimpleFooProxy> receiver = new Receiver<SimpleFooProxy>() {
+          @Override
+          public void onSuccess(SimpleFooProxy response) {
+            assertEquals(id, response.stableId());
+            found.add(response);
+            if (found.size() == 3) {
+              assertEquals(sentBefore + 1, counting.sent);
+              assertEquals(2, coalescing.getCoalescedCount());
+              finishTestAndReset();
+            }
+          }
+        };
+        req.find(id).fire(receiver);
+        req.find(id).fire(receiver);
+        req.find(id).fire(receiver);
+      }
+    });
+  }
+
+  public void testOtherPayloadStopsCoalescing() {
+    delayTestFinish(TEST_DELAY);
+    req.simpleFooRequest().findSimpleFooById(999L).fire(new Receiver<SimpleFooProxy>() {
+      @Override
+      public void onSuccess(SimpleFooProxy response) {
+        final EntityProxyId<SimpleFooProxy> id = response.stableId();
+        final int sentBefore = counting.sent;
+        final List<SimpleFooProxy> found = new ArrayList<SimpleFooProxy>();
+        Receiver<SimpleFooProxy> receiver = new Receiver<SimpleFooProxy>() {
+          @Override
+          public void onSuccess(SimpleFooProxy response) {
+            found.add(response);
+            if (found.size() == 2) {
+              assertEquals(sentBefore + 3, counting.sent);
+              assertEquals(0, coalescing.getCoalescedCount());
+              finishTestAndReset();
+            }
+          }
+        };
+        req.find(id).fire(receiver);
+        // Not a find(), so it must go over the wire and seal the pending find
+        req.simpleFooRequest().countSimpleFoo().fire();
+        req.find(id).fire(receiver);
+      }
+    });
+  }
+}